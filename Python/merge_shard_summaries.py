@@ -0,0 +1,75 @@
+import argparse
+import csv
+import os
+import sys
+
+# Merges the summary.csv files written by the shards of a full factorial run
+# (-Dtatc.ff.shard=i/n). The archIndex of every row is its global design index,
+# so the rows of all the shards can be put together without renumbering.
+
+SUMMARY_FILE = 'summary.csv'
+INDEX_COLUMN = 'archIndex'
+
+
+def resolve_summary(path):
+    # Accept either a summary file or a shard output folder containing it
+    if os.path.isdir(path):
+        return os.path.join(path, SUMMARY_FILE)
+    return path
+
+
+def load_rows(summary_path):
+    with open(summary_path, 'r', newline='') as f:
+        reader = csv.DictReader(f)
+        if reader.fieldnames is None or INDEX_COLUMN not in reader.fieldnames:
+            raise ValueError(f'{summary_path} has no {INDEX_COLUMN} column')
+        return reader.fieldnames, list(reader)
+
+
+def merge(summary_paths):
+    header = [INDEX_COLUMN]
+    rows_by_index = {}
+    duplicates = 0
+    for summary_path in summary_paths:
+        fieldnames, rows = load_rows(summary_path)
+        for name in fieldnames:
+            if name not in header:
+                header.append(name)
+        for row in rows:
+            index = int(row[INDEX_COLUMN])
+            if index in rows_by_index:
+                # Overlapping shards: the design was evaluated twice, keep the first result
+                duplicates += 1
+                continue
+            rows_by_index[index] = row
+        print(f'{summary_path}: {len(rows)} architectures')
+    if duplicates:
+        print(f'Warning: {duplicates} architectures appear in more than one shard, the first result was kept')
+    return header, [rows_by_index[index] for index in sorted(rows_by_index)]
+
+
+def main():
+    parser = argparse.ArgumentParser(description='Merge the summary.csv files of a sharded full factorial run')
+    parser.add_argument('inputs', type=str, nargs='+', help='Shard summary files or shard output folders')
+    parser.add_argument('--output', type=str, required=True, help='Path of the merged summary CSV')
+    args = parser.parse_args()
+
+    summary_paths = [resolve_summary(path) for path in args.inputs]
+    missing = [path for path in summary_paths if not os.path.isfile(path)]
+    if missing:
+        print('Summary files not found: ' + ', '.join(missing))
+        sys.exit(1)
+
+    header, rows = merge(summary_paths)
+    output_dir = os.path.dirname(args.output)
+    if output_dir:
+        os.makedirs(output_dir, exist_ok=True)
+    with open(args.output, 'w', newline='') as f:
+        writer = csv.DictWriter(f, fieldnames=header, restval='')
+        writer.writeheader()
+        writer.writerows(rows)
+    print(f'{len(rows)} architectures written to {args.output}')
+
+
+if __name__ == '__main__':
+    main()
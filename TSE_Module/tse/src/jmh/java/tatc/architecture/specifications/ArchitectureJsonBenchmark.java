@@ -0,0 +1,94 @@
+package tatc.architecture.specifications;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of an architecture with its mission, as done for each evaluation:
+ * - originalPath: a pretty-printing Gson built for the call, an intermediate String, an org.json
+ *   parse to add the mission and toString(4) (ArchitectureCreatorNew.toJSON before ArchitectureJson),
+ * - cachedGson: the shared Gson of ArchitectureJson (reflection, adapters cached) to a String,
+ * - streamingOutputStream and streamingByteBuffer: ArchitectureJson.write into reused buffers.
+ *
+ * Run with: mvn -P benchmark test-compile exec:exec (from TSE_Module/tse). The architecture is read
+ * from an arch.json file (archFile parameter).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ArchitectureJsonBenchmark {
+
+    @Param({"problems/arch-2/arch.json"})
+    public String archFile;
+
+    private Architecture architecture;
+    private Map<String, Object> mission;
+    private Map<String, Object> extraFields;
+    private ByteArrayOutputStream stream;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        String json = new String(Files.readAllBytes(Paths.get(archFile)), StandardCharsets.UTF_8);
+        architecture = new Gson().fromJson(json, Architecture.class);
+        mission = new LinkedHashMap<>();
+        mission.put("start", "2020-01-01T00:00:00Z");
+        mission.put("duration", "P0Y0M90D");
+        extraFields = Collections.singletonMap("mission", mission);
+        stream = new ByteArrayOutputStream(1 << 16);
+        buffer = ByteBuffer.allocate(1 << 20);
+    }
+
+    @Benchmark
+    public byte[] originalPath() {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        JSONObject archJson = new JSONObject(gson.toJson(architecture));
+        archJson.put("mission", new JSONObject(mission));
+        return archJson.toString(4).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] cachedGson() {
+        return ArchitectureJson.gson().toJson(architecture).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int streamingOutputStream() throws IOException {
+        stream.reset();
+        ArchitectureJson.write(architecture, extraFields, stream);
+        return stream.size();
+    }
+
+    @Benchmark
+    public int streamingByteBuffer() throws IOException {
+        buffer.clear();
+        ArchitectureJson.write(architecture, extraFields, buffer);
+        return buffer.position();
+    }
+}
@@ -0,0 +1,127 @@
+package tatc;
+
+import org.moeaframework.core.Population;
+import org.moeaframework.core.Solution;
+import tatc.util.ResultsSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the labeled result of a search at each step as appended deltas, instead of rewriting a
+ * full results[NFE].dlm file (ResultIO.saveLabels) at every step. Each row of the delta file is a
+ * labeled solution in the format of saveLabels, preceded by the NFE of the step and a change:
+ * - "=" rows are a full snapshot, written by the first step recorded by a writer: the result is
+ *   exactly these rows (e.g. when a search is resumed, the rows before are discarded),
+ * - "+" rows are solutions that entered the result at that step,
+ * - "-" rows are solutions that left it.
+ * The result at a given NFE is replayed by applying the rows up to that NFE.
+ *
+ * The rows are appended through the results sink, off the search thread.
+ */
+public class LabelDeltaWriter {
+
+    private final File file;
+    private final String separator;
+    /**
+     * Labeled solutions of the result at the last recorded step
+     */
+    private Set<Solution> previous;
+
+    /**
+     * @param filename the file name without extension (.dlm is added)
+     * @param separator the column separator
+     */
+    public LabelDeltaWriter(String filename, String separator) {
+        this.file = new File(filename + ".dlm");
+        this.separator = separator;
+    }
+
+    /**
+     * Appends the changes of the result since the last recorded step
+     * @param population the result of the search (e.g. the non-dominated solutions)
+     * @param nfe the number of evaluations of the step
+     */
+    public void append(Population population, int nfe) {
+        if (population.isEmpty()) {
+            return;
+        }
+        Set<Solution> current = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Solution solution : population) {
+            if (solution.getAttribute("label") != null) {
+                current.add(solution);
+            }
+        }
+        if (previous == null && current.isEmpty()) {
+            // The snapshot is written by the first step with labeled solutions
+            return;
+        }
+        StringBuilder rows = new StringBuilder();
+        if (previous == null) {
+            for (Solution solution : current) {
+                appendRow(rows, nfe, "=", solution);
+            }
+        } else {
+            for (Solution solution : current) {
+                if (!previous.contains(solution)) {
+                    appendRow(rows, nfe, "+", solution);
+                }
+            }
+            for (Solution solution : previous) {
+                if (!current.contains(solution)) {
+                    appendRow(rows, nfe, "-", solution);
+                }
+            }
+        }
+        previous = current;
+        if (rows.length() == 0) {
+            return;
+        }
+        Solution first = population.get(0);
+        int numberOfVariables = ResultIO.getNumberOfDecisionColumns(first);
+        int numberOfObjectives = first.getNumberOfObjectives();
+        try {
+            ResultsSink.getInstance().append(file, () -> header(numberOfVariables, numberOfObjectives), rows.toString());
+        } catch (IOException ex) {
+            Logger.getLogger(LabelDeltaWriter.class.getName()).log(Level.SEVERE, "Error saving label deltas", ex);
+        }
+    }
+
+    private String header(int numberOfVariables, int numberOfObjectives) {
+        StringBuilder header = new StringBuilder();
+        header.append("NFE").append(separator).append("Change").append(separator).append("Label").append(separator);
+        for (int i = 0; i < numberOfVariables; i++) {
+            header.append("dec").append(i).append(separator);
+        }
+        for (int i = 0; i < numberOfObjectives; i++) {
+            header.append("obj").append(i);
+            if (i < numberOfObjectives - 1) {
+                header.append(separator);
+            }
+        }
+        return header.append(System.lineSeparator()).toString();
+    }
+
+    private void appendRow(StringBuilder rows, int nfe, String change, Solution solution) {
+        rows.append(nfe).append(separator).append(change).append(separator);
+        rows.append((String) solution.getAttribute("label")).append(separator);
+        try {
+            ResultIO.appendDecisions(rows, solution, separator);
+        } catch (IOException e) {
+            // Appending to a StringBuilder does not fail
+            throw new IllegalStateException(e);
+        }
+        for (int i = 0; i < solution.getNumberOfObjectives(); i++) {
+            rows.append(solution.getObjective(i));
+            if (i < solution.getNumberOfObjectives() - 1) {
+                rows.append(separator);
+            }
+        }
+        rows.append(System.lineSeparator());
+    }
+}
@@ -8,6 +8,8 @@ package tatc;
  * @author TSE Development Team
  */
 
+import com.google.gson.Gson;
+import tatc.architecture.ArchitecturePackStore;
 import tatc.architecture.outputspecifications.CostRisk;
 import tatc.architecture.outputspecifications.Gbl;
 import tatc.architecture.specifications.Architecture;
@@ -15,8 +17,10 @@ import tatc.util.JSONIO;
 import tatc.util.Utilities;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -38,7 +42,11 @@ public class ReadOutputs {
 
         // Process results from formulation1_0
         String mainpath = System.getProperty("user.dir") + File.separator + ".." + File.separator + ".." + File.separator + "results"+ File.separator + "results_formulation1_0";
-        try (FileWriter fw = new FileWriter(new File(mainpath + File.separator + "metricsArchs.csv"))) {
+        File resultsFolder = new File(mainpath);
+        // The architecture files are in the architecture store of the run, or in one folder per
+        // architecture for the runs without it (tatc.archStore=folders)
+        try (ArchitecturePackStore store = ArchitecturePackStore.exists(resultsFolder) ? ArchitecturePackStore.openReadOnly(resultsFolder) : null;
+             FileWriter fw = new FileWriter(new File(mainpath + File.separator + "metricsArchs.csv"))) {
             // Write the header
             fw.append(String.format("arch_id,altitude[km],inclination[deg],nsat,nplanes,f,altitude[km],inclination[deg],nsat,nplanes,f,altitude[km],inclination[deg],nsat,nplanes,f,AgvRevTime[s],MeanResponseTime[s],Cost[$]"));
             fw.append("\n");
@@ -46,13 +54,10 @@ public class ReadOutputs {
             
             int numArchs = 970;
             for (int i = 0; i < numArchs; i++) {
-                String outputFilePath1 = mainpath + File.separator + "arch-" + i + File.separator + "gbl.json";
-                String outputFilePath2 = mainpath + File.separator + "arch-" + i + File.separator + "CostRisk_Output.json";
-                String outputFilePath3 = mainpath + File.separator + "arch-" + i + File.separator + "arch.json";
-                
-                Gbl glb = JSONIO.readJSON(new File(outputFilePath1), Gbl.class);
-                CostRisk costrisk = JSONIO.readJSON(new File(outputFilePath2), CostRisk.class);
-                Architecture arch = JSONIO.readJSON(new File(outputFilePath3), Architecture.class);
+                String architectureId = "arch-" + i;
+                Gbl glb = readArchitectureFile(store, resultsFolder, architectureId, ArchitecturePackStore.GBL, Gbl.class);
+                CostRisk costrisk = readArchitectureFile(store, resultsFolder, architectureId, ArchitecturePackStore.COST_RISK_OUTPUT, CostRisk.class);
+                Architecture arch = readArchitectureFile(store, resultsFolder, architectureId, ArchitecturePackStore.ARCH_JSON, Architecture.class);
 
                 String line = "arch-" + i + ",";
                 for (int j = 0; j < 3; j++) {
@@ -77,4 +82,26 @@ public class ReadOutputs {
             Logger.getLogger(ResultIO.class.getName()).log(Level.SEVERE, "Error processing output files", ex);
         }
     }
+
+    /**
+     * Reads an output file of an architecture
+     * @param store the architecture store of the run, or null to read the architecture folder
+     * @param resultsFolder the results folder of the run
+     * @param architectureId the architecture id (e.g. arch-3)
+     * @param name the file name (e.g. gbl.json)
+     * @param c the class of the object stored in the file
+     * @return the object stored in the file
+     * @throws IOException if the file cannot be read
+     */
+    private static <T> T readArchitectureFile(ArchitecturePackStore store, File resultsFolder, String architectureId,
+                                              String name, Class<T> c) throws IOException {
+        if (store == null) {
+            return JSONIO.readJSON(new File(new File(resultsFolder, architectureId), name), c);
+        }
+        byte[] data = store.get(architectureId, name);
+        if (data == null) {
+            throw new FileNotFoundException(architectureId + "/" + name + " not found in the architecture store of " + resultsFolder);
+        }
+        return new Gson().fromJson(new String(data, StandardCharsets.UTF_8), c);
+    }
 }
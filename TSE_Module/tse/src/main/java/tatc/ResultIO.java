@@ -24,6 +24,7 @@ import tatc.architecture.specifications.Instrument;
 import tatc.architecture.specifications.PassiveOpticalScanner;
 import tatc.architecture.specifications.Satellite;
 import tatc.architecture.variable.*;
+import tatc.decisions.adg.IntGenome;
 import tatc.tradespaceiterator.search.DrivingFeature;
 import tatc.tradespaceiterator.search.PopulationLabeler;
 import tatc.util.JSONIO;
@@ -110,7 +111,7 @@ public class ResultIO implements Serializable {
                 bw.append(String.format("obj%d", i));
                 bw.append(" ");
             }
-            for (int i = 0; i < pop.get(0).getNumberOfVariables(); i++) {
+            for (int i = 0; i < getNumberOfDecisionColumns(pop.get(0)); i++) {
                 bw.append(String.format("dec%d", i));
                 bw.append(" ");
             }
@@ -126,10 +127,7 @@ public class ResultIO implements Serializable {
                     bw.append(String.valueOf(soln.getObjective(i)));
                     bw.append(" ");
                 }
-                for (int i = 0; i < soln.getNumberOfVariables(); i++) {
-                    bw.append(soln.getVariable(i).toString());
-                    bw.append(" ");
-                }
+                appendDecisions(bw, soln, " ");
                 for (String attr : attrSet) {
                     bw.append(String.valueOf((soln.getAttribute(attr))));
                     bw.append(" ");
@@ -143,6 +141,43 @@ public class ResultIO implements Serializable {
         return true;
     }
 
+    /**
+     * Number of decision columns of a solution in the delimited result files: one per gene of an
+     * IntGenome (the genome of ADG solutions), one per other variable.
+     *
+     * @param solution The solution
+     * @return the number of decision columns
+     */
+    public static int getNumberOfDecisionColumns(Solution solution) {
+        int columns = 0;
+        for (int i = 0; i < solution.getNumberOfVariables(); i++) {
+            columns += solution.getVariable(i) instanceof IntGenome ? ((IntGenome) solution.getVariable(i)).size() : 1;
+        }
+        return columns;
+    }
+
+    /**
+     * Appends the decision values of a solution, each one followed by the separator. The genes of
+     * an IntGenome are written in separate columns, so the values never contain the separator.
+     *
+     * @param out The destination
+     * @param solution The solution
+     * @param separator The delimiter to use between values
+     * @throws IOException if an I/O exception occurred
+     */
+    public static void appendDecisions(Appendable out, Solution solution, String separator) throws IOException {
+        for (int i = 0; i < solution.getNumberOfVariables(); i++) {
+            if (solution.getVariable(i) instanceof IntGenome) {
+                IntGenome genome = (IntGenome) solution.getVariable(i);
+                for (int gene = 0; gene < genome.size(); gene++) {
+                    out.append(String.valueOf(genome.get(gene))).append(separator);
+                }
+            } else {
+                out.append(solution.getVariable(i).toString()).append(separator);
+            }
+        }
+    }
+
     /**
      * Reads a set of objective vectors from the specified file.
      * Files read using this method should only have been created using the
@@ -209,7 +244,7 @@ public class ResultIO implements Serializable {
             // Write header
             bw.append("Label");
             bw.append(separator);
-            for (int i = 0; i < population.get(0).getNumberOfVariables(); i++) {
+            for (int i = 0; i < getNumberOfDecisionColumns(population.get(0)); i++) {
                 bw.append("dec" + i);
                 bw.append(separator);
             }
@@ -227,10 +262,7 @@ public class ResultIO implements Serializable {
                 if (label != null) {
                     bw.append(label);
                     bw.append(separator);
-                    for (int i = 0; i < solution.getNumberOfVariables(); i++) {
-                        bw.append(solution.getVariable(i).toString());
-                        bw.append(separator);
-                    }
+                    appendDecisions(bw, solution, separator);
                     for (int i = 0; i < solution.getNumberOfObjectives(); i++) {
                         bw.append(String.valueOf(solution.getObjective(i)));
                         if (i < solution.getNumberOfObjectives() - 1) {
@@ -0,0 +1,281 @@
+package tatc;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived MQTT evaluation client shared by a whole tradespace search.
+ * It owns a single publisher and a single subscription to the result topic, and routes
+ * evaluator replies to the waiting callers by their workflow_id through a concurrent
+ * correlation map. The connection reconnects automatically, so one client survives the
+ * complete TradespaceSearchStrategy.start() call.
+ *
+ * Every pending evaluation exposes a CompletableFuture that is completed once all its replies
+ * have arrived, completed exceptionally when its deadline expires, and dropped from the
+ * correlation map when the caller cancels it.
+ *
+ * @author TSE Development Team
+ */
+public class TSEEvaluationClient {
+
+    /**
+     * Fixed topic on which the evaluators publish their results
+     */
+    public static final String RESULT_TOPIC = "TSE/results";
+
+    /**
+     * Default broker, can be overridden with the tatc.brokerUrl system property
+     */
+    public static final String DEFAULT_BROKER_URL = "tcp://localhost:1883";
+
+    /**
+     * Maximum time (in milliseconds) a publish waits for an automatic reconnect before failing
+     */
+    private static final long RECONNECT_WAIT_MS = 30000;
+
+    private static TSEEvaluationClient shared;
+
+    private final TSEPublisher publisher;
+    private final TSESubscriber subscriber;
+    private final int qos;
+    private final Map<String, PendingEvaluation> pending = new ConcurrentHashMap<>();
+    /**
+     * Fires the per-request deadlines
+     */
+    private final ScheduledExecutorService timer;
+    /**
+     * Completes the futures off the MQTT callback thread, so that dependent stages (file
+     * post-processing, population updates, ...) never stall the delivery of other replies
+     */
+    private final ExecutorService completionExecutor;
+
+    /**
+     * Constructs and connects an evaluation client
+     * @param brokerUrl the MQTT broker URL
+     * @param qos the quality of service used for requests and for the result subscription
+     * @throws MqttException if the connection or the subscription fails
+     */
+    public TSEEvaluationClient(String brokerUrl, int qos) throws MqttException {
+        String clientId = "TSE_Client_" + UUID.randomUUID();
+        this.qos = qos;
+        this.publisher = new TSEPublisher(brokerUrl, clientId + "_Publisher");
+        this.subscriber = new TSESubscriber(brokerUrl, clientId + "_Subscriber");
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "TSE_EvaluationTimer"));
+        this.completionExecutor = Executors.newCachedThreadPool(r -> daemon(r, "TSE_EvaluationCompletion"));
+        this.publisher.connect();
+        this.subscriber.connect();
+        this.subscriber.subscribe(RESULT_TOPIC, qos, this::onResult);
+    }
+
+    /**
+     * Opens the shared client for the current search, or gets it if it is already open (e.g.
+     * evaluations started outside of TradespaceSearchExecutive.start open it on first use).
+     * @return the shared evaluation client
+     * @throws MqttException if the connection fails
+     */
+    public static synchronized TSEEvaluationClient open() throws MqttException {
+        if (shared == null) {
+            shared = new TSEEvaluationClient(System.getProperty("tatc.brokerUrl", DEFAULT_BROKER_URL), 1);
+        }
+        return shared;
+    }
+
+    /**
+     * Disconnects the shared client (if any). Pending evaluations are cancelled so that no
+     * caller stays blocked after the search has finished.
+     */
+    public static synchronized void closeShared() {
+        if (shared != null) {
+            shared.close();
+            shared = null;
+        }
+    }
+
+    /**
+     * Registers a new evaluation so that its replies are captured as soon as they arrive.
+     * Must be called before publishing the requests of that workflow.
+     * @param workflowId the unique workflow identifier included in the requests
+     * @param expectedReplies the number of result messages expected for this workflow
+     * @param timeout the deadline for receiving all the replies (non-positive for no deadline)
+     * @param unit the time unit of the timeout
+     * @return the pending evaluation, whose future completes with the received metric values
+     */
+    public PendingEvaluation register(String workflowId, int expectedReplies, long timeout, TimeUnit unit) {
+        PendingEvaluation evaluation = new PendingEvaluation(workflowId, expectedReplies, completionExecutor);
+        pending.put(workflowId, evaluation);
+        // Completion, failure, timeout and cancellation all stop the routing of replies
+        evaluation.getFuture().whenComplete((results, error) -> {
+            pending.remove(workflowId, evaluation);
+            evaluation.cancelDeadline();
+        });
+        if (timeout > 0 && !evaluation.getFuture().isDone()) {
+            evaluation.deadline = timer.schedule(() -> evaluation.getFuture().completeExceptionally(
+                    new TimeoutException("Did not receive responses for all metrics of workflow " + workflowId + " within the timeout period.")),
+                    timeout, unit);
+        }
+        return evaluation;
+    }
+
+    /**
+     * Stops routing replies for a workflow and cancels its future
+     * @param workflowId the workflow identifier
+     */
+    public void unregister(String workflowId) {
+        PendingEvaluation evaluation = pending.remove(workflowId);
+        if (evaluation != null) {
+            evaluation.getFuture().cancel(false);
+        }
+    }
+
+    /**
+     * @return the number of evaluations currently waiting for replies
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Publishes an evaluation request. If the broker connection is momentarily down, it waits
+     * for the automatic reconnect before giving up.
+     * @param topic the evaluator topic (e.g. "evaluators/TATC/CoverageAnalysis")
+     * @param content the request payload
+     * @throws MqttException if the client could not publish the request
+     */
+    public void publish(String topic, String content) throws MqttException {
+        publish(topic, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Publishes an already encoded evaluation request (see ArchitecturePayload.request)
+     * @param topic the evaluator topic
+     * @param payload the UTF-8 request, which must not be modified afterwards
+     * @throws MqttException if the client could not publish the request
+     */
+    public void publish(String topic, byte[] payload) throws MqttException {
+        long deadline = System.currentTimeMillis() + RECONNECT_WAIT_MS;
+        while (!publisher.isConnected() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        publisher.publish(topic, payload, qos);
+    }
+
+    /**
+     * Disconnects the publisher and subscriber and cancels all pending evaluations
+     */
+    public void close() {
+        for (PendingEvaluation evaluation : pending.values()) {
+            evaluation.getFuture().cancel(false);
+        }
+        pending.clear();
+        timer.shutdownNow();
+        completionExecutor.shutdown();
+        try {
+            publisher.disconnect();
+            subscriber.disconnect();
+        } catch (MqttException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Routes one result message to the pending evaluation with the same workflow_id
+     */
+    private void onResult(String topic, String payload) {
+        try {
+            JSONObject responseJson = new JSONObject(payload);
+            PendingEvaluation evaluation = pending.get(responseJson.getString("workflow_id"));
+            if (evaluation == null) {
+                return; // Reply for an unknown or expired request
+            }
+            evaluation.accept(responseJson.getJSONObject("results"));
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * Results of one in-flight architecture evaluation, filled in by the MQTT callback thread
+     */
+    public static class PendingEvaluation {
+        private final String workflowId;
+        private final Map<String, Double> metricResults = new HashMap<>();
+        private final AtomicInteger remainingReplies;
+        private final ExecutorService completionExecutor;
+        private final CompletableFuture<Map<String, Double>> future = new CompletableFuture<>();
+        private volatile ScheduledFuture<?> deadline;
+
+        PendingEvaluation(String workflowId, int expectedReplies, ExecutorService completionExecutor) {
+            this.workflowId = workflowId;
+            this.remainingReplies = new AtomicInteger(expectedReplies);
+            this.completionExecutor = completionExecutor;
+            if (expectedReplies <= 0) {
+                future.complete(new HashMap<>());
+            }
+        }
+
+        public String getWorkflowId() {
+            return workflowId;
+        }
+
+        /**
+         * @return the future completed with the metric values once every reply has arrived
+         */
+        public CompletableFuture<Map<String, Double>> getFuture() {
+            return future;
+        }
+
+        private void accept(JSONObject results) {
+            synchronized (metricResults) {
+                for (String metric : results.keySet()) {
+                    metricResults.put(metric, results.getDouble(metric));
+                }
+            }
+            if (remainingReplies.decrementAndGet() == 0) {
+                Map<String, Double> snapshot = getResults();
+                completionExecutor.execute(() -> future.complete(snapshot));
+            }
+        }
+
+        private void cancelDeadline() {
+            ScheduledFuture<?> d = deadline;
+            if (d != null) {
+                d.cancel(false);
+            }
+        }
+
+        /**
+         * @return a copy of the metric values received so far
+         */
+        public Map<String, Double> getResults() {
+            synchronized (metricResults) {
+                return new HashMap<>(metricResults);
+            }
+        }
+    }
+}
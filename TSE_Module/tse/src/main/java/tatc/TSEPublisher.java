@@ -6,6 +6,8 @@ import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * MQTT publisher for the TSE (Tradespace Search Executive) system.
  * This class handles publishing messages to MQTT topics for inter-service communication.
@@ -37,6 +39,7 @@ public class TSEPublisher {
         mqttClient = new MqttClient(brokerUrl, clientId, new MemoryPersistence());
         MqttConnectOptions connOpts = new MqttConnectOptions();
         connOpts.setCleanSession(true);
+        connOpts.setAutomaticReconnect(true);
         mqttClient.connect(connOpts);
         System.out.println("Connected to MQTT broker: " + brokerUrl);
     }
@@ -50,15 +53,36 @@ public class TSEPublisher {
      * @throws MqttException if publishing fails
      */
     public void publish(String topic, String content, int qos) throws MqttException {
+        publish(topic, content.getBytes(StandardCharsets.UTF_8), qos);
+    }
+
+    /**
+     * Publishes an already encoded message to the specified MQTT topic.
+     * 
+     * @param topic The MQTT topic to publish to
+     * @param payload The UTF-8 message content, which must not be modified afterwards
+     * @param qos The Quality of Service level (0, 1, or 2)
+     * @throws MqttException if publishing fails
+     */
+    public void publish(String topic, byte[] payload, int qos) throws MqttException {
         if (mqttClient == null || !mqttClient.isConnected()) {
             throw new MqttException(MqttException.REASON_CODE_CLIENT_NOT_CONNECTED);
         }
         
-        MqttMessage message = new MqttMessage(content.getBytes());
+        MqttMessage message = new MqttMessage(payload);
         message.setQos(qos);
         mqttClient.publish(topic, message);
     }
 
+    /**
+     * Checks whether the underlying MQTT client is currently connected.
+     * 
+     * @return true if connected to the broker
+     */
+    public boolean isConnected() {
+        return mqttClient != null && mqttClient.isConnected();
+    }
+
     /**
      * Disconnects from the MQTT broker and cleans up resources.
      * 
@@ -69,5 +93,9 @@ public class TSEPublisher {
             mqttClient.disconnect();
             System.out.println("Disconnected from MQTT broker");
         }
+        if (mqttClient != null) {
+            mqttClient.close();
+            mqttClient = null;
+        }
     }
 }
@@ -1,17 +1,23 @@
 package tatc;
 
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
 import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 
 /**
  * MQTT subscriber for the TSE (Tradespace Search Executive) system.
  * This class handles subscribing to MQTT topics and processing incoming messages
- * through a configurable message handler.
+ * through a configurable message handler. The connection reconnects automatically
+ * and every active subscription is restored once the broker is reachable again.
  * 
  * @author TSE Development Team
  */
@@ -19,6 +25,11 @@ public class TSESubscriber {
     private final String brokerUrl;
     private final String clientId;
     private MqttClient mqttClient;
+    /**
+     * Active subscriptions (topic -> qos and handler) that are re-issued after a reconnect,
+     * since clean sessions do not keep them on the broker side.
+     */
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
 
     /**
      * Constructs a new TSESubscriber with the specified broker URL and client ID.
@@ -40,6 +51,31 @@ public class TSESubscriber {
         mqttClient = new MqttClient(brokerUrl, clientId, new MemoryPersistence());
         MqttConnectOptions connOpts = new MqttConnectOptions();
         connOpts.setCleanSession(true);
+        connOpts.setAutomaticReconnect(true);
+        mqttClient.setCallback(new MqttCallbackExtended() {
+            @Override
+            public void connectComplete(boolean reconnect, String serverURI) {
+                if (reconnect) {
+                    System.out.println("Reconnected to MQTT broker: " + serverURI);
+                    // Blocking subscribe calls are not allowed on the Paho callback thread
+                    new Thread(TSESubscriber.this::resubscribe, clientId + "_resubscribe").start();
+                }
+            }
+
+            @Override
+            public void connectionLost(Throwable cause) {
+                System.err.println("Connection to MQTT broker lost: " + (cause != null ? cause.getMessage() : "unknown cause"));
+            }
+
+            @Override
+            public void messageArrived(String topic, MqttMessage message) {
+                // Messages are delivered through the per-subscription listeners
+            }
+
+            @Override
+            public void deliveryComplete(IMqttDeliveryToken token) {
+            }
+        });
         mqttClient.connect(connOpts);
         System.out.println("Connected to MQTT broker: " + brokerUrl);
     }
@@ -56,27 +92,71 @@ public class TSESubscriber {
         if (mqttClient == null || !mqttClient.isConnected()) {
             throw new MqttException(MqttException.REASON_CODE_CLIENT_NOT_CONNECTED);
         }
-        
-        mqttClient.subscribe(topic, qos, new IMqttMessageListener() {
-            @Override
-            public void messageArrived(String receivedTopic, MqttMessage message) throws Exception {
-                String payload = new String(message.getPayload());
-                // Pass the topic and payload to the provided message handler
-                messageHandler.accept(receivedTopic, payload);
-            }
-        });
+
+        subscriptions.put(topic, new Subscription(qos, messageHandler));
+        mqttClient.subscribe(topic, qos, listenerFor(messageHandler));
         System.out.println("Subscribed to MQTT topic: " + topic);
     }
 
+    /**
+     * Checks whether the underlying MQTT client is currently connected.
+     * 
+     * @return true if connected to the broker
+     */
+    public boolean isConnected() {
+        return mqttClient != null && mqttClient.isConnected();
+    }
+
     /**
      * Disconnects from the MQTT broker and cleans up resources.
      * 
      * @throws MqttException if disconnection fails
      */
     public void disconnect() throws MqttException {
+        subscriptions.clear();
         if (mqttClient != null && mqttClient.isConnected()) {
             mqttClient.disconnect();
             System.out.println("Disconnected from MQTT broker");
         }
+        if (mqttClient != null) {
+            mqttClient.close();
+            mqttClient = null;
+        }
+    }
+
+    /**
+     * Re-issues every recorded subscription on the current connection.
+     */
+    private void resubscribe() {
+        for (Map.Entry<String, Subscription> entry : subscriptions.entrySet()) {
+            try {
+                mqttClient.subscribe(entry.getKey(), entry.getValue().qos, listenerFor(entry.getValue().handler));
+                System.out.println("Resubscribed to MQTT topic: " + entry.getKey());
+            } catch (MqttException e) {
+                System.err.println("Failed to resubscribe to MQTT topic " + entry.getKey() + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static IMqttMessageListener listenerFor(BiConsumer<String, String> messageHandler) {
+        return new IMqttMessageListener() {
+            @Override
+            public void messageArrived(String receivedTopic, MqttMessage message) throws Exception {
+                String payload = new String(message.getPayload());
+                // Pass the topic and payload to the provided message handler
+                messageHandler.accept(receivedTopic, payload);
+            }
+        };
+    }
+
+    private static class Subscription {
+        private final int qos;
+        private final BiConsumer<String, String> handler;
+
+        private Subscription(int qos, BiConsumer<String, String> handler) {
+            this.qos = qos;
+            this.handler = handler;
+        }
     }
 }
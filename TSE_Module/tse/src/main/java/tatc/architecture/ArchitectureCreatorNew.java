@@ -4,9 +4,11 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.io.IOException;
@@ -620,6 +622,39 @@ public void addGroundNetwork(GroundNetwork groundNetwork){
 
      @Override
     public File toJSON(int counter) {
+        ArchitecturePayload payload = serialize(counter);
+        File file = payload.getFile();
+        System.out.println("JSON file path: " + file.getAbsolutePath());
+        try {
+            // The caller reads the file, so it is written even with the architecture store
+            payload.getFolder().mkdirs();
+            payload.writeFile();
+            System.out.println("JSON write success");
+        } catch (IOException e) {
+            System.out.println("Error writing JSON file: " + e.getMessage());
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Serializes the architecture in memory, ready to be sent to the evaluators. Unlike toJSON, it
+     * does not wait for arch.json: the file is written in the background (into the architecture
+     * store by default), or not at all if tatc.writeArchJson is false (see ArchitecturePayload).
+     * @param counter the architecture counter, which names the architecture and its folder
+     * @return the serialized architecture
+     */
+    public ArchitecturePayload toPayload(long counter) {
+        ArchitecturePayload payload = serialize(counter);
+        payload.writeFileAsync();
+        return payload;
+    }
+
+    /**
+     * Assigns the ids of the ground stations, constellations and satellites, serializes the
+     * architecture with the mission information and creates the architecture folder
+     */
+    private ArchitecturePayload serialize(long counter) {
         List<GroundNetwork> groundNetworks = new ArrayList<>();
         int counterGN = 0;
         for (tatc.architecture.specifications.GroundStation groundStation : this.groundNetwork.getGroundStations()){
@@ -649,24 +684,14 @@ public void addGroundNetwork(GroundNetwork groundNetwork){
             }
         }
 
-        // Create architecture with mission info
-        Architecture arch = new Architecture("arch-"+Integer.toString(counter), constellations, groundNetworks);
-        
-        // Add mission info to the architecture JSON
+        // Create architecture with mission info, streamed once into the payload
+        Architecture arch = new Architecture("arch-"+Long.toString(counter), constellations, groundNetworks);
+        Map<String, Object> extraFields = null;
         if (mission != null) {
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            String archJsonStr = gson.toJson(arch);
-            JSONObject archJson = new JSONObject(archJsonStr);
-            
-            // Create mission JSON object
-            JSONObject missionJson = new JSONObject();
-            missionJson.put("start", mission.getStart());
-            missionJson.put("duration", mission.getDuration());
-            archJson.put("mission", missionJson);
-            
-            // Convert back to Architecture object
-            arch = gson.fromJson(archJson.toString(), Architecture.class);
-            System.out.println("Mission info added to architecture");
+            Map<String, Object> missionFields = new LinkedHashMap<>();
+            missionFields.put("start", mission.getStart());
+            missionFields.put("duration", mission.getDuration());
+            extraFields = Collections.singletonMap("mission", missionFields);
         }
 
         // Get the project root from system property
@@ -674,10 +699,10 @@ public void addGroundNetwork(GroundNetwork groundNetwork){
         if (projectRoot == null) {
             projectRoot = System.getProperty("user.dir");
         }
-        System.out.println("Project root: " + projectRoot);
         
         // Create timestamped results path only if it hasn't been created yet
         if (timestampedResultsPath == null) {
+            System.out.println("Project root: " + projectRoot);
             String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
             File mainPath = new File(projectRoot, "TSE_Module/tse/results");
             File timestampedPath = new File(mainPath, "results_" + timestamp);
@@ -689,42 +714,16 @@ public void addGroundNetwork(GroundNetwork groundNetwork){
             System.setProperty("tatc.output", timestampedResultsPath);
         }
         
-        // Create architecture folder
-        File archPatch = new File(timestampedResultsPath, "arch-" + Integer.toString(counter));
+        // Architecture folder, where the evaluation results are written. With the architecture
+        // store, the files go into the pack files of the results folder and it is not created.
+        File archPatch = new File(timestampedResultsPath, "arch-" + Long.toString(counter));
         System.out.println("Architecture directory: " + archPatch.getAbsolutePath());
-        boolean dirCreated = archPatch.mkdirs();
-        System.out.println("Directory created: " + dirCreated);
-        
-        File file = new File(archPatch, "arch.json");
-        System.out.println("JSON file path: " + file.getAbsolutePath());
-        System.out.println("JSON file exists before write: " + file.exists());
-        
-        // Write the architecture with mission info
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        String archJsonStr = gson.toJson(arch);
-        JSONObject archJson = new JSONObject(archJsonStr);
-        
-        if (mission != null) {
-            JSONObject missionJson = new JSONObject();
-            missionJson.put("start", mission.getStart());
-            missionJson.put("duration", mission.getDuration());
-            archJson.put("mission", missionJson);
-        }
-        
-        try (FileWriter writer = new FileWriter(file)) {
-            writer.write(archJson.toString(4)); // Pretty print with 4 spaces
-            System.out.println("JSON write success");
-        } catch (IOException e) {
-            System.out.println("Error writing JSON file: " + e.getMessage());
-            return null;
-        }
-        
-        System.out.println("JSON file exists after write: " + file.exists());
-        
-        if (file.exists()) {
-            System.out.println("File size: " + file.length() + " bytes");
+        if (ArchitecturePackStore.isEnabled()) {
+            archPatch.getParentFile().mkdirs();
+        } else {
+            archPatch.mkdirs();
         }
-        
-        return file;
+
+        return new ArchitecturePayload(arch, extraFields, archPatch);
     }
 }
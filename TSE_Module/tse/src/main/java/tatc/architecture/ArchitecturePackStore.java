@@ -0,0 +1,535 @@
+package tatc.architecture;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * Files of the architectures of a run (arch.json, CostRisk_output.json, gbl.json), kept in a few
+ * append-only pack files of the results folder instead of one folder per architecture:
+ *
+ *     results_[timestamp]/architectures-000.pack, architectures-001.pack, ...
+ *     results_[timestamp]/architectures.idx
+ *
+ * Each entry (architecture id, file name, contents) is appended to the last pack file as one
+ * record; a new pack file is started once it reaches tatc.archStoreSegmentBytes (256 MB by
+ * default). Updating an entry appends a new version of it. The index file lists the location of
+ * every record, and is loaded in memory when the store is opened, so an entry is read with a
+ * single positional read. The records appended after the last index write (e.g. a killed run) are
+ * recovered from the last pack file, and a record cut short is dropped.
+ *
+ * The store is used when tatc.archStore is "pack" (the default); "folders" keeps one folder per
+ * architecture. The files of an architecture can be exported back to a folder (exportArchitecture,
+ * or the main method). Tools reading the files of a run, possibly while it is running, open the
+ * store read-only (openReadOnly): it never writes, truncates or creates anything, and the records
+ * missing from the index are only indexed in memory.
+ */
+public class ArchitecturePackStore implements Closeable {
+
+    public static final String ARCH_JSON = "arch.json";
+    public static final String COST_RISK_OUTPUT = "CostRisk_output.json";
+    public static final String GBL = "gbl.json";
+
+    private static final String PACK_PREFIX = "architectures-";
+    private static final String PACK_SUFFIX = ".pack";
+    private static final String INDEX_FILE = "architectures.idx";
+    /**
+     * First bytes of each record ("TAPK")
+     */
+    private static final int RECORD_MAGIC = 0x5441504B;
+    private static final int RECORD_HEADER = 16;
+    private static final long DEFAULT_SEGMENT_BYTES = 256L << 20;
+
+    /**
+     * Open stores, by results folder
+     */
+    private static final Map<File, ArchitecturePackStore> STORES = new HashMap<>();
+
+    private final File directory;
+    private final long segmentBytes;
+    private final boolean readOnly;
+    private final List<FileChannel> segments = new ArrayList<>();
+    /**
+     * Location of the last version of each entry, by architecture id and file name
+     */
+    private final Map<String, Map<String, Location>> index = new HashMap<>();
+    private long currentSize;
+    private DataOutputStream indexOut;
+    private boolean closed;
+
+    /**
+     * Opens (or creates) the store of a results folder
+     * @param directory the results folder (e.g. results_[timestamp])
+     * @param segmentBytes the size from which a new pack file is started
+     * @throws IOException if the store cannot be read or opened for appending
+     */
+    public ArchitecturePackStore(File directory, long segmentBytes) throws IOException {
+        this(directory, segmentBytes, false);
+    }
+
+    private ArchitecturePackStore(File directory, long segmentBytes, boolean readOnly) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = Math.max(1, segmentBytes);
+        this.readOnly = readOnly;
+        if (readOnly) {
+            if (!segmentFile(0).isFile()) {
+                throw new FileNotFoundException("No architecture store in " + directory + " (" + segmentFile(0).getName() + " not found)");
+            }
+        } else {
+            directory.mkdirs();
+        }
+        try {
+            for (int s = 0; segmentFile(s).exists(); s++) {
+                segments.add(readOnly ? FileChannel.open(segmentFile(s).toPath(), StandardOpenOption.READ)
+                        : FileChannel.open(segmentFile(s).toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE));
+            }
+            if (segments.isEmpty()) {
+                segments.add(FileChannel.open(segmentFile(0).toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE));
+            }
+            long indexedEnd = loadIndex();
+            if (!readOnly) {
+                this.indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile(), true)));
+            }
+            recover(indexedEnd);
+        } catch (IOException e) {
+            closeChannels();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the store of a results folder for reading only, e.g. to read the files of a run that
+     * may still be running. Nothing is written: the index file and the pack files are left as they
+     * are, the records missing from the index are indexed in memory and an incomplete record at
+     * the end is ignored.
+     * @param directory the results folder
+     * @return the store, which cannot be modified
+     * @throws FileNotFoundException if the folder has no architecture store
+     * @throws IOException if the store cannot be read
+     */
+    public static ArchitecturePackStore openReadOnly(File directory) throws IOException {
+        return new ArchitecturePackStore(directory, DEFAULT_SEGMENT_BYTES, true);
+    }
+
+    /**
+     * @param directory a results folder
+     * @return whether the folder has an architecture store
+     */
+    public static boolean exists(File directory) {
+        return segmentFile(directory, 0).isFile();
+    }
+
+    /**
+     * @return whether the architecture files are kept in pack files, from the tatc.archStore system
+     * property ("pack" by default, "folders" for one folder per architecture)
+     */
+    public static boolean isEnabled() {
+        return "pack".equalsIgnoreCase(System.getProperty("tatc.archStore", "pack"));
+    }
+
+    /**
+     * Gets the store of a results folder, opening it the first time
+     * @param directory the results folder
+     * @return the store
+     * @throws IOException if the store cannot be opened
+     */
+    public static ArchitecturePackStore forDirectory(File directory) throws IOException {
+        File key = directory.getAbsoluteFile();
+        synchronized (STORES) {
+            ArchitecturePackStore store = STORES.get(key);
+            if (store == null) {
+                store = new ArchitecturePackStore(key, Long.getLong("tatc.archStoreSegmentBytes", DEFAULT_SEGMENT_BYTES));
+                STORES.put(key, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Gets the store holding the files of an architecture folder (which is not created)
+     * @param architectureFolder the architecture folder, e.g. results_[timestamp]/arch-3
+     * @return the store of the results folder
+     * @throws IOException if the store cannot be opened
+     */
+    public static ArchitecturePackStore forArchitectureFolder(File architectureFolder) throws IOException {
+        return forDirectory(architectureFolder.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Closes all the open stores (e.g. at the end of a search). They are opened again when needed.
+     */
+    public static void closeAll() {
+        List<ArchitecturePackStore> stores;
+        synchronized (STORES) {
+            stores = new ArrayList<>(STORES.values());
+            STORES.clear();
+        }
+        for (ArchitecturePackStore store : stores) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                System.err.println("Error closing the architecture store of " + store.directory + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds or replaces a file of an architecture
+     * @param architectureId the architecture id (e.g. arch-3)
+     * @param name the file name (e.g. arch.json)
+     * @param data the contents
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void put(String architectureId, String name, byte[] data) throws IOException {
+        ensureOpen();
+        if (readOnly) {
+            throw new IOException("The architecture store of " + directory + " is open read-only");
+        }
+        byte[] id = architectureId.getBytes(StandardCharsets.UTF_8);
+        byte[] fileName = name.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER + id.length + fileName.length + data.length;
+        if (currentSize > 0 && currentSize + length > segmentBytes) {
+            // New pack file; the index of the previous ones is complete
+            indexOut.flush();
+            segments.add(FileChannel.open(segmentFile(segments.size()).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE));
+            currentSize = 0;
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(RECORD_MAGIC).putInt(id.length).putInt(fileName.length).putInt(data.length);
+        record.put(id).put(fileName).put(data);
+        record.flip();
+        FileChannel channel = segments.get(segments.size() - 1);
+        long position = currentSize;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        Location location = new Location(segments.size() - 1, currentSize, length, data.length);
+        addToIndex(architectureId, name, location);
+        writeIndexRecord(architectureId, name, location);
+        currentSize += length;
+    }
+
+    /**
+     * Reads a file of an architecture
+     * @param architectureId the architecture id
+     * @param name the file name
+     * @return the contents of its last version, or null if there is none
+     * @throws IOException if the record cannot be read
+     */
+    public synchronized byte[] get(String architectureId, String name) throws IOException {
+        ensureOpen();
+        Map<String, Location> files = index.get(architectureId);
+        Location location = files != null ? files.get(name) : null;
+        if (location == null) {
+            return null;
+        }
+        ByteBuffer data = ByteBuffer.allocate(location.dataLength);
+        FileChannel channel = segments.get(location.segment);
+        long position = location.dataOffset();
+        while (data.hasRemaining()) {
+            int read = channel.read(data, position);
+            if (read < 0) {
+                throw new EOFException("Architecture store record of " + architectureId + "/" + name + " is truncated");
+            }
+            position += read;
+        }
+        return data.array();
+    }
+
+    /**
+     * Reads, modifies and writes back a file of an architecture, atomically with respect to the
+     * other updates of the store
+     * @param architectureId the architecture id
+     * @param name the file name
+     * @param update the new contents from the current ones (null if the file does not exist yet)
+     * @throws IOException if the file cannot be read or written
+     */
+    public synchronized void update(String architectureId, String name, UnaryOperator<byte[]> update) throws IOException {
+        put(architectureId, name, update.apply(get(architectureId, name)));
+    }
+
+    /**
+     * @return the ids of the architectures with at least one file, sorted
+     */
+    public synchronized Set<String> getArchitectureIds() {
+        return new TreeSet<>(index.keySet());
+    }
+
+    /**
+     * @param architectureId the architecture id
+     * @return the names of the files of the architecture
+     */
+    public synchronized Set<String> getFileNames(String architectureId) {
+        Map<String, Location> files = index.get(architectureId);
+        return files == null ? Collections.emptySet() : new TreeSet<>(files.keySet());
+    }
+
+    /**
+     * Writes the files of an architecture into a folder, as they were written before the store
+     * @param architectureId the architecture id
+     * @param folder the folder, created if needed
+     * @throws IOException if a file cannot be read or written
+     */
+    public void exportArchitecture(String architectureId, File folder) throws IOException {
+        folder.mkdirs();
+        for (String name : getFileNames(architectureId)) {
+            Files.write(new File(folder, name).toPath(), get(architectureId, name));
+        }
+    }
+
+    /**
+     * Writes the index and forces the pack files to disk
+     * @throws IOException if the index cannot be written
+     */
+    public synchronized void sync() throws IOException {
+        ensureOpen();
+        if (readOnly) {
+            return;
+        }
+        indexOut.flush();
+        for (FileChannel channel : segments) {
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            sync();
+            if (indexOut != null) {
+                indexOut.close();
+            }
+        } finally {
+            closed = true;
+            closeChannels();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The architecture store of " + directory + " is closed");
+        }
+    }
+
+    private void closeChannels() {
+        for (FileChannel channel : segments) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing else to do
+            }
+        }
+    }
+
+    /**
+     * Loads the index file, dropping a record cut short at its end
+     * @return the end of the last indexed record of the last pack file
+     */
+    private long loadIndex() throws IOException {
+        File file = indexFile();
+        int last = segments.size() - 1;
+        long indexedEnd = 0;
+        long valid = 0;
+        if (!file.exists()) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int segment;
+                try {
+                    segment = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                Location location;
+                String architectureId;
+                String name;
+                try {
+                    location = new Location(segment, in.readLong(), in.readInt(), in.readInt());
+                    architectureId = in.readUTF();
+                    name = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                valid += 4 + 8 + 4 + 4 + utfLength(architectureId) + utfLength(name);
+                if (segment > last || location.recordOffset + location.recordLength > segments.get(segment).size()) {
+                    // Pack record lost (e.g. pack file deleted)
+                    continue;
+                }
+                addToIndex(architectureId, name, location);
+                if (segment == last) {
+                    indexedEnd = Math.max(indexedEnd, location.recordOffset + location.recordLength);
+                }
+            }
+        }
+        if (valid < file.length() && !readOnly) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(valid);
+            }
+        }
+        return indexedEnd;
+    }
+
+    /**
+     * Indexes the records of the last pack file written after its last indexed record, and drops
+     * a record cut short at its end
+     */
+    private void recover(long from) throws IOException {
+        int segment = segments.size() - 1;
+        FileChannel channel = segments.get(segment);
+        long size = channel.size();
+        long position = from;
+        int recovered = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        while (position + RECORD_HEADER <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            if (header.getInt() != RECORD_MAGIC) {
+                break;
+            }
+            int idLength = header.getInt();
+            int nameLength = header.getInt();
+            int dataLength = header.getInt();
+            long length = (long) RECORD_HEADER + idLength + nameLength + dataLength;
+            if (idLength < 0 || nameLength < 0 || dataLength < 0 || position + length > size) {
+                break;
+            }
+            ByteBuffer names = ByteBuffer.allocate(idLength + nameLength);
+            channel.read(names, position + RECORD_HEADER);
+            String architectureId = new String(names.array(), 0, idLength, StandardCharsets.UTF_8);
+            String name = new String(names.array(), idLength, nameLength, StandardCharsets.UTF_8);
+            Location location = new Location(segment, position, (int) length, dataLength);
+            addToIndex(architectureId, name, location);
+            if (!readOnly) {
+                writeIndexRecord(architectureId, name, location);
+            }
+            position += length;
+            recovered++;
+        }
+        if (readOnly) {
+            // A record being written by a running search, or cut short: left to the writer
+            currentSize = position;
+            return;
+        }
+        if (position < size) {
+            System.out.println("Architecture store " + segmentFile(segment) + ": dropping " + (size - position) + " bytes of an incomplete record");
+            channel.truncate(position);
+        }
+        if (recovered > 0) {
+            System.out.println("Architecture store " + segmentFile(segment) + ": " + recovered + " records recovered");
+            indexOut.flush();
+        }
+        currentSize = position;
+    }
+
+    private void addToIndex(String architectureId, String name, Location location) {
+        index.computeIfAbsent(architectureId, id -> new LinkedHashMap<>()).put(name, location);
+    }
+
+    private void writeIndexRecord(String architectureId, String name, Location location) throws IOException {
+        indexOut.writeInt(location.segment);
+        indexOut.writeLong(location.recordOffset);
+        indexOut.writeInt(location.recordLength);
+        indexOut.writeInt(location.dataLength);
+        indexOut.writeUTF(architectureId);
+        indexOut.writeUTF(name);
+    }
+
+    /**
+     * @return the length of a string written by DataOutputStream.writeUTF
+     */
+    private static int utfLength(String s) {
+        int length = 2;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            length += (c >= 0x0001 && c <= 0x007F) ? 1 : (c > 0x07FF ? 3 : 2);
+        }
+        return length;
+    }
+
+    private File segmentFile(int segment) {
+        return segmentFile(directory, segment);
+    }
+
+    private static File segmentFile(File directory, int segment) {
+        return new File(directory, String.format("%s%03d%s", PACK_PREFIX, segment, PACK_SUFFIX));
+    }
+
+    private File indexFile() {
+        return new File(directory, INDEX_FILE);
+    }
+
+    /**
+     * Location of a record in the pack files
+     */
+    private static class Location {
+        private final int segment;
+        private final long recordOffset;
+        private final int recordLength;
+        private final int dataLength;
+
+        private Location(int segment, long recordOffset, int recordLength, int dataLength) {
+            this.segment = segment;
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+            this.dataLength = dataLength;
+        }
+
+        /**
+         * The contents are at the end of the record
+         */
+        private long dataOffset() {
+            return recordOffset + recordLength - dataLength;
+        }
+    }
+
+    /**
+     * Exports the architecture files of a run into one folder per architecture. The store is
+     * opened read-only, so exporting a running search does not modify it.
+     * @param args the results folder, the destination folder, and optionally the ids of the
+     * architectures to export (all by default)
+     * @throws IOException if the results folder has no store, or it cannot be read or the files written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ArchitecturePackStore <resultsFolder> <outputFolder> [architectureId...]");
+            System.exit(1);
+        }
+        try (ArchitecturePackStore store = openReadOnly(new File(args[0]))) {
+            Set<String> ids = args.length > 2 ? new TreeSet<>(java.util.Arrays.asList(args).subList(2, args.length)) : store.getArchitectureIds();
+            for (String id : ids) {
+                store.exportArchitecture(id, new File(args[1], id));
+            }
+            System.out.println("Exported " + ids.size() + " architectures to " + args[1]);
+        }
+    }
+}
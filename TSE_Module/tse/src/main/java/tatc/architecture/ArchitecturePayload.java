@@ -0,0 +1,213 @@
+package tatc.architecture;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import org.json.JSONObject;
+import tatc.architecture.specifications.Architecture;
+import tatc.architecture.specifications.ArchitectureJson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Architecture (arch.json contents) serialized once, in memory, as compact UTF-8 JSON. The bytes
+ * are spliced directly into the evaluation requests published to the evaluators (see request), so
+ * an architecture no longer goes through arch.json, a file read and two JSON parses before being
+ * sent.
+ *
+ * Writing arch.json is optional (tatc.writeArchJson system property, true by default) and done by
+ * a background thread, off the evaluation path. It goes into the architecture store of the results
+ * folder (see ArchitecturePackStore), or into the architecture folder if the store is disabled.
+ */
+public class ArchitecturePayload {
+
+    private static final String FILE_NAME = "arch.json";
+
+    /**
+     * Serialization buffer of each thread, reused from one architecture or request to the next
+     */
+    private static final ThreadLocal<PayloadBuffer> BUFFERS = ThreadLocal.withInitial(PayloadBuffer::new);
+
+    /**
+     * Writes the arch.json files in submission order
+     */
+    private static final ExecutorService FILE_WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "TSE_ArchJsonWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final byte[] REQUEST_PREFIX = "{\"architecture\":".getBytes(StandardCharsets.UTF_8);
+
+    private final byte[] json;
+    private final File folder;
+    private JSONObject jsonObject;
+
+    /**
+     * Serializes an architecture, streaming it into the buffer of the thread (see ArchitectureJson)
+     * @param architecture the architecture
+     * @param extraFields fields written after the fields of the architecture (e.g. "mission"), or null
+     * @param folder the architecture folder (e.g. results_[timestamp]/arch-[counter])
+     */
+    public ArchitecturePayload(Architecture architecture, Map<String, ?> extraFields, File folder) {
+        PayloadBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        try {
+            ArchitectureJson.write(architecture, extraFields, buffer);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException("Error serializing the architecture", e);
+        }
+        this.json = buffer.toByteArray();
+        this.folder = folder;
+    }
+
+    private ArchitecturePayload(byte[] json, File folder) {
+        this.json = json;
+        this.folder = folder;
+    }
+
+    /**
+     * Reads an arch.json file written before
+     * @param architectureJsonFile the file
+     * @return the payload, whose folder is the folder of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static ArchitecturePayload fromFile(File architectureJsonFile) throws IOException {
+        return new ArchitecturePayload(Files.readAllBytes(architectureJsonFile.toPath()), architectureJsonFile.getParentFile());
+    }
+
+    /**
+     * @return whether the arch.json files are written, from the tatc.writeArchJson system property
+     */
+    public static boolean isFileEnabled() {
+        return Boolean.parseBoolean(System.getProperty("tatc.writeArchJson", "true"));
+    }
+
+    /**
+     * @return the compact UTF-8 JSON of the architecture, which must not be modified
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    /**
+     * @return the arch.json file of the architecture folder (written or not)
+     */
+    public File getFile() {
+        return new File(folder, FILE_NAME);
+    }
+
+    /**
+     * @return the name of the architecture folder (e.g. arch-3)
+     */
+    public String getName() {
+        return folder.getName();
+    }
+
+    /**
+     * Parses the architecture, the first time only (e.g. for ArchitectureHash and MetricCache)
+     * @return the architecture JSON, which must not be modified
+     */
+    public synchronized JSONObject toJSONObject() {
+        if (jsonObject == null) {
+            jsonObject = new JSONObject(new String(json, StandardCharsets.UTF_8));
+        }
+        return jsonObject;
+    }
+
+    /**
+     * Builds an evaluation request: the architecture under the "architecture" key followed by the
+     * given fields, without parsing or serializing the architecture again
+     * @param fields the other fields of the request (workflow_id, function, ...)
+     * @return the UTF-8 request, ready to be published
+     */
+    public byte[] request(JSONObject fields) {
+        PayloadBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        buffer.write(REQUEST_PREFIX, 0, REQUEST_PREFIX.length);
+        buffer.write(json, 0, json.length);
+        String other = fields.toString();
+        if (other.length() > 2) {
+            // "{a:..,b:..}" -> ",a:..,b:..}"
+            byte[] otherBytes = other.getBytes(StandardCharsets.UTF_8);
+            buffer.write(',');
+            buffer.write(otherBytes, 1, otherBytes.length - 1);
+        } else {
+            buffer.write('}');
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Writes arch.json (pretty printed) into the architecture folder
+     * @throws IOException if the file cannot be written
+     */
+    public void writeFile() throws IOException {
+        JsonElement architecture = new JsonParser().parse(new String(json, StandardCharsets.UTF_8));
+        File file = getFile();
+        try (JsonWriter writer = new JsonWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            writer.setIndent("    ");
+            ArchitectureJson.gson().toJson(architecture, writer);
+        }
+    }
+
+    /**
+     * Adds arch.json (compact) to the architecture store of the results folder
+     * @throws IOException if the store cannot be written
+     */
+    public void writeToStore() throws IOException {
+        ArchitecturePackStore.forArchitectureFolder(folder).put(getName(), ArchitecturePackStore.ARCH_JSON, json);
+    }
+
+    /**
+     * Writes arch.json in the background if tatc.writeArchJson is enabled, into the architecture
+     * store or, if it is disabled, into the architecture folder. Errors are reported and do not
+     * affect the evaluation.
+     * @return a future completed once the file is written (or immediately if disabled)
+     */
+    public CompletableFuture<Void> writeFileAsync() {
+        if (!isFileEnabled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                if (ArchitecturePackStore.isEnabled()) {
+                    writeToStore();
+                } else {
+                    writeFile();
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing " + getFile() + ": " + e.getMessage());
+            }
+        }, FILE_WRITER);
+    }
+
+    /**
+     * Waits for the arch.json writes submitted so far (e.g. before closing the architecture store)
+     */
+    public static void awaitFileWrites() {
+        CompletableFuture.runAsync(() -> { }, FILE_WRITER).join();
+    }
+
+    /**
+     * ByteArrayOutputStream starting at 8 KB. reset keeps the buffer, so it only grows.
+     */
+    private static class PayloadBuffer extends ByteArrayOutputStream {
+        private PayloadBuffer() {
+            super(8192);
+        }
+    }
+}
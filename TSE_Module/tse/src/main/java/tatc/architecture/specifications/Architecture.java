@@ -1,7 +1,9 @@
 package tatc.architecture.specifications;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
 
@@ -65,4 +67,29 @@ public class Architecture implements Serializable {
     public String get_id() {
         return _id;
     }
+
+    /**
+     * Writes the architecture as Gson would (see ArchitectureJson), in one pass and without reflection
+     * @param out the JSON writer
+     * @throws IOException if writing fails
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        writeFields(out);
+        out.endObject();
+    }
+
+    /**
+     * Writes the fields of the architecture into the current object (see ArchitectureJson.write)
+     */
+    void writeFields(JsonWriter out) throws IOException {
+        out.name("@type");
+        ArchitectureJson.writeValue(out, _type);
+        out.name("@id");
+        ArchitectureJson.writeValue(out, _id);
+        out.name("spaceSegment");
+        ArchitectureJson.writeValue(out, spaceSegment);
+        out.name("groundSegment");
+        ArchitectureJson.writeValue(out, groundSegment);
+    }
 }
@@ -0,0 +1,166 @@
+package tatc.architecture.specifications;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming JSON serialization of architectures (arch.json contents). Architecture, Constellation,
+ * Satellite, Orbit, Instrument, GroundNetwork and GroundStation write their own fields (writeJson),
+ * in one pass and without reflection, straight to a UTF-8 OutputStream or ByteBuffer. The other
+ * objects they hold (Agency, FieldOfView, QuantitativeRange, instrument subclasses, ...) are written
+ * by the type adapters of a single cached Gson instance.
+ *
+ * The output is the compact form of what Gson writes for the same objects: same names (@type, @id),
+ * same field order, null fields omitted, same number formatting and HTML escaping.
+ */
+public final class ArchitectureJson {
+
+    private static final Gson GSON = new Gson();
+    private static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private ArchitectureJson() {
+    }
+
+    /**
+     * @return the shared Gson instance with the default settings, whose type adapters are cached
+     */
+    public static Gson gson() {
+        return GSON;
+    }
+
+    /**
+     * @return the shared pretty-printing Gson instance (see JSONIO.writeJSON)
+     */
+    public static Gson prettyGson() {
+        return PRETTY_GSON;
+    }
+
+    /**
+     * Writes an architecture as compact UTF-8 JSON
+     * @param architecture the architecture
+     * @param extraFields fields added after the fields of the architecture (e.g. "mission"), or null
+     * @param out the stream, which is flushed but not closed
+     * @throws IOException if the stream cannot be written
+     */
+    public static void write(Architecture architecture, Map<String, ?> extraFields, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        JsonWriter jsonWriter = GSON.newJsonWriter(writer);
+        jsonWriter.beginObject();
+        architecture.writeFields(jsonWriter);
+        if (extraFields != null) {
+            for (Map.Entry<String, ?> field : extraFields.entrySet()) {
+                jsonWriter.name(field.getKey());
+                writeValue(jsonWriter, field.getValue());
+            }
+        }
+        jsonWriter.endObject();
+        jsonWriter.flush();
+    }
+
+    /**
+     * Writes an architecture as compact UTF-8 JSON at the position of a buffer
+     * @param architecture the architecture
+     * @param extraFields fields added after the fields of the architecture, or null
+     * @param buffer the buffer, whose position is moved after the JSON
+     * @throws IOException if the JSON does not fit in the remaining bytes of the buffer
+     */
+    public static void write(Architecture architecture, Map<String, ?> extraFields, ByteBuffer buffer) throws IOException {
+        write(architecture, extraFields, new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                if (!buffer.hasRemaining()) {
+                    throw new IOException("The architecture does not fit in the buffer");
+                }
+                buffer.put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (buffer.remaining() < len) {
+                    throw new IOException("The architecture does not fit in the buffer");
+                }
+                buffer.put(b, off, len);
+            }
+        });
+    }
+
+    /**
+     * Serializes an architecture as compact UTF-8 JSON
+     * @param architecture the architecture
+     * @return the JSON
+     */
+    public static byte[] toBytes(Architecture architecture) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        try {
+            write(architecture, null, out);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException("Error serializing the architecture", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes any value of an architecture as Gson would with its runtime type: the architecture
+     * objects with their writeJson (not their subclasses, which have fields of their own), strings,
+     * numbers, booleans, lists and maps directly, and anything else with the cached Gson type adapter of
+     * its class. Null is written as null, so a null field is dropped by the writer (nulls are not
+     * serialized) while a null list element is kept.
+     * @param out the JSON writer
+     * @param value the value
+     * @throws IOException if writing fails
+     */
+    @SuppressWarnings("unchecked")
+    public static void writeValue(JsonWriter out, Object value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else if (value instanceof String) {
+            out.value((String) value);
+        } else if (value instanceof Double || value instanceof Integer || value instanceof Long) {
+            out.value((Number) value);
+        } else if (value instanceof Boolean) {
+            out.value(((Boolean) value).booleanValue());
+        } else if (value instanceof List) {
+            out.beginArray();
+            for (Object element : (List<?>) value) {
+                writeValue(out, element);
+            }
+            out.endArray();
+        } else if (value instanceof Map) {
+            out.beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                out.name(String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+            out.endObject();
+        } else if (value.getClass() == Orbit.class) {
+            ((Orbit) value).writeJson(out);
+        } else if (value.getClass() == Instrument.class) {
+            ((Instrument) value).writeJson(out);
+        } else if (value.getClass() == Satellite.class) {
+            ((Satellite) value).writeJson(out);
+        } else if (value.getClass() == Constellation.class) {
+            ((Constellation) value).writeJson(out);
+        } else if (value.getClass() == GroundStation.class) {
+            ((GroundStation) value).writeJson(out);
+        } else if (value.getClass() == GroundNetwork.class) {
+            ((GroundNetwork) value).writeJson(out);
+        } else if (value.getClass() == Architecture.class) {
+            ((Architecture) value).writeJson(out);
+        } else {
+            ((TypeAdapter<Object>) GSON.getAdapter(value.getClass())).write(out, value);
+        }
+    }
+}
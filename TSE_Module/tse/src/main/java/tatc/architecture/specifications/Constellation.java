@@ -3,8 +3,10 @@ package tatc.architecture.specifications;
 import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonWriter;
 import tatc.util.AlwaysListTypeAdapterFactory;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -302,4 +304,34 @@ public class Constellation implements Serializable {
     public void set_id(String _id) {
         this._id = _id;
     }
+
+    /**
+     * Writes the constellation as Gson would (see ArchitectureJson), in one pass and without reflection
+     * @param out the JSON writer
+     * @throws IOException if writing fails
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("@type");
+        ArchitectureJson.writeValue(out, _type);
+        out.name("@id");
+        ArchitectureJson.writeValue(out, _id);
+        out.name("constellationType");
+        ArchitectureJson.writeValue(out, constellationType);
+        out.name("numberSatellites");
+        ArchitectureJson.writeValue(out, numberSatellites);
+        out.name("numberPlanes");
+        ArchitectureJson.writeValue(out, numberPlanes);
+        out.name("relativeSpacing");
+        ArchitectureJson.writeValue(out, relativeSpacing);
+        out.name("orbit");
+        ArchitectureJson.writeValue(out, orbit);
+        out.name("satelliteInterval");
+        ArchitectureJson.writeValue(out, satelliteInterval);
+        out.name("satellites");
+        ArchitectureJson.writeValue(out, satellites);
+        out.name("secondaryPayload");
+        ArchitectureJson.writeValue(out, secondaryPayload);
+        out.endObject();
+    }
 }
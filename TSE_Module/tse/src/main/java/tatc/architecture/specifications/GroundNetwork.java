@@ -2,6 +2,8 @@ package tatc.architecture.specifications;
 
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -189,4 +191,26 @@ public class GroundNetwork implements Serializable {
     public int hashCode() {
         return Objects.hash(_type, name, acronym, agency, numberStations, groundStations, mutable);
     }
+
+    /**
+     * Writes the ground network (mutable and id are transient) as Gson would (see ArchitectureJson), in one pass and without reflection
+     * @param out the JSON writer
+     * @throws IOException if writing fails
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("@type");
+        ArchitectureJson.writeValue(out, _type);
+        out.name("name");
+        ArchitectureJson.writeValue(out, name);
+        out.name("acronym");
+        ArchitectureJson.writeValue(out, acronym);
+        out.name("agency");
+        ArchitectureJson.writeValue(out, agency);
+        out.name("numberStations");
+        ArchitectureJson.writeValue(out, numberStations);
+        out.name("groundStations");
+        ArchitectureJson.writeValue(out, groundStations);
+        out.endObject();
+    }
 }
@@ -1,7 +1,9 @@
 package tatc.architecture.specifications;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Objects;
@@ -163,4 +165,32 @@ public class GroundStation implements Serializable {
     public int hashCode() {
         return Objects.hash(_type, name, acronym, agency, latitude, longitude, elevation, commBand);
     }
+
+    /**
+     * Writes the ground station as Gson would (see ArchitectureJson), in one pass and without reflection
+     * @param out the JSON writer
+     * @throws IOException if writing fails
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("@type");
+        ArchitectureJson.writeValue(out, _type);
+        out.name("@id");
+        ArchitectureJson.writeValue(out, _id);
+        out.name("name");
+        ArchitectureJson.writeValue(out, name);
+        out.name("acronym");
+        ArchitectureJson.writeValue(out, acronym);
+        out.name("agency");
+        ArchitectureJson.writeValue(out, agency);
+        out.name("latitude");
+        ArchitectureJson.writeValue(out, latitude);
+        out.name("longitude");
+        ArchitectureJson.writeValue(out, longitude);
+        out.name("elevation");
+        ArchitectureJson.writeValue(out, elevation);
+        out.name("commBand");
+        ArchitectureJson.writeValue(out, commBand);
+        out.endObject();
+    }
 }
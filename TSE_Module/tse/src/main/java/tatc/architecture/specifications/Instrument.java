@@ -1,7 +1,9 @@
 package tatc.architecture.specifications;
 
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -662,4 +664,94 @@ public double getPs() {
     public void setHasTIR(boolean hasTIR) {
         this.hasTIR = hasTIR;
     }
+
+    /**
+     * Writes the instrument (not its subclasses, see ArchitectureJson.writeValue) as Gson would (see ArchitectureJson), in one pass and without reflection
+     * @param out the JSON writer
+     * @throws IOException if writing fails
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("@type");
+        ArchitectureJson.writeValue(out, _type);
+        out.name("name");
+        ArchitectureJson.writeValue(out, name);
+        out.name("acronym");
+        ArchitectureJson.writeValue(out, acronym);
+        out.name("agency");
+        ArchitectureJson.writeValue(out, agency);
+        out.name("mass");
+        ArchitectureJson.writeValue(out, mass);
+        out.name("volume");
+        ArchitectureJson.writeValue(out, volume);
+        out.name("power");
+        ArchitectureJson.writeValue(out, power);
+        out.name("orientation");
+        ArchitectureJson.writeValue(out, orientation);
+        out.name("fieldOfView");
+        ArchitectureJson.writeValue(out, fieldOfView);
+        out.name("dataRate");
+        ArchitectureJson.writeValue(out, dataRate);
+        out.name("techReadinessLevel");
+        ArchitectureJson.writeValue(out, techReadinessLevel);
+        out.name("mountType");
+        ArchitectureJson.writeValue(out, mountType);
+        out.name("bitsPerPixel");
+        ArchitectureJson.writeValue(out, bitsPerPixel);
+        out.name("id");
+        ArchitectureJson.writeValue(out, id);
+        out.name("scanTechnique");
+        ArchitectureJson.writeValue(out, scanTechnique);
+        out.name("numberOfDetectorsRowsAlongTrack");
+        out.value(numberOfDetectorsRowsAlongTrack);
+        out.name("numberOfDetectorsColsCrossTrack");
+        out.value(numberOfDetectorsColsCrossTrack);
+        out.name("Fnum");
+        out.value(Fnum);
+        out.name("focalLength");
+        out.value(focalLength);
+        out.name("apertureDia");
+        out.value(apertureDia);
+        out.name("operatingWavelength");
+        out.value(operatingWavelength);
+        out.name("bandwidth");
+        out.value(bandwidth);
+        out.name("opticsSysEff");
+        out.value(opticsSysEff);
+        out.name("quantumEff");
+        out.value(quantumEff);
+        out.name("numOfReadOutE");
+        out.value(numOfReadOutE);
+        out.name("targetBlackBodyTemp");
+        out.value(targetBlackBodyTemp);
+        out.name("detectorWidth");
+        out.value(detectorWidth);
+        out.name("maxDetectorExposureTime");
+        out.value(maxDetectorExposureTime);
+        out.name("snrThreshold");
+        out.value(snrThreshold);
+        out.name("type");
+        ArchitectureJson.writeValue(out, type);
+        out.name("dimensions");
+        ArchitectureJson.writeValue(out, dimensions);
+        out.name("tempRange");
+        ArchitectureJson.writeValue(out, tempRange);
+        out.name("resolution");
+        out.value(resolution);
+        out.name("FOV");
+        out.value(FOV);
+        out.name("specRange");
+        ArchitectureJson.writeValue(out, specRange);
+        out.name("Nv");
+        out.value(Nv);
+        out.name("Ns");
+        out.value(Ns);
+        out.name("pv");
+        out.value(pv);
+        out.name("ps");
+        out.value(ps);
+        out.name("hasTIR");
+        out.value(hasTIR);
+        out.endObject();
+    }
 }
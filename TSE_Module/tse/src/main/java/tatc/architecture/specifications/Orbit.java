@@ -1,9 +1,10 @@
 package tatc.architecture.specifications;
 
-
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
 
@@ -280,4 +281,36 @@ public class Orbit implements Serializable {
             throw new IllegalArgumentException("localSolarTimeAscendingNode has to be either a String or a List of Strings in TradespaceSearch.json");
         }
     }
+
+    /**
+     * Writes the orbit as Gson would (see ArchitectureJson), in one pass and without reflection
+     * @param out the JSON writer
+     * @throws IOException if writing fails
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("@type");
+        ArchitectureJson.writeValue(out, _type);
+        out.name("orbitType");
+        ArchitectureJson.writeValue(out, orbitType);
+        out.name("altitude");
+        ArchitectureJson.writeValue(out, altitude);
+        out.name("semimajorAxis");
+        ArchitectureJson.writeValue(out, semimajorAxis);
+        out.name("inclination");
+        ArchitectureJson.writeValue(out, inclination);
+        out.name("eccentricity");
+        ArchitectureJson.writeValue(out, eccentricity);
+        out.name("periapsisArgument");
+        ArchitectureJson.writeValue(out, periapsisArgument);
+        out.name("rightAscensionAscendingNode");
+        ArchitectureJson.writeValue(out, rightAscensionAscendingNode);
+        out.name("trueAnomaly");
+        ArchitectureJson.writeValue(out, trueAnomaly);
+        out.name("epoch");
+        ArchitectureJson.writeValue(out, epoch);
+        out.name("localSolarTimeAscendingNode");
+        ArchitectureJson.writeValue(out, localSolarTimeAscendingNode);
+        out.endObject();
+    }
 }
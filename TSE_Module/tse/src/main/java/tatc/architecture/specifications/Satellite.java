@@ -2,8 +2,10 @@ package tatc.architecture.specifications;
 
 import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonWriter;
 import tatc.util.AlwaysListTypeAdapterFactory;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.List;
 
@@ -279,4 +281,47 @@ public class Satellite implements Serializable {
         this.payload = payload;
     }
 
+    /**
+     * Writes the satellite as Gson would (see ArchitectureJson), in one pass and without reflection
+     * @param out the JSON writer
+     * @throws IOException if writing fails
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("@type");
+        ArchitectureJson.writeValue(out, _type);
+        out.name("@id");
+        ArchitectureJson.writeValue(out, _id);
+        out.name("name");
+        ArchitectureJson.writeValue(out, name);
+        out.name("acronym");
+        ArchitectureJson.writeValue(out, acronym);
+        out.name("agency");
+        ArchitectureJson.writeValue(out, agency);
+        out.name("mass");
+        ArchitectureJson.writeValue(out, mass);
+        out.name("dryMass");
+        ArchitectureJson.writeValue(out, dryMass);
+        out.name("volume");
+        ArchitectureJson.writeValue(out, volume);
+        out.name("power");
+        ArchitectureJson.writeValue(out, power);
+        out.name("commBand");
+        ArchitectureJson.writeValue(out, commBand);
+        out.name("payload");
+        ArchitectureJson.writeValue(out, payload);
+        out.name("orbit");
+        ArchitectureJson.writeValue(out, orbit);
+        out.name("techReadinessLevel");
+        ArchitectureJson.writeValue(out, techReadinessLevel);
+        out.name("isGroundCommand");
+        out.value(isGroundCommand);
+        out.name("isSpare");
+        out.value(isSpare);
+        out.name("propellantType");
+        ArchitectureJson.writeValue(out, propellantType);
+        out.name("stabilizationType");
+        ArchitectureJson.writeValue(out, stabilizationType);
+        out.endObject();
+    }
 }
@@ -1,24 +1,44 @@
 package tatc.decisions;
 
+import tatc.decisions.adg.AdgSolution;
+import tatc.decisions.adg.DecodeContext;
 import tatc.decisions.adg.Graph;
 import tatc.tradespaceiterator.ProblemProperties;
 import java.util.*;
 
 import org.json.JSONObject;
 import org.moeaframework.core.Solution;
-import org.moeaframework.core.variable.RealVariable;
 
 /**
  * Assigning Pattern - Each entity in L can be assigned to any subset of R.
  * Encoded as a binary matrix M of size n×m (n = |L|, m = |R|), 
- * flattened into an integer array of length n*m.
+ * flattened into n*m assignments.
  * M[i*m + j] = 1 if L[i] assigned to R[j], else 0.
+ *
+ * The assignments are packed in the genes, ASSIGNMENTS_PER_GENE per gene (assignment k is bit
+ * k % ASSIGNMENTS_PER_GENE of gene k / ASSIGNMENTS_PER_GENE), so the genome, the stored encodings
+ * and the variation operators handle one int per 30 assignments. Uniform crossover takes the bits of
+ * each gene from the parents with one random mask, mutation jumps from one flipped assignment to
+ * the next (geometric skips), and the assigned elements are found with Integer.numberOfTrailingZeros.
+ * The outputs still list one 0/1 value per assignment (see getVariableValues).
  */
 public class Assigning extends Decision {
 
     private List<Object> Lset; // Entities in L
     private List<Object> Rset; // Entities in R
-    private Random rand = new Random();
+    /**
+     * Probability of flipping each assignment in the mutation, from the tatc.assigning.flipProbability
+     * system property (0.05 by default)
+     */
+    private static final double FLIP_PROBABILITY = Double.parseDouble(System.getProperty("tatc.assigning.flipProbability", "0.05"));
+
+    /**
+     * Number of assignments packed in each gene. 30 bits keep the number of options of a gene
+     * (2^30) and its upper bound positive ints.
+     */
+    static final int ASSIGNMENTS_PER_GENE = 30;
+
+    private SplittableRandom rand = new SplittableRandom();
     private String lSource;
     private String rSource;
 
@@ -96,10 +116,7 @@ public class Assigning extends Decision {
 
         int n = Lset.size();
         int m = Rset.size();
-        int[] encoding = new int[n * m];
-
-        // Initialize all to 0
-        Arrays.fill(encoding, 0);
+        int[] encoding = new int[genesFor(n * m)];
 
         // For each L[i], get assigned R
         for (int i = 0; i < n; i++) {
@@ -111,7 +128,7 @@ public class Assigning extends Decision {
                     if (j < 0) {
                         throw new IllegalArgumentException("R entity " + Rj + " not found in Rset.");
                     }
-                    encoding[i * m + j] = 1;
+                    assign(encoding, i * m + j);
                 }
             }
         }
@@ -124,14 +141,14 @@ public class Assigning extends Decision {
         int[] chrom = (int[]) encoded;
         int n = Lset.size();
         int m = Rset.size();
-        if (chrom.length != n * m) {
+        if (chrom.length != genesFor(n * m)) {
             throw new IllegalArgumentException("Encoded length does not match n*m for assigning decision.");
         }
     
         // Resolve the sources for Lset and Rset.
         List<Object> resolvedLset = resolveSetFromSource(this.lSource, graph);
         List<Object> resolvedRset = resolveSetFromSource(this.rSource, graph);
-    
+
         // Determine keys to use for L and R in the final map.
         String lKey = graph.getDecisionsMap().containsKey(this.lSource)
                 ? graph.getDecisionsMap().get(this.lSource).getResultType()
@@ -139,42 +156,70 @@ public class Assigning extends Decision {
         String rKey = graph.getDecisionsMap().containsKey(this.rSource)
                 ? graph.getDecisionsMap().get(this.rSource).getResultType()
                 : this.rSource;
-    
-        // Group L elements by their corresponding R index.
-        // Map: rIndex -> List of L elements.
-        Map<Integer, List<Object>> rIndexToLList = new HashMap<>();
-        int lSize = resolvedLset.size();
-        for (int chromIndex = 0; chromIndex < chrom.length; chromIndex++) {
-            if (chrom[chromIndex] == 1) {
-                int rIndex = chromIndex / lSize;
-                int lIndex = chromIndex % lSize;
-                Object lElement = resolvedLset.get(lIndex);
-                // If lElement is not a Map, wrap it using our helper.
-                // if (!(lElement instanceof Map)) {
-                //     lElement = createJSONObjectForResultType(lKey, lElement);
-                // }
-                rIndexToLList.computeIfAbsent(rIndex, k -> new ArrayList<>()).add(lElement);
-            }
+        return decodeWith(chrom, resolvedLset, resolvedRset, lKey, rKey);
+    }
+
+    @Override
+    public List<Map<String, Object>> decodeArchitecture(int[] encoded, DecodeContext context) {
+        DecodeContext.Inputs inputs = context.getInputs(decisionName);
+        if (encoded.length != genesFor(inputs.getLset().size() * inputs.getRset().size())) {
+            throw new IllegalArgumentException("Encoded length does not match n*m for assigning decision.");
         }
-    
-        // Build the final result: one map per R element.
+        String lKey = context.isDecision(this.lSource) ? context.getResultType(this.lSource) : this.lSource;
+        String rKey = context.isDecision(this.rSource) ? context.getResultType(this.rSource) : this.rSource;
+        return decodeWith(encoded, inputs.getLset(), inputs.getRset(), lKey, rKey);
+    }
+
+    private List<Map<String, Object>> decodeWith(int[] chrom, List<Object> resolvedLset, List<Object> resolvedRset,
+                                                 String lKey, String rKey) {
+        // Group L elements by their corresponding R index: the assignment index is rIndex * lSize + lIndex,
+        // so the L elements of one R element are contiguous.
         List<Map<String, Object>> resultList = new ArrayList<>();
-        for (Map.Entry<Integer, List<Object>> entry : rIndexToLList.entrySet()) {
-            int rIndex = entry.getKey();
-            List<Object> lElements = entry.getValue();
-            Object rElement = resolvedRset.get(rIndex);
-            if (!(rElement instanceof Map)) {
-                rElement = createJSONObjectForResultType(rKey, rElement);
+        int lSize = resolvedLset.size();
+        int assignments = lSize * resolvedRset.size();
+
+        // Build the final result: one map per R element with at least one L element, in R order.
+        // The assigned elements are visited in increasing index order, gene after gene.
+        int currentR = -1;
+        List<Object> lElements = null;
+        for (int g = 0; g < chrom.length; g++) {
+            for (int bits = chrom[g]; bits != 0; bits &= bits - 1) {
+                int index = g * ASSIGNMENTS_PER_GENE + Integer.numberOfTrailingZeros(bits);
+                if (index >= assignments) {
+                    break;
+                }
+                int rIndex = index / lSize;
+                if (rIndex != currentR) {
+                    addAssignedElements(resultList, resolvedRset, currentR, lElements, lKey, rKey);
+                    currentR = rIndex;
+                    lElements = new ArrayList<>();
+                }
+                lElements.add(resolvedLset.get(index - rIndex * lSize));
             }
-            Map<String, Object> map = new HashMap<>();
-            map.put(rKey, rElement);
-            // Here we store the list of L elements under lKey.
-            map.put(lKey, lElements);
-            resultList.add(map);
         }
+        addAssignedElements(resultList, resolvedRset, currentR, lElements, lKey, rKey);
     
         return resultList;
     }
+
+    /**
+     * Adds the map of one R element and its L elements to the decoded result
+     */
+    private void addAssignedElements(List<Map<String, Object>> resultList, List<Object> resolvedRset, int rIndex,
+                                     List<Object> lElements, String lKey, String rKey) {
+        if (lElements == null) {
+            return;
+        }
+        Object rElement = resolvedRset.get(rIndex);
+        if (!(rElement instanceof Map)) {
+            rElement = createJSONObjectForResultType(rKey, rElement);
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put(rKey, rElement);
+        // Here we store the list of L elements under lKey.
+        map.put(lKey, lElements);
+        resultList.add(map);
+    }
     
 
 /**
@@ -211,34 +256,63 @@ private JSONObject createJSONObjectForResultType(String resultType, Object sourc
     
     @Override
 public Object extractEncodingFromSolution(Solution solution, int offset) {
-    int length = getNumberOfVariables(); // should be n*m
-    int[] encoding = new int[length];
-
-    for (int i = 0; i < length; i++) {
-        double val = ((RealVariable) solution.getVariable(offset + i)).getValue();
-        // Convert to binary (0 or 1)
-        // If val is close to 0, this means "not assigned"
-        // If val is close to 1, this means "assigned"
-        int bit = (int)Math.round(val);
-        if (bit < 0 || bit > 1) {
-            throw new IllegalArgumentException("Assigning decision variable out of binary range: " + bit);
+    return extractBits(solution, offset, Lset.size() * Rset.size()); // n*m assignments
+}
+
+    @Override
+    public int[] extractEncoding(Solution solution, int offset, DecodeContext context) {
+        DecodeContext.Inputs inputs = context.getInputs(decisionName);
+        return extractBits(solution, offset, inputs.getLset().size() * inputs.getRset().size());
+    }
+
+private static int[] extractBits(Solution solution, int offset, int assignments) {
+    int[] encoding = AdgSolution.genesOf(solution, offset, genesFor(assignments));
+
+    for (int g = 0; g < encoding.length; g++) {
+        // Each bit is one assignment: 0 means "not assigned", 1 means "assigned"
+        if ((encoding[g] & ~geneMask(g, assignments)) != 0) {
+            throw new IllegalArgumentException("Assigning decision gene out of range: " + encoding[g]);
         }
-        encoding[i] = bit;
     }
 
     return encoding;
 }
 
+    /**
+     * @param assignments the number of assignments
+     * @return the number of genes holding them
+     */
+    static int genesFor(int assignments) {
+        return (assignments + ASSIGNMENTS_PER_GENE - 1) / ASSIGNMENTS_PER_GENE;
+    }
+
+    /**
+     * @param gene the gene
+     * @param assignments the number of assignments
+     * @return the bits of the gene holding assignments
+     */
+    private static int geneMask(int gene, int assignments) {
+        int bits = Math.max(0, Math.min(ASSIGNMENTS_PER_GENE, assignments - gene * ASSIGNMENTS_PER_GENE));
+        return (1 << bits) - 1;
+    }
+
+    /**
+     * @param genes the packed assignments
+     * @param index the assignment
+     * @return true if the assignment is made
+     */
+    static boolean isAssigned(int[] genes, int index) {
+        return (genes[index / ASSIGNMENTS_PER_GENE] & (1 << (index % ASSIGNMENTS_PER_GENE))) != 0;
+    }
+
+    private static void assign(int[] genes, int index) {
+        genes[index / ASSIGNMENTS_PER_GENE] |= 1 << (index % ASSIGNMENTS_PER_GENE);
+    }
+
     @Override
     public void mutate(Object encoded) {
         int[] chrom = (int[]) encoded;
-        double mutationProbability = 0.05; // example
-        for (int k = 0; k < chrom.length; k++) {
-            if (rand.nextDouble() < mutationProbability) {
-                // Flip bit
-                chrom[k] = (chrom[k] == 0) ? 1 : 0;
-            }
-        }
+        flipBits(chrom, mutatedAssignments(chrom.length), FLIP_PROBABILITY, rand);
     }
 
     @Override
@@ -250,20 +324,91 @@ public Object extractEncodingFromSolution(Solution solution, int offset) {
         }
 
         int[] child = new int[p1.length];
-        for (int i = 0; i < p1.length; i++) {
-            if (rand.nextBoolean()) {
-                child[i] = p1[i];
-            } else {
-                child[i] = p2[i];
+        uniformCrossover(p1, p2, child, p1.length, rand);
+        return child;
+    }
+
+    @Override
+    public void crossoverInto(FragmentBuffer parent1, FragmentBuffer parent2, FragmentBuffer child, VariationScratch scratch) {
+        if (parent1.length() != parent2.length()) {
+            throw new IllegalArgumentException("Parents differ in length.");
+        }
+        child.setLength(parent1.length());
+        uniformCrossover(parent1.array(), parent2.array(), child.array(), child.length(), scratch.getRandom());
+    }
+
+    @Override
+    public void mutateInPlace(FragmentBuffer encoded, VariationScratch scratch) {
+        flipBits(encoded.array(), mutatedAssignments(encoded.length()), FLIP_PROBABILITY, scratch.getRandom());
+    }
+
+    /**
+     * Number of assignments a fragment of the given number of genes can mutate: the n*m assignments
+     * of the current inputs, without the unused bits of the last gene, at most all the bits of the
+     * fragment
+     */
+    private int mutatedAssignments(int genes) {
+        return Math.min(genes * ASSIGNMENTS_PER_GENE, Lset.size() * Rset.size());
+    }
+
+    /**
+     * Uniform crossover: each assignment is taken from one of the parents at random, using one
+     * random mask per gene
+     * @param p1 the first parent
+     * @param p2 the second parent
+     * @param child the child, may be one of the parents
+     * @param length the number of genes
+     * @param random the random number generator
+     */
+    static void uniformCrossover(int[] p1, int[] p2, int[] child, int length, SplittableRandom random) {
+        for (int g = 0; g < length; g++) {
+            int mask = random.nextInt();
+            child[g] = (p1[g] & mask) | (p2[g] & ~mask);
+        }
+    }
+
+    /**
+     * Flips each assignment with the given probability. Instead of drawing a random number per
+     * assignment, the gap to the next flipped assignment is drawn from the geometric distribution,
+     * so the cost is proportional to the number of flips.
+     * @param chrom the packed assignments
+     * @param length the number of assignments
+     * @param probability the probability of flipping each assignment
+     * @param random the random number generator
+     */
+    static void flipBits(int[] chrom, int length, double probability, SplittableRandom random) {
+        if (probability <= 0 || length == 0) {
+            return;
+        }
+        if (probability >= 1) {
+            for (int g = 0; g < genesFor(length); g++) {
+                chrom[g] ^= geneMask(g, length);
             }
+            return;
+        }
+        double logQ = Math.log1p(-probability);
+        int k = -1;
+        while (true) {
+            // 1 - nextDouble() is in (0, 1], so the logarithm is finite
+            double skip = Math.floor(Math.log(1.0 - random.nextDouble()) / logQ);
+            if (skip >= length - 1 - k) {
+                return;
+            }
+            k += 1 + (int) skip;
+            chrom[k / ASSIGNMENTS_PER_GENE] ^= 1 << (k % ASSIGNMENTS_PER_GENE);
         }
-        return child;
     }
 
     @Override
     public int getNumberOfVariables() {
-        // Number of variables is n*m where n=|L|, m=|R|
-        return Lset.size() * Rset.size();
+        // Genes holding the n*m assignments, where n=|L|, m=|R|
+        return genesFor(Lset.size() * Rset.size());
+    }
+
+    @Override
+    public int getNumberOfVariables(DecodeContext context) {
+        DecodeContext.Inputs inputs = context.getInputs(decisionName);
+        return genesFor(inputs.getLset().size() * inputs.getRset().size());
     }
     @Override
     public int[] getLastEncoding() {
@@ -272,48 +417,78 @@ public Object extractEncodingFromSolution(Solution solution, int offset) {
 
     @Override
     public Object randomEncoding() {
-        int n = Lset.size();
-        int m = Rset.size();
-        int[] encoding = new int[n * m];
-        for (int i = 0; i < encoding.length; i++) {
-            encoding[i] = rand.nextBoolean() ? 1 : 0;
+        int assignments = Lset.size() * Rset.size();
+        int[] encoding = new int[genesFor(assignments)];
+        for (int g = 0; g < encoding.length; g++) {
+            encoding[g] = rand.nextInt() & geneMask(g, assignments);
         }
         return encoding;
     }
     @Override
     public void applyEncoding(int[] encoding) {
+        this.result = assignmentRecords(Lset, Rset, encoding);
+    }
+
+    @Override
+    public List<Object> decodeResult(int[] encoding, DecodeContext context) {
+        DecodeContext.Inputs inputs = context.getInputs(decisionName);
+        return assignmentRecords(inputs.getLset(), inputs.getRset(), encoding);
+    }
+
+    /**
+     * Builds one record per L element, with the L element and the list of R elements assigned to it
+     */
+    private static List<Object> assignmentRecords(List<Object> Lset, List<Object> Rset, int[] encoding) {
         int n = Lset.size();
         int m = Rset.size();
-        if (encoding.length != n * m) {
+        if (encoding.length != genesFor(n * m)) {
             throw new IllegalArgumentException("Assigning mismatch: " + encoding.length
-                + " vs " + n + "*" + m);
+                + " genes vs " + n + "*" + m);
         }
     
         // Build a list of assignment records
-        List<Object> assignmentList = new ArrayList<>();
+        List<Object> assignmentList = new ArrayList<>(n);
+        List<List<Object>> assignedRs = new ArrayList<>(n);
     
         for (int i = 0; i < n; i++) {
             List<Object> assignedR = new ArrayList<>();
-            for (int j = 0; j < m; j++) {
-                if (encoding[i * m + j] == 1) {
-                    assignedR.add(Rset.get(j));
-                }
-            }
             // For clarity, store each L element and its assigned set of R items in a Map
             Map<String, Object> itemMap = new HashMap<>();
             itemMap.put("L", Lset.get(i));
             itemMap.put("AssignedR", assignedR);
             assignmentList.add(itemMap);
+            assignedRs.add(assignedR);
         }
-    
-        this.result = assignmentList;
+        // Assignment i*m + j assigns R[j] to L[i], visited in increasing index order
+        for (int g = 0; g < encoding.length; g++) {
+            for (int bits = encoding[g]; bits != 0; bits &= bits - 1) {
+                int index = g * ASSIGNMENTS_PER_GENE + Integer.numberOfTrailingZeros(bits);
+                if (index >= n * m) {
+                    break;
+                }
+                assignedRs.get(index / m).add(Rset.get(index % m));
+            }
+        }
+        return assignmentList;
+    }
+
+    /**
+     * One 0/1 value per assignment, in the order of getVariableNames, instead of the packed genes
+     */
+    @Override
+    public int[] getVariableValues(int[] genes) {
+        int assignments = Math.min(genes.length * ASSIGNMENTS_PER_GENE, Lset.size() * Rset.size());
+        int[] values = new int[assignments];
+        for (int k = 0; k < assignments; k++) {
+            values[k] = isAssigned(genes, k) ? 1 : 0;
+        }
+        return values;
     }
 
     @Override
     public int getMaxOptionForVariable(int i) {
-        // Each variable is binary, so max option count is 2
-        // (0 or 1)
-        return 2;
+        // Each gene holds up to ASSIGNMENTS_PER_GENE binary assignments, the last one may hold fewer
+        return geneMask(i, Lset.size() * Rset.size()) + 1;
     }
     public void addParentDecision(Decision parent) {
         parentDecisions.add(parent);
@@ -327,55 +502,79 @@ public Object extractEncodingFromSolution(Solution solution, int offset) {
         // Expected dimensions: n * m, where n = Lset.size() and m = Rset.size()
         int n = Lset.size();
         int m = Rset.size();
-        int expectedLength = n * m;
+        int expectedLength = genesFor(n * m);
         
-        // 1. Resize the encoding if necessary.
+        // 1. Resize the encoding if necessary, the new genes are 0 (no assignment).
         if (childChrom.length != expectedLength) {
-            int[] repaired = new int[expectedLength];
-            // Copy as many elements as possible from childChrom.
-            for (int i = 0; i < Math.min(childChrom.length, expectedLength); i++) {
-                repaired[i] = childChrom[i];
-            }
-            // Fill remaining positions with 0.
-            for (int i = childChrom.length; i < expectedLength; i++) {
-                repaired[i] = 0;
-            }
-            childChrom = repaired;
+            childChrom = Arrays.copyOf(childChrom, expectedLength);
+        }
+        // The bits of the last gene past the n*m assignments are cleared
+        if (expectedLength > 0) {
+            childChrom[expectedLength - 1] &= geneMask(expectedLength - 1, n * m);
         }
         
         // 2. Enforce that each L element (each column) is assigned at most once.
-        // The encoding mapping: for index i (0 <= i < n*m):
+        // The encoding mapping: for assignment i (0 <= i < n*m):
         //    lIndex = i % n, rIndex = i / n.
-        // For each L element (column index i), ensure that at most one row has a value 1.
-        for (int i = 0; i < n; i++) {
-            int onesCount = 0;
-            for (int r = 0; r < m; r++) {
-                int index = r * n + i;
-                if (childChrom[index] == 1) {
-                    onesCount++;
-                }
-            }
-            // If more than one assignment exists for this L element, keep the first one and clear the rest.
-            if (onesCount > 1) {
-                boolean kept = false;
-                for (int r = 0; r < m; r++) {
-                    int index = r * n + i;
-                    if (childChrom[index] == 1) {
-                        if (!kept) {
-                            kept = true; // keep the first encountered 1
-                        } else {
-                            childChrom[index] = 0; // clear any additional 1's
-                        }
-                    }
-                }
-            }
-        }
+        // For each L element, the assignment of the first row is kept and the others are cleared.
+        keepFirstPerColumn(childChrom, m, n, new boolean[n]);
         
         // (Optional) You might also want to ensure that each L element has at least one assignment.
         // For now, we leave columns with no assignment unchanged.
         
         return childChrom;
     }
+
+    @Override
+    public void repairInPlace(FragmentBuffer child, FragmentBuffer parent, VariationScratch scratch) {
+        // Expected dimensions: n * m, where n = Lset.size() and m = Rset.size()
+        int n = Lset.size();
+        int m = Rset.size();
+        int expectedLength = genesFor(n * m);
+
+        // 1. Resize the encoding if necessary, filling the new genes with 0 and clearing the bits
+        //    of the last gene past the n*m assignments
+        int oldLength = child.length();
+        child.setLength(expectedLength);
+        int[] childChrom = child.array();
+        for (int i = oldLength; i < expectedLength; i++) {
+            childChrom[i] = 0;
+        }
+        if (expectedLength > 0) {
+            childChrom[expectedLength - 1] &= geneMask(expectedLength - 1, n * m);
+        }
+
+        // 2. Each L element (column i, index r * n + i) is assigned at most once: the first
+        //    assignment is kept and the following ones are cleared
+        keepFirstPerColumn(childChrom, m, n, scratch.flags(n));
+    }
+
+    /**
+     * Keeps at most one assignment per column of a row-major 0/1 matrix: the one of the first row
+     * assigning it. Only the set bits are visited, in increasing index order (row after row).
+     * @param chrom the packed matrix, at least genesFor(rows * columns) genes long
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @param seen cleared scratch array of at least columns flags, whose values are overwritten
+     */
+    static void keepFirstPerColumn(int[] chrom, int rows, int columns, boolean[] seen) {
+        int assignments = rows * columns;
+        for (int g = 0; g < genesFor(assignments); g++) {
+            for (int bits = chrom[g]; bits != 0; bits &= bits - 1) {
+                int bit = Integer.numberOfTrailingZeros(bits);
+                int index = g * ASSIGNMENTS_PER_GENE + bit;
+                if (index >= assignments) {
+                    break;
+                }
+                int c = index % columns;
+                if (seen[c]) {
+                    chrom[g] &= ~(1 << bit);
+                } else {
+                    seen[c] = true;
+                }
+            }
+        }
+    }
     
     @Override
     public List<String> getSourceEntities() {
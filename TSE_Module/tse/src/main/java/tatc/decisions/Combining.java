@@ -1,6 +1,7 @@
 package tatc.decisions;
 
 import tatc.decisions.adg.AdgSolution;
+import tatc.decisions.adg.DecodeContext;
 import tatc.decisions.adg.Graph;
 import tatc.tradespaceiterator.ProblemProperties;
 import java.util.*;
@@ -121,39 +122,36 @@ public class Combining extends Decision {
 
     @Override
     public void applyEncoding(int[] encoding) {
-        // 1) Check length matches subDecisionsData (each dimension)
-        // if (encoding.length != subDecisionsData.size()) {
-        //     throw new IllegalArgumentException(
-        //         "Combining applyEncoding length mismatch. Expected " 
-        //         + subDecisionsData.size() + " but got " + encoding.length
-        //     );
-        // }
-    
-        // 2) Build a list to store the chosen alternatives (one per dimension)
+        // Store the chosen alternatives as this decision's partial result
+        this.result = chooseAlternatives(this.alternatives, encoding);
+        this.lastEncoding = encoding;
+    }
+
+    @Override
+    public List<Object> decodeResult(int[] encoding, DecodeContext context) {
+        return chooseAlternatives(context.getInputs(decisionName).getAlternatives(), encoding);
+    }
+
+    /**
+     * Picks, for each dimension i, the alternative indicated by encoding[i]. Dimensions without
+     * alternatives and out-of-range indices give null.
+     */
+    private static List<Object> chooseAlternatives(List<List<Object>> alternatives, int[] encoding) {
         List<Object> chosenAlternatives = new ArrayList<>();
-    
-        // 3) For each dimension i, we pick the alternative indicated by encoding[i]
         for (int i = 0; i < encoding.length; i++) {
             int chosenIndex = encoding[i];
-            // If alternatives.get(i) is empty or chosenIndex out-of-range, skip or clamp
             if (i >= alternatives.size() || alternatives.get(i).isEmpty()) {
                 chosenAlternatives.add(null);
                 continue;
             }
             List<Object> altList = alternatives.get(i);
             if (chosenIndex < 0 || chosenIndex >= altList.size()) {
-                // Either skip or clamp. Here let's skip:
                 chosenAlternatives.add(null);
             } else {
                 chosenAlternatives.add(altList.get(chosenIndex));
             }
         }
-    
-        // 4) Store these chosen alternatives as this decision's partial result
-        //    We keep it as a List<Object> for consistency with your framework
-        this.result = chosenAlternatives;
-        // Optionally store this as lastEncoding if you need
-        this.lastEncoding = encoding;
+        return chosenAlternatives;
     }
     
 
@@ -177,8 +175,15 @@ public class Combining extends Decision {
 
     @Override
     public List<Map<String, Object>> decodeArchitecture(Object encoded, Solution sol, Graph graph) {
-        // Cast the encoded object to int[]
-        int[] chrom = (int[]) encoded;
+        return decodeWith(this.alternatives, (int[]) encoded);
+    }
+
+    @Override
+    public List<Map<String, Object>> decodeArchitecture(int[] encoded, DecodeContext context) {
+        return decodeWith(context.getInputs(decisionName).getAlternatives(), encoded);
+    }
+
+    private List<Map<String, Object>> decodeWith(List<List<Object>> alternatives, int[] chrom) {
         // Prepare a container for the decoded list
         List<Map<String, Object>> decoding = new ArrayList<>();
         Map<String, Object> decodedMap = new HashMap<String, Object>();
@@ -267,22 +272,27 @@ public class Combining extends Decision {
     
     @Override
     public Object extractEncodingFromSolution(Solution solution, int offset) {
-        return this.encodingMap.get(((AdgSolution)solution).getId());
+        return this.getEncodingById(((AdgSolution)solution).getId());
     }
 
     @Override
     public void mutate(Object encoded) {
         // Uniform mutation: With some probability, pick one gene and set it to another random alternative
         int[] chrom = (int[]) encoded;
-        double mutationProbability = this.properties.getTradespaceSearch().getSettings().getSearchParameters().getpMutation(); // example value
+        double mutationProbability = getMutationProbability();
         for (int i = 0; i < chrom.length && i < alternatives.size(); i++) {
             if (rand.nextDouble() < mutationProbability) {
                 int altSize = alternatives.get(i).size();
-                int newVal;
-                do {
-                    newVal = rand.nextInt(altSize);
-                } while (newVal == chrom[i]);
-                chrom[i] = newVal;
+                if (altSize < 2) {
+                    continue; // no other alternative to pick
+                }
+                if (chrom[i] < 0 || chrom[i] >= altSize) {
+                    chrom[i] = rand.nextInt(altSize);
+                } else {
+                    // Another alternative, drawn among the altSize - 1 other ones
+                    int newVal = rand.nextInt(altSize - 1);
+                    chrom[i] = (newVal >= chrom[i]) ? newVal + 1 : newVal;
+                }
             }
         }
         
@@ -313,6 +323,49 @@ public class Combining extends Decision {
         // Repair the child encoding to enforce ascending order constraints.        
         return child;
     }
+
+    @Override
+    public void crossoverInto(FragmentBuffer parent1, FragmentBuffer parent2, FragmentBuffer child, VariationScratch scratch) {
+        int len1 = parent1.length();
+        int len2 = parent2.length();
+        child.setLength(Math.max(len1, len2));
+        int[] p1 = parent1.array();
+        int[] p2 = parent2.array();
+        int[] c = child.array();
+        SplittableRandom random = scratch.getRandom();
+
+        for (int i = 0; i < child.length(); i++) {
+            if (i < len1 && i < len2) {
+                c[i] = random.nextBoolean() ? p1[i] : p2[i];
+            } else if (i < len1) {
+                c[i] = p1[i];
+            } else {
+                c[i] = p2[i];
+            }
+        }
+    }
+
+    @Override
+    public void mutateInPlace(FragmentBuffer encoded, VariationScratch scratch) {
+        int[] chrom = encoded.array();
+        double mutationProbability = getMutationProbability();
+        SplittableRandom random = scratch.getRandom();
+        for (int i = 0; i < encoded.length() && i < alternatives.size(); i++) {
+            if (random.nextDouble() < mutationProbability) {
+                int altSize = alternatives.get(i).size();
+                if (altSize < 2) {
+                    continue; // no other alternative to pick
+                }
+                if (chrom[i] < 0 || chrom[i] >= altSize) {
+                    chrom[i] = random.nextInt(altSize);
+                } else {
+                    // Another alternative, drawn among the altSize - 1 other ones
+                    int newVal = random.nextInt(altSize - 1);
+                    chrom[i] = (newVal >= chrom[i]) ? newVal + 1 : newVal;
+                }
+            }
+        }
+    }
     
     // @Override
     // public int getNumberOfVariables() {
@@ -332,6 +385,11 @@ public class Combining extends Decision {
         return subDecisionsData.size();
     }
 
+    @Override
+    public int getNumberOfVariables(DecodeContext context) {
+        return context.getInputs(decisionName).getSubDecisionsData().size();
+    }
+
     
     @Override
     public Object randomEncoding() {
@@ -424,6 +482,33 @@ public class Combining extends Decision {
         
         return repaired;
     }
+
+    @Override
+    public void repairInPlace(FragmentBuffer child, FragmentBuffer parent, VariationScratch scratch) {
+        // Number of subsets selected in the parent (max label in parent's encoding)
+        int[] parentEncoding = parent.array();
+        int nSubsets = 0;
+        for (int i = 0; i < parent.length(); i++) {
+            if (parentEncoding[i] > nSubsets) {
+                nSubsets = parentEncoding[i];
+            }
+        }
+
+        int oldLength = child.length();
+        if (oldLength == nSubsets) {
+            return;
+        }
+        // Existing values are kept, new dimensions get a random valid index
+        child.setLength(nSubsets);
+        int[] c = child.array();
+        for (int i = oldLength; i < nSubsets; i++) {
+            int maxOption = getMaxOptionForVariable(i);
+            if (maxOption < 1) {
+                maxOption = 1;
+            }
+            c[i] = scratch.getRandom().nextInt(maxOption);
+        }
+    }
     
 
     /**
@@ -1,5 +1,6 @@
 package tatc.decisions;
 
+import tatc.decisions.adg.DecodeContext;
 import tatc.decisions.adg.Graph;
 import tatc.tradespaceiterator.ProblemProperties;
 
@@ -8,6 +9,7 @@ import org.json.JSONObject;
 import org.moeaframework.core.Solution;
 
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * ConstructionNode is a special "decision" that does not encode an actual
@@ -37,6 +39,10 @@ public class ConstructionNode extends Decision {
      * or field within that decision to retrieve.
      */
     private Map<String, Object> constructionDefinition;
+    /**
+     * Baseline satellites of the TSE request, converted to maps once (see initializeDecisionVariables)
+     */
+    private List<Map<String, Object>> baselineSatellites = new ArrayList<>();
 
     /**
      * Constructor
@@ -71,6 +77,15 @@ public class ConstructionNode extends Decision {
         } else {
             this.constructionDefinition = new HashMap<>();
         }
+
+        JSONArray satellites = getBaselineSatellitesFromTSERequest();
+        List<Map<String, Object>> baseline = new ArrayList<>();
+        if (satellites != null) {
+            for (int i = 0; i < satellites.length(); i++) {
+                baseline.add(jsonToMap(satellites.getJSONObject(i)));
+            }
+        }
+        this.baselineSatellites = baseline;
     }
     
     /**
@@ -95,6 +110,22 @@ public class ConstructionNode extends Decision {
 
     @Override
     public List<Map<String, Object>> decodeArchitecture(Object encoded, Solution sol, Graph graph) {
+        return assemble(name -> {
+            Decision parentDec = graph.getDecision(name);
+            return parentDec != null ? parentDec.getResult() : null;
+        });
+    }
+
+    @Override
+    public List<Map<String, Object>> decodeArchitecture(int[] encoded, DecodeContext context) {
+        return assemble(context::getResult);
+    }
+
+    /**
+     * Assembles the final architectures from the results of the parent decisions
+     * @param resultOf gives the result of a decision by name
+     */
+    private List<Map<String, Object>> assemble(Function<String, List<Object>> resultOf) {
         // Final aggregated architectures
         List<Map<String, Object>> finalArchitectures = new ArrayList<>();
     
@@ -114,7 +145,7 @@ public class ConstructionNode extends Decision {
         for (Map.Entry<String, Object> fieldEntry : constellationDef.entrySet()) {
             String fieldName = fieldEntry.getKey();  // e.g., "orbit" or "satellites"
             Object definition = fieldEntry.getValue();
-            List<Object> partials = retrievePartialsFromDefinition(definition, graph);
+            List<Object> partials = retrievePartialsFromDefinition(definition, resultOf);
             fieldToListOfPartials.put(fieldName, partials);
         }
     
@@ -142,11 +173,6 @@ public class ConstructionNode extends Decision {
                 Object partialObj = fieldToListOfPartials.get(fieldName).get(i);
                 if ("satellites".equalsIgnoreCase(fieldName)) {
                     // For satellites, merge with baseline satellite data from the TSERequest.
-                    JSONArray baselineSatellites = getBaselineSatellitesFromTSERequest();
-                    // If baselineSatellites is null, use an empty array.
-                    if (baselineSatellites == null) {
-                        baselineSatellites = new JSONArray();
-                    }
                     // Build the final satellites list by cloning each baseline satellite and replacing "payload"
                     // with the i-th partial result (which should be a List or Map, as returned by instrumentPartitioning).
                     List<Map<String, Object>> satList = buildSatellitesWithPayload(baselineSatellites, partialObj);
@@ -167,15 +193,15 @@ public class ConstructionNode extends Decision {
      * retrieve the corresponding List<Object> from the referenced parent's getResult().
      * If the definition is not a Map, treat it as a literal and return a single-element list.
      */
-    private List<Object> retrievePartialsFromDefinition(Object definition, Graph graph) {
+    private List<Object> retrievePartialsFromDefinition(Object definition, Function<String, List<Object>> resultOf) {
         if (definition instanceof Map) {
             @SuppressWarnings("unchecked")
             Map<String, Object> defMap = (Map<String, Object>) definition;
             if (defMap.size() == 1) {
                 String parentName = defMap.values().iterator().next().toString();
-                Decision parentDec = graph.getDecision(parentName);
-                if (parentDec != null && parentDec.getResult() != null) {
-                    return parentDec.getResult();
+                List<Object> parentResult = resultOf.apply(parentName);
+                if (parentResult != null) {
+                    return parentResult;
                 } else {
                     return new ArrayList<>();
                 }
@@ -221,25 +247,52 @@ public class ConstructionNode extends Decision {
      * replacing its "payload" field with the provided partial result.
      * Assumes that partialObj is a List (for decision variables) or a Map with a "payload" key.
      */
-    private List<Map<String, Object>> buildSatellitesWithPayload(JSONArray baselineSats, Object partialObj) {
+    private List<Map<String, Object>> buildSatellitesWithPayload(List<Map<String, Object>> baselineSats, Object partialObj) {
         List<Map<String, Object>> resultSats = new ArrayList<>();
-        for (int i = 0; i < baselineSats.length(); i++) {
-            JSONObject satJson = new JSONObject(baselineSats.getJSONObject(i).toString());
+        for (Map<String, Object> baselineSat : baselineSats) {
+            Map<String, Object> sat = copyMap(baselineSat);
             // If partialObj is a List, assign that list as payload.
             if (partialObj instanceof List) {
-                satJson.put("payload", partialObj);
+                sat.put("payload", partialObj);
             } else if (partialObj instanceof Map) {
                 @SuppressWarnings("unchecked")
                 Map<String, Object> pMap = (Map<String, Object>) partialObj;
                 if (pMap.containsKey("payload")) {
-                    satJson.put("payload", pMap.get("payload"));
+                    sat.put("payload", pMap.get("payload"));
                 }
             }
-            resultSats.add(jsonToMap(satJson));
+            resultSats.add(sat);
         }
         return resultSats;
     }
-    
+
+    /**
+     * Deep copy of the maps and lists built by jsonToMap, so the architectures do not share them
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> copyMap(Map<String, Object> map) {
+        Map<String, Object> copy = new HashMap<>(map.size() * 2);
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            copy.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(Object value) {
+        if (value instanceof Map) {
+            return copyMap((Map<String, Object>) value);
+        } else if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object item : list) {
+                copy.add(copyValue(item));
+            }
+            return copy;
+        }
+        return value;
+    }
+
     /**
      * Convert a JSONObject to a Map<String,Object>.
      */
@@ -380,4 +433,12 @@ public class ConstructionNode extends Decision {
     public void applyEncoding(int[] encoding) {
         // No-op
     }
+
+    /**
+     * Construction node has no result of its own.
+     */
+    @Override
+    public List<Object> decodeResult(int[] encoding, DecodeContext context) {
+        return null;
+    }
 }
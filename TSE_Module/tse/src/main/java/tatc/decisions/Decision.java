@@ -1,13 +1,14 @@
 package tatc.decisions;
 
+import tatc.decisions.adg.DecodeContext;
 import tatc.decisions.adg.Graph;
 import tatc.tradespaceiterator.ProblemProperties;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.moeaframework.core.Solution;
 
@@ -25,6 +26,18 @@ import org.moeaframework.core.Solution;
  */
 public abstract class Decision {
 
+    /**
+     * FNV-1a parameters of the first half of the canonical hashes
+     */
+    protected static final long HASH_SEED = 0xcbf29ce484222325L;
+    protected static final long HASH_PRIME = 0x100000001b3L;
+    /**
+     * Parameters of the second half of the canonical hashes (multiply-rotate, golden ratio
+     * multiplier), independent of the first one
+     */
+    protected static final long HASH_SEED_2 = 0x243f6a8885a308d3L;
+    protected static final long HASH_PRIME_2 = 0x9e3779b97f4a7c15L;
+
     /**
      * Reference to the problem's properties. This contains information 
      * parsed from the TSERequest, including the design space definition, 
@@ -32,7 +45,10 @@ public abstract class Decision {
      * evaluate architectures.
      */
     protected ProblemProperties properties;
-    protected Map<Integer,int[]> encodingMap;
+    /**
+     * Encodings of this decision by solution id, released when the solutions die
+     */
+    protected EncodingStore encodings;
     /**
      * A unique identifier or name for this decision, allowing easy reference.
      */
@@ -41,6 +57,10 @@ public abstract class Decision {
     protected int[] lastEncoding;
     protected List<Object> result;
     protected String resultType;
+    /**
+     * Mutation probability of the search parameters, read once (see getMutationProbability)
+     */
+    private volatile double mutationProbability = Double.NaN;
 
     /**
      * Constructs a Decision object given the problem properties and a decision name.
@@ -52,7 +72,7 @@ public abstract class Decision {
     public Decision(ProblemProperties properties, String decisionName) {
         this.properties = properties;
         this.decisionName = decisionName;
-        this.encodingMap = new HashMap<Integer, int[]>();
+        this.encodings = new EncodingStore();
         this.parentDecisions = new ArrayList<>();
     }
     @Override
@@ -60,10 +80,7 @@ public abstract class Decision {
         try {
             Decision cloned = (Decision) super.clone();
             cloned.parentDecisions = new ArrayList<>(this.parentDecisions);
-            cloned.encodingMap = new HashMap<>();
-            for (Map.Entry<Integer, int[]> entry : this.encodingMap.entrySet()) {
-                cloned.encodingMap.put(entry.getKey(), Arrays.copyOf(entry.getValue(), entry.getValue().length));
-            }
+            cloned.encodings = this.encodings.copy();
             cloned.lastEncoding = (this.lastEncoding != null) ? Arrays.copyOf(this.lastEncoding, this.lastEncoding.length) : null;
             cloned.result = (this.result != null) ? new ArrayList<>(this.result) : null;
             return cloned;
@@ -81,11 +98,73 @@ public abstract class Decision {
     public String getDecisionName() {
         return this.decisionName;
     }
+    /**
+     * Gets a copy of the encoding of a solution
+     * @param id the solution id
+     * @return the encoding, or null if the solution has no encoding (or it was released)
+     */
     public int[] getEncodingById(int id){
-        return this.encodingMap.get(id);
+        return this.encodings.get(id);
     }
+    /**
+     * Stores a copy of the encoding of a solution
+     * @param id the solution id
+     * @param encoding the encoding
+     */
     public void addEncodingById(int id, int[] encoding){
-        this.encodingMap.put(id, encoding);
+        this.encodings.put(id, encoding);
+    }
+    /**
+     * Copies the encoding of a solution into a buffer
+     * @param id the solution id
+     * @param buffer the buffer
+     * @return false if the solution has no encoding (or it was released)
+     */
+    public boolean copyEncodingById(int id, FragmentBuffer buffer){
+        int length = this.encodings.length(id);
+        if (length < 0) {
+            return false;
+        }
+        buffer.setLength(length);
+        this.encodings.copyInto(id, buffer.array());
+        return true;
+    }
+    /**
+     * @param id the solution id
+     * @return the length of the encoding of the solution, or -1 if it has no encoding
+     */
+    public int getEncodingLength(int id){
+        return this.encodings.length(id);
+    }
+    /**
+     * Stores a copy of the encoding held by a buffer
+     * @param id the solution id
+     * @param buffer the buffer
+     */
+    public void addEncodingById(int id, FragmentBuffer buffer){
+        this.encodings.put(id, buffer.array(), buffer.length());
+    }
+    /**
+     * Gets the encodings of this decision by solution id (e.g. to checkpoint a search)
+     * @return a copy of the encodings by solution id
+     */
+    public Map<Integer, int[]> getEncodingMap() {
+        return this.encodings.toMap();
+    }
+    /**
+     * Replaces the encodings of this decision, e.g. when a search is resumed from a checkpoint
+     * @param encodings the encodings by solution id
+     */
+    public void restoreEncodings(Map<Integer, int[]> encodings) {
+        this.encodings.replaceAll(encodings);
+    }
+    /**
+     * Releases the encodings of the solutions that are not alive anymore
+     * @param aliveIds the ids of the solutions in the population, the archive or being evaluated
+     * @return the number of released encodings
+     */
+    public int releaseEncodings(Set<Integer> aliveIds) {
+        return this.encodings.retainOnly(aliveIds);
     }
     /**
      * In general, decision variables will be extracted from the ProblemProperties object.
@@ -132,21 +211,14 @@ public abstract class Decision {
      */
     public abstract void mutate(Object encoded);
     /**
- * Returns the highest key (solution ID) in the encodingMap.
- * Assumes encodingMap uses String keys and is not empty.
+ * Returns the highest solution ID ever stored in the encodings of this decision.
+ * Released encodings are included, so IDs derived from it are never reused.
  * 
- * @return The highest key in the encodingMap based on lexicographical order.
- * @throws IllegalStateException if encodingMap is empty.
+ * @return The highest solution ID.
+ * @throws IllegalStateException if no encoding was ever stored.
  */
     public Integer getHighestId() {
-        if (encodingMap.isEmpty()) {
-            throw new IllegalStateException("The encodingMap is empty. No highest ID can be determined.");
-        }
-        
-        // Retrieve the highest key in lexicographical order
-        return encodingMap.keySet().stream()
-                        .max(Integer::compareTo)
-                        .orElseThrow(() -> new IllegalStateException("Failed to find the highest ID."));
+        return encodings.getHighestId();
     }
 
     public List<Object> getResult() {
@@ -164,6 +236,153 @@ public abstract class Decision {
      */
     public abstract Object crossover(Object parent1, Object parent2);
 
+    /**
+     * Crossover of the batch variation operator (see DecisionBatchVariation): writes the child of
+     * two parent encodings into a buffer instead of returning a new array, and draws its random
+     * numbers from the scratch of the worker. This default implementation delegates to crossover;
+     * decisions override it to avoid allocating.
+     *
+     * @param parent1 The first parent encoding.
+     * @param parent2 The second parent encoding.
+     * @param child The buffer receiving the offspring's encoding.
+     * @param scratch The random number generator and scratch arrays of the worker.
+     */
+    public void crossoverInto(FragmentBuffer parent1, FragmentBuffer parent2, FragmentBuffer child, VariationScratch scratch) {
+        child.set((int[]) crossover(parent1.toArray(), parent2.toArray()));
+    }
+
+    /**
+     * Mutation of the batch variation operator, the counterpart of mutate (see crossoverInto).
+     *
+     * @param encoded The encoding to be mutated in place.
+     * @param scratch The random number generator and scratch arrays of the worker.
+     */
+    public void mutateInPlace(FragmentBuffer encoded, VariationScratch scratch) {
+        int[] chrom = encoded.toArray();
+        mutate(chrom);
+        encoded.set(chrom);
+    }
+
+    /**
+     * Repair of the batch variation operator, the counterpart of repairWithDependency (see
+     * crossoverInto). The length of the child encoding may change.
+     *
+     * @param child The encoding to be repaired in place.
+     * @param parent The encoding of the parent decision of the same offspring.
+     * @param scratch The random number generator and scratch arrays of the worker.
+     */
+    public void repairInPlace(FragmentBuffer child, FragmentBuffer parent, VariationScratch scratch) {
+        child.set((int[]) repairWithDependency(child.toArray(), parent != null ? parent.toArray() : null));
+    }
+
+    /**
+     * Computes a 128-bit hash of an encoding that is the same for all the encodings of the same
+     * design (e.g. the labelings of a partition, see Partitioning.canonicalize), so that caches
+     * and duplicate detection can compare designs without keeping their encodings. The hash is
+     * made of two independent 64-bit hashes of the values (see hashValue and hashValue2). This
+     * default implementation hashes the values themselves.
+     *
+     * @param encoding The array holding the encoding.
+     * @param offset The first value of the encoding.
+     * @param length The length of the encoding.
+     * @param scratch Scratch array of at least getCanonicalScratchLength(length) values.
+     * @param hash The two halves of the hash, written in hash[0] and hash[1].
+     */
+    public void canonicalHash(int[] encoding, int offset, int length, int[] scratch, long[] hash) {
+        long first = HASH_SEED ^ length;
+        long second = HASH_SEED_2 ^ length;
+        for (int k = 0; k < length; k++) {
+            first = hashValue(first, encoding[offset + k]);
+            second = hashValue2(second, encoding[offset + k]);
+        }
+        hash[0] = finishHash(first);
+        hash[1] = finishHash2(second);
+    }
+
+    /**
+     * Checks whether two encodings of the same length encode the same design (see canonicalHash).
+     * This default implementation compares the values themselves.
+     *
+     * @param a The array holding the first encoding.
+     * @param offsetA The first value of the first encoding.
+     * @param b The array holding the second encoding.
+     * @param offsetB The first value of the second encoding.
+     * @param length The length of the encodings.
+     * @param scratch Scratch array of at least getCanonicalScratchLength(length) values.
+     * @return true if both encodings encode the same design.
+     */
+    public boolean canonicalEquals(int[] a, int offsetA, int[] b, int offsetB, int length, int[] scratch) {
+        for (int k = 0; k < length; k++) {
+            if (a[offsetA + k] != b[offsetB + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the length of the scratch array needed by canonicalHash and canonicalEquals. The default
+     * implementations compare the values themselves and need none; decisions overriding them to
+     * canonicalize their encodings override this method too.
+     *
+     * @param length The length of an encoding.
+     * @return The length of the scratch array.
+     */
+    public int getCanonicalScratchLength(int length) {
+        return 0;
+    }
+
+    /**
+     * Adds a value to the first half of a canonical hash (FNV-1a step)
+     */
+    protected static long hashValue(long hash, int value) {
+        return (hash ^ value) * HASH_PRIME;
+    }
+
+    /**
+     * Adds a value to the second half of a canonical hash
+     */
+    protected static long hashValue2(long hash, int value) {
+        return Long.rotateLeft((hash ^ value) * HASH_PRIME_2, 29);
+    }
+
+    /**
+     * Final mix of the second half of a canonical hash (SplitMix64 finalizer)
+     */
+    protected static long finishHash2(long hash) {
+        hash ^= hash >>> 30;
+        hash *= 0xbf58476d1ce4e5b9L;
+        hash ^= hash >>> 27;
+        hash *= 0x94d049bb133111ebL;
+        hash ^= hash >>> 31;
+        return hash;
+    }
+
+    /**
+     * Final mix of the first half of a canonical hash, so that the bits of all the values reach the low bits
+     */
+    protected static long finishHash(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * @return the mutation probability of the search parameters (pMutation), read from the
+     *         problem properties on the first call only
+     */
+    protected double getMutationProbability() {
+        double probability = mutationProbability;
+        if (Double.isNaN(probability)) {
+            probability = properties.getTradespaceSearch().getSettings().getSearchParameters().getpMutation();
+            mutationProbability = probability;
+        }
+        return probability;
+    }
+
     public abstract int getNumberOfVariables();
 
     public abstract Object randomEncoding();
@@ -184,6 +403,51 @@ public abstract class Decision {
     }
     public abstract void applyEncoding(int[] encoding);
 
+    /**
+     * Computes the result of this decision for an encoding, like applyEncoding, but reads the
+     * inputs from a decoding context and returns the result instead of storing it, so several
+     * solutions can be decoded concurrently (see Graph.decode).
+     *
+     * @param encoding The encoding of this decision.
+     * @param context  The decoding context holding the inputs of this decision.
+     * @return The result of this decision (the counterpart of getResult).
+     */
+    public abstract List<Object> decodeResult(int[] encoding, DecodeContext context);
+
+    /**
+     * Decodes an encoding into architecture parameters, like
+     * decodeArchitecture(Object, Solution, Graph), but reads the inputs and the results of the
+     * other decisions from a decoding context instead of the decision objects.
+     *
+     * @param encoded The encoding of this decision.
+     * @param context The decoding context.
+     * @return A list of architecture parameter maps.
+     */
+    public abstract List<Map<String, Object>> decodeArchitecture(int[] encoded, DecodeContext context);
+
+    /**
+     * Extracts the encoding of this decision from a solution during a decoding. Decisions whose
+     * number of variables depends on their inputs read it from the context.
+     *
+     * @param solution The solution.
+     * @param offset   The index of the first variable of this decision in the solution.
+     * @param context  The decoding context holding the inputs of this decision.
+     * @return The encoding of this decision.
+     */
+    public int[] extractEncoding(Solution solution, int offset, DecodeContext context) {
+        return (int[]) extractEncodingFromSolution(solution, offset);
+    }
+
+    /**
+     * Gets the number of variables of this decision for the inputs resolved in a decoding context.
+     *
+     * @param context The decoding context holding the inputs of this decision.
+     * @return The number of variables.
+     */
+    public int getNumberOfVariables(DecodeContext context) {
+        return getNumberOfVariables();
+    }
+
     /**
      * Gets the list of variable names for this decision.
      * For combining decisions, these are the sub-decision names.
@@ -217,6 +481,17 @@ public abstract class Decision {
         return names;
     }
 
+    /**
+     * Gets the values of the variables of this decision reported in the outputs (summary files,
+     * callbacks), in the order of getVariableNames. By default these are the genes themselves.
+     *
+     * @param genes The genes of this decision in a solution.
+     * @return The values of the variables.
+     */
+    public int[] getVariableValues(int[] genes) {
+        return genes;
+    }
+
     /**
      * Gets the source entities for assigning decisions.
      * Returns empty list for non-assigning decisions.
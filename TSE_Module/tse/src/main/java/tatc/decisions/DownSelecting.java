@@ -1,10 +1,11 @@
 package tatc.decisions;
 
+import tatc.decisions.adg.AdgSolution;
+import tatc.decisions.adg.DecodeContext;
 import tatc.decisions.adg.Graph;
 import tatc.tradespaceiterator.ProblemProperties;
 
 import org.moeaframework.core.Solution;
-import org.moeaframework.core.variable.RealVariable;
 
 import java.util.*;
 
@@ -103,8 +104,16 @@ public class DownSelecting extends Decision {
     
         @Override
         public List<Map<String, Object>> decodeArchitecture(Object encoded, Solution sol, Graph graph) {
+            return decodeWith((int[]) encoded, E);
+        }
+
+        @Override
+        public List<Map<String, Object>> decodeArchitecture(int[] encoded, DecodeContext context) {
+            return decodeWith(encoded, context.getInputs(decisionName).getEntities());
+        }
+
+        private List<Map<String, Object>> decodeWith(int[] chrom, List<Object> E) {
             List<Map<String,Object>> currentArchitectures = new ArrayList<Map<String,Object>>();
-            int[] chrom = (int[]) encoded;
             if (chrom.length != E.size()) {
                 throw new IllegalArgumentException("Encoded length does not match |E|.");
             }
@@ -171,6 +180,34 @@ public class DownSelecting extends Decision {
     public Object repairWithDependency(Object partitionEnc, Object downselectEnc){
         return partitionEnc;
     }
+
+    @Override
+    public void crossoverInto(FragmentBuffer parent1, FragmentBuffer parent2, FragmentBuffer child, VariationScratch scratch) {
+        child.setLength(parent1.length());
+        int[] p1 = parent1.array();
+        int[] p2 = parent2.array();
+        int[] c = child.array();
+        SplittableRandom random = scratch.getRandom();
+        for (int i = 0; i < child.length(); i++) {
+            // Uniform crossover (p1 only beyond the end of p2)
+            c[i] = (i < parent2.length() && random.nextBoolean()) ? p2[i] : p1[i];
+        }
+    }
+
+    @Override
+    public void repairInPlace(FragmentBuffer child, FragmentBuffer parent, VariationScratch scratch) {
+        // Nothing to repair, as in repairWithDependency
+    }
+
+    @Override
+    public void mutateInPlace(FragmentBuffer encoded, VariationScratch scratch) {
+        if (encoded.length() == 0) {
+            return;
+        }
+        // Flip mutation
+        int idx = scratch.getRandom().nextInt(encoded.length());
+        encoded.array()[idx] = 1 - encoded.array()[idx];
+    }
     
     @Override
     public void mutate(Object encoded) {
@@ -187,6 +224,11 @@ public class DownSelecting extends Decision {
         public int getNumberOfVariables() {
             return E.size();
         }
+
+        @Override
+        public int getNumberOfVariables(DecodeContext context) {
+            return context.getInputs(decisionName).getEntities().size();
+        }
     
         @Override
         public Object randomEncoding() {
@@ -224,6 +266,16 @@ public class DownSelecting extends Decision {
  */
 @Override
 public void applyEncoding(int[] encoding) {
+    // Store the final subset in this.result
+    this.result = select(E, encoding);
+}
+
+@Override
+public List<Object> decodeResult(int[] encoding, DecodeContext context) {
+    return select(context.getInputs(decisionName).getEntities(), encoding);
+}
+
+private static List<Object> select(List<Object> E, int[] encoding) {
     if (encoding.length != E.size()) {
         throw new IllegalArgumentException("Encoding length mismatch in DownSelecting. "
             + "Expected " + E.size() + " but got " + encoding.length);
@@ -235,9 +287,7 @@ public void applyEncoding(int[] encoding) {
             selected.add(E.get(i));
         }
     }
-
-    // Store the final subset in this.result
-    this.result = selected;
+    return selected;
 }
 
 public List<Object> getResult() {
@@ -260,16 +310,21 @@ public List<Object> getResult() {
 
     @Override
     public Object extractEncodingFromSolution(Solution solution, int offset) {
-        int length = getNumberOfVariables();
-        int[] encoding = new int[length];
+        return extractBits(solution, offset, getNumberOfVariables());
+    }
+
+    @Override
+    public int[] extractEncoding(Solution solution, int offset, DecodeContext context) {
+        return extractBits(solution, offset, getNumberOfVariables(context));
+    }
+
+    private static int[] extractBits(Solution solution, int offset, int length) {
+        int[] encoding = AdgSolution.genesOf(solution, offset, length);
 
-        for (int i = 0; i < length; i++) {
-            double val = ((RealVariable)solution.getVariable(offset + i)).getValue();
-            int bit = (int)Math.round(val);
+        for (int bit : encoding) {
             if (bit < 0 || bit > 1) {
                 throw new IllegalArgumentException("DownSelecting decision variable out of binary range: " + bit);
             }
-            encoding[i] = bit;
         }
 
         return encoding;
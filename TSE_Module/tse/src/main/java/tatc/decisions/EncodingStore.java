@@ -0,0 +1,340 @@
+package tatc.decisions;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encodings (chromosome fragments) of one decision, by solution id. The fragments are copied into
+ * one flat int array with a fixed stride per slot, and the solution ids are mapped to their slots
+ * by an open-addressing table of primitive ints, so storing a fragment does not allocate boxed
+ * keys, map entries or arrays.
+ *
+ * The search releases the fragments of the solutions that left the population, the archive and
+ * the set of offspring being evaluated (see retainOnly), so the memory used depends on the number
+ * of solutions alive instead of the number of function evaluations. Released slots are reused.
+ *
+ * The fragments are copied on put and on get: callers can modify the arrays they pass or receive
+ * (e.g. mutation operators) without changing the stored encodings of other solutions.
+ */
+public class EncodingStore {
+
+    private static final int FREE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Solution id of each table position
+     */
+    private int[] keys;
+    /**
+     * Arena slot of each table position, or FREE
+     */
+    private int[] slotOf;
+    private int mask;
+    private int size;
+
+    /**
+     * Flat storage of the fragments: slot s uses arena[s * stride .. s * stride + lengths[s])
+     */
+    private int[] arena;
+    private int[] lengths;
+    private int stride;
+    private int slotCapacity;
+    private int nextSlot;
+    private int[] freeSlots;
+    private int freeCount;
+
+    /**
+     * Highest solution id ever stored, or -1
+     */
+    private int highestId = -1;
+
+    public EncodingStore() {
+        keys = new int[INITIAL_CAPACITY];
+        slotOf = new int[INITIAL_CAPACITY];
+        Arrays.fill(slotOf, FREE);
+        mask = INITIAL_CAPACITY - 1;
+        stride = 1;
+        slotCapacity = INITIAL_CAPACITY;
+        arena = new int[slotCapacity * stride];
+        lengths = new int[slotCapacity];
+        freeSlots = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Stores (a copy of) the fragment of a solution, replacing its previous fragment
+     * @param id the solution id
+     * @param encoding the fragment
+     */
+    public synchronized void put(int id, int[] encoding) {
+        put(id, encoding, encoding.length);
+    }
+
+    /**
+     * Stores (a copy of) the first values of an array as the fragment of a solution, replacing its
+     * previous fragment
+     * @param id the solution id
+     * @param encoding the array holding the fragment
+     * @param length the length of the fragment
+     */
+    public synchronized void put(int id, int[] encoding, int length) {
+        if (length > stride) {
+            growStride(length);
+        }
+        int position = indexOf(id);
+        int slot;
+        if (position >= 0) {
+            slot = slotOf[position];
+        } else {
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+                position = indexOf(id);
+            }
+            position = -position - 1;
+            slot = allocateSlot();
+            keys[position] = id;
+            slotOf[position] = slot;
+            size++;
+        }
+        System.arraycopy(encoding, 0, arena, slot * stride, length);
+        lengths[slot] = length;
+        if (id > highestId) {
+            highestId = id;
+        }
+    }
+
+    /**
+     * Gets (a copy of) the fragment of a solution
+     * @param id the solution id
+     * @return the fragment, or null if the solution has no fragment (never stored or released)
+     */
+    public synchronized int[] get(int id) {
+        int position = indexOf(id);
+        if (position < 0) {
+            return null;
+        }
+        int slot = slotOf[position];
+        return Arrays.copyOfRange(arena, slot * stride, slot * stride + lengths[slot]);
+    }
+
+    /**
+     * @param id the solution id
+     * @return the length of the fragment of the solution, or -1 if the solution has no fragment
+     */
+    public synchronized int length(int id) {
+        int position = indexOf(id);
+        return position < 0 ? -1 : lengths[slotOf[position]];
+    }
+
+    /**
+     * Copies the fragment of a solution into an array, without allocating
+     * @param id the solution id
+     * @param destination an array at least as long as the fragment (see length)
+     * @return the length of the fragment, or -1 if the solution has no fragment
+     */
+    public synchronized int copyInto(int id, int[] destination) {
+        int position = indexOf(id);
+        if (position < 0) {
+            return -1;
+        }
+        int slot = slotOf[position];
+        System.arraycopy(arena, slot * stride, destination, 0, lengths[slot]);
+        return lengths[slot];
+    }
+
+    /**
+     * Releases the fragment of a solution
+     * @param id the solution id
+     * @return true if the solution had a fragment
+     */
+    public synchronized boolean remove(int id) {
+        int position = indexOf(id);
+        if (position < 0) {
+            return false;
+        }
+        releaseSlot(slotOf[position]);
+        removeAt(position);
+        size--;
+        return true;
+    }
+
+    /**
+     * Releases the fragments of all the solutions that are not alive anymore
+     * @param aliveIds the ids of the solutions whose fragments are kept
+     * @return the number of released fragments
+     */
+    public synchronized int retainOnly(Set<Integer> aliveIds) {
+        int[] released = new int[size];
+        int count = 0;
+        for (int position = 0; position < keys.length; position++) {
+            if (slotOf[position] != FREE && !aliveIds.contains(keys[position])) {
+                released[count++] = keys[position];
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            remove(released[i]);
+        }
+        return count;
+    }
+
+    /**
+     * @return the highest solution id ever stored (released ones included), so that new ids
+     *         derived from it are never reused
+     * @throws IllegalStateException if no fragment was ever stored
+     */
+    public synchronized int getHighestId() {
+        if (highestId < 0) {
+            throw new IllegalStateException("The encoding store is empty. No highest ID can be determined.");
+        }
+        return highestId;
+    }
+
+    /**
+     * @return the number of stored fragments
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Copies the fragments into a map, e.g. to write a checkpoint
+     * @return the fragments by solution id
+     */
+    public synchronized Map<Integer, int[]> toMap() {
+        Map<Integer, int[]> map = new HashMap<>(size * 2);
+        for (int position = 0; position < keys.length; position++) {
+            if (slotOf[position] != FREE) {
+                int slot = slotOf[position];
+                map.put(keys[position], Arrays.copyOfRange(arena, slot * stride, slot * stride + lengths[slot]));
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Replaces all the fragments
+     * @param encodings the fragments by solution id
+     */
+    public synchronized void replaceAll(Map<Integer, int[]> encodings) {
+        clear();
+        for (Map.Entry<Integer, int[]> entry : encodings.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return a deep copy of this store
+     */
+    public synchronized EncodingStore copy() {
+        EncodingStore copy = new EncodingStore();
+        copy.keys = keys.clone();
+        copy.slotOf = slotOf.clone();
+        copy.mask = mask;
+        copy.size = size;
+        copy.arena = arena.clone();
+        copy.lengths = lengths.clone();
+        copy.stride = stride;
+        copy.slotCapacity = slotCapacity;
+        copy.nextSlot = nextSlot;
+        copy.freeSlots = freeSlots.clone();
+        copy.freeCount = freeCount;
+        copy.highestId = highestId;
+        return copy;
+    }
+
+    private void clear() {
+        Arrays.fill(slotOf, FREE);
+        size = 0;
+        nextSlot = 0;
+        freeCount = 0;
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the table position of the id, or -(free position where it would be inserted) - 1
+     */
+    private int indexOf(int id) {
+        int position = mix(id) & mask;
+        while (slotOf[position] != FREE) {
+            if (keys[position] == id) {
+                return position;
+            }
+            position = (position + 1) & mask;
+        }
+        return -position - 1;
+    }
+
+    /**
+     * Linear probing deletion: shifts back the following entries of the probe sequence
+     */
+    private void removeAt(int position) {
+        int hole = position;
+        int next = hole;
+        while (true) {
+            next = (next + 1) & mask;
+            if (slotOf[next] == FREE) {
+                break;
+            }
+            int home = mix(keys[next]) & mask;
+            boolean between = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (!between) {
+                keys[hole] = keys[next];
+                slotOf[hole] = slotOf[next];
+                hole = next;
+            }
+        }
+        slotOf[hole] = FREE;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldSlots = slotOf;
+        keys = new int[capacity];
+        slotOf = new int[capacity];
+        Arrays.fill(slotOf, FREE);
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldSlots[i] != FREE) {
+                int position = -indexOf(oldKeys[i]) - 1;
+                keys[position] = oldKeys[i];
+                slotOf[position] = oldSlots[i];
+            }
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (nextSlot == slotCapacity) {
+            slotCapacity *= 2;
+            arena = Arrays.copyOf(arena, slotCapacity * stride);
+            lengths = Arrays.copyOf(lengths, slotCapacity);
+        }
+        return nextSlot++;
+    }
+
+    private void releaseSlot(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * Widens every slot of the arena to fit longer fragments
+     */
+    private void growStride(int newStride) {
+        int[] newArena = new int[slotCapacity * newStride];
+        for (int slot = 0; slot < nextSlot; slot++) {
+            System.arraycopy(arena, slot * stride, newArena, slot * newStride, lengths[slot]);
+        }
+        arena = newArena;
+        stride = newStride;
+    }
+}
@@ -0,0 +1,60 @@
+package tatc.decisions;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer holding one encoding (chromosome fragment) of a decision: an int array that only
+ * grows, and the length of the fragment it currently holds. The batch variation operators keep
+ * one buffer per decision and offspring, so varying the same number of offspring again does not
+ * allocate (see Decision.crossoverInto, mutateInPlace and repairInPlace).
+ */
+public class FragmentBuffer {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] data;
+    private int length;
+
+    public FragmentBuffer() {
+        this.data = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return the backing array, valid up to length() and until the buffer grows
+     */
+    public int[] array() {
+        return data;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Sets the length of the fragment, growing the array if needed. The values below the previous
+     * length are kept; the ones above are undefined and must be written by the caller.
+     * @param length the new length
+     */
+    public void setLength(int length) {
+        if (length > data.length) {
+            data = Arrays.copyOf(data, Math.max(length, data.length * 2));
+        }
+        this.length = length;
+    }
+
+    /**
+     * Replaces the fragment by a copy of an array
+     * @param values the new fragment
+     */
+    public void set(int[] values) {
+        setLength(values.length);
+        System.arraycopy(values, 0, data, 0, values.length);
+    }
+
+    /**
+     * @return a copy of the fragment
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(data, length);
+    }
+}
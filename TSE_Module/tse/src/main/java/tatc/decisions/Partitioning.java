@@ -1,6 +1,7 @@
 package tatc.decisions;
 
 import tatc.decisions.adg.AdgSolution;
+import tatc.decisions.adg.DecodeContext;
 import tatc.decisions.adg.Graph;
 import tatc.tradespaceiterator.ProblemProperties;
 
@@ -20,7 +21,8 @@ import java.util.*;
  * Constraints: 
  * - a1 = 1
  * - a_k ∈ [1, max_label_so_far + 1] for each k
- * This ensures a canonical labeling of subsets.
+ * This ensures a canonical labeling of subsets (restricted growth string, see canonicalize):
+ * equivalent partitions have the same encoding.
  */
 public class Partitioning extends Decision {
 
@@ -160,24 +162,11 @@ public Object repairWithDependency(Object partitionEnc, Object downselectEnc) {
 }
 
 
-/** Re-label group IDs consecutively. e.g. 
- *  If you find used labels {1,2,4} => you map {1->1,2->2,4->3}. 
+/** Re-label group IDs consecutively, in order of first appearance. e.g. 
+ *  [2,1,4,2] => [1,2,3,1] (see canonicalize)
  */
 private void relabel(int[] partition) {
-    Set<Integer> used = new TreeSet<>();
-    for (int label : partition) {
-        used.add(label);
-    }
-    // e.g. used might be [1,2,4]
-    Map<Integer,Integer> labelMap = new HashMap<>();
-    int next = 1;
-    for (Integer oldL : used) {
-        labelMap.put(oldL, next++);
-    }
-    // apply
-    for (int i=0; i< partition.length; i++) {
-        partition[i] = labelMap.get(partition[i]);
-    }
+    canonicalize(partition, 0, partition.length, new int[scratchLength(partition.length)]);
 }
 
     public List<Decision> getParents(){
@@ -185,8 +174,16 @@ private void relabel(int[] partition) {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
 public List<Map<String, Object>> decodeArchitecture(Object encoded, Solution sol, Graph graph) {
+    return decodeWith((int[]) encoded, this.E);
+}
+
+    @Override
+    public List<Map<String, Object>> decodeArchitecture(int[] encoded, DecodeContext context) {
+        return decodeWith(encoded, context.getInputs(decisionName).getEntities());
+    }
+
+private List<Map<String, Object>> decodeWith(int[] chrom, List<Object> selectedEntities) {
     // Extract the decision-specific variables from TSERequest
     JSONObject designSpace = this.properties.getTsrObject()
             .getJSONObject("designSpace");
@@ -194,10 +191,8 @@ public List<Map<String, Object>> decodeArchitecture(Object encoded, Solution sol
             .getJSONObject(0);
 
     List<Map<String, Object>> architectureParams = new ArrayList<>();
-    List<Object> selectedEntities = this.E;
 
     // Validate encoding length
-    int[] chrom = (int[]) encoded;
     if (chrom.length != selectedEntities.size()) {
         throw new IllegalArgumentException("Encoded length does not match the size of selected entities.");
     }
@@ -256,7 +251,7 @@ public List<Map<String, Object>> decodeArchitecture(Object encoded, Solution sol
     @Override
     public void mutate(Object encoded) {
         int[] chrom = (int[]) encoded;
-        double mutationProbability = this.properties.getTradespaceSearch().getSettings().getSearchParameters().getpMutation(); // example value
+        double mutationProbability = getMutationProbability();
 
         for (int i = 1; i < chrom.length; i++) {
             if (rand.nextDouble() < mutationProbability) {
@@ -356,6 +351,103 @@ public List<Map<String, Object>> decodeArchitecture(Object encoded, Solution sol
     
         return child;
     }
+
+    @Override
+    public void crossoverInto(FragmentBuffer parent1, FragmentBuffer parent2, FragmentBuffer child, VariationScratch scratch) {
+        int n1 = parent1.length();
+        int n2 = parent2.length();
+        int nShort = Math.min(n1, n2);
+        child.setLength(Math.max(n1, n2));
+        int[] p1 = parent1.array();
+        int[] p2 = parent2.array();
+        int[] c = child.array();
+
+        // 1) Cycle crossover in the overlapping region [0..nShort-1], as in crossover
+        boolean[] visited = scratch.flags(nShort);
+        int cycle = 0;
+        for (int i = 0; i < nShort; i++) {
+            if (!visited[i]) {
+                int index = i;
+                do {
+                    visited[index] = true;
+                    // Even cycles => copy from p1, Odd cycles => copy from p2
+                    c[index] = (cycle % 2 == 0) ? p1[index] : p2[index];
+
+                    int nextIndex = -1;
+                    for (int j = 0; j < nShort; j++) {
+                        if (!visited[j] && p1[j] == p2[index]) {
+                            nextIndex = j;
+                            break;
+                        }
+                    }
+                    if (nextIndex == -1) {
+                        break;
+                    }
+                    index = nextIndex;
+                } while (index != i);
+                cycle++;
+            }
+        }
+
+        // 2) Leftover region from the longer parent
+        for (int i = nShort; i < n1; i++) {
+            c[i] = p1[i];
+        }
+        for (int i = nShort; i < n2; i++) {
+            c[i] = p2[i];
+        }
+
+        // 3) Repair the child's encoding to enforce ascending labeling constraints
+        repair(c, child.length(), scratch.ints(scratchLength(child.length())));
+    }
+
+    @Override
+    public void mutateInPlace(FragmentBuffer encoded, VariationScratch scratch) {
+        int[] chrom = encoded.array();
+        int length = encoded.length();
+        double mutationProbability = getMutationProbability();
+        SplittableRandom random = scratch.getRandom();
+
+        // Running max of the labels before position i (maxLabelSoFar(chrom, i))
+        int maxSoFar = length > 0 ? Math.max(1, chrom[0]) : 1;
+        for (int i = 1; i < length; i++) {
+            if (random.nextDouble() < mutationProbability) {
+                // Mutate a_k: must be in [1, max_so_far+1]
+                chrom[i] = 1 + random.nextInt(maxSoFar + 1);
+            }
+            if (chrom[i] > maxSoFar) {
+                maxSoFar = chrom[i];
+            }
+        }
+
+        repair(chrom, length, scratch.ints(scratchLength(length)));
+    }
+
+    @Override
+    public void repairInPlace(FragmentBuffer child, FragmentBuffer parent, VariationScratch scratch) {
+        int[] downselChrom = parent.array();
+        int selectedCount = 0;
+        for (int i = 0; i < parent.length(); i++) {
+            if (downselChrom[i] == 1) selectedCount++;
+        }
+
+        // Keep the old partition labels, and give a random label in [1..maxSoFar] to the
+        // positions beyond the end of the old partition
+        int oldLength = child.length();
+        child.setLength(selectedCount);
+        int[] newPartition = child.array();
+        int maxSoFar = 1;
+        for (int i = 0; i < selectedCount; i++) {
+            if (i >= oldLength) {
+                newPartition[i] = 1 + scratch.getRandom().nextInt(maxSoFar);
+            }
+            if (newPartition[i] > maxSoFar) {
+                maxSoFar = newPartition[i];
+            }
+        }
+
+        repair(newPartition, selectedCount, scratch.ints(scratchLength(selectedCount)));
+    }
     
     
 
@@ -382,6 +474,11 @@ public List<Map<String, Object>> decodeArchitecture(Object encoded, Solution sol
         }
         // Return the size of the selected entities
     }
+
+    @Override
+    public int getNumberOfVariables(DecodeContext context) {
+        return context.getInputs(decisionName).getEntities().size();
+    }
     
 
     @Override
@@ -439,10 +536,18 @@ public List<Map<String, Object>> decodeArchitecture(Object encoded, Solution sol
      */
     @Override
     public void applyEncoding(int[] encoding) {
+        this.result = subsetsOf(E, encoding);
+    }
+
+    @Override
+    public List<Object> decodeResult(int[] encoding, DecodeContext context) {
+        return subsetsOf(context.getInputs(decisionName).getEntities(), encoding);
+    }
+
+    private static List<Object> subsetsOf(List<Object> E, int[] encoding) {
         // Handle case where E is null or empty
         if (E == null || E.isEmpty()) {
-            this.result = new ArrayList<>();
-            return;
+            return new ArrayList<>();
         }
     
         // Ensure we don't go out of bounds
@@ -483,10 +588,7 @@ public List<Map<String, Object>> decodeArchitecture(Object encoded, Solution sol
         }
     
         // Convert subsets to a List<Object>
-        List<Object> finalResult = new ArrayList<>(subsets);
-    
-        // Store in this.result
-        this.result = finalResult;
+        return new ArrayList<>(subsets);
     }
     
 
@@ -516,45 +618,153 @@ public List<Map<String, Object>> decodeArchitecture(Object encoded, Solution sol
      * Repairs the encoding to ensure canonical labeling:
      * a1 = 1
      * For each a_k, a_k ∈ [1, 1 + max_label_so_far].
-     * After ensuring these constraints, we also make sure no gaps in labeling.
+     * The subsets are relabeled in order of first appearance (see canonicalize), so the repaired
+     * encoding is the same partition of E as the original one.
      */
     private void repair(int[] chrom) {
-        if (chrom.length == 0) return;
-        
-        // Enforce the first gene is always 1.
-        chrom[0] = 1;
-        int maxLabelSoFar = 1;
-        
-        // Ensure each subsequent gene is within [1, maxLabelSoFar+1]
-        for (int k = 1; k < chrom.length; k++) {
-            int val = chrom[k];
-            if (val < 1) {
-                val = 1;
-            }
-            if (val > maxLabelSoFar + 1) {
-                val = maxLabelSoFar + 1;
-            }
-            chrom[k] = val;
-            if (val > maxLabelSoFar) {
-                maxLabelSoFar = val;
-            }
+        canonicalize(chrom, 0, chrom.length, new int[scratchLength(chrom.length)]);
+    }
+
+    /**
+     * Same as repair(int[]) for the first length genes of an array
+     * @param chrom the array holding the encoding
+     * @param length the length of the encoding
+     * @param scratch scratch array of at least scratchLength(length) values
+     */
+    private static void repair(int[] chrom, int length, int[] scratch) {
+        canonicalize(chrom, 0, length, scratch);
+    }
+
+    /**
+     * @param length the length of an encoding
+     * @return the length of the scratch array needed by canonicalize, partitionHash and
+     *         samePartition for encodings of that length
+     */
+    public static int scratchLength(int length) {
+        return 2 * labelStateLength(length);
+    }
+
+    @Override
+    public int getCanonicalScratchLength(int length) {
+        return scratchLength(length);
+    }
+
+    /**
+     * Rewrites a partition encoding in its canonical form, the restricted growth string: the
+     * subsets are numbered 1, 2, 3, ... in the order of their first element, e.g. [3, 3, 1, 2]
+     * becomes [1, 1, 2, 3]. Two encodings are the same partition if and only if their canonical
+     * forms are equal. One pass, no allocation.
+     * @param chrom the array holding the encoding
+     * @param offset the first gene of the encoding
+     * @param length the length of the encoding
+     * @param scratch scratch array of at least scratchLength(length) values
+     * @return the first half of the canonical hash of the partition (see partitionHash)
+     */
+    public static long canonicalize(int[] chrom, int offset, int length, int[] scratch) {
+        resetLabels(length, scratch, 0);
+        long hash = HASH_SEED ^ length;
+        for (int k = 0; k < length; k++) {
+            int label = canonicalLabel(chrom[offset + k], length, scratch, 0);
+            chrom[offset + k] = label;
+            hash = hashValue(hash, label);
         }
-        
-        // Remove any gaps by reassigning labels to be consecutive.
-        // For example, if chrom = [1, 3, 3, 1], the distinct labels are {1, 3},
-        // and we remap them to {1, 2}.
-        Set<Integer> usedLabels = new TreeSet<>();
-        for (int v : chrom) {
-            usedLabels.add(v);
+        return finishHash(hash);
+    }
+
+    /**
+     * Computes the 128-bit hash of the canonical form of a partition encoding (see
+     * Decision.canonicalHash), without modifying it. Encodings of the same partition have the
+     * same hash, whatever their labels.
+     * @param chrom the array holding the encoding
+     * @param offset the first gene of the encoding
+     * @param length the length of the encoding
+     * @param scratch scratch array of at least scratchLength(length) values
+     * @param hash the two halves of the hash, written in hash[0] and hash[1]
+     */
+    public static void partitionHash(int[] chrom, int offset, int length, int[] scratch, long[] hash) {
+        resetLabels(length, scratch, 0);
+        long first = HASH_SEED ^ length;
+        long second = HASH_SEED_2 ^ length;
+        for (int k = 0; k < length; k++) {
+            int label = canonicalLabel(chrom[offset + k], length, scratch, 0);
+            first = hashValue(first, label);
+            second = hashValue2(second, label);
+        }
+        hash[0] = finishHash(first);
+        hash[1] = finishHash2(second);
+    }
+
+    /**
+     * Checks whether two encodings of the same length are the same partition, by comparing their
+     * canonical forms as they are computed, without modifying them
+     * @param a the array holding the first encoding
+     * @param offsetA the first gene of the first encoding
+     * @param b the array holding the second encoding
+     * @param offsetB the first gene of the second encoding
+     * @param length the length of the encodings
+     * @param scratch scratch array of at least scratchLength(length) values
+     * @return true if both encodings are the same partition
+     */
+    public static boolean samePartition(int[] a, int offsetA, int[] b, int offsetB, int length, int[] scratch) {
+        int second = labelStateLength(length);
+        resetLabels(length, scratch, 0);
+        resetLabels(length, scratch, second);
+        for (int k = 0; k < length; k++) {
+            if (canonicalLabel(a[offsetA + k], length, scratch, 0) != canonicalLabel(b[offsetB + k], length, scratch, second)) {
+                return false;
+            }
         }
-        List<Integer> sortedLabels = new ArrayList<>(usedLabels);
-        Map<Integer, Integer> labelMap = new HashMap<>();
-        for (int i = 0; i < sortedLabels.size(); i++) {
-            labelMap.put(sortedLabels.get(i), i + 1);
+        return true;
+    }
+
+    @Override
+    public void canonicalHash(int[] encoding, int offset, int length, int[] scratch, long[] hash) {
+        partitionHash(encoding, offset, length, scratch, hash);
+    }
+
+    @Override
+    public boolean canonicalEquals(int[] a, int offsetA, int[] b, int offsetB, int length, int[] scratch) {
+        return samePartition(a, offsetA, b, offsetB, length, scratch);
+    }
+
+    /**
+     * Relabeling state of one encoding in a scratch array, starting at base:
+     * - [base]: number of canonical labels given so far,
+     * - [base + 1]: number of labels outside [0, length] seen so far,
+     * - [base + 2 .. base + length + 2]: canonical label of each label in [0, length], 0 if unseen,
+     * - then (label, canonical label) pairs for the labels outside [0, length], which do not
+     *   appear in repaired encodings and are looked up linearly.
+     */
+    private static int labelStateLength(int length) {
+        return 3 * length + 3;
+    }
+
+    private static void resetLabels(int length, int[] scratch, int base) {
+        Arrays.fill(scratch, base, base + length + 3, 0);
+    }
+
+    private static int canonicalLabel(int label, int length, int[] scratch, int base) {
+        int direct = base + 2;
+        if (label >= 0 && label <= length) {
+            int canonical = scratch[direct + label];
+            if (canonical == 0) {
+                canonical = ++scratch[base];
+                scratch[direct + label] = canonical;
+            }
+            return canonical;
         }
-        for (int i = 0; i < chrom.length; i++) {
-            chrom[i] = labelMap.get(chrom[i]);
+        int pairs = direct + length + 1;
+        int outside = scratch[base + 1];
+        for (int i = 0; i < outside; i++) {
+            if (scratch[pairs + 2 * i] == label) {
+                return scratch[pairs + 2 * i + 1];
+            }
         }
+        int canonical = ++scratch[base];
+        scratch[pairs + 2 * outside] = label;
+        scratch[pairs + 2 * outside + 1] = canonical;
+        scratch[base + 1] = outside + 1;
+        return canonical;
     }
     
 
@@ -0,0 +1,55 @@
+package tatc.decisions;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Random number generator and scratch arrays of one worker of a batch variation operator. Each
+ * worker has its own instance, so the decisions can vary fragments concurrently without sharing
+ * a generator or allocating temporary arrays (see Decision.crossoverInto).
+ */
+public class VariationScratch {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final SplittableRandom random;
+    private int[] ints = new int[INITIAL_CAPACITY];
+    private boolean[] flags = new boolean[INITIAL_CAPACITY];
+
+    /**
+     * @param random the generator of the worker, e.g. split from the generator of the operator
+     */
+    public VariationScratch(SplittableRandom random) {
+        this.random = random;
+    }
+
+    public SplittableRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Gets an int array of at least the given length. Its values are undefined.
+     * @param length the minimum length
+     * @return the array, reused by the following calls
+     */
+    public int[] ints(int length) {
+        if (length > ints.length) {
+            ints = new int[Math.max(length, ints.length * 2)];
+        }
+        return ints;
+    }
+
+    /**
+     * Gets a boolean array of at least the given length, cleared up to that length
+     * @param length the minimum length
+     * @return the array, reused by the following calls
+     */
+    public boolean[] flags(int length) {
+        if (length > flags.length) {
+            flags = new boolean[Math.max(length, flags.length * 2)];
+        } else {
+            Arrays.fill(flags, 0, length, false);
+        }
+        return flags;
+    }
+}
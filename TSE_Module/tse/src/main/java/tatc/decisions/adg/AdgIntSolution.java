@@ -0,0 +1,102 @@
+package tatc.decisions.adg;
+
+import org.moeaframework.core.Solution;
+import tatc.tradespaceiterator.ProblemProperties;
+
+/**
+ * AdgSolution whose genes are stored in a single IntGenome instead of one RealVariable per gene.
+ * The genome is the only variable of the solution (getNumberOfVariables returns 1), so copying a
+ * solution copies one int array. The genes must be read through the gene accessors of AdgSolution
+ * (getGene, getGenes, getNumberOfGenes, ...), which read and write the genome directly.
+ */
+public class AdgIntSolution extends AdgSolution {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a solution
+     * @param graph the decision graph
+     * @param properties the problem properties
+     * @param totalObjectives the number of objectives
+     * @param genome the genome of the solution
+     */
+    public AdgIntSolution(Graph graph, ProblemProperties properties, int totalObjectives, IntGenome genome) {
+        super(graph, properties, totalObjectives, 1);
+        setVariable(0, genome);
+    }
+
+    /**
+     * Constructs a solution with every gene at its lower bound
+     * @param graph the decision graph
+     * @param properties the problem properties
+     * @param totalObjectives the number of objectives
+     * @param lowerBounds the lower bound of each gene (inclusive)
+     * @param upperBounds the upper bound of each gene (inclusive)
+     */
+    public AdgIntSolution(Graph graph, ProblemProperties properties, int totalObjectives, int[] lowerBounds, int[] upperBounds) {
+        this(graph, properties, totalObjectives, new IntGenome(lowerBounds, upperBounds));
+    }
+
+    /**
+     * Copy constructor
+     */
+    protected AdgIntSolution(AdgIntSolution original) {
+        super(original);
+    }
+
+    @Override
+    public Solution copy() {
+        return new AdgIntSolution(this);
+    }
+
+    public IntGenome getGenome() {
+        return (IntGenome) getVariable(0);
+    }
+
+    public void setGenome(IntGenome genome) {
+        setVariable(0, genome);
+    }
+
+    /**
+     * @return 1, the genome is the only variable of the solution (see getNumberOfGenes)
+     */
+    @Override
+    public int getNumberOfVariables() {
+        return 1;
+    }
+
+    @Override
+    public int getNumberOfGenes() {
+        return getGenome().size();
+    }
+
+    @Override
+    public int getGene(int index) {
+        return getGenome().get(index);
+    }
+
+    @Override
+    public void setGene(int index, int value) {
+        getGenome().set(index, value);
+    }
+
+    @Override
+    public int getGeneLowerBound(int index) {
+        return getGenome().getLowerBound(index);
+    }
+
+    @Override
+    public int getGeneUpperBound(int index) {
+        return getGenome().getUpperBound(index);
+    }
+
+    @Override
+    public int[] getGenes(int offset, int length) {
+        return getGenome().get(offset, length);
+    }
+
+    @Override
+    public void setGenes(int offset, int[] genes, int length) {
+        getGenome().set(offset, genes, length);
+    }
+}
@@ -15,6 +15,8 @@ import java.util.*;
 /**
  * AdgSolution represents an architecture solution composed of multiple decision fragments.
  * Each decision contributes a set of variables (encoded as integers but stored in RealVariables).
+ * The integer values (genes) are read and written through getGene/setGene and the related
+ * accessors, which AdgIntSolution overrides to store all the genes in a single int array.
  */
 public class AdgSolution extends Solution {
 
@@ -44,6 +46,9 @@ public class AdgSolution extends Solution {
         super(original);
         this.decisions = original.decisions;
         this.properties = original.properties;
+        this.graph = original.graph;
+        // Copies start from the encodings of their original (e.g. the mutation operator)
+        this.id = original.id;
     }
     public void randomizeSolution(){
         int offset = 0;
@@ -171,20 +176,121 @@ public class AdgSolution extends Solution {
     
     
 
+    /**
+     * @return the number of genes (integer decision variables) of the solution
+     */
+    public int getNumberOfGenes() {
+        return getNumberOfVariables();
+    }
+
+    /**
+     * @param index the gene
+     * @return the value of the gene
+     */
+    public int getGene(int index) {
+        return (int) Math.round(((RealVariable) getVariable(index)).getValue());
+    }
+
+    /**
+     * Sets the value of a gene, clamped to the bounds of the gene
+     * @param index the gene
+     * @param value the value
+     */
+    public void setGene(int index, int value) {
+        RealVariable var = (RealVariable) getVariable(index);
+        double newVal = value;
+        if (newVal > var.getUpperBound()) {
+            newVal = var.getUpperBound();
+        }
+        if (newVal < var.getLowerBound()) {
+            newVal = var.getLowerBound();
+        }
+        var.setValue(newVal);
+    }
+
+    public int getGeneLowerBound(int index) {
+        return (int) Math.round(((RealVariable) getVariable(index)).getLowerBound());
+    }
+
+    public int getGeneUpperBound(int index) {
+        return (int) Math.round(((RealVariable) getVariable(index)).getUpperBound());
+    }
+
+    /**
+     * Reads consecutive genes
+     * @param offset the first gene
+     * @param length the number of genes
+     * @return the values of the genes
+     */
+    public int[] getGenes(int offset, int length) {
+        int[] genes = new int[length];
+        for (int i = 0; i < length; i++) {
+            genes[i] = getGene(offset + i);
+        }
+        return genes;
+    }
+
+    /**
+     * Sets consecutive genes, each one clamped to its bounds
+     * @param offset the first gene
+     * @param genes the values
+     * @param length the number of values to set
+     */
+    public void setGenes(int offset, int[] genes, int length) {
+        for (int i = 0; i < length; i++) {
+            setGene(offset + i, genes[i]);
+        }
+    }
+
+    /**
+     * @return the values of all the genes (the chromosome of the solution)
+     */
+    public int[] getGenes() {
+        return getGenes(0, getNumberOfGenes());
+    }
+
+    /**
+     * Reads the genes of any solution: through the gene accessors for an AdgSolution, or by
+     * rounding its RealVariables otherwise
+     * @param solution the solution
+     * @param offset the first gene
+     * @param length the number of genes
+     * @return the values of the genes
+     */
+    public static int[] genesOf(Solution solution, int offset, int length) {
+        if (solution instanceof AdgSolution) {
+            return ((AdgSolution) solution).getGenes(offset, length);
+        }
+        int[] genes = new int[length];
+        for (int i = 0; i < length; i++) {
+            genes[i] = (int) Math.round(((RealVariable) solution.getVariable(offset + i)).getValue());
+        }
+        return genes;
+    }
+
+    /**
+     * @param solution the solution
+     * @return the values of all the genes of the solution (see genesOf(Solution, int, int))
+     */
+    public static int[] genesOf(Solution solution) {
+        int length = (solution instanceof AdgSolution)
+                ? ((AdgSolution) solution).getNumberOfGenes()
+                : solution.getNumberOfVariables();
+        return genesOf(solution, 0, length);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == null || !(obj instanceof AdgSolution)) {
             return false;
         }
         AdgSolution other = (AdgSolution) obj;
-        // Check variable values
-        if (this.getNumberOfVariables() != other.getNumberOfVariables()) {
+        // Check gene values
+        if (this.getNumberOfGenes() != other.getNumberOfGenes()) {
             return false;
         }
-        for (int i=0; i<this.getNumberOfVariables(); i++) {
-            double v1 = ((RealVariable)this.getVariable(i)).getValue();
-            double v2 = ((RealVariable)other.getVariable(i)).getValue();
-            if (Math.round(v1) != Math.round(v2)) {
+        for (int i=0; i<this.getNumberOfGenes(); i++) {
+            if (this.getGene(i) != other.getGene(i)) {
                 return false;
             }
         }
@@ -195,9 +301,8 @@ public class AdgSolution extends Solution {
     public int hashCode() {
         // Create a hash based on the encoded variables
         int hash = 7;
-        for (int i=0; i<this.getNumberOfVariables(); i++) {
-            double val = ((RealVariable)this.getVariable(i)).getValue();
-            hash = 31 * hash + (int)Math.round(val);
+        for (int i=0; i<this.getNumberOfGenes(); i++) {
+            hash = 31 * hash + this.getGene(i);
         }
         return hash;
     }
@@ -207,9 +312,8 @@ public class AdgSolution extends Solution {
         // Print the encoded representation
         StringBuilder sb = new StringBuilder();
         sb.append("AdgSolution: ");
-        for (int i=0; i<this.getNumberOfVariables(); i++) {
-            double val = ((RealVariable)this.getVariable(i)).getValue();
-            sb.append((int)Math.round(val)).append(" ");
+        for (int i=0; i<this.getNumberOfGenes(); i++) {
+            sb.append(this.getGene(i)).append(" ");
         }
         return sb.toString().trim();
     }
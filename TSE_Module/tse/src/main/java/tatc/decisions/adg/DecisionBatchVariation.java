@@ -0,0 +1,215 @@
+package tatc.decisions.adg;
+
+import org.moeaframework.core.PRNG;
+import org.moeaframework.core.Solution;
+import org.moeaframework.core.Variation;
+
+import tatc.decisions.ConstructionNode;
+import tatc.decisions.Decision;
+import tatc.decisions.FragmentBuffer;
+import tatc.decisions.VariationScratch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Crossover followed by mutation of ADG solutions, the same as the compound of DecisionVariation
+ * and DecisionMutation, but for many offspring at once (evolveAll). The encodings of the parents
+ * and of the offspring are held in FragmentBuffers reused from one batch to the next, and the
+ * decisions vary them in place (Decision.crossoverInto, mutateInPlace and repairInPlace), so
+ * generating offspring does not allocate anymore once the buffers have grown to the batch size.
+ *
+ * A batch is generated in three phases:
+ * - the encodings of the parents are copied from the decisions,
+ * - the offspring are split in contiguous chunks, varied concurrently by up to
+ *   tatc.variationThreads workers (1 by default), each one with its own SplittableRandom and
+ *   scratch arrays,
+ * - the offspring are created in order, with their ids, genes and encodings.
+ * The decisions are only read while the offspring are varied.
+ */
+public class DecisionBatchVariation implements Variation {
+
+    /**
+     * Decisions with variables (no construction node), in topological order
+     */
+    private final Decision[] decisions;
+    /**
+     * Index in decisions of the parent decision whose encoding is used to repair each decision,
+     * or -1 if the decision has no parent decision (no repair)
+     */
+    private final int[] repairSources;
+    private final boolean[] repaired;
+    /**
+     * Graph of the decisions, which allocates the ids of the offspring
+     */
+    private final Graph graph;
+    private final VariationScratch[] workers;
+    /**
+     * Encodings of the parents and of the offspring, by decision and offspring
+     */
+    private final FragmentBuffer[][] parent1Fragments;
+    private final FragmentBuffer[][] parent2Fragments;
+    private final FragmentBuffer[][] childFragments;
+    private int capacity;
+
+    public DecisionBatchVariation(List<Decision> decisions, Graph graph) {
+        List<Decision> varied = new ArrayList<>();
+        for (Decision d : decisions) {
+            if (!(d instanceof ConstructionNode)) {
+                varied.add(d);
+            }
+        }
+        this.decisions = varied.toArray(new Decision[0]);
+        this.repairSources = new int[this.decisions.length];
+        this.repaired = new boolean[this.decisions.length];
+        for (int i = 0; i < this.decisions.length; i++) {
+            List<Decision> parents = this.decisions[i].getParentDecisions();
+            repaired[i] = !parents.isEmpty();
+            repairSources[i] = repaired[i] ? varied.indexOf(parents.get(0)) : -1;
+        }
+        this.graph = graph;
+
+        int threads = Math.max(1, Integer.getInteger("tatc.variationThreads", 1));
+        SplittableRandom random = new SplittableRandom(PRNG.getRandom().nextLong());
+        this.workers = new VariationScratch[threads];
+        for (int w = 0; w < threads; w++) {
+            workers[w] = new VariationScratch(random.split());
+        }
+        this.parent1Fragments = new FragmentBuffer[this.decisions.length][0];
+        this.parent2Fragments = new FragmentBuffer[this.decisions.length][0];
+        this.childFragments = new FragmentBuffer[this.decisions.length][0];
+    }
+
+    @Override
+    public int getArity() {
+        return 2;
+    }
+
+    @Override
+    public Solution[] evolve(Solution[] parents) {
+        return evolveAll(new Solution[][]{ parents });
+    }
+
+    /**
+     * Generates one offspring for each pair of parents
+     * @param parents the pairs of parents
+     * @return the offspring, in the order of their parents
+     */
+    public Solution[] evolveAll(Solution[][] parents) {
+        int n = parents.length;
+        ensureCapacity(n);
+
+        // 1) Encodings of the parents
+        for (int k = 0; k < n; k++) {
+            if (parents[k].length != 2) {
+                throw new IllegalArgumentException("This operator requires two parents.");
+            }
+            int id1 = ((AdgSolution) parents[k][0]).getId();
+            int id2 = ((AdgSolution) parents[k][1]).getId();
+            for (int d = 0; d < decisions.length; d++) {
+                copyEncoding(decisions[d], id1, parent1Fragments[d][k]);
+                copyEncoding(decisions[d], id2, parent2Fragments[d][k]);
+            }
+        }
+
+        // 2) Crossover, mutation and repair of the offspring, in contiguous chunks
+        int chunks = Math.min(workers.length, n);
+        if (chunks <= 1) {
+            vary(0, n, workers[0]);
+        } else {
+            int chunkSize = (n + chunks - 1) / chunks;
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (int w = 1; w < chunks; w++) {
+                final int from = w * chunkSize;
+                final int to = Math.min(n, from + chunkSize);
+                final VariationScratch scratch = workers[w];
+                if (from < to) {
+                    tasks.add(ForkJoinPool.commonPool().submit(() -> vary(from, to, scratch)));
+                }
+            }
+            vary(0, Math.min(n, chunkSize), workers[0]);
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+
+        // 3) Offspring: ids, genes and encodings
+        Solution[] offspring = new Solution[n];
+        for (int k = 0; k < n; k++) {
+            AdgSolution child = (AdgSolution) parents[k][0].copy();
+            int childId = graph.nextSolutionId();
+            int numberOfGenes = child.getNumberOfGenes();
+            int offset = 0;
+            for (int d = 0; d < decisions.length; d++) {
+                FragmentBuffer fragment = childFragments[d][k];
+                int safeLength = Math.max(0, Math.min(fragment.length(), numberOfGenes - offset));
+                child.setGenes(offset, fragment.array(), safeLength);
+                decisions[d].addEncodingById(childId, fragment);
+                offset += fragment.length();
+            }
+            // As in DecisionMutation, the genes after the last fragment are reset to 0
+            for (int i = offset; i < numberOfGenes; i++) {
+                child.setGene(i, 0);
+            }
+            child.setId(childId);
+            offspring[k] = child;
+        }
+        return offspring;
+    }
+
+    /**
+     * Varies the offspring [from, to) with the random numbers and scratch arrays of one worker
+     */
+    private void vary(int from, int to, VariationScratch scratch) {
+        for (int k = from; k < to; k++) {
+            for (int d = 0; d < decisions.length; d++) {
+                Decision decision = decisions[d];
+                FragmentBuffer child = childFragments[d][k];
+                FragmentBuffer parent = repairSources[d] >= 0 ? childFragments[repairSources[d]][k] : null;
+
+                decision.crossoverInto(parent1Fragments[d][k], parent2Fragments[d][k], child, scratch);
+                if (repaired[d]) {
+                    decision.repairInPlace(child, parent, scratch);
+                }
+                decision.mutateInPlace(child, scratch);
+                if (repaired[d]) {
+                    decision.repairInPlace(child, parent, scratch);
+                }
+            }
+        }
+    }
+
+    private static void copyEncoding(Decision d, int id, FragmentBuffer buffer) {
+        if (!d.copyEncodingById(id, buffer)) {
+            throw new IllegalStateException("No encoding of solution " + id + " for decision " + d.getDecisionName());
+        }
+    }
+
+    /**
+     * Grows the buffers to hold the encodings of n offspring and their parents
+     */
+    private void ensureCapacity(int n) {
+        if (n <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(n, capacity * 2);
+        for (int d = 0; d < decisions.length; d++) {
+            parent1Fragments[d] = grow(parent1Fragments[d], newCapacity);
+            parent2Fragments[d] = grow(parent2Fragments[d], newCapacity);
+            childFragments[d] = grow(childFragments[d], newCapacity);
+        }
+        capacity = newCapacity;
+    }
+
+    private static FragmentBuffer[] grow(FragmentBuffer[] buffers, int newCapacity) {
+        FragmentBuffer[] grown = new FragmentBuffer[newCapacity];
+        System.arraycopy(buffers, 0, grown, 0, buffers.length);
+        for (int k = buffers.length; k < newCapacity; k++) {
+            grown[k] = new FragmentBuffer();
+        }
+        return grown;
+    }
+}
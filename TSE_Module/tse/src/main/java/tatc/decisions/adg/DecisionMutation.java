@@ -1,9 +1,6 @@
 package tatc.decisions.adg;
 import org.moeaframework.core.Solution;
-import org.moeaframework.core.Variable;
 import org.moeaframework.core.Variation;
-import org.moeaframework.core.variable.EncodingUtils;
-import org.moeaframework.core.variable.RealVariable;
 import tatc.decisions.ConstructionNode;
 import tatc.decisions.Decision;
 
@@ -14,12 +11,17 @@ import java.util.Random;
 public class DecisionMutation implements Variation {
 
     private List<Decision> decisions;
+    /**
+     * Graph of the decisions, which allocates the ids of the offspring
+     */
+    private final Graph graph;
     private Random rand = new Random();
     private Map<Decision, Object> childFragments;  // <--- store child fragment for each decision node
 
 
-    public DecisionMutation(List<Decision> decisions) {
+    public DecisionMutation(List<Decision> decisions, Graph graph) {
         this.decisions = decisions;
+        this.graph = graph;
         this.childFragments = new HashMap<>();
     }
 
@@ -39,15 +41,14 @@ public class DecisionMutation implements Variation {
         Solution child = parent.copy();
     
         int offset = 0;
-        int childId = 0;
+        // One id for all the fragments of the child
+        int childId = graph.nextSolutionId();
         // We assume 'decisions' is in topological order (parents before children)
         for (int nodeIndex = 0; nodeIndex < decisions.size(); nodeIndex++) {
             Decision d = decisions.get(nodeIndex);
             if(d instanceof ConstructionNode){
                 continue;
             }
-            int maxId = d.getHighestId();
-            childId = maxId+1;            
             // 1) Extract the child's encoding
             Object encodedChild = d.getEncodingById(((AdgSolution)child).getId());
             // 2) Mutate child encoding
@@ -86,16 +87,14 @@ public class DecisionMutation implements Variation {
     // The final returned array must be exactly requestedLength in size
     int[] encoding = new int[requestedLength];
 
-    // But if solution doesn't have enough variables, we can't read them all
-    // We clamp the read length to the actual number of variables from offset.
-    int maxAvailable = sol.getNumberOfVariables() - offset;
+    // But if solution doesn't have enough genes, we can't read them all
+    // We clamp the read length to the actual number of genes from offset.
+    AdgSolution adg = (AdgSolution) sol;
+    int maxAvailable = adg.getNumberOfGenes() - offset;
     int safeLength = Math.min(requestedLength, maxAvailable);
 
-    for (int i = 0; i < safeLength; i++) {
-        Variable var = sol.getVariable(offset + i);
-        // Safely convert var to an int (presumably via RealVariable or direct Casting)
-        encoding[i] = EncodingUtils.getInt(var);
-    }
+    int[] genes = adg.getGenes(offset, safeLength);
+    System.arraycopy(genes, 0, encoding, 0, safeLength);
 
     // If the solution was shorter than requestedLength, the tail of encoding remains 0
     // (which might be the "default" meaning).
@@ -105,40 +104,26 @@ public class DecisionMutation implements Variation {
 /**
  * Safely writes the integer-encoded fragment into the solution, making sure
  * we do not step out of bounds. If the encoded array is longer than the
- * available variables, the extra portion is unused. If the solution region
- * is bigger, we set the "unused" variables to 0 or another sentinel.
+ * available genes, the extra portion is unused. If the solution region
+ * is bigger, we set the "unused" genes to 0 or another sentinel.
  */
 private void injectEncoded(Solution sol, int offset, Object encoded) {
     int[] arr = (int[]) encoded;
 
     // If offset is near the end of the solution, we clamp writing to not exceed
-    // the solution's variable range.
-    int maxAvailable = sol.getNumberOfVariables() - offset;
+    // the solution's gene range.
+    AdgSolution adg = (AdgSolution) sol;
+    int maxAvailable = adg.getNumberOfGenes() - offset;
     int safeLength = Math.min(arr.length, maxAvailable);
 
-    // Write each integer into the solution’s variables as a double
-    // (with the "RealVariable" approach).
-    for (int i = 0; i < safeLength; i++) {
-        RealVariable var = (RealVariable) sol.getVariable(offset + i);
-
-        double newVal = arr[i];
-        // If newVal is out of bounds, clamp it (or subtract epsilon so we stay strictly in range)
-        if (newVal > var.getUpperBound()) {
-            newVal = var.getUpperBound();
-        }
-        if (newVal < var.getLowerBound()) {
-            newVal = var.getLowerBound();
-        }
-        var.setValue(newVal);
-    }
+    // Write the integers into the solution's genes, each one clamped to the bounds of its gene
+    adg.setGenes(offset, arr, safeLength);
 
-    // If the solution has more variables than arr.length, fill the remainder with 0.0
+    // If the solution has more genes than arr.length, fill the remainder with 0
     // or another sentinel value. This ensures we don't leave stale data behind.
     for (int i = safeLength; i < maxAvailable; i++) {
-        RealVariable var = (RealVariable) sol.getVariable(offset + i);
-        var.setValue(0.0); // or another “do-nothing” sentinel
+        adg.setGene(offset + i, 0); // or another “do-nothing” sentinel
     }
 }
-    
 
 }
@@ -1,10 +1,7 @@
 package tatc.decisions.adg;
 
 import org.moeaframework.core.Solution;
-import org.moeaframework.core.Variable;
 import org.moeaframework.core.Variation;
-import org.moeaframework.core.variable.EncodingUtils;
-import org.moeaframework.core.variable.RealVariable;
 
 import tatc.decisions.ConstructionNode;
 import tatc.decisions.Decision;
@@ -18,12 +15,17 @@ import java.util.Random;
 public class DecisionVariation implements Variation {
 
     private List<Decision> decisions;
+    /**
+     * Graph of the decisions, which allocates the ids of the offspring
+     */
+    private final Graph graph;
     private Random rand = new Random();
     private Map<Decision, Object> childFragments;  // <--- store child fragment for each decision node
 
 
-    public DecisionVariation(List<Decision> decisions) {
+    public DecisionVariation(List<Decision> decisions, Graph graph) {
         this.decisions = decisions;
+        this.graph = graph;
         this.childFragments = new HashMap<>();
         
     }
@@ -47,14 +49,13 @@ public class DecisionVariation implements Variation {
     
         // We'll keep track of partial encodings for each node (DCi)
         int offset = 0;
-        int childId = 0;
+        // One id for all the fragments of the child
+        int childId = graph.nextSolutionId();
         for (int nodeIndex = 0; nodeIndex < decisions.size(); nodeIndex++) {
             Decision d = decisions.get(nodeIndex);
             if(d instanceof ConstructionNode){
                 continue;
             }
-            int maxId = d.getHighestId();
-            childId = maxId+1;
             // --- 1) Extract each parent's fragment
             Object p1Encoded = d.getEncodingById(((AdgSolution)p1).getId());
             Object p2Encoded = d.getEncodingById(((AdgSolution)p2).getId());
@@ -97,23 +98,21 @@ public class DecisionVariation implements Variation {
 
    /**
  * Safely reads an integer-encoded fragment from the solution, stopping if
- * the solution doesn't have enough variables or the fragment is smaller than
+ * the solution doesn't have enough genes or the fragment is smaller than
  * the solution's allocated region.
  */
 private Object extractEncoded(Solution sol, int offset, int requestedLength) {
     // The final returned array must be exactly requestedLength in size
     int[] encoding = new int[requestedLength];
 
-    // But if solution doesn't have enough variables, we can't read them all
-    // We clamp the read length to the actual number of variables from offset.
-    int maxAvailable = sol.getNumberOfVariables() - offset;
+    // But if solution doesn't have enough genes, we can't read them all
+    // We clamp the read length to the actual number of genes from offset.
+    AdgSolution adg = (AdgSolution) sol;
+    int maxAvailable = adg.getNumberOfGenes() - offset;
     int safeLength = Math.min(requestedLength, maxAvailable);
 
-    for (int i = 0; i < safeLength; i++) {
-        Variable var = sol.getVariable(offset + i);
-        // Safely convert var to an int (presumably via RealVariable or direct Casting)
-        encoding[i] = EncodingUtils.getInt(var);
-    }
+    int[] genes = adg.getGenes(offset, safeLength);
+    System.arraycopy(genes, 0, encoding, 0, safeLength);
 
     // If the solution was shorter than requestedLength, the tail of encoding remains 0
     // (which might be the "default" meaning).
@@ -123,70 +122,19 @@ private Object extractEncoded(Solution sol, int offset, int requestedLength) {
 /**
  * Safely writes the integer-encoded fragment into the solution, making sure
  * we do not step out of bounds. If the encoded array is longer than the
- * available variables, the extra portion is unused. If the solution region
- * is bigger, we set the "unused" variables to 0 or another sentinel.
+ * available genes, the extra portion is unused.
  */
 private void injectEncoded(Solution sol, int offset, Object encoded) {
     int[] arr = (int[]) encoded;
-    double epsilon = 1e-9;
 
     // If offset is near the end of the solution, we clamp writing to not exceed
-    // the solution's variable range.
-    int maxAvailable = sol.getNumberOfVariables() - offset;
+    // the solution's gene range.
+    AdgSolution adg = (AdgSolution) sol;
+    int maxAvailable = adg.getNumberOfGenes() - offset;
     int safeLength = Math.min(arr.length, maxAvailable);
 
-    // Write each integer into the solution’s variables as a double
-    // (with the "RealVariable" approach).
-    for (int i = 0; i < safeLength; i++) {
-        RealVariable var = (RealVariable) sol.getVariable(offset + i);
-
-        double newVal = arr[i];
-        // If newVal is out of bounds, clamp it (or subtract epsilon so we stay strictly in range)
-        if (newVal > var.getUpperBound()) {
-            newVal = var.getUpperBound();
-        }
-        if (newVal < var.getLowerBound()) {
-            newVal = var.getLowerBound();
-        }
-        var.setValue(newVal);
-    }
-    
-
-    // If the solution has more variables than arr.length, fill the remainder with 0.0
-    // or another sentinel value. This ensures we don't leave stale data behind.
-    createReducedSolution(sol, 0, safeLength);
-}
-
-
-public Solution createReducedSolution(Solution original, int offset, int length) {
-    // Ensure length is not negative
-    if (length <= 0) {
-        // If length is invalid, return the original solution
-        return original;
-    }
-
-    // Create a new solution with reduced size
-    Solution reduced = new Solution(length, original.getNumberOfObjectives(), original.getNumberOfConstraints());
-
-    // Copy the necessary variables
-    for (int i = 0; i < length; i++) {
-        RealVariable originalVar = (RealVariable) original.getVariable(offset + i);
-        RealVariable newVar = new RealVariable(originalVar.getLowerBound(), originalVar.getUpperBound());
-        newVar.setValue(originalVar.getValue());
-        reduced.setVariable(i, newVar);
-    }
-
-    // Copy objectives and constraints
-    for (int i = 0; i < original.getNumberOfObjectives(); i++) {
-        reduced.setObjective(i, original.getObjective(i));
-    }
-    for (int i = 0; i < original.getNumberOfConstraints(); i++) {
-        reduced.setConstraint(i, original.getConstraint(i));
-    }
-
-    return reduced;
+    // Write the integers into the solution's genes, each one clamped to the bounds of its gene
+    adg.setGenes(offset, arr, safeLength);
 }
 
-
-    
 }
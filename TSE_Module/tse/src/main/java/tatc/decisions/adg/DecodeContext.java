@@ -0,0 +1,182 @@
+package tatc.decisions.adg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * State of one decoding of a solution (see Graph.decode). The decoding resolves the inputs of
+ * every decision from the results of its parent decisions, and computes the result of the decision
+ * from its encoding. In the original decoding path these inputs and results were written into the
+ * Decision objects themselves (setEntities, setLset, applyEncoding, ...), so two solutions could not
+ * be decoded at the same time. Here they are kept in a context created for each call, and the
+ * decisions and the graph are only read, so any number of threads can decode concurrently.
+ *
+ * A context is used by one thread and must not be shared between decodings.
+ */
+public class DecodeContext {
+
+    private final DecodePlan plan;
+    private final Inputs[] inputs;
+    private final int[][] encodings;
+    private final List<Object>[] results;
+
+    /**
+     * Constructs an empty context
+     * @param graph the decision graph being decoded
+     */
+    public DecodeContext(Graph graph) {
+        this(graph.getDecodePlan());
+    }
+
+    /**
+     * Constructs an empty context
+     * @param plan the decode plan of the graph being decoded
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    DecodeContext(DecodePlan plan) {
+        this.plan = plan;
+        this.inputs = new Inputs[plan.size()];
+        this.encodings = new int[plan.size()][];
+        this.results = new List[plan.size()];
+    }
+
+    /**
+     * Gets the inputs resolved for a decision
+     * @param decisionName the decision name
+     * @return the inputs, or empty inputs if they were not resolved yet
+     */
+    public Inputs getInputs(String decisionName) {
+        int s = plan.indexOf(decisionName);
+        Inputs resolved = s >= 0 ? inputs[s] : null;
+        return resolved != null ? resolved : Inputs.EMPTY;
+    }
+
+    void setInputs(int step, Inputs resolved) {
+        inputs[step] = resolved;
+    }
+
+    /**
+     * @param name a source name
+     * @return true if the name is a decision of the graph, false if it is a variable of the TSE request
+     */
+    public boolean isDecision(String name) {
+        return plan.indexOf(name) >= 0;
+    }
+
+    /**
+     * @param decisionName the decision name
+     * @return the result type of the decision, or null if the graph has no such decision
+     */
+    public String getResultType(String decisionName) {
+        int s = plan.indexOf(decisionName);
+        return s >= 0 ? plan.getDecision(s).getResultType() : null;
+    }
+
+    /**
+     * Gets the encoding (chromosome fragment) of a decision in this decoding
+     * @param decisionName the decision name
+     * @return the encoding, or null if the decision was not decoded yet
+     */
+    public int[] getEncoding(String decisionName) {
+        int s = plan.indexOf(decisionName);
+        return s >= 0 ? encodings[s] : null;
+    }
+
+    int[] getEncoding(int step) {
+        return encodings[step];
+    }
+
+    void setEncoding(int step, int[] encoding) {
+        encodings[step] = encoding;
+    }
+
+    /**
+     * Gets the result of a decision in this decoding (the counterpart of Decision.getResult)
+     * @param decisionName the decision name
+     * @return the result, or null if the decision was not decoded yet
+     */
+    public List<Object> getResult(String decisionName) {
+        int s = plan.indexOf(decisionName);
+        return s >= 0 ? results[s] : null;
+    }
+
+    List<Object> getResult(int step) {
+        return results[step];
+    }
+
+    void setResult(int step, List<Object> result) {
+        results[step] = result;
+    }
+
+    /**
+     * Inputs of a decision, resolved from the results of its parent decisions or from the values
+     * of the TSE request. Only the fields used by the type of the decision are set:
+     * - entities: DownSelecting and Partitioning (E)
+     * - lset, rset: Assigning
+     * - subDecisionsData, alternatives: Combining
+     * The lists are not copied and must not be modified.
+     */
+    public static class Inputs {
+
+        static final Inputs EMPTY = new Inputs();
+
+        private List<Object> entities = Collections.emptyList();
+        private List<Object> lset = Collections.emptyList();
+        private List<Object> rset = Collections.emptyList();
+        private List<List<Object>> subDecisionsData = Collections.emptyList();
+        private List<List<Object>> alternatives = Collections.emptyList();
+        /**
+         * Names of the decisions whose results were used to resolve these inputs
+         */
+        private final List<String> sourceDecisions = new ArrayList<>();
+
+        public List<Object> getEntities() {
+            return entities;
+        }
+
+        public void setEntities(List<Object> entities) {
+            this.entities = entities;
+        }
+
+        public List<Object> getLset() {
+            return lset;
+        }
+
+        public void setLset(List<Object> lset) {
+            this.lset = lset;
+        }
+
+        public List<Object> getRset() {
+            return rset;
+        }
+
+        public void setRset(List<Object> rset) {
+            this.rset = rset;
+        }
+
+        public List<List<Object>> getSubDecisionsData() {
+            return subDecisionsData;
+        }
+
+        public void setSubDecisionsData(List<List<Object>> subDecisionsData) {
+            this.subDecisionsData = subDecisionsData;
+        }
+
+        public List<List<Object>> getAlternatives() {
+            return alternatives;
+        }
+
+        public void setAlternatives(List<List<Object>> alternatives) {
+            this.alternatives = alternatives;
+        }
+
+        public List<String> getSourceDecisions() {
+            return sourceDecisions;
+        }
+
+        void addSourceDecision(String decisionName) {
+            sourceDecisions.add(decisionName);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package tatc.decisions.adg;
+
+import org.moeaframework.core.Solution;
+import tatc.decisions.Assigning;
+import tatc.decisions.Combining;
+import tatc.decisions.ConstructionNode;
+import tatc.decisions.Decision;
+import tatc.decisions.DownSelecting;
+import tatc.decisions.Partitioning;
+import tatc.tradespaceiterator.ProblemProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Decoding steps of an Architecture Decision Graph, compiled once when the graph is built so that
+ * decoding a solution does not search the graph or the TSE request again. For each decision, in
+ * topological order, the plan holds:
+ * - the input slots of the decision (E, L and R, or the sub-decisions and alternatives of a
+ *   combining decision), each one either the index of the step whose result it reads or a list of
+ *   values of the TSE request (ProblemProperties.getDistinctValuesForVariable),
+ * - the inputs themselves when none of the slots depends on another decision, since they are then
+ *   the same for every solution,
+ * - the number of variables of the decision when it is known in advance (-1 otherwise), so the
+ *   offsets into the chromosome do not have to be computed from the inputs,
+ * - the step that builds the architecture: the construction node, or the first leaf decision if
+ *   the graph has no construction node.
+ * The plan is immutable and shared by all the decodings (see DecodeContext).
+ */
+public class DecodePlan {
+
+    private static final int CONSTANT = -1;
+
+    private final Decision[] steps;
+    private final Map<String, Integer> stepIndex;
+    /**
+     * Source step of each input slot of each step, or CONSTANT
+     */
+    private final int[][] slotSteps;
+    /**
+     * Values of each constant input slot of each step (null for the slots read from a step)
+     */
+    private final List<Object>[][] slotValues;
+    /**
+     * Number of sub-decision slots of each combining step; the remaining slots are alternatives
+     */
+    private final int[] subDecisionSlots;
+    private final DecodeContext.Inputs[] constantInputs;
+    private final int[] variableCounts;
+    private final int terminalStep;
+    private final boolean terminalIsConstruction;
+
+    /**
+     * Compiles the plan of a graph
+     * @param decisions the decisions in topological order
+     * @param leafDecisions the names of the leaf decisions (see Graph.getLeafDecisions)
+     * @param properties the problem properties, to read the values of the TSE request
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    DecodePlan(List<Decision> decisions, Set<String> leafDecisions, ProblemProperties properties) {
+        int n = decisions.size();
+        this.steps = decisions.toArray(new Decision[0]);
+        Map<String, Integer> index = new HashMap<>();
+        for (int s = 0; s < n; s++) {
+            index.put(steps[s].getDecisionName(), s);
+        }
+        this.stepIndex = Collections.unmodifiableMap(index);
+        this.slotSteps = new int[n][];
+        this.slotValues = new List[n][];
+        this.subDecisionSlots = new int[n];
+        this.constantInputs = new DecodeContext.Inputs[n];
+        this.variableCounts = new int[n];
+
+        for (int s = 0; s < n; s++) {
+            List<String> sources = sourcesOf(steps[s]);
+            if (steps[s] instanceof Combining) {
+                subDecisionSlots[s] = ((Combining) steps[s]).getSubDecisionsSource().size();
+            }
+            slotSteps[s] = new int[sources.size()];
+            slotValues[s] = new List[sources.size()];
+            boolean constant = true;
+            for (int k = 0; k < sources.size(); k++) {
+                Integer sourceStep = index.get(sources.get(k));
+                if (sourceStep != null) {
+                    slotSteps[s][k] = sourceStep;
+                    constant = false;
+                } else {
+                    slotSteps[s][k] = CONSTANT;
+                    slotValues[s][k] = properties.getDistinctValuesForVariable(sources.get(k));
+                }
+            }
+            variableCounts[s] = -1;
+            if (constant) {
+                constantInputs[s] = resolveInputs(s, step -> null);
+                DecodeContext context = new DecodeContext(this);
+                context.setInputs(s, constantInputs[s]);
+                variableCounts[s] = steps[s].getNumberOfVariables(context);
+            }
+        }
+
+        boolean endsWithConstruction = n > 0 && steps[n - 1] instanceof ConstructionNode;
+        int terminal = -1;
+        for (int s = 0; s < n && terminal < 0; s++) {
+            if (steps[s] instanceof ConstructionNode
+                    || (!endsWithConstruction && leafDecisions.contains(steps[s].getDecisionName()))) {
+                terminal = s;
+            }
+        }
+        this.terminalStep = terminal;
+        this.terminalIsConstruction = terminal >= 0 && steps[terminal] instanceof ConstructionNode;
+    }
+
+    /**
+     * Names of the input sources of a decision, in slot order
+     */
+    private static List<String> sourcesOf(Decision d) {
+        List<String> sources = new ArrayList<>();
+        if (d instanceof DownSelecting) {
+            sources.add(((DownSelecting) d).getEntitiesSource());
+        } else if (d instanceof Assigning) {
+            sources.add(((Assigning) d).getLSource());
+            sources.add(((Assigning) d).getRSource());
+        } else if (d instanceof Partitioning) {
+            sources.add(((Partitioning) d).getEntitiesSource());
+        } else if (d instanceof Combining) {
+            sources.addAll(((Combining) d).getSubDecisionsSource());
+            sources.addAll(((Combining) d).getAlternativesSource());
+        }
+        return sources;
+    }
+
+    /**
+     * Decodes a solution into architecture parameters
+     * @param solution the solution
+     * @param context an empty context of this plan, which holds the intermediate results once decoded
+     * @return the architecture parameters (one map per constellation)
+     */
+    public List<Map<String, Object>> decode(Solution solution, DecodeContext context) {
+        int offset = 0;
+        for (int s = 0; s < steps.length; s++) {
+            offset += decodeStep(s, solution, offset, context);
+            if (s == terminalStep) {
+                return steps[s].decodeArchitecture(terminalIsConstruction ? null : context.getEncoding(s), context);
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Gets the number of variables of each decision in a solution. Unlike getNumberOfVariables of
+     * the decisions, which reflects the inputs last set on them, the counts of the decisions whose
+     * inputs depend on other decisions are those of this solution.
+     * @param solution the solution
+     * @param context an empty context of this plan, which holds the intermediate results once decoded
+     * @return the number of variables of each step, in topological order
+     */
+    public int[] variableCounts(Solution solution, DecodeContext context) {
+        int[] counts = new int[steps.length];
+        int offset = 0;
+        for (int s = 0; s < steps.length; s++) {
+            counts[s] = decodeStep(s, solution, offset, context);
+            offset += counts[s];
+        }
+        return counts;
+    }
+
+    /**
+     * Resolves the inputs of a step and decodes its encoding into the context
+     * @return the number of variables of the step
+     */
+    private int decodeStep(int s, Solution solution, int offset, DecodeContext context) {
+        Decision d = steps[s];
+        context.setInputs(s, constantInputs[s] != null ? constantInputs[s] : resolveInputs(s, context::getResult));
+
+        int[] encoding = d.extractEncoding(solution, offset, context);
+        context.setEncoding(s, encoding);
+        context.setResult(s, d.decodeResult(encoding, context));
+        return variableCounts[s] >= 0 ? variableCounts[s] : d.getNumberOfVariables(context);
+    }
+
+    /**
+     * Resolves the inputs of a step from its slots
+     * @param s the step
+     * @param resultOf gives the result of a step by index
+     * @return the inputs of the step
+     */
+    DecodeContext.Inputs resolveInputs(int s, IntFunction<List<Object>> resultOf) {
+        Decision d = steps[s];
+        DecodeContext.Inputs inputs = new DecodeContext.Inputs();
+
+        if (d instanceof DownSelecting || d instanceof Partitioning) {
+            inputs.setEntities(slot(s, 0, resultOf, inputs));
+
+        } else if (d instanceof Assigning) {
+            inputs.setLset(slot(s, 0, resultOf, inputs));
+            inputs.setRset(slot(s, 1, resultOf, inputs));
+
+        } else if (d instanceof Combining) {
+            // 1) Sub-decisions data: each item of a parent's result (or each value of the TSE
+            //    request) is its own dimension
+            List<List<Object>> subDecisionsData = new ArrayList<>();
+            for (int k = 0; k < subDecisionSlots[s]; k++) {
+                List<Object> values = slot(s, k, resultOf, inputs);
+                if (values != null) {
+                    for (Object item : values) {
+                        subDecisionsData.add(Collections.singletonList(item));
+                    }
+                }
+            }
+            inputs.setSubDecisionsData(subDecisionsData);
+            int totalItems = subDecisionsData.size();
+
+            // 2) Alternatives
+            int altSlots = slotSteps[s].length - subDecisionSlots[s];
+            if (altSlots == 0) {
+                throw new IllegalArgumentException(
+                    "Combining decision requires at least one alternative key."
+                );
+            }
+            List<List<Object>> allAlternatives = new ArrayList<>();
+            if (altSlots == 1) {
+                // One set of alternatives (e.g. "orbit"), replicated for each sub-decision item
+                // so the chromosome is as long as the total item count
+                List<Object> altValues = slot(s, subDecisionSlots[s], resultOf, inputs);
+                if (altValues == null) {
+                    altValues = new ArrayList<>();
+                }
+                for (int i = 0; i < totalItems; i++) {
+                    allAlternatives.add(altValues);
+                }
+            } else {
+                // Several alternative keys: only the ones read from the TSE request are used,
+                // one dimension each
+                for (int k = subDecisionSlots[s]; k < slotSteps[s].length; k++) {
+                    List<Object> altValues = slot(s, k, resultOf, inputs);
+                    if (slotSteps[s][k] == CONSTANT) {
+                        allAlternatives.add(altValues != null ? altValues : new ArrayList<>());
+                    }
+                }
+            }
+            inputs.setAlternatives(allAlternatives);
+        }
+        return inputs;
+    }
+
+    private List<Object> slot(int s, int k, IntFunction<List<Object>> resultOf, DecodeContext.Inputs inputs) {
+        int source = slotSteps[s][k];
+        if (source == CONSTANT) {
+            return slotValues[s][k];
+        }
+        inputs.addSourceDecision(steps[source].getDecisionName());
+        return resultOf.apply(source);
+    }
+
+    /**
+     * @return the number of steps (decisions) of the plan
+     */
+    public int size() {
+        return steps.length;
+    }
+
+    /**
+     * @param s the index of a step
+     * @return the decision of the step
+     */
+    public Decision getDecision(int s) {
+        return steps[s];
+    }
+
+    /**
+     * Gets the step of a decision
+     * @param decisionName the decision name
+     * @return the index of the step, or -1 if the graph has no such decision
+     */
+    public int indexOf(String decisionName) {
+        Integer s = stepIndex.get(decisionName);
+        return s != null ? s : -1;
+    }
+}
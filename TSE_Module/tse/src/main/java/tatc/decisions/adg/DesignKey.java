@@ -0,0 +1,59 @@
+package tatc.decisions.adg;
+
+import java.io.Serializable;
+
+/**
+ * 128-bit canonical hash of the design of a solution (see Graph.designKey), made of two
+ * independent 64-bit hashes. It is the same for all the solutions encoding the same design, and
+ * two different designs are taken as equal only if both halves collide, so designs can be told
+ * apart by their key alone without keeping their encodings.
+ *
+ * Keys are immutable and small, so they can be kept for every design of a run and saved in the
+ * checkpoints (as a solution attribute).
+ */
+public final class DesignKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long high;
+    private final long low;
+
+    /**
+     * @param high the first half of the hash
+     * @param low the second half of the hash
+     */
+    public DesignKey(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DesignKey)) {
+            return false;
+        }
+        DesignKey other = (DesignKey) o;
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (low ^ (low >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
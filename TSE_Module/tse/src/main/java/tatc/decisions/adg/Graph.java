@@ -10,6 +10,7 @@ import tatc.tradespaceiterator.ProblemProperties;
 import tatc.tradespaceiterator.TSERequestParser;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The Graph class represents the Architecture Decision Graph (ADG) constructed from the TSERequest.
@@ -25,6 +26,15 @@ public class Graph {
     private Map<String, Decision> decisions;
     private List<Decision> topoOrderedDecisions;
     private HashSet<String> leafDecisions;
+    /**
+     * Next solution id. All the decisions of the graph share it, so the fragments of a solution are
+     * stored under the same id in every decision.
+     */
+    private final AtomicInteger nextSolutionId = new AtomicInteger();
+    /**
+     * Decoding steps compiled from the decisions once the graph is built
+     */
+    private DecodePlan decodePlan;
 
     public Graph(ProblemProperties properties) {
         this.properties = properties;
@@ -32,6 +42,38 @@ public class Graph {
         this.leafDecisions = new HashSet<String>();
         this.topoOrderedDecisions = new ArrayList<>();
         buildGraphFromTSE();
+        this.decodePlan = new DecodePlan(topoOrderedDecisions, getLeafDecisions(), properties);
+    }
+
+    /**
+     * @return the decode plan compiled when the graph was built
+     */
+    public DecodePlan getDecodePlan() {
+        return decodePlan;
+    }
+
+    /**
+     * Allocates a new solution id in constant time. Safe to call from several threads.
+     * @return the new id
+     */
+    public int nextSolutionId() {
+        return nextSolutionId.getAndIncrement();
+    }
+
+    /**
+     * @return the id that the next call to nextSolutionId will return
+     */
+    public int peekNextSolutionId() {
+        return nextSolutionId.get();
+    }
+
+    /**
+     * Makes sure that ids lower than the given one are never allocated again, e.g. when a search
+     * is resumed from a checkpoint
+     * @param next the lowest id that can still be allocated
+     */
+    public void reserveSolutionIds(int next) {
+        nextSolutionId.accumulateAndGet(next, Math::max);
     }
 
     private void buildGraphFromTSE() {
@@ -466,200 +508,96 @@ public class Graph {
         }
 
 
+    /**
+     * Sets the inputs of a decision (E, Lset/Rset, sub-decisions and alternatives) from the
+     * results stored in its parent decisions, or from the TSE request. This writes into the
+     * decision, so it is only used when generating new solutions; decoding goes through decode(),
+     * which keeps the inputs in a DecodeContext instead.
+     */
     public void setInputs(Decision d) {
-        // Example: we either fetch from a parent decision's 'getResult()' 
-        // or from a direct call to problemProperties.
-    
+        DecodeContext.Inputs inputs = decodePlan.resolveInputs(decodePlan.indexOf(d.getDecisionName()),
+                step -> decodePlan.getDecision(step).getResult());
         if (d instanceof DownSelecting) {
-            DownSelecting downD = (DownSelecting) d;
-            String eSource = downD.getEntitiesSource();
-    
-            // If eSource refers to another decision's name, fetch that decision's results:
-            if (this.decisions.containsKey(eSource)) {
-                Decision sourceDecision = this.decisions.get(eSource);
-                List<Object> results = sourceDecision.getResult();
-                downD.setEntities(results);
-                this.leafDecisions.remove(eSource);
-            } else {
-                // Otherwise, retrieve from TSERequest
-                List<Object> directVals = properties.getDistinctValuesForVariable(eSource);
-                downD.setEntities(directVals);
-            }
-    
+            ((DownSelecting) d).setEntities(inputs.getEntities());
         } else if (d instanceof Assigning) {
-            Assigning assignD = (Assigning) d;
-            String lSource = assignD.getLSource();
-            String rSource = assignD.getRSource();
-    
-            // Resolve L set
-            if (this.decisions.containsKey(lSource)) {
-                List<Object> resultsL = this.decisions.get(lSource).getResult();
-                assignD.setLset(resultsL);
-                this.leafDecisions.remove(lSource);
-
-            } else {
-                List<Object> directValsL = properties.getDistinctValuesForVariable(lSource);
-                assignD.setLset(directValsL);
-            }
-    
-            // Resolve R set
-            if (this.decisions.containsKey(rSource)) {
-                List<Object> resultsR = this.decisions.get(rSource).getResult();
-                assignD.setRset(resultsR);
-                this.leafDecisions.remove(rSource);
-            } else {
-                List<Object> directValsR = properties.getDistinctValuesForVariable(rSource);
-                assignD.setRset(directValsR);
-            }
-    
+            ((Assigning) d).setLset(inputs.getLset());
+            ((Assigning) d).setRset(inputs.getRset());
         } else if (d instanceof Partitioning) {
-            Partitioning partD = (Partitioning) d;
-            String eSource = partD.getEntitiesSource();
-    
-            if (this.decisions.containsKey(eSource)) {
-                // eSource is output from a parent decision
-                Decision sourceDec = this.decisions.get(eSource);
-                List<Object> parentResult = sourceDec.getResult();
-                partD.setEntities(parentResult);
-                this.leafDecisions.remove(eSource);
-            } else {
-                // eSource is a direct variable from TSERequest
-                List<Object> directVals = properties.getDistinctValuesForVariable(eSource);
-                partD.setEntities(directVals);
-            }
-    
+            ((Partitioning) d).setEntities(inputs.getEntities());
         } else if (d instanceof Combining) {
-            Combining comb = (Combining) d;
-
-            // 1) Resolve sub-decisions data (e.g., from a Partitioning node)
-            //    The result might be a list (or list-of-lists). Let's assume we're storing them
-            //    in a single structure: subDecisionsData. Then the total count of items is the sum of sizes
-            //    if subDecisionsData has multiple "dimensions," or simply subDecisionsData.get(0).size()
-            //    if there's exactly one dimension. Adjust as needed.
-            List<String> subDecisionSources = comb.getSubDecisionsSource();
-            List<List<Object>> subDecisionsData = new ArrayList<>();  // each index i corresponds to subDecisionSources.get(i)
-        
-            int totalItems = 0;
-        
-            for (String srcName : subDecisionSources) {
-                if (this.decisions.containsKey(srcName)) {
-                    // It's a parent's decision
-                    Decision parent = this.decisions.get(srcName);
-                    List<Object> parentResult = parent.getResult();
-                    if (parentResult == null) {
-                        parentResult = new ArrayList<>();
-                    }
-                    
-                    // Instead of treating the entire parentResult as one sub-decision dimension,
-                    // treat EACH item in parentResult as its own dimension
-                    for (Object item : parentResult) {
-                        // We create a separate list for each item (if you want a single object per dimension):
-                        List<Object> singleDimension = Collections.singletonList(item);
-                        subDecisionsData.add(singleDimension);
-                        totalItems++;
-                    }
-                    
-                    this.leafDecisions.remove(srcName);
-                } else {
-                    // It's a direct variable from TSERequest
-                    List<Object> directVals = properties.getDistinctValuesForVariable(srcName);
-                    if (directVals == null) {
-                        directVals = new ArrayList<>();
-                    }
-                    
-                    for (Object val : directVals) {
-                        List<Object> singleDimension = Collections.singletonList(val);
-                        subDecisionsData.add(singleDimension);
-                        totalItems++;
-                    }
-                }
-            }
-            
-            // Store it in the Combining decision
-            comb.setSubDecisionsData(subDecisionsData);
-        
-            // 2) Resolve "alternatives" from altKeys
-            //    This can be orbit sets or other sets that apply to each sub-decision item.
-            //    If we have exactly one altKey (e.g. "orbit") but multiple sub-decision items,
-            //    replicate that same alt set for each item so the chromosome is as long as the total item count.
-            List<String> altKeys = comb.getAlternativesSource();
-        
-            // We'll build final List<List<Object>> allAlternatives to match sub-decision items
-            List<List<Object>> allAlternatives = new ArrayList<>();
-        
-            if (altKeys.isEmpty()) {
-                // no alternatives => no meaning for combining
-                // either throw error or accept an empty list
-                throw new IllegalArgumentException(
-                    "Combining decision requires at least one alternative key."
-                );
-            }
-        
-            // If you assume there's only ONE altKey (like "orbit") in this scenario:
-            if (altKeys.size() == 1) {
-                String altKey = altKeys.get(0);
-        
-                // Retrieve the single set of alt values
-                List<Object> altValues;
-                if (this.decisions.containsKey(altKey)) {
-                    // Another decision defines these alternatives
-                    Decision parent = this.decisions.get(altKey);
-                    List<Object> parentResult = parent.getResult();
-                    altValues = (parentResult != null) ? parentResult : new ArrayList<>();
-                    this.leafDecisions.remove(altKey);
-                } else {
-                    altValues = properties.getDistinctValuesForVariable(altKey);
-                    if (altValues == null) {
-                        altValues = new ArrayList<>();
-                    }
-                }
-        
-                // Now replicate altValues for each sub-decision item:
-                // totalItems is how many items we have from all subDecisions combined
-                for (int i = 0; i < totalItems; i++) {
-                    // We'll store a *copy* or the same reference, depending on your preference:
-                    // Usually, we can just store the same reference if altValues is read-only.
-                    allAlternatives.add(altValues);
-                }
+            ((Combining) d).setSubDecisionsData(inputs.getSubDecisionsData());
+            ((Combining) d).setAlternatives(inputs.getAlternatives());
+        }
+        this.leafDecisions.removeAll(inputs.getSourceDecisions());
+    }
+
+    /**
+     * Decodes a solution into architecture parameters without modifying the decisions or the
+     * graph: the inputs, encodings and results of the decisions are kept in a new DecodeContext,
+     * so solutions can be decoded by several threads at the same time (see DecodePlan).
+     * @param solution the solution
+     * @return the architecture parameters (one map per constellation)
+     */
+    public List<Map<String, Object>> decode(org.moeaframework.core.Solution solution) {
+        return decodePlan.decode(solution, new DecodeContext(decodePlan));
+    }
+
+    /**
+     * Decodes a solution using a given context (see decode(Solution))
+     * @param solution the solution
+     * @param context an empty context of this graph, which holds the intermediate results once decoded
+     * @return the architecture parameters (one map per constellation)
+     */
+    public List<Map<String, Object>> decode(org.moeaframework.core.Solution solution, DecodeContext context) {
+        return decodePlan.decode(solution, context);
+    }
+
+    /**
+     * Gets the number of variables (chromosome fragment length) of each decision of a solution,
+     * computed from the solution itself rather than from the inputs last set on the decisions
+     * (see DecodePlan.variableCounts)
+     * @param solution the solution
+     * @return the number of variables of each decision, in the order of getTopoOrderedDecisions
+     */
+    public int[] variableCounts(org.moeaframework.core.Solution solution) {
+        return decodePlan.variableCounts(solution, new DecodeContext(decodePlan));
+    }
+
+    /**
+     * Computes the 128-bit canonical hash of the design of a solution from the encodings of its
+     * decisions. It is the same for all the solutions encoding the same design (e.g. two labelings
+     * of the same partition, see Decision.canonicalHash), and much cheaper than decoding the
+     * solution and hashing the architecture (ArchitectureHash), e.g. to detect duplicate offspring.
+     * @param solution a solution whose encodings were not released (see GAnew.releaseEncodings)
+     * @return the key of the design
+     */
+    public DesignKey designKey(AdgSolution solution) {
+        FragmentBuffer fragment = new FragmentBuffer();
+        int[] scratch = new int[0];
+        long[] decisionHash = new long[2];
+        long high = 0;
+        long low = 0;
+        for (Decision d : topoOrderedDecisions) {
+            if (d instanceof ConstructionNode) {
+                continue;
             }
-            else {
-                // If you have multiple altKeys, you need a more sophisticated approach.
-                // For example, if altKeys.size() == subDecisionSources.size(), you might do:
-                //  for each subDecision, find the corresponding altKey and replicate it subDecision.size() times, etc.
-                // Or do a cartesian product. This is problem-specific.
-                // For demonstration, let's just handle each altKey in the same manner
-                // and replicate each for totalItems as well. Then you'd have altKeys.size() * totalItems dimensions.
-                // -> You might want a different approach. This is just an example fallback.
-        
-                for (String altKey : altKeys) {
-                    List<Object> altValues;
-                    if (this.decisions.containsKey(altKey)) {
-                        Decision parent = this.decisions.get(altKey);
-                        List<Object> parentResult = parent.getResult();
-                        altValues = (parentResult != null) ? parentResult : new ArrayList<>();
-                        this.leafDecisions.remove(altKey);
-                    } else {
-                        altValues = properties.getDistinctValuesForVariable(altKey);
-                        if (altValues == null) {
-                            altValues = new ArrayList<>();
-                        }
-                        allAlternatives.add(altValues);
-                    }
-        
-                    // // replicate altValues for each sub-decision item
-                    // for (int i = 0; i < totalItems; i++) {
-                    //     allAlternatives.add(altValues);
-                    // }
-                }
+            readEncoding(d, solution.getId(), fragment);
+            int needed = d.getCanonicalScratchLength(fragment.length());
+            if (scratch.length < needed) {
+                scratch = new int[needed];
             }
-        
-            // Finally, set the computed alternatives
-            comb.setAlternatives(allAlternatives);
-            
+            d.canonicalHash(fragment.array(), 0, fragment.length(), scratch, decisionHash);
+            high = Long.rotateLeft(high, 23) ^ decisionHash[0];
+            low = Long.rotateLeft(low, 31) ^ decisionHash[1];
+        }
+        return new DesignKey(high, low);
+    }
+
+    private static void readEncoding(Decision d, int id, FragmentBuffer fragment) {
+        if (!d.copyEncodingById(id, fragment)) {
+            throw new IllegalStateException("No encoding of solution " + id + " for decision " + d.getDecisionName());
         }
     }
-    
-    
 
     /**
      * Returns the decisions in topological order.
@@ -0,0 +1,157 @@
+package tatc.decisions.adg;
+
+import org.moeaframework.core.PRNG;
+import org.moeaframework.core.Variable;
+
+import java.util.Arrays;
+
+/**
+ * Integer genome of an AdgIntSolution: the values of all the genes (the integer decision variables
+ * of the decisions, in topological order) in one int array, with the lower and upper bound of each
+ * gene. The whole chromosome is a single MOEA variable, instead of one RealVariable per gene whose
+ * value has to be rounded back to an int every time it is read.
+ *
+ * Values are always kept within the bounds of their gene. The bounds are shared by the copies of a
+ * genome and must not be modified.
+ */
+public class IntGenome implements Variable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] values;
+    private final int[] lowerBounds;
+    private final int[] upperBounds;
+
+    /**
+     * Constructs a genome with every gene at its lower bound
+     * @param lowerBounds the lower bound of each gene (inclusive)
+     * @param upperBounds the upper bound of each gene (inclusive)
+     */
+    public IntGenome(int[] lowerBounds, int[] upperBounds) {
+        this(lowerBounds, lowerBounds, upperBounds);
+    }
+
+    /**
+     * Constructs a genome
+     * @param values the value of each gene, clamped to the bounds of the gene
+     * @param lowerBounds the lower bound of each gene (inclusive)
+     * @param upperBounds the upper bound of each gene (inclusive)
+     */
+    public IntGenome(int[] values, int[] lowerBounds, int[] upperBounds) {
+        if (values.length != lowerBounds.length || values.length != upperBounds.length) {
+            throw new IllegalArgumentException("Genome values and bounds must have the same length: "
+                    + values.length + ", " + lowerBounds.length + ", " + upperBounds.length);
+        }
+        this.lowerBounds = lowerBounds;
+        this.upperBounds = upperBounds;
+        this.values = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            this.values[i] = clamp(i, values[i]);
+        }
+    }
+
+    /**
+     * Copy constructor, the bounds are shared
+     */
+    private IntGenome(IntGenome original) {
+        this.values = original.values.clone();
+        this.lowerBounds = original.lowerBounds;
+        this.upperBounds = original.upperBounds;
+    }
+
+    /**
+     * @return the number of genes
+     */
+    public int size() {
+        return values.length;
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Sets the value of a gene, clamped to the bounds of the gene
+     * @param index the gene
+     * @param value the value
+     */
+    public void set(int index, int value) {
+        values[index] = clamp(index, value);
+    }
+
+    public int getLowerBound(int index) {
+        return lowerBounds[index];
+    }
+
+    public int getUpperBound(int index) {
+        return upperBounds[index];
+    }
+
+    /**
+     * Copies consecutive genes into an array
+     * @param offset the first gene
+     * @param length the number of genes
+     * @return the values of the genes
+     */
+    public int[] get(int offset, int length) {
+        return Arrays.copyOfRange(values, offset, offset + length);
+    }
+
+    /**
+     * Sets consecutive genes, each one clamped to its bounds
+     * @param offset the first gene
+     * @param genes the values
+     * @param length the number of values to set
+     */
+    public void set(int offset, int[] genes, int length) {
+        for (int i = 0; i < length; i++) {
+            values[offset + i] = clamp(offset + i, genes[i]);
+        }
+    }
+
+    /**
+     * @return a copy of the values of all the genes
+     */
+    public int[] toArray() {
+        return values.clone();
+    }
+
+    private int clamp(int index, int value) {
+        if (value > upperBounds[index]) {
+            return upperBounds[index];
+        }
+        if (value < lowerBounds[index]) {
+            return lowerBounds[index];
+        }
+        return value;
+    }
+
+    @Override
+    public IntGenome copy() {
+        return new IntGenome(this);
+    }
+
+    public void randomize() {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = PRNG.nextInt(lowerBounds[i], upperBounds[i]);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof IntGenome)) {
+            return false;
+        }
+        return Arrays.equals(values, ((IntGenome) obj).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
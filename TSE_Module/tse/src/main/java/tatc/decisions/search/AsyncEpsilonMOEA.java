@@ -0,0 +1,299 @@
+package tatc.decisions.search;
+
+import org.moeaframework.algorithm.EpsilonMOEA;
+import org.moeaframework.core.*;
+import org.moeaframework.core.comparator.DominanceComparator;
+import tatc.decisions.adg.DecisionBatchVariation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Asynchronous steady-state version of the EpsilonMOEA. Instead of evaluating one offspring per
+ * step, it keeps a pool of up to maxInFlight offspring being evaluated by the remote evaluators
+ * and inserts each of them into the population and the epsilon-box dominance archive as soon as
+ * its result arrives. Parent selection and variation always use the current population, so the
+ * search behaves like the EpsilonMOEA with a window of 1.
+ *
+ * Variation, decoding and the population/archive updates all run on the search thread; only the
+ * remote evaluation happens concurrently. With a DecisionBatchVariation, all the offspring needed
+ * to fill the pool are generated in one batch.
+ *
+ * With a DuplicateFilter, offspring encoding a design that was already submitted are regenerated
+ * (new parents, crossover and mutation) before being submitted, up to the maximum number of
+ * retries of the filter.
+ */
+public class AsyncEpsilonMOEA extends EpsilonMOEA {
+
+    private final AsynchronousProblem asynchronousProblem;
+    private final Selection selection;
+    private final Variation variation;
+    /**
+     * Maximum number of offspring evaluated at the same time
+     */
+    private final int maxInFlight;
+    /**
+     * No offspring are submitted beyond this number of function evaluations
+     */
+    private final int maxEvaluations;
+    /**
+     * Evaluations whose results have arrived and wait to be processed by the search thread
+     */
+    private final LinkedBlockingQueue<Completion> completed = new LinkedBlockingQueue<>();
+    /**
+     * Offspring being evaluated, by evaluation future
+     */
+    private final Map<CompletableFuture<Map<String, Double>>, Solution> inFlight = new LinkedHashMap<>();
+    /**
+     * Designs already submitted, or null to submit duplicate offspring
+     */
+    private DuplicateFilter duplicateFilter;
+
+    /**
+     * Creates the asynchronous EpsilonMOEA
+     * @param problem the problem, whose evaluations are submitted asynchronously
+     * @param population the population
+     * @param archive the epsilon-box dominance archive
+     * @param selection the selection operator
+     * @param variation the variation operator(s)
+     * @param initialization the initialization
+     * @param comparator the dominance comparator used for the population replacement
+     * @param maxInFlight the maximum number of offspring evaluated at the same time
+     * @param maxEvaluations the maximum number of function evaluations of the search
+     */
+    public AsyncEpsilonMOEA(AsynchronousProblem problem,
+                            Population population,
+                            EpsilonBoxDominanceArchive archive,
+                            Selection selection,
+                            Variation variation,
+                            Initialization initialization,
+                            DominanceComparator comparator,
+                            int maxInFlight,
+                            int maxEvaluations) {
+        super(problem, population, archive, selection, variation, initialization, comparator);
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The maximum number of in-flight evaluations has to be at least 1.");
+        }
+        this.asynchronousProblem = problem;
+        this.selection = selection;
+        this.variation = variation;
+        this.maxInFlight = maxInFlight;
+        this.maxEvaluations = maxEvaluations;
+    }
+
+    /**
+     * Evaluates the initial population concurrently, keeping at most maxInFlight solutions
+     * in flight
+     */
+    @Override
+    public void evaluateAll(Solution[] solutions) {
+        int next = 0;
+        while (next < solutions.length || !inFlight.isEmpty()) {
+            while (next < solutions.length && inFlight.size() < maxInFlight) {
+                if (duplicateFilter != null) {
+                    duplicateFilter.register(solutions[next]);
+                }
+                submit(solutions[next++]);
+            }
+            finish(takeCompletion());
+        }
+    }
+
+    /**
+     * Tops up the pool of in-flight offspring and then inserts every offspring whose evaluation
+     * has completed (at least one) into the population and the archive
+     */
+    @Override
+    public void iterate() {
+        if (variation instanceof DecisionBatchVariation) {
+            int batchSize = Math.min(maxInFlight - inFlight.size(), maxEvaluations - numberOfEvaluations - inFlight.size());
+            if (batchSize > 0) {
+                Solution[][] parents = new Solution[batchSize][];
+                for (int i = 0; i < batchSize; i++) {
+                    parents[i] = selectParents();
+                }
+                for (Solution child : ((DecisionBatchVariation) variation).evolveAll(parents)) {
+                    submit(novel(child));
+                }
+            }
+        } else {
+            while (inFlight.size() < maxInFlight && numberOfEvaluations + inFlight.size() < maxEvaluations) {
+                for (Solution child : createOffspring()) {
+                    submit(novel(child));
+                }
+            }
+        }
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        Completion completion = takeCompletion();
+        do {
+            finish(completion);
+            addToPopulation(completion.solution);
+            getArchive().add(completion.solution);
+        } while ((completion = completed.poll()) != null);
+    }
+
+    /**
+     * Cancels the evaluations that are still in flight
+     */
+    @Override
+    public void terminate() {
+        for (CompletableFuture<Map<String, Double>> future : new ArrayList<>(inFlight.keySet())) {
+            future.cancel(false);
+        }
+        inFlight.clear();
+        super.terminate();
+    }
+
+    /**
+     * Initializes the algorithm from the population and archive of an interrupted search instead
+     * of creating and evaluating a new initial population
+     * @param restoredPopulation the evaluated population
+     * @param restoredArchive the evaluated archive members
+     * @param restoredEvaluations the number of function evaluations already performed
+     */
+    public void resume(Iterable<Solution> restoredPopulation, Iterable<Solution> restoredArchive, int restoredEvaluations) {
+        if (isInitialized()) {
+            throw new IllegalStateException("The algorithm has already been initialized.");
+        }
+        for (Solution solution : restoredPopulation) {
+            getPopulation().add(solution);
+            if (duplicateFilter != null) {
+                duplicateFilter.register(solution);
+            }
+        }
+        for (Solution solution : restoredArchive) {
+            getArchive().add(solution);
+            if (duplicateFilter != null) {
+                duplicateFilter.register(solution);
+            }
+        }
+        numberOfEvaluations = restoredEvaluations;
+        initialized = true;
+    }
+
+    /**
+     * Sets the filter of the offspring encoding designs already submitted. It has to be set before
+     * the initial population is evaluated (or the search resumed) to know all the submitted designs.
+     * @param duplicateFilter the filter, or null to submit duplicate offspring
+     */
+    public void setDuplicateFilter(DuplicateFilter duplicateFilter) {
+        this.duplicateFilter = duplicateFilter;
+    }
+
+    public DuplicateFilter getDuplicateFilter() {
+        return duplicateFilter;
+    }
+
+    /**
+     * @return the number of offspring currently being evaluated
+     */
+    public int getNumberOfInFlightEvaluations() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return the offspring currently being evaluated
+     */
+    public List<Solution> getInFlightSolutions() {
+        return new ArrayList<>(inFlight.values());
+    }
+
+    /**
+     * Same parent selection as the EpsilonMOEA: parents from the population, one of them
+     * replaced by a random archive member once the archive holds more than one solution
+     */
+    private Solution[] createOffspring() {
+        return variation.evolve(selectParents());
+    }
+
+    /**
+     * Regenerates an offspring as long as it encodes a design already submitted, at most
+     * maxRetries times. The last offspring is submitted even if it is still a duplicate, so
+     * the search does not stall once the neighborhood of the population has been explored
+     * (its evaluation is then served by the evaluation cache).
+     */
+    private Solution novel(Solution child) {
+        if (duplicateFilter == null) {
+            return child;
+        }
+        for (int retry = 0; !duplicateFilter.offer(child); retry++) {
+            if (retry >= duplicateFilter.getMaxRetries()) {
+                duplicateFilter.recordUnresolved();
+                break;
+            }
+            if (variation instanceof DecisionBatchVariation) {
+                child = ((DecisionBatchVariation) variation).evolveAll(new Solution[][]{ selectParents() })[0];
+            } else {
+                child = createOffspring()[0];
+            }
+        }
+        return child;
+    }
+
+    private Solution[] selectParents() {
+        Population population = getPopulation();
+        EpsilonBoxDominanceArchive archive = getArchive();
+        Solution[] parents;
+        if (archive.size() <= 1) {
+            parents = selection.select(variation.getArity(), population);
+        } else {
+            parents = new Solution[variation.getArity()];
+            Solution[] fromPopulation = selection.select(variation.getArity() - 1, population);
+            System.arraycopy(fromPopulation, 0, parents, 0, fromPopulation.length);
+            parents[parents.length - 1] = archive.get(PRNG.nextInt(archive.size()));
+        }
+        PRNG.shuffle(parents);
+        return parents;
+    }
+
+    private void submit(Solution solution) {
+        CompletableFuture<Map<String, Double>> future;
+        try {
+            future = asynchronousProblem.submitEvaluation(solution);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        inFlight.put(future, solution);
+        final CompletableFuture<Map<String, Double>> submitted = future;
+        future.whenComplete((results, error) -> completed.add(new Completion(solution, submitted, results, error)));
+    }
+
+    private Completion takeCompletion() {
+        try {
+            return completed.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for evaluation results", e);
+        }
+    }
+
+    private void finish(Completion completion) {
+        inFlight.remove(completion.future);
+        asynchronousProblem.completeEvaluation(completion.solution, completion.results, completion.error);
+        numberOfEvaluations++;
+    }
+
+    /**
+     * Result of one evaluation, handed from the completion thread to the search thread
+     */
+    private static class Completion {
+        private final Solution solution;
+        private final CompletableFuture<Map<String, Double>> future;
+        private final Map<String, Double> results;
+        private final Throwable error;
+
+        private Completion(Solution solution, CompletableFuture<Map<String, Double>> future, Map<String, Double> results, Throwable error) {
+            this.solution = solution;
+            this.future = future;
+            this.results = results;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package tatc.decisions.search;
+
+import org.moeaframework.core.Problem;
+import org.moeaframework.core.Solution;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A problem whose evaluations can be split in two halves: a non-blocking submission that sends the
+ * architecture to the remote evaluators, and a completion step that writes the received objective
+ * values into the solution. Both halves are always called from the search thread, so problems can
+ * keep using non thread-safe state (decisions, encodings, counters) in them.
+ */
+public interface AsynchronousProblem extends Problem {
+
+    /**
+     * Prepares the solution for evaluation (decoding, architecture files, ...) and submits it to
+     * the evaluators without waiting for the results
+     * @param solution the solution to evaluate
+     * @return a future completed with the metric values received from the evaluators
+     */
+    CompletableFuture<Map<String, Double>> submitEvaluation(Solution solution);
+
+    /**
+     * Finishes the evaluation of a solution once its future has completed
+     * @param solution the evaluated solution
+     * @param results the metric values, or null if the evaluation failed
+     * @param error the failure cause, or null if the evaluation succeeded
+     */
+    void completeEvaluation(Solution solution, Map<String, Double> results, Throwable error);
+}
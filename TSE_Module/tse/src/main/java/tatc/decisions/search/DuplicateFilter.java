@@ -0,0 +1,176 @@
+package tatc.decisions.search;
+
+import org.moeaframework.core.Solution;
+import tatc.decisions.adg.AdgSolution;
+import tatc.decisions.adg.DesignKey;
+import tatc.decisions.adg.Graph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps the designs already submitted for evaluation, so that the search can regenerate offspring
+ * that encode one of them instead of spending an evaluation on it (see AsyncEpsilonMOEA).
+ *
+ * Designs are looked up by their key: the 128-bit canonical hash of the decision encodings of the
+ * solution (Graph.designKey), which is the same for all the encodings of the same design (e.g. two
+ * labelings of a partition). Two designs are only confused if both 64-bit halves of their keys
+ * collide, so only the keys are kept, and the memory used grows with the number of designs but
+ * not with their size. The key is stored in the designKey attribute of the solution, so it can
+ * still be read once the encodings of the solution have been released, and is saved in the
+ * checkpoints.
+ *
+ * The filter also counts the offspring offered since the last report, and how many of them were
+ * duplicates.
+ */
+public class DuplicateFilter {
+
+    /**
+     * Solution attribute holding the key of its design (a DesignKey)
+     */
+    public static final String DESIGN_KEY = "designKey";
+
+    private static final int DEFAULT_MAX_RETRIES = 10;
+
+    private final Graph graph;
+    private final int maxRetries;
+    /**
+     * Keys of the designs already submitted
+     */
+    private final Set<DesignKey> submitted = new HashSet<>();
+
+    private int offered;
+    private int duplicates;
+    private int unresolved;
+
+    /**
+     * @param graph the decision graph, which computes the design keys of the solutions
+     * @param maxRetries the maximum number of times a duplicate offspring is regenerated
+     */
+    public DuplicateFilter(Graph graph, int maxRetries) {
+        this.graph = graph;
+        this.maxRetries = Math.max(0, maxRetries);
+    }
+
+    /**
+     * @return whether duplicate offspring are regenerated, from the tatc.dedup system property (true by default)
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("tatc.dedup", "true"));
+    }
+
+    /**
+     * @return the maximum number of regenerations of a duplicate offspring, from the
+     * tatc.dedup.maxRetries system property (10 by default)
+     */
+    public static int getDefaultMaxRetries() {
+        return Integer.getInteger("tatc.dedup.maxRetries", DEFAULT_MAX_RETRIES);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Gets the key of the design of a solution, computing it from its encodings the first time
+     * @param solution the solution
+     * @return the key, or null if the solution is not an AdgSolution or its encodings were released
+     * before the key was computed (keys of other types, e.g. from older checkpoints, are computed again)
+     */
+    public DesignKey designKey(Solution solution) {
+        Object key = solution.getAttribute(DESIGN_KEY);
+        if (key instanceof DesignKey) {
+            return (DesignKey) key;
+        }
+        if (!(solution instanceof AdgSolution)) {
+            return null;
+        }
+        try {
+            DesignKey designKey = graph.designKey((AdgSolution) solution);
+            solution.setAttribute(DESIGN_KEY, designKey);
+            return designKey;
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether two solutions encode the same design, i.e. have the same key. Solutions
+     * without a key (see designKey) are compared on their genes.
+     * @param a a solution
+     * @param b another solution
+     * @return true if both solutions encode the same design
+     */
+    public boolean sameDesign(Solution a, Solution b) {
+        DesignKey keyA = designKey(a);
+        DesignKey keyB = designKey(b);
+        if (keyA == null || keyB == null) {
+            return keyA == null && keyB == null && Arrays.equals(AdgSolution.genesOf(a), AdgSolution.genesOf(b));
+        }
+        return keyA.equals(keyB);
+    }
+
+    /**
+     * Records the design of a solution unless it was already submitted
+     * @return false if the design was already submitted
+     */
+    private boolean add(Solution solution) {
+        DesignKey key = designKey(solution);
+        return key == null || submitted.add(key);
+    }
+
+    /**
+     * Records the design of a solution as submitted, without counting it as offspring (e.g. the
+     * initial population or the solutions of a resumed search)
+     * @param solution the solution
+     */
+    public void register(Solution solution) {
+        add(solution);
+    }
+
+    /**
+     * Checks whether an offspring encodes a new design, and records it as submitted if so
+     * @param offspring the offspring
+     * @return false if the design of the offspring was already submitted
+     */
+    public boolean offer(Solution offspring) {
+        offered++;
+        if (add(offspring)) {
+            return true;
+        }
+        duplicates++;
+        return false;
+    }
+
+    /**
+     * Counts a duplicate offspring that was submitted anyway because it was regenerated maxRetries
+     * times without finding a new design
+     */
+    public void recordUnresolved() {
+        unresolved++;
+    }
+
+    /**
+     * @return the number of different designs submitted
+     */
+    public int getNumberOfDesigns() {
+        return submitted.size();
+    }
+
+    /**
+     * Describes the duplicates found since the last report and resets the counts
+     * @return the report, or null if no offspring were offered since the last report
+     */
+    public String report() {
+        if (offered == 0) {
+            return null;
+        }
+        String report = String.format("Duplicate offspring: %d of %d (%.1f%%), %d submitted after %d retries",
+                duplicates, offered, 100.0 * duplicates / offered, unresolved, maxRetries);
+        offered = 0;
+        duplicates = 0;
+        unresolved = 0;
+        return report;
+    }
+}
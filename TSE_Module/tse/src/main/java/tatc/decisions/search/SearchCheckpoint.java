@@ -0,0 +1,289 @@
+package tatc.decisions.search;
+
+import org.moeaframework.core.Solution;
+import org.moeaframework.core.variable.RealVariable;
+import tatc.decisions.adg.AdgIntSolution;
+import tatc.decisions.adg.AdgSolution;
+import tatc.decisions.adg.IntGenome;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Snapshot of an evolutionary search, written periodically so that a search interrupted by a crash
+ * can be resumed (-Dtatc.resume=[checkpoint file]) instead of started over. It holds:
+ * - the population and the epsilon-box dominance archive, with their objective values, so the
+ *   resumed search does not evaluate them again,
+ * - the encodings kept by each decision (Decision.getEncodingMap), by decision name,
+ * - the next solution id and the architecture counter of the problem,
+ * - the state of the random number generator (PRNG) and the number of function evaluations.
+ *
+ * Solutions are stored as plain variable and objective arrays, because AdgSolution refers to the
+ * decision graph and the problem properties, which are rebuilt from the TSE request on resume.
+ * The offspring that were still being evaluated when the checkpoint was written are not part of
+ * it; their results are usually found in the evaluation store when they are generated again.
+ */
+public class SearchCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Checkpoint file name, relative to the output folder, used when tatc.checkpoint is not set
+     */
+    public static final String DEFAULT_FILE_NAME = "checkpoint.ser";
+
+    /**
+     * Default number of function evaluations between checkpoints, can be overridden with the
+     * tatc.checkpointInterval system property (0 disables the checkpoints)
+     */
+    public static final int DEFAULT_INTERVAL = 100;
+
+    private int numberOfEvaluations;
+    private List<SolutionState> population = new ArrayList<>();
+    private List<SolutionState> archive = new ArrayList<>();
+    private List<SolutionState> uniqueSolutions = new ArrayList<>();
+    private HashMap<String, HashMap<Integer, int[]>> encodings = new HashMap<>();
+    private HashMap<Integer, Double[]> hypervolume = new HashMap<>();
+    private int nextSolutionId;
+    private int architectureCounter;
+    private Random random;
+
+    /**
+     * Writes the checkpoint. The file is replaced atomically, so a crash while writing keeps the
+     * previous checkpoint.
+     * @param file the checkpoint file
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void save(File file) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            out.writeObject(this);
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a checkpoint
+     * @param file the checkpoint file
+     * @return the checkpoint
+     * @throws IOException if the file cannot be read or is not a checkpoint
+     */
+    public static SearchCheckpoint load(File file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return (SearchCheckpoint) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Invalid checkpoint file " + file, e);
+        }
+    }
+
+    /**
+     * Gets the checkpoint file given by the tatc.checkpoint system property, or checkpoint.ser in
+     * the output folder
+     * @return the checkpoint file
+     */
+    public static File getDefaultFile() {
+        String path = System.getProperty("tatc.checkpoint");
+        if (path == null) {
+            path = System.getProperty("tatc.output") + File.separator + DEFAULT_FILE_NAME;
+        }
+        return new File(path);
+    }
+
+    /**
+     * Gets the checkpoint to resume from, given by the tatc.resume system property
+     * @return the checkpoint file, or null to start a new search
+     */
+    public static File getResumeFile() {
+        String path = System.getProperty("tatc.resume");
+        return (path == null || path.trim().isEmpty()) ? null : new File(path.trim());
+    }
+
+    /**
+     * @return the number of function evaluations between checkpoints (tatc.checkpointInterval)
+     */
+    public static int getInterval() {
+        return Math.max(0, Integer.getInteger("tatc.checkpointInterval", DEFAULT_INTERVAL));
+    }
+
+    public int getNumberOfEvaluations() {
+        return numberOfEvaluations;
+    }
+
+    public void setNumberOfEvaluations(int numberOfEvaluations) {
+        this.numberOfEvaluations = numberOfEvaluations;
+    }
+
+    public List<SolutionState> getPopulation() {
+        return population;
+    }
+
+    public List<SolutionState> getArchive() {
+        return archive;
+    }
+
+    public List<SolutionState> getUniqueSolutions() {
+        return uniqueSolutions;
+    }
+
+    /**
+     * Gets the encodings of each decision by solution id
+     * @return the encodings by decision name
+     */
+    public HashMap<String, HashMap<Integer, int[]>> getEncodings() {
+        return encodings;
+    }
+
+    public HashMap<Integer, Double[]> getHypervolume() {
+        return hypervolume;
+    }
+
+    public void setHypervolume(Map<Integer, Double[]> hypervolume) {
+        this.hypervolume = new HashMap<>(hypervolume);
+    }
+
+    /**
+     * @return the next solution id of the decision graph (see Graph.nextSolutionId)
+     */
+    public int getNextSolutionId() {
+        return nextSolutionId;
+    }
+
+    public void setNextSolutionId(int nextSolutionId) {
+        this.nextSolutionId = nextSolutionId;
+    }
+
+    public int getArchitectureCounter() {
+        return architectureCounter;
+    }
+
+    public void setArchitectureCounter(int architectureCounter) {
+        this.architectureCounter = architectureCounter;
+    }
+
+    /**
+     * @return the random number generator of the search, or null if it could not be saved
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Variables, objectives and identifiers of one solution
+     */
+    public static class SolutionState implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double[] values;
+        private final double[] lowerBounds;
+        private final double[] upperBounds;
+        private final double[] objectives;
+        private final HashMap<String, Serializable> attributes = new HashMap<>();
+        private final int id;
+
+        /**
+         * Captures the state of a solution: the genes of an AdgSolution (RealVariables or
+         * IntGenome), or the RealVariables of any other solution
+         * @param solution the solution
+         * @param id the solution id (see AdgSolution.getId)
+         */
+        public SolutionState(Solution solution, int id) {
+            if (solution instanceof AdgSolution) {
+                AdgSolution adg = (AdgSolution) solution;
+                int numberOfGenes = adg.getNumberOfGenes();
+                this.values = new double[numberOfGenes];
+                this.lowerBounds = new double[numberOfGenes];
+                this.upperBounds = new double[numberOfGenes];
+                for (int i = 0; i < numberOfGenes; i++) {
+                    values[i] = adg.getGene(i);
+                    lowerBounds[i] = adg.getGeneLowerBound(i);
+                    upperBounds[i] = adg.getGeneUpperBound(i);
+                }
+            } else {
+                int numberOfVariables = solution.getNumberOfVariables();
+                this.values = new double[numberOfVariables];
+                this.lowerBounds = new double[numberOfVariables];
+                this.upperBounds = new double[numberOfVariables];
+                for (int i = 0; i < numberOfVariables; i++) {
+                    RealVariable variable = (RealVariable) solution.getVariable(i);
+                    values[i] = variable.getValue();
+                    lowerBounds[i] = variable.getLowerBound();
+                    upperBounds[i] = variable.getUpperBound();
+                }
+            }
+            this.objectives = solution.getObjectives().clone();
+            for (Map.Entry<String, Serializable> attribute : solution.getAttributes().entrySet()) {
+                attributes.put(attribute.getKey(), attribute.getValue());
+            }
+            this.id = id;
+        }
+
+        /**
+         * Writes the captured variables, objectives and attributes into a new solution
+         * @param solution an AdgIntSolution, or a solution with the same number of variables, with
+         *                 the same number of objectives
+         * @return the solution
+         */
+        public Solution restoreInto(Solution solution) {
+            if (solution instanceof AdgIntSolution) {
+                ((AdgIntSolution) solution).setGenome(toGenome());
+            } else {
+                for (int i = 0; i < values.length; i++) {
+                    RealVariable variable = new RealVariable(lowerBounds[i], upperBounds[i]);
+                    variable.setValue(values[i]);
+                    solution.setVariable(i, variable);
+                }
+            }
+            solution.setObjectives(objectives);
+            for (Map.Entry<String, Serializable> attribute : attributes.entrySet()) {
+                solution.setAttribute(attribute.getKey(), attribute.getValue());
+            }
+            return solution;
+        }
+
+        /**
+         * Rounds the captured variables into an integer genome (see AdgIntSolution)
+         * @return the genome
+         */
+        public IntGenome toGenome() {
+            int[] genes = new int[values.length];
+            int[] lower = new int[values.length];
+            int[] upper = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                genes[i] = (int) Math.round(values[i]);
+                lower[i] = (int) Math.round(lowerBounds[i]);
+                upper[i] = (int) Math.round(upperBounds[i]);
+            }
+            return new IntGenome(genes, lower, upper);
+        }
+
+        public int getNumberOfVariables() {
+            return values.length;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+}
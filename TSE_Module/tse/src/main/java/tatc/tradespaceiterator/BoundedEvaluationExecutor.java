@@ -0,0 +1,88 @@
+package tatc.tradespaceiterator;
+
+import tatc.architecture.ArchitecturePayload;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps a bounded window of architecture evaluations in flight. Submitting blocks only when
+ * maxInFlight evaluations are already pending, so architectures are fed to the evaluators as
+ * fast as they drain instead of one round trip at a time.
+ */
+public class BoundedEvaluationExecutor {
+
+    private final ProblemProperties properties;
+    private final int maxInFlight;
+    private final Semaphore window;
+
+    /**
+     * Constructs the executor
+     * @param properties the problem properties
+     * @param maxInFlight the maximum number of architectures being evaluated at the same time
+     */
+    public BoundedEvaluationExecutor(ProblemProperties properties, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The maximum number of in-flight evaluations has to be at least 1.");
+        }
+        this.properties = properties;
+        this.maxInFlight = maxInFlight;
+        this.window = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Gets the window size from the tatc.ff.maxInFlight system property, falling back to
+     * tatc.numThreads and then to 1 (sequential evaluation)
+     * @return the maximum number of in-flight evaluations
+     */
+    public static int getDefaultMaxInFlight() {
+        String value = System.getProperty("tatc.ff.maxInFlight", System.getProperty("tatc.numThreads", "1"));
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid maximum number of in-flight evaluations: " + value + ". Using 1.");
+            return 1;
+        }
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Submits an architecture for evaluation, waiting for a free slot in the window if needed.
+     * The callback is invoked exactly once, with the objective values or with the error, from a
+     * completion thread; it must therefore be thread-safe.
+     * @param payload the architecture that needs to be evaluated (see ArchitectureCreatorNew.toPayload)
+     * @param onComplete the callback receiving the objective values or the error
+     * @throws InterruptedException if interrupted while waiting for a free slot
+     */
+    public void submit(ArchitecturePayload payload, BiConsumer<Map<String, Double>, Throwable> onComplete) throws InterruptedException {
+        window.acquire();
+        CompletableFuture<Map<String, Double>> future;
+        try {
+            future = TradespaceSearchExecutive.evaluateArchitectureAsync(payload, properties);
+        } catch (RuntimeException e) {
+            window.release();
+            throw e;
+        }
+        future.whenComplete((results, error) -> {
+            try {
+                onComplete.accept(results, error);
+            } finally {
+                window.release();
+            }
+        });
+    }
+
+    /**
+     * Blocks until every submitted evaluation has completed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitAll() throws InterruptedException {
+        window.acquire(maxInFlight);
+        window.release(maxInFlight);
+    }
+}
@@ -0,0 +1,175 @@
+package tatc.tradespaceiterator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Size-bounded, least-recently-used cache of architecture evaluations, keyed by the canonical
+ * architecture hash (see tatc.util.ArchitectureHash). The values are the futures of the metric
+ * values returned by the evaluators, so an architecture that is requested again while its first
+ * evaluation is still in flight waits for that evaluation instead of being published twice.
+ * Failed evaluations are dropped from the cache.
+ *
+ * Each caller gets its own future of the metric values (see get and put). Cancelling it only
+ * stops that caller from waiting: the evaluation itself is cancelled, and dropped from the cache,
+ * once every caller waiting for it has cancelled before it completed.
+ */
+public class EvaluationCache {
+
+    /**
+     * Default maximum number of cached architectures, can be overridden with the tatc.cacheSize
+     * system property
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs the cache
+     * @param maxEntries the maximum number of cached architectures (0 disables the cache)
+     */
+    public EvaluationCache(int maxEntries) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > EvaluationCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Constructs a cache whose size is given by the tatc.cacheSize system property
+     */
+    public EvaluationCache() {
+        this(Integer.getInteger("tatc.cacheSize", DEFAULT_MAX_ENTRIES));
+    }
+
+    /**
+     * Looks up an architecture and updates the hit/miss counters
+     * @param architectureHash the canonical architecture hash
+     * @return a new future of the (possibly still running) evaluation for this caller, or null if
+     * the architecture is not cached
+     */
+    public synchronized CompletableFuture<Map<String, Double>> get(String architectureHash) {
+        Entry cached = entries.get(architectureHash);
+        if (cached == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return waiter(architectureHash, cached);
+    }
+
+    /**
+     * Stores the evaluation of an architecture. It is removed again if it completes exceptionally.
+     * @param architectureHash the canonical architecture hash
+     * @param evaluation the future of the metric values
+     * @param cancel cancels the evaluation, run when all its callers cancelled their futures before
+     * it completed
+     * @return a new future of the evaluation for the caller that started it
+     */
+    public CompletableFuture<Map<String, Double>> put(String architectureHash, CompletableFuture<Map<String, Double>> evaluation,
+                                                      Runnable cancel) {
+        Entry entry = new Entry(evaluation, cancel);
+        CompletableFuture<Map<String, Double>> waiter;
+        synchronized (this) {
+            if (maxEntries > 0) {
+                entries.put(architectureHash, entry);
+            }
+            waiter = waiter(architectureHash, entry);
+        }
+        evaluation.whenComplete((results, error) -> {
+            if (error != null) {
+                remove(architectureHash, entry);
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * Registers one more caller waiting for an evaluation. Must be called with the cache locked.
+     */
+    private CompletableFuture<Map<String, Double>> waiter(String architectureHash, Entry entry) {
+        entry.waiters++;
+        CompletableFuture<Map<String, Double>> waiter = new CompletableFuture<>();
+        entry.evaluation.whenComplete((results, error) -> {
+            if (error != null) {
+                waiter.completeExceptionally(error);
+            } else {
+                waiter.complete(results);
+            }
+        });
+        waiter.whenComplete((results, error) -> {
+            if (waiter.isCancelled()) {
+                release(architectureHash, entry);
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * Unregisters a caller that cancelled its future, and cancels the evaluation if it was the
+     * last one waiting for it
+     */
+    private void release(String architectureHash, Entry entry) {
+        boolean abandoned;
+        synchronized (this) {
+            entry.waiters--;
+            abandoned = entry.waiters == 0 && !entry.evaluation.isDone();
+            if (abandoned) {
+                entries.remove(architectureHash, entry);
+            }
+        }
+        if (abandoned) {
+            entry.cancel.run();
+        }
+    }
+
+    private synchronized void remove(String architectureHash, Entry entry) {
+        entries.remove(architectureHash, entry);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        double hitRate = lookups == 0 ? 0.0 : 100.0 * hits / lookups;
+        return String.format("Evaluation cache: %d hits, %d misses (%.1f%% hit rate), %d/%d entries",
+                hits, misses, hitRate, entries.size(), maxEntries);
+    }
+
+    /**
+     * Cached evaluation and the number of callers waiting for it
+     */
+    private static final class Entry {
+
+        private final CompletableFuture<Map<String, Double>> evaluation;
+        private final Runnable cancel;
+        private int waiters;
+
+        private Entry(CompletableFuture<Map<String, Double>> evaluation, Runnable cancel) {
+            this.evaluation = evaluation;
+            this.cancel = cancel;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package tatc.tradespaceiterator;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent, append-only store of architecture evaluations shared across runs. Every completed
+ * evaluation is appended as one JSON line to a log file:
+ *
+ *     {"workflow":"<fingerprint>","architecture":"<hash>","metrics":{"LifecycleCost":1.2e8,...}}
+ *
+ * The records are keyed by the canonical architecture hash plus the fingerprint of the evaluator
+ * workflow, so changing the evaluators or the metric topics never returns stale values. When the
+ * store is opened, the records of the current workflow are loaded into an in-memory index; a
+ * truncated last line (e.g. a killed run) is ignored. Appends take an exclusive file lock, so
+ * several TSE processes (e.g. bin/30runs.py) can share the same store.
+ */
+public class EvaluationStore {
+
+    /**
+     * Store file name, relative to the results folder, used when tatc.evaluationStore is not set
+     */
+    public static final String DEFAULT_FILE_NAME = "evaluationStore.jsonl";
+
+    private final File file;
+    private final String workflowFingerprint;
+    private final Map<String, Map<String, Double>> index = new ConcurrentHashMap<>();
+    private FileOutputStream output;
+
+    /**
+     * Opens (or creates) a store and loads the records of the given workflow
+     * @param file the log file, or null for a disabled store that never finds nor keeps anything
+     * @param workflowFingerprint the fingerprint of the evaluator workflow
+     * @throws IOException if the file cannot be read or opened for appending
+     */
+    public EvaluationStore(File file, String workflowFingerprint) throws IOException {
+        this.file = file;
+        this.workflowFingerprint = workflowFingerprint;
+        if (file == null) {
+            return;
+        }
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        if (file.exists()) {
+            load();
+        }
+        this.output = new FileOutputStream(file, true);
+        terminateLastRecord();
+        System.out.println("Evaluation store " + file.getAbsolutePath() + ": " + index.size() + " architectures available for this workflow");
+    }
+
+    /**
+     * Opens the store given by the tatc.evaluationStore system property. By default, the store is
+     * kept next to the per-run result folders so that all the runs of a study share it. Setting
+     * the property to "none" disables the store.
+     * @param workflowFingerprint the fingerprint of the evaluator workflow
+     * @return the evaluation store
+     */
+    public static EvaluationStore open(String workflowFingerprint) {
+        String path = System.getProperty("tatc.evaluationStore");
+        if ("none".equalsIgnoreCase(path)) {
+            return disabled(workflowFingerprint);
+        }
+        if (path == null) {
+            String root = System.getProperty("tatc.root", System.getProperty("user.dir"));
+            path = root + File.separator + "TSE_Module" + File.separator + "tse" + File.separator + "results" + File.separator + DEFAULT_FILE_NAME;
+        }
+        try {
+            return new EvaluationStore(new File(path), workflowFingerprint);
+        } catch (IOException e) {
+            System.err.println("Error opening the evaluation store " + path + ": " + e.getMessage());
+            e.printStackTrace();
+            return disabled(workflowFingerprint);
+        }
+    }
+
+    private static EvaluationStore disabled(String workflowFingerprint) {
+        try {
+            return new EvaluationStore(null, workflowFingerprint);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Never happens without a file
+        }
+    }
+
+    /**
+     * Gets the stored metric values of an architecture
+     * @param architectureHash the canonical architecture hash
+     * @return the metric values, or null if the architecture was never evaluated with this workflow
+     */
+    public Map<String, Double> get(String architectureHash) {
+        Map<String, Double> metrics = index.get(architectureHash);
+        return metrics == null ? null : new HashMap<>(metrics);
+    }
+
+    /**
+     * Appends the metric values of an architecture to the store
+     * @param architectureHash the canonical architecture hash
+     * @param metrics the metric values received from the evaluators
+     */
+    public void put(String architectureHash, Map<String, Double> metrics) {
+        if (file == null || index.containsKey(architectureHash)) {
+            return;
+        }
+        byte[] line;
+        try {
+            JSONObject record = new JSONObject();
+            record.put("workflow", workflowFingerprint);
+            record.put("architecture", architectureHash);
+            record.put("metrics", new JSONObject(metrics));
+            line = (record.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        } catch (JSONException e) {
+            // Non-finite metric values are not kept
+            System.err.println("Architecture " + architectureHash + " not added to the evaluation store: " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            if (output == null) {
+                return; // Store already closed
+            }
+            try {
+                FileChannel channel = output.getChannel();
+                // Whole records only, even with several processes appending to the same file
+                try (FileLock lock = channel.lock()) {
+                    ByteBuffer buffer = ByteBuffer.wrap(line);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                index.put(architectureHash, Collections.unmodifiableMap(new HashMap<>(metrics)));
+            } catch (IOException e) {
+                System.err.println("Error appending to the evaluation store: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * @return the number of architectures available for the current workflow
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Closes the log file
+     */
+    public synchronized void close() {
+        if (output != null) {
+            try {
+                output.getFD().sync();
+                output.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            output = null;
+        }
+    }
+
+    /**
+     * Makes sure the next record starts on a new line if the previous writer died mid-record. The
+     * last byte is checked and the newline written under the lock taken by put, so a record being
+     * appended by another process is never split.
+     */
+    private void terminateLastRecord() throws IOException {
+        FileChannel channel = output.getChannel();
+        try (FileLock lock = channel.lock();
+             RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length();
+            if (length == 0) {
+                return;
+            }
+            raf.seek(length - 1);
+            if (raf.read() != '\n') {
+                ByteBuffer newline = ByteBuffer.wrap(new byte[]{'\n'});
+                while (newline.hasRemaining()) {
+                    channel.write(newline);
+                }
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        int lineNumber = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    JSONObject record = new JSONObject(line);
+                    if (!workflowFingerprint.equals(record.getString("workflow"))) {
+                        continue;
+                    }
+                    JSONObject metricsJson = record.getJSONObject("metrics");
+                    Map<String, Double> metrics = new HashMap<>();
+                    for (String metric : metricsJson.keySet()) {
+                        metrics.put(metric, metricsJson.getDouble(metric));
+                    }
+                    index.put(record.getString("architecture"), Collections.unmodifiableMap(metrics));
+                } catch (JSONException e) {
+                    System.err.println("Skipping corrupted record " + lineNumber + " of the evaluation store " + file);
+                }
+            }
+        }
+    }
+}
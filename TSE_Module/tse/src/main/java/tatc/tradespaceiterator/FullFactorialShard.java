@@ -0,0 +1,97 @@
+package tatc.tradespaceiterator;
+
+/**
+ * Part of a full factorial design space evaluated by one TSE process. The designs of a full
+ * factorial run are numbered from 0 to the number of designs (see tatc.util.MixedRadixEnumerator),
+ * so several processes, each with their own evaluators, can split a sweep deterministically by
+ * taking disjoint ranges of design indices. The shard is given by the tatc.ff.shard system property:
+ * - "i/n": the i-th of n contiguous, balanced ranges (0 <= i < n), e.g. -Dtatc.ff.shard=2/8
+ * - "from-to": the indices from (inclusive) to to (exclusive), e.g. -Dtatc.ff.shard=0-5000
+ * Without the property, the process evaluates the whole design space. The design index is used as
+ * the archIndex of the summary, so the summaries of all the shards can be merged directly
+ * (see Python/merge_shard_summaries.py).
+ */
+public class FullFactorialShard {
+
+    private final long from;
+    private final long to;
+
+    /**
+     * Constructs the shard
+     * @param from the first design index (inclusive)
+     * @param to the last design index (exclusive)
+     */
+    public FullFactorialShard(long from, long to) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid shard range [" + from + ", " + to + ")");
+        }
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Gets the i-th of n balanced contiguous ranges of a design space. The first (total mod n)
+     * shards get one more design than the others.
+     * @param shardIndex the index of the shard
+     * @param shardCount the number of shards
+     * @param totalDesigns the number of designs of the design space
+     * @return the shard
+     */
+    public static FullFactorialShard of(int shardIndex, int shardCount, long totalDesigns) {
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Invalid shard " + shardIndex + "/" + shardCount);
+        }
+        long base = totalDesigns / shardCount;
+        long remainder = totalDesigns % shardCount;
+        long from = base * shardIndex + Math.min(shardIndex, remainder);
+        long to = from + base + (shardIndex < remainder ? 1 : 0);
+        return new FullFactorialShard(from, to);
+    }
+
+    /**
+     * Reads the shard from the tatc.ff.shard system property
+     * @param totalDesigns the number of designs of the design space
+     * @return the shard, clipped to the design space
+     */
+    public static FullFactorialShard fromProperties(long totalDesigns) {
+        String spec = System.getProperty("tatc.ff.shard");
+        if (spec == null || spec.trim().isEmpty()) {
+            return new FullFactorialShard(0, totalDesigns);
+        }
+        spec = spec.trim();
+        try {
+            if (spec.contains("/")) {
+                String[] parts = spec.split("/");
+                return of(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()), totalDesigns);
+            } else if (spec.contains("-")) {
+                String[] parts = spec.split("-");
+                long from = Math.min(Long.parseLong(parts[0].trim()), totalDesigns);
+                long to = Math.min(Long.parseLong(parts[1].trim()), totalDesigns);
+                return new FullFactorialShard(from, Math.max(from, to));
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid tatc.ff.shard value: " + spec, e);
+        }
+        throw new IllegalArgumentException("Invalid tatc.ff.shard value: " + spec + " (expected i/n or from-to)");
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    /**
+     * @return the number of designs of the shard
+     */
+    public long size() {
+        return to - from;
+    }
+
+    @Override
+    public String toString() {
+        return "designs [" + from + ", " + to + ")";
+    }
+}
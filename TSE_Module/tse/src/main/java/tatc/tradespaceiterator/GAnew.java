@@ -1,14 +1,17 @@
 package tatc.tradespaceiterator;
 import org.moeaframework.core.*;
-import org.moeaframework.core.variable.RealVariable;  // We'll use RealVariables for integer encoding
 import org.moeaframework.problem.AbstractProblem;
+import tatc.decisions.adg.AdgIntSolution;
 import tatc.decisions.adg.AdgSolution;
+import tatc.decisions.adg.IntGenome;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import java.net.URI;
@@ -19,10 +22,13 @@ import tatc.decisions.Decision;
 import tatc.decisions.Partitioning;
 import tatc.decisions.adg.AdgSolution;
 import tatc.decisions.adg.Graph;
+import tatc.decisions.search.AsynchronousProblem;
+import tatc.decisions.search.SearchCheckpoint;
 import tatc.architecture.specifications.CompoundObjective;
 import tatc.architecture.specifications.GroundNetwork;
 import tatc.tradespaceiterator.ProblemProperties;
 import tatc.architecture.ArchitectureCreatorNew;
+import tatc.architecture.ArchitecturePayload;
 import tatc.tradespaceiterator.TradespaceSearchExecutive;
 import tatc.util.Summary;
 import java.lang.InterruptedException;
@@ -32,17 +38,33 @@ import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 
-public class GAnew extends AbstractProblem {
+public class GAnew extends AbstractProblem implements AsynchronousProblem {
+
+    /**
+     * Solution attribute holding the summary index assigned when the evaluation was submitted
+     */
+    private static final String ARCH_INDEX = "archIndex";
+    /**
+     * Marker result for solutions whose objectives were set without a remote evaluation
+     */
+    private static final Map<String, Double> ALREADY_EVALUATED = Collections.unmodifiableMap(new HashMap<>());
 
     private ProblemProperties properties;
     private List<Decision> decisions;
     private int totalVariables;
     private int totalObjectives;
     private int counter;
+    /**
+     * Number of solutions sent to the callback URL
+     */
     private int solutionCounter;
     private Graph graph;
     private String callbackUrl;
-    private boolean loadSolutions = false; // or false
+    /**
+     * Summary file of a previous run whose chromosomes are used as the first solutions and whose
+     * objectives are reused (tatc.loadSolutions system property)
+     */
+    private boolean loadSolutions = false;
     private List<int[]> loadedChromosomes = new ArrayList<>();
     private List<double[]> loadedObjectives = new ArrayList<>();
     private int loadPointer = 0;
@@ -62,6 +84,13 @@ public class GAnew extends AbstractProblem {
         this.counter = 0;
         this.graph = graph;
         this.solutionCounter = 0;
+
+        String loadPath = System.getProperty("tatc.loadSolutions");
+        if (loadPath != null && !loadPath.trim().isEmpty()) {
+            this.loadedChromosomes = loadChromosomesFromCSV(loadPath.trim(), totalObjectives);
+            this.loadSolutions = true;
+            System.out.println(loadedChromosomes.size() + " solutions loaded from " + loadPath.trim());
+        }
        
         // Get callback URL from properties
         this.callbackUrl = properties.getTsrObject().optString("callbackUrl", null);
@@ -80,6 +109,30 @@ public class GAnew extends AbstractProblem {
 
     @Override
     public void evaluate(Solution solution) {
+        CompletableFuture<Map<String, Double>> future = submitEvaluation(solution);
+        Map<String, Double> objectivesResults = null;
+        Throwable error = null;
+        try {
+            objectivesResults = future.get();
+        } catch (ExecutionException e) {
+            error = e.getCause();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = e;
+        }
+        completeEvaluation(solution, objectivesResults, error);
+    }
+
+    /**
+     * Decodes the solution, writes its architecture file and sends it to the evaluators without
+     * waiting for the results. Solutions that do not need a remote evaluation (no constellations,
+     * or already evaluated in a loaded run) get their objectives right away.
+     */
+    @Override
+    public CompletableFuture<Map<String, Double>> submitEvaluation(Solution solution) {
+        // Drop an index left by an earlier submission (attributes survive deepCopy and checkpoints),
+        // so a solution failing before its own architecture is created has none
+        solution.removeAttribute(ARCH_INDEX);
         // Decode the solution into architecture parameters
         List<Map<String, Object>> archParams = decodeSolution(solution);
         ArchitectureCreatorNew creator = new ArchitectureCreatorNew(properties);
@@ -123,13 +176,7 @@ public class GAnew extends AbstractProblem {
         if (!creator.getConstellations().isEmpty()) {
             // Write architecture JSON and evaluate
              // Convert current solution into a chromosome int[]
-            int numVars = solution.getNumberOfVariables();
-            int[] chromosome = new int[numVars];
-            for (int i = 0; i < numVars; i++) {
-                chromosome[i] = (int) Math.round(((RealVariable) solution.getVariable(i)).getValue());
-            }
-
-            boolean matched = false;
+            int[] chromosome = AdgSolution.genesOf(solution);
 
             if (loadSolutions && loadedChromosomes != null && loadedObjectives != null) {
                 for (int i = 0; i < loadedChromosomes.size(); i++) {
@@ -142,7 +189,6 @@ public class GAnew extends AbstractProblem {
                             solution.setObjective(j, value);
                         }
                         System.out.println("Solution #" + (i + 1) + " already evaluated. Objectives: " + Arrays.toString(objectives));
-                        matched = true;
                         
                         // Write summary for loaded solution
                         HashMap<String, Double> objectivesResults = new HashMap<>();
@@ -154,101 +200,88 @@ public class GAnew extends AbstractProblem {
                             j++;
                         }
                         try {
-                            File architectureJsonFile = creator.toJSON(this.counter);
-                            Summary.writeSummaryFileGA(objectivesResults, solution, this.counter, decisions);
+                            creator.toPayload(this.counter);
+                            Summary.writeSummaryFileGA(objectivesResults, solution, this.counter, decisions, graph.variableCounts(solution));
                         } catch (IOException e) {
                             System.err.println("Error writing summary file: " + e.getMessage());
                             e.printStackTrace();
                         }
-                        break;
+                        return CompletableFuture.completedFuture(ALREADY_EVALUATED);
                     }
                 }
             }
 
-            if (!matched) {
-                // Evaluate normally if no match found
-                File architectureJsonFile = creator.toJSON(this.counter);
-                this.counter++;
-                try {
-                    HashMap<String, Double> objectivesResults = evaluateArchitecture(architectureJsonFile, properties);
-                    Summary.writeSummaryFileGA(objectivesResults, solution, this.counter, decisions);
-
-                    int objIndex = 0;
-                    for (Map.Entry<String, Double> obj : objectivesResults.entrySet()) {
-                        String type = properties.getObjectives().get(objIndex).getParent().getType();
-                        Double objective = type.equals("MAX") ? -obj.getValue() : obj.getValue();
-                        solution.setObjective(objIndex++, objective);
-                        if (objIndex >= solution.getNumberOfObjectives()) break;
-                    }
-
-                    if (callbackUrl != null) {
-                        sendSolution(solution, objectivesResults);
-                    }
-
-                } catch (IOException e) {
-                    System.out.println("Error reading the JSON file: " + e.getMessage());
-                    e.printStackTrace();
-                }
-            }
+            // Evaluate normally if no match found, sending the architecture from memory (arch.json is written in the background)
+            ArchitecturePayload payload = creator.toPayload(this.counter);
+            this.counter++;
+            // Index of this architecture in the summary, fixed at submission time
+            solution.setAttribute(ARCH_INDEX, this.counter);
+            return TradespaceSearchExecutive.evaluateArchitectureAsync(payload, properties);
         } else {
                 // If no constellations were created, set objectives to infinity
                 System.out.println("No constellations created.");
                 for (int i = 0; i < solution.getNumberOfObjectives(); i++) {
                     solution.setObjective(i, Double.POSITIVE_INFINITY);
                 }
+                return CompletableFuture.completedFuture(ALREADY_EVALUATED);
         }
     }
 
-    private List<Map<String, Object>> decodeSolution(Solution solution) {
-        int offset = 0;
-        Set<String> leafDecision = graph.getLeafDecisions();
-    
-        // 1) Decode ALL decisions in topological order, but do not merge
-        for (Decision d : decisions) {
-            // (a) Set inputs from parent decisions/TSERequest
-            graph.setInputs(d);
-    
-            // (b) Extract encoding & apply
-            Object encoded = d.extractEncodingFromSolution(solution, offset);
-            d.applyEncoding((int[]) encoded);
-            offset += d.getNumberOfVariables();
-
-            // (c) Decode
-            
-            if (d instanceof ConstructionNode){
-                return d.decodeArchitecture(null, solution, graph);
-            }else if(!(decisions.get(decisions.size()-1) instanceof ConstructionNode) && leafDecision.contains(d.getDecisionName())){
-                List<Map<String, Object>> partialDecoded = d.decodeArchitecture(encoded, solution, graph);
-                return partialDecoded;
+    /**
+     * Writes the summary row and the objectives of a solution once its evaluation has completed,
+     * and forwards it to the callback URL (if any)
+     */
+    @Override
+    public void completeEvaluation(Solution solution, Map<String, Double> results, Throwable error) {
+        if (results == ALREADY_EVALUATED) {
+            return;
+        }
+        HashMap<String, Double> objectivesResults = new HashMap<>();
+        if (error != null || results == null) {
+            System.out.println("Error evaluating the architecture: " + (error != null ? error.getMessage() : "no results"));
+            if (error != null) {
+                error.printStackTrace();
+            }
+            // If error, set large objective values
+            for(int i=0; i<totalObjectives; i++){
+                objectivesResults.put("obj"+i, Double.POSITIVE_INFINITY);
+            }
+        } else {
+            objectivesResults.putAll(results);
+        }
+        Integer archIndex = (Integer) solution.getAttribute(ARCH_INDEX);
+        if (archIndex == null) {
+            // Failed before an architecture was created (e.g. decoding): no summary row, but the
+            // solution still gets the penalty objectives below
+            System.out.println("No architecture was submitted for this solution, no summary row is written");
+        } else {
+            try {
+                Summary.writeSummaryFileGA(objectivesResults, solution, archIndex, decisions, graph.variableCounts(solution));
+            } catch (IOException e) {
+                System.out.println("Error reading the JSON file: " + e.getMessage());
+                e.printStackTrace();
             }
-            // (d) Store the result inside the decision for later reference
         }
 
-        return new ArrayList<>();
-    }
-    
-    
-
-    
+        int objIndex = 0;
+        for (Map.Entry<String, Double> obj : objectivesResults.entrySet()) {
+            String type = properties.getObjectives().get(objIndex).getParent().getType();
+            Double objective = type.equals("MAX") ? -obj.getValue() : obj.getValue();
+            solution.setObjective(objIndex++, objective);
+            if (objIndex >= solution.getNumberOfObjectives()) break;
+        }
 
-    
+        if (callbackUrl != null) {
+            sendSolution(solution, objectivesResults);
+        }
+    }
 
     /**
-     * Evaluate architecture by calling TradespaceSearchExecutive.
+     * Decodes a solution into architecture parameters. The decoding does not modify the decisions
+     * (see Graph.decode), so solutions can be decoded concurrently.
      */
-    private HashMap<String,Double> evaluateArchitecture(File architectureJSONFile, ProblemProperties problemProperties) {
-        HashMap<String, Double> objectives = new HashMap<>();
-        try {
-            objectives = TradespaceSearchExecutive.evaluateArchitecture(architectureJSONFile, problemProperties);
-        } catch(InterruptedException | IOException e) {
-            System.out.println("Error reading JSON file: " + e.getMessage());
-            e.printStackTrace();
-            // If error, set large objective values
-            for(int i=0; i<totalObjectives; i++){
-                objectives.put("obj"+i, Double.POSITIVE_INFINITY);
-            }
-        }
-        return objectives;
+    private List<Map<String, Object>> decodeSolution(Solution solution) {
+        return graph.decode(solution);
     }
 
     private void sendSolution(Solution solution, HashMap<String, Double> objectivesResults) {
@@ -258,24 +291,28 @@ public class GAnew extends AbstractProblem {
             
             // Add design variables with meaningful names
             JSONObject designVariables = new JSONObject();
+            int[] genes = AdgSolution.genesOf(solution);
+            // Lengths of the fragments of this solution, not of the last decoded one
+            int[] variableCounts = graph.variableCounts(solution);
             int varOffset = 0;
             
-            for (Decision d : decisions) {
+            for (int k = 0; k < decisions.size(); k++) {
+                Decision d = decisions.get(k);
                 // Skip construction nodes as they don't have direct variables
                 if (d instanceof ConstructionNode) {
                     continue;
                 }
-                
-                // Get the encoded values for this decision
-                int[] encoded = (int[]) d.extractEncodingFromSolution(solution, varOffset);
+                int numVars = variableCounts[k];
                 
                 // Get the variable names for this decision
                 List<String> varNames = d.getVariableNames();
                 
                 // Map encoded values to their corresponding names
-                for (int i = 0; i < encoded.length; i++) {
-                    String varName;
-                    RealVariable var = (RealVariable) solution.getVariable(varOffset + i);
+                int[] values = d.getVariableValues(Arrays.copyOfRange(genes, varOffset, varOffset + numVars));
+                for (int i = 0; i < values.length; i++) {
+                    // The names come from the inputs last set on the decision, which may be
+                    // shorter than the fragment of this solution
+                    String varName = i < varNames.size() ? varNames.get(i) : d.getDecisionName() + "_var" + i;
                     
                     // For assigning decisions, create a more descriptive name
                     if (d instanceof tatc.decisions.Assigning) {
@@ -285,17 +322,13 @@ public class GAnew extends AbstractProblem {
                         
                         if (i < sources.size() && i < targets.size()) {
                             varName = sources.get(i) + "-" + targets.get(i);
-                        } else {
-                            varName = varNames.get(i);
                         }
-                    } else {
-                        varName = varNames.get(i);
                     }
                     
-                    designVariables.put(varName, var.getValue());
+                    designVariables.put(varName, values[i]);
                 }
                 
-                varOffset += encoded.length;
+                varOffset += numVars;
             }
             
             payload.put("designVariables", designVariables);
@@ -376,7 +409,6 @@ public class GAnew extends AbstractProblem {
     public Solution newSolution() {
         // Check if we are loading solutions from a CSV file
         if(loadSolutions){
-            this.loadedChromosomes = loadChromosomesFromCSV("/home/ubuntu/3D-Chess-augmentation/summary_files/summary.csv", totalObjectives);
         if(loadPointer < loadedChromosomes.size()) {
             
             for (Decision d : decisions) {
@@ -386,16 +418,16 @@ public class GAnew extends AbstractProblem {
 
                 int[] chromosome = loadedChromosomes.get(loadPointer);
                 loadPointer++;
-
-                // Create solution with the appropriate number of variables
-                AdgSolution solution = new AdgSolution(graph, properties, totalObjectives, chromosome.length);
-                for (int i = 0; i < chromosome.length; i++) {
-                    RealVariable var = new RealVariable(0.0, 100.0);
-                    var.setValue(chromosome[i]);
-                    solution.setVariable(i, var);
-                }
-                d.addEncodingById(solutionCounter, chromosome);
-                solution.setId(solutionCounter++);
+                int id = graph.nextSolutionId();
+
+                // Create solution with the appropriate number of genes
+                int[] lowerBounds = new int[chromosome.length];
+                int[] upperBounds = new int[chromosome.length];
+                Arrays.fill(upperBounds, 100);
+                AdgIntSolution solution = new AdgIntSolution(graph, properties, totalObjectives,
+                        new IntGenome(chromosome, lowerBounds, upperBounds));
+                d.addEncodingById(id, chromosome);
+                solution.setId(id);
                 return solution;
             }
         }
@@ -418,7 +450,10 @@ public class GAnew extends AbstractProblem {
             totalVars += enc.length;
         }
     
-        AdgSolution solution = new AdgSolution(graph, properties, totalObjectives, totalVars);    
+        int[] genes = new int[totalVars];
+        int[] lowerBounds = new int[totalVars];
+        int[] upperBounds = new int[totalVars];
+        int id = graph.nextSolutionId();
         int offset = 0;
         for (int i = 0; i < decisions.size(); i++) {
             Decision d = decisions.get(i);
@@ -434,33 +469,98 @@ public class GAnew extends AbstractProblem {
                     maxOption = 1;
                 }
         
-                double lowerBound = 0.0;
-                double upperBound = maxOption - 1;
-        
-                double clampedValue = arr[j];
-                if (clampedValue < lowerBound) {
-                    clampedValue = lowerBound;
-                } else if (clampedValue > upperBound) {
-                    clampedValue = upperBound;
-                }
-        
-                RealVariable var = new RealVariable(lowerBound, upperBound);
-                var.setValue(clampedValue);
-                solution.setVariable(offset + j, var);
+                // The genome clamps the values to [0, maxOption-1]
+                genes[offset + j] = arr[j];
+                lowerBounds[offset + j] = 0;
+                upperBounds[offset + j] = maxOption - 1;
             }
         
-            d.addEncodingById(solutionCounter, arr);
+            d.addEncodingById(id, arr);
             offset += arr.length;
         }
         
-        solution.setId(solutionCounter);
-        solutionCounter++;
+        AdgIntSolution solution = new AdgIntSolution(graph, properties, totalObjectives,
+                new IntGenome(genes, lowerBounds, upperBounds));
+        solution.setId(id);
         return solution;
     }
     
     
 
 
+    /**
+     * Releases the decision encodings of the solutions that are not alive anymore. Only the
+     * encodings of the given solutions (population, archive, offspring being evaluated) are kept,
+     * since they are the only ones the variation operators can read again.
+     * @param aliveSolutions the groups of solutions still alive
+     * @return the number of released encodings
+     */
+    @SafeVarargs
+    public final int releaseEncodings(Iterable<Solution>... aliveSolutions) {
+        Set<Integer> aliveIds = new HashSet<>();
+        for (Iterable<Solution> group : aliveSolutions) {
+            for (Solution solution : group) {
+                if (solution instanceof AdgSolution) {
+                    aliveIds.add(((AdgSolution) solution).getId());
+                }
+            }
+        }
+        int released = 0;
+        for (Decision d : decisions) {
+            released += d.releaseEncodings(aliveIds);
+        }
+        return released;
+    }
+
+    /**
+     * Saves the state of the problem (decision encodings, solution ids and counters) into a checkpoint
+     * @param checkpoint the checkpoint being written
+     */
+    public void saveState(SearchCheckpoint checkpoint) {
+        for (Decision d : decisions) {
+            checkpoint.getEncodings().put(d.getDecisionName(), new HashMap<>(d.getEncodingMap()));
+        }
+        checkpoint.setNextSolutionId(graph.peekNextSolutionId());
+        checkpoint.setArchitectureCounter(counter);
+    }
+
+    /**
+     * Restores the state of the problem (decision encodings and counters) from a checkpoint
+     * @param checkpoint the checkpoint of the interrupted search
+     */
+    public void restoreState(SearchCheckpoint checkpoint) {
+        for (Decision d : decisions) {
+            Map<Integer, int[]> encodings = checkpoint.getEncodings().get(d.getDecisionName());
+            if (encodings != null) {
+                d.restoreEncodings(encodings);
+            }
+        }
+        graph.reserveSolutionIds(checkpoint.getNextSolutionId());
+        this.counter = checkpoint.getArchitectureCounter();
+    }
+
+    /**
+     * Captures a solution for a checkpoint
+     * @param solution the solution
+     * @return the state of the solution
+     */
+    public SearchCheckpoint.SolutionState captureSolution(Solution solution) {
+        int id = (solution instanceof AdgSolution) ? ((AdgSolution) solution).getId() : -1;
+        return new SearchCheckpoint.SolutionState(solution, id);
+    }
+
+    /**
+     * Rebuilds a solution of a checkpoint, with its objective values
+     * @param state the state of the solution
+     * @return the solution
+     */
+    public Solution restoreSolution(SearchCheckpoint.SolutionState state) {
+        AdgIntSolution solution = new AdgIntSolution(graph, properties, totalObjectives, state.toGenome());
+        state.restoreInto(solution);
+        solution.setId(state.getId());
+        return solution;
+    }
+
     @Override
     public int getNumberOfObjectives() {
         return totalObjectives;
@@ -471,6 +571,10 @@ public class GAnew extends AbstractProblem {
         return 0;
     }
 
+    public Graph getGraph() {
+        return graph;
+    }
+
     public ProblemProperties getProperties() {
         return properties;
     }
@@ -0,0 +1,207 @@
+package tatc.tradespaceiterator;
+
+import org.json.JSONObject;
+import tatc.util.ArchitectureHash;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Size-bounded, least-recently-used cache of single metric values. Unlike the EvaluationCache,
+ * which is keyed by the whole architecture, the key of a metric only covers the architecture
+ * fields that the evaluator function computing it reads. For instance, a coverage metric only
+ * depends on the orbits, the instrument fields of view and the ground network, so two
+ * architectures that only differ in their payload assignment share the coverage value and only
+ * the metrics whose inputs changed need to be sent to the evaluators.
+ *
+ * The inputs of a function are the dot-separated architecture paths (see
+ * ArchitectureHash.ofFields) given by the tatc.metricInputs.[Function] system property, e.g.
+ * -Dtatc.metricInputs.CostModel=spaceSegment,mission, or else a default set chosen from the
+ * function name. Functions that are not recognized read the whole architecture. The inputs of
+ * the functions a function depends on (implementedFunctions.[Function].dependencies) are added
+ * to its own.
+ */
+public class MetricCache {
+
+    /**
+     * Default maximum number of cached metric values, can be overridden with the
+     * tatc.metricCacheSize system property
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 50000;
+
+    /**
+     * Input path standing for the whole architecture
+     */
+    public static final String WHOLE_ARCHITECTURE = "*";
+
+    private static final List<String> GEOMETRY_INPUTS = Collections.unmodifiableList(Arrays.asList(
+            "spaceSegment.orbit",
+            "spaceSegment.satellites.orbit",
+            "spaceSegment.satellites.payload.fieldOfView",
+            "spaceSegment.satellites.payload.orientation",
+            "groundSegment",
+            "mission"));
+
+    private static final List<String> BILL_OF_MATERIALS_INPUTS = Collections.unmodifiableList(Arrays.asList(
+            "spaceSegment",
+            "mission"));
+
+    private static final List<String> PAYLOAD_INPUTS = Collections.unmodifiableList(Arrays.asList(
+            "spaceSegment.orbit",
+            "spaceSegment.satellites.orbit",
+            "spaceSegment.satellites.payload",
+            "groundSegment",
+            "mission"));
+
+    private final int maxEntries;
+    private final Map<String, JSONObject> evaluators;
+    private final Map<String, List<String>> inputs = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Double> entries;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructs the cache
+     * @param evaluators the evaluators of the workflow and their implemented functions
+     * @param maxEntries the maximum number of cached metric values (0 disables the cache)
+     */
+    public MetricCache(Map<String, JSONObject> evaluators, int maxEntries) {
+        this.evaluators = evaluators;
+        this.maxEntries = Math.max(0, maxEntries);
+        this.entries = new LinkedHashMap<String, Double>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+                return size() > MetricCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Constructs a cache whose size is given by the tatc.metricCacheSize system property
+     * @param evaluators the evaluators of the workflow and their implemented functions
+     */
+    public MetricCache(Map<String, JSONObject> evaluators) {
+        this(evaluators, Integer.getInteger("tatc.metricCacheSize", DEFAULT_MAX_ENTRIES));
+    }
+
+    /**
+     * Computes the cache key of a metric for an architecture
+     * @param metric the metric name
+     * @param evaluatorName the evaluator computing the metric
+     * @param functionName the evaluator function computing the metric
+     * @param architecture the architecture JSON
+     * @return the key, built from the metric, the function and the hash of its input fields
+     */
+    public String keyFor(String metric, String evaluatorName, String functionName, JSONObject architecture) {
+        List<String> paths = getInputs(evaluatorName, functionName);
+        String inputsHash = paths.contains(WHOLE_ARCHITECTURE)
+                ? ArchitectureHash.of(architecture)
+                : ArchitectureHash.ofFields(architecture, paths);
+        return metric + "/" + evaluatorName + "/" + functionName + "/" + inputsHash;
+    }
+
+    /**
+     * Gets the architecture paths read by an evaluator function, including the ones of its dependencies
+     * @param evaluatorName the evaluator
+     * @param functionName the function
+     * @return the input paths
+     */
+    public List<String> getInputs(String evaluatorName, String functionName) {
+        return inputs.computeIfAbsent(evaluatorName + "/" + functionName, key -> {
+            Set<String> paths = new LinkedHashSet<>(inputsOf(functionName));
+            JSONObject dependencies = null;
+            JSONObject functions = evaluators.get(evaluatorName);
+            if (functions != null && functions.optJSONObject(functionName) != null) {
+                dependencies = functions.getJSONObject(functionName).optJSONObject("dependencies");
+            }
+            if (dependencies != null) {
+                for (String dependency : dependencies.keySet()) {
+                    paths.addAll(inputsOf(dependency));
+                }
+            }
+            if (paths.contains(WHOLE_ARCHITECTURE)) {
+                return Collections.singletonList(WHOLE_ARCHITECTURE);
+            }
+            return Collections.unmodifiableList(new ArrayList<>(paths));
+        });
+    }
+
+    /**
+     * Looks up a metric value and updates the hit/miss counters
+     * @param key the key given by keyFor
+     * @return the metric value, or null if it is not cached
+     */
+    public synchronized Double get(String key) {
+        Double value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Stores a metric value
+     * @param key the key given by keyFor
+     * @param value the metric value received from the evaluator
+     */
+    public synchronized void put(String key, double value) {
+        if (maxEntries > 0) {
+            entries.put(key, value);
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        double hitRate = lookups == 0 ? 0.0 : 100.0 * hits / lookups;
+        return String.format("Metric cache: %d hits, %d misses (%.1f%% hit rate), %d/%d entries",
+                hits, misses, hitRate, entries.size(), maxEntries);
+    }
+
+    /**
+     * Gets the architecture paths read by a single function, without its dependencies
+     */
+    private static List<String> inputsOf(String functionName) {
+        String property = System.getProperty("tatc.metricInputs." + functionName);
+        if (property != null) {
+            List<String> paths = new ArrayList<>();
+            for (String path : property.split(",")) {
+                if (!path.trim().isEmpty()) {
+                    paths.add(path.trim());
+                }
+            }
+            return paths;
+        }
+        String name = functionName.toLowerCase(Locale.ROOT);
+        if (name.contains("coverage") || name.contains("revisit") || name.contains("access")) {
+            return GEOMETRY_INPUTS;
+        } else if (name.contains("cost")) {
+            return BILL_OF_MATERIALS_INPUTS;
+        } else if (name.contains("science")) {
+            return PAYLOAD_INPUTS;
+        }
+        return Collections.singletonList(WHOLE_ARCHITECTURE);
+    }
+}
@@ -8,15 +8,15 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import tatc.tradespaceiterator.TSERequestParser;
+import tatc.util.ArchitectureHash;
+import tatc.util.MixedRadixEnumerator;
 /**
  * Class that contains the properties of the constellation design problem.
  */
@@ -40,6 +40,22 @@ public class ProblemProperties {
     private Map<String, JSONObject> evaluators;
     Map<String, String> metricTopics;
     private JSONObject tsrJson;
+    /**
+     * Values of every key of the TSE request, indexed once
+     */
+    private final TSERequestIndex tsrIndex;
+    /**
+     * Cache of the architectures already evaluated during this search
+     */
+    private final EvaluationCache evaluationCache;
+    /**
+     * Cache of the single metric values, keyed by the inputs of the evaluator functions
+     */
+    private final MetricCache metricCache;
+    /**
+     * Persistent store of the evaluations of previous runs, opened on first use
+     */
+    private EvaluationStore evaluationStore;
 
     /**
      * Constructs the problem properties
@@ -51,9 +67,12 @@ public class ProblemProperties {
         objectives = this.tradespaceSearch.processObjectives();
         instance = this;
         this.tsrJson = tsrJson;
+        this.tsrIndex = new TSERequestIndex(tsrJson);
         TSERequestParser parser = new TSERequestParser();
         evaluators = parser.getWorkflowFromTse(tsrJson);
         metricTopics = parser.getMetricRequestsTopics(tsrJson);
+        evaluationCache = new EvaluationCache();
+        metricCache = new MetricCache(evaluators);
     }
 
     /**
@@ -75,6 +94,38 @@ public class ProblemProperties {
     public JSONObject getTsrObject(){
         return tsrJson;
     }
+    public TSERequestIndex getTsrIndex() {
+        return tsrIndex;
+    }
+    public EvaluationCache getEvaluationCache() {
+        return evaluationCache;
+    }
+    public MetricCache getMetricCache() {
+        return metricCache;
+    }
+
+    /**
+     * Gets the persistent evaluation store for the evaluator workflow of this request
+     * @return the evaluation store
+     */
+    public synchronized EvaluationStore getEvaluationStore() {
+        if (evaluationStore == null) {
+            evaluationStore = EvaluationStore.open(getWorkflowFingerprint());
+        }
+        return evaluationStore;
+    }
+
+    /**
+     * Computes a fingerprint of the evaluator workflow (evaluators and metric topics). Evaluations
+     * obtained with a different workflow are never reused.
+     * @return the hash of the canonical workflow description
+     */
+    public String getWorkflowFingerprint() {
+        JSONObject workflow = new JSONObject();
+        workflow.put("metricTopics", new JSONObject(metricTopics));
+        workflow.put("evaluators", new JSONObject(evaluators));
+        return ArchitectureHash.sha256(ArchitectureHash.canonicalize(workflow));
+    }
     public TradespaceSearch getTradespaceSearch() {
         return tradespaceSearch;
     }
@@ -120,45 +171,14 @@ public class ProblemProperties {
 //     }
 //     return variableValues;
 // }
+/**
+ * Gets the distinct values of a variable of the TSE request, from the index built when the
+ * properties were constructed
+ * @param variable the variable name (any key of the request)
+ * @return the read-only list of distinct values, empty if the variable is not in the request
+ */
 public List<Object> getDistinctValuesForVariable(String variable) {
-    List<Object> vals = findValuesForVariable(variable, tsrJson);
-    if (vals == null || vals.isEmpty()) {
-        return new ArrayList<>();
-    } else {
-        Set<Object> unique = new LinkedHashSet<>(vals);
-        return new ArrayList<>(unique);
-    }
-}
-
-private List<Object> findValuesForVariable(String variable, Object element) {
-    List<Object> values = new ArrayList<>();
-    if (element instanceof JSONObject) {
-        JSONObject obj = (JSONObject) element;
-        for (String key : obj.keySet()) {
-            if (!key.equals("decisionVariables")){
-                Object value = obj.get(key);
-                if (key.equals(variable)) {
-                    if (value instanceof JSONArray) {
-                        JSONArray array = (JSONArray) value;
-                        for (int i = 0; i < array.length(); i++) {
-                            values.add(array.get(i));
-                        }
-                    } else {
-                        values.add(value);
-                    }
-                } else {
-                    // Recursively search in the value
-                    values.addAll(findValuesForVariable(variable, value));
-                }
-            }
-        }
-    } else if (element instanceof JSONArray) {
-        JSONArray array = (JSONArray) element;
-        for (int i = 0; i < array.length(); i++) {
-            values.addAll(findValuesForVariable(variable, array.get(i)));
-        }
-    }
-    return values;
+    return tsrIndex.getDistinctValues(variable);
 }
 
 public Map<String, String> getDecisionVariables() {
@@ -219,15 +239,10 @@ public Map<String, List<Object>> getDecisionVariableValues(Map<String, String> d
             List<List<Object>> subVariablesValues = new ArrayList<>();
             for (int i = 0; i < subDecisions.length(); i++) {
                 String subVar = subDecisions.getString(i);
-                List<Object> subVarValues = findValuesForVariable(subVar, tsrJson);
+                List<Object> subVarValues = tsrIndex.getDistinctValues(subVar);
 
-                if (subVarValues == null || subVarValues.isEmpty()) {
+                if (subVarValues.isEmpty()) {
                     System.err.println("Warning: No values found for sub-variable " + subVar + " in combining decision " + variable);
-                    subVarValues = Collections.emptyList();
-                } else {
-                    // Remove duplicates
-                    Set<Object> uniqueValues = new LinkedHashSet<>(subVarValues);
-                    subVarValues = new ArrayList<>(uniqueValues);
                 }
                 subVariablesValues.add(subVarValues);
             }
@@ -237,27 +252,23 @@ public Map<String, List<Object>> getDecisionVariableValues(Map<String, String> d
 
             // Convert cartesian product (List<List<Object>>) to List<Object> so it matches return type
             // Each element in final list is a tuple (List<Object>) representing one combination
-            List<Object> combinedList = new ArrayList<>(cartesianProduct);
+            List<Object> combinedList = Collections.unmodifiableList(cartesianProduct);
             variableValues.put(variable, combinedList);
 
         } else if (type.equalsIgnoreCase("Assigning")) {
             // For Assigning (and other patterns), we may need to consider parents.
             // In this simplified version, we assume we just find values for this variable as before.
             // If the pattern depends on parent's results, you'd fetch parent's variables first.
-            // For now, let's just call findValuesForVariable directly on the variable name.
+            // For now, let's just look up the values of the variable name in the request index.
             
             // NOTE: The actual logic might differ based on your pattern definition.
             // If "Assigning" needs parent's architectures or combined sets, implement that logic.
             
             // Just find direct values (if any). If no direct values are defined (like for "payload"),
             // you might either skip or handle parent's results. Here we just do a direct attempt:
-            List<Object> values = findValuesForVariable(variable, tsrJson);
-            if (values == null || values.isEmpty()) {
+            List<Object> values = tsrIndex.getDistinctValues(variable);
+            if (values.isEmpty()) {
                 System.err.println("Warning: No values found for variable " + variable + " of type Assigning");
-                values = Collections.emptyList();
-            } else {
-                Set<Object> uniqueValues = new LinkedHashSet<>(values);
-                values = new ArrayList<>(uniqueValues);
             }
             variableValues.put(variable, values);
 
@@ -265,11 +276,9 @@ public Map<String, List<Object>> getDecisionVariableValues(Map<String, String> d
             // For other patterns (like down-selecting, partitioning, permuting),
             // the logic would be similar. Find the relevant variables or elements
             // from tsrJson and form their values. For simplicity, do the same as original:
-            List<Object> values = findValuesForVariable(variable, tsrJson);
-            if (values != null && !values.isEmpty()) {
-                // Remove duplicates while preserving order
-                Set<Object> uniqueValues = new LinkedHashSet<>(values);
-                variableValues.put(variable, new ArrayList<>(uniqueValues));
+            List<Object> values = tsrIndex.getDistinctValues(variable);
+            if (!values.isEmpty()) {
+                variableValues.put(variable, values);
             } else {
                 System.err.println("Warning: No values found for variable " + variable);
             }
@@ -285,41 +294,10 @@ public Map<String, List<Object>> getDecisionVariableValues(Map<String, String> d
  * cartesianProduct = [[A,1],[A,2],[B,1],[B,2]].
  */
 private List<List<Object>> cartesianProduct(List<List<Object>> lists) {
-    List<List<Object>> result = new ArrayList<>();
-    if (lists.isEmpty()) {
-        // No dimensions
-        result.add(new ArrayList<>());
-        return result;
-    }
-    // Start with the first list
-    result.addAll(wrapEachAsList(lists.get(0)));
-
-    // Iteratively combine with the next lists
-    for (int i = 1; i < lists.size(); i++) {
-        List<List<Object>> newResult = new ArrayList<>();
-        for (List<Object> prefix : result) {
-            for (Object elem : lists.get(i)) {
-                List<Object> combo = new ArrayList<>(prefix);
-                combo.add(elem);
-                newResult.add(combo);
-            }
-        }
-        result = newResult;
-    }
-    return result;
+    // Read-only view whose tuples are built on access, so large products are not held in memory
+    return MixedRadixEnumerator.cartesianProduct(lists).asList();
 }
 
-private List<List<Object>> wrapEachAsList(List<Object> singleDimension) {
-    List<List<Object>> wrapped = new ArrayList<>();
-    for (Object o : singleDimension) {
-        List<Object> l = new ArrayList<>();
-        l.add(o);
-        wrapped.add(l);
-    }
-    return wrapped;
-}
-
-
     /**
      * Returns the instance of the problem
      *
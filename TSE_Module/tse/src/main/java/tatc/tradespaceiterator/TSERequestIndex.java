@@ -0,0 +1,110 @@
+package tatc.tradespaceiterator;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the values of every key of a TSE request, built in one pass over the JSON tree so the
+ * values of a variable (e.g. "orbit", "payload", "altitude") can be looked up without scanning the
+ * request again. The values of a key are collected from anywhere in the tree, in document order:
+ * - if the value of the key is an array, each element is one value, otherwise the value itself,
+ * - the "decisionVariables" section is not indexed (it describes the decisions, not their values),
+ * - occurrences of a key nested inside a value of the same key are not collected again.
+ * The request must not be modified once indexed.
+ */
+public class TSERequestIndex {
+
+    private static final String DECISION_VARIABLES = "decisionVariables";
+
+    private final Map<String, List<Object>> values;
+    private final Map<String, List<Object>> distinctValues;
+
+    /**
+     * Builds the index of a TSE request
+     * @param tsrJson the TSE request
+     */
+    public TSERequestIndex(JSONObject tsrJson) {
+        Map<String, List<Object>> collected = new HashMap<>();
+        visit(tsrJson, new ArrayDeque<>(), collected);
+
+        Map<String, List<Object>> all = new HashMap<>(collected.size() * 2);
+        Map<String, List<Object>> distinct = new HashMap<>(collected.size() * 2);
+        for (Map.Entry<String, List<Object>> entry : collected.entrySet()) {
+            all.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+            distinct.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(entry.getValue()))));
+        }
+        this.values = all;
+        this.distinctValues = distinct;
+    }
+
+    /**
+     * @param element the JSON element being visited
+     * @param openKeys the keys whose value contains the element
+     * @param collected the values collected by key
+     */
+    private static void visit(Object element, Deque<String> openKeys, Map<String, List<Object>> collected) {
+        if (element instanceof JSONObject) {
+            JSONObject obj = (JSONObject) element;
+            for (String key : obj.keySet()) {
+                if (key.equals(DECISION_VARIABLES)) {
+                    continue;
+                }
+                Object value = obj.get(key);
+                if (!openKeys.contains(key)) {
+                    List<Object> keyValues = collected.computeIfAbsent(key, k -> new ArrayList<>());
+                    if (value instanceof JSONArray) {
+                        JSONArray array = (JSONArray) value;
+                        for (int i = 0; i < array.length(); i++) {
+                            keyValues.add(array.get(i));
+                        }
+                    } else {
+                        keyValues.add(value);
+                    }
+                }
+                openKeys.push(key);
+                visit(value, openKeys, collected);
+                openKeys.pop();
+            }
+        } else if (element instanceof JSONArray) {
+            JSONArray array = (JSONArray) element;
+            for (int i = 0; i < array.length(); i++) {
+                visit(array.get(i), openKeys, collected);
+            }
+        }
+    }
+
+    /**
+     * Gets all the values of a key, duplicates included
+     * @param key the key (variable name)
+     * @return the read-only list of values, empty if the key is not in the request
+     */
+    public List<Object> getValues(String key) {
+        return values.getOrDefault(key, Collections.emptyList());
+    }
+
+    /**
+     * Gets the distinct values of a key, in order of first appearance
+     * @param key the key (variable name)
+     * @return the read-only list of values, empty if the key is not in the request
+     */
+    public List<Object> getDistinctValues(String key) {
+        return distinctValues.getOrDefault(key, Collections.emptyList());
+    }
+
+    /**
+     * @param key the key (variable name)
+     * @return true if the key appears in the request (outside of the decision variables)
+     */
+    public boolean contains(String key) {
+        return values.containsKey(key);
+    }
+}
@@ -2,14 +2,18 @@ package tatc.tradespaceiterator;
 import tatc.PythonServerManager;
 import tatc.ResultIO;
 import tatc.TSE;
-import tatc.TSEPublisher;
-import tatc.TSESubscriber;
+import tatc.TSEEvaluationClient;
 import tatc.TSEWorkflowGenerator;
+import tatc.architecture.ArchitecturePackStore;
+import tatc.architecture.ArchitecturePayload;
 import tatc.architecture.specifications.Architecture;
 import tatc.architecture.specifications.CompoundObjective;
 import tatc.architecture.specifications.Objective;
 import tatc.architecture.specifications.TradespaceSearch;
+import tatc.util.ArchitectureHash;
 import tatc.util.JSONIO;
+import tatc.util.ResultsSink;
+import tatc.util.Summary;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -20,8 +24,11 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import tatc.TSESubscriber;
 import tatc.TSESubscriber;
 import tatc.tradespaceiterator.TSERequestParser;
@@ -36,11 +43,15 @@ import com.google.gson.JsonObject;
 import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.moeaframework.core.Solution;
 /**
  * TradespaceSearchExecutive class which reads TradespaceSearchRequest.json, creates the problem properties,
@@ -131,18 +142,26 @@ public class TradespaceSearchExecutive {
             TradespaceSearch.class);
     
             ProblemProperties searchProperties = this.createProblemProperties(tsr,tseRequest);
+            // Objective directions recorded in the binary summary (summary.tsr)
+            Summary.setObjectives(searchProperties.getObjectives());
 
             TradespaceSearchStrategy problem = this.createTradespaceSearchtrategy(tsr, searchProperties);
-            String brokerUrl = "tcp://localhost:1883"; 
-            String clientId = "TSE_Client";
-            int qos = 1;
-        
-            // Initialize Publisher and Subscriber
-            TSEPublisher publisher = new TSEPublisher(brokerUrl, clientId + "_Publisher");
-            TSESubscriber subscriber = new TSESubscriber(brokerUrl, clientId + "_Subscriber");
-            
-
-            problem.start();
+            // One evaluation client (single connection and result subscription) for the whole search
+            TSEEvaluationClient.open();
+            try {
+                problem.start();
+            } finally {
+                TSEEvaluationClient.closeShared();
+                // Results still queued (summary rows, label deltas) are written to disk
+                ResultsSink.getInstance().sync();
+                // Architecture files still being written go into the store before it is closed
+                ArchitecturePayload.awaitFileWrites();
+                ArchitecturePackStore.closeAll();
+                // Synced and closed even if the search failed, the evaluations already made are kept
+                searchProperties.getEvaluationStore().close();
+            }
+            System.out.println(searchProperties.getEvaluationCache());
+            System.out.println(searchProperties.getMetricCache());
 
             //Delete cache directory after tat-c run
             String cacheDirectory = System.getProperty("tatc.output")+ File.separator + "cache";
@@ -152,6 +171,9 @@ public class TradespaceSearchExecutive {
         } catch (IOException e) {
             System.out.println("Error reading the JSON file: " + e.getMessage());
             e.printStackTrace();
+        } catch (MqttException e) {
+            System.out.println("Error connecting to the MQTT broker: " + e.getMessage());
+            e.printStackTrace();
         }
 
 
@@ -206,96 +228,187 @@ public class TradespaceSearchExecutive {
     // }
 
     /**
-     * Method that evaluates an arch.json file using the architecture evaluator (arch_eval.py) located in
-     * the demo folder. In this method we are calling python from java.
-     * @param architectureJSONFile the architecture file that needs to be evaluated
+     * Default deadline (in seconds) for receiving all the metrics of an architecture. It can be
+     * overridden with the tatc.evaluationTimeout system property.
+     */
+    public static final long DEFAULT_EVALUATION_TIMEOUT = 6000;
+
+    /**
+     * Method that evaluates an arch.json file by publishing one request per metric to the evaluators
+     * and blocking until all the results are back.
+     * @param architectureJsonFile the architecture file that needs to be evaluated
+     * @param properties the problem properties
+     * @return the objective values of the architecture
      */
     public static HashMap<String, Double> evaluateArchitecture(File architectureJsonFile, ProblemProperties properties) throws IOException, InterruptedException {
+        CompletableFuture<Map<String, Double>> future = evaluateArchitectureAsync(architectureJsonFile, properties);
+        try {
+            return new HashMap<>(future.get());
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            throw e;
+        } catch (CancellationException e) {
+            throw new IOException("Evaluation of " + architectureJsonFile + " was cancelled", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof TimeoutException) {
+                throw new IOException("Did not receive responses for all metrics within the timeout period.", cause);
+            }
+            throw new IOException("Error evaluating " + architectureJsonFile, cause);
+        }
+    }
+
+    /**
+     * Non-blocking version of evaluateArchitecture using the default deadline
+     * @param architectureJsonFile the architecture file that needs to be evaluated
+     * @param properties the problem properties
+     * @return a future completed with the objective values once every evaluator replied
+     */
+    public static CompletableFuture<Map<String, Double>> evaluateArchitectureAsync(File architectureJsonFile, ProblemProperties properties) {
+        long timeout = Long.getLong("tatc.evaluationTimeout", DEFAULT_EVALUATION_TIMEOUT);
+        return evaluateArchitectureAsync(architectureJsonFile, properties, timeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Non-blocking evaluation of an architecture serialized in memory, using the default deadline
+     * @param payload the architecture (see ArchitectureCreatorNew.toPayload)
+     * @param properties the problem properties
+     * @return a future completed with the objective values once every evaluator replied
+     */
+    public static CompletableFuture<Map<String, Double>> evaluateArchitectureAsync(ArchitecturePayload payload, ProblemProperties properties) {
+        long timeout = Long.getLong("tatc.evaluationTimeout", DEFAULT_EVALUATION_TIMEOUT);
+        return evaluateArchitectureAsync(payload, properties, timeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Publishes the evaluation requests of an architecture and returns immediately. The future is
+     * completed by the MQTT result listener once every metric has arrived, and the arch folder files
+     * (CostRisk_output.json, gbl.json) are updated before the future completes. It completes
+     * exceptionally with a TimeoutException when the deadline expires. Cancelling the future stops
+     * waiting for the replies of this architecture.
+     * @param architectureJsonFile the architecture file that needs to be evaluated
+     * @param properties the problem properties
+     * @param timeout the deadline for receiving all the metrics (non-positive for no deadline)
+     * @param unit the time unit of the timeout
+     * @return a future completed with the objective values
+     */
+    public static CompletableFuture<Map<String, Double>> evaluateArchitectureAsync(File architectureJsonFile, ProblemProperties properties, long timeout, TimeUnit unit) {
         // Read the JSON content from the architecture file
-        String jsonContent;
+        ArchitecturePayload payload;
         try {
-            jsonContent = new String(Files.readAllBytes(architectureJsonFile.toPath()), StandardCharsets.UTF_8);
+            payload = ArchitecturePayload.fromFile(architectureJsonFile);
         } catch (IOException e) {
             System.err.println("Error reading the JSON file: " + e.getMessage());
-            throw e;
+            return failedFuture(e);
         }
+        return evaluateArchitectureAsync(payload, properties, timeout, unit);
+    }
 
+    /**
+     * Publishes the evaluation requests of an architecture serialized in memory and returns
+     * immediately. The serialized architecture is copied as is into each request, without being
+     * parsed and serialized again; it is only parsed once for the evaluation and metric caches.
+     * See evaluateArchitectureAsync(File, ...) for the completion of the returned future.
+     * @param payload the architecture (see ArchitectureCreatorNew.toPayload)
+     * @param properties the problem properties
+     * @param timeout the deadline for receiving all the metrics (non-positive for no deadline)
+     * @param unit the time unit of the timeout
+     * @return a future completed with the objective values
+     */
+    public static CompletableFuture<Map<String, Double>> evaluateArchitectureAsync(ArchitecturePayload payload, ProblemProperties properties, long timeout, TimeUnit unit) {
         // Retrieve metric topics from properties
         Map<String, String> metricTopics = properties.getMetricTopics();   // Map of metrics to their topics
         Map<String, JSONObject> evaluators = properties.getEvaluators();
         // Prepare the architecture JSON and unique workflow ID
-        JSONObject architectureJson = new JSONObject(jsonContent);
+        JSONObject architectureJson = payload.toJSONObject();
+        String folderPath = payload.getFolder().getPath();
+        String architectureName = payload.getName();
+
+        // Identical designs (e.g. reached through equivalent encodings) are served from the cache
+        EvaluationCache cache = properties.getEvaluationCache();
+        String architectureHash = ArchitectureHash.of(architectureJson);
+        CompletableFuture<Map<String, Double>> cached = cache.get(architectureHash);
+        if (cached != null) {
+            System.out.println("Architecture " + architectureName + " found in the evaluation cache");
+            return objectivesOf(cached, folderPath, properties);
+        }
+        // Designs evaluated by previous runs with the same evaluator workflow
+        EvaluationStore store = properties.getEvaluationStore();
+        Map<String, Double> stored = store.get(architectureHash);
+        if (stored != null) {
+            System.out.println("Architecture " + architectureName + " found in the evaluation store");
+            CompletableFuture<Map<String, Double>> storedEvaluation = cache.put(architectureHash,
+                    CompletableFuture.completedFuture(stored), () -> { });
+            return objectivesOf(storedEvaluation, folderPath, properties);
+        }
         String workflowId = UUID.randomUUID().toString(); // Unique ID for the workflow
 
-        // Prepare a set to keep track of all expected metrics
-        HashSet<String> expectedMetrics = new HashSet<>(metricTopics.keySet());
-
-        // Initialize MQTT Publisher and Subscriber
-        String brokerUrl = "tcp://localhost:1883";
-        String clientId = "TSE_Client_" + UUID.randomUUID();
-        int qos = 1;
-
-        TSEPublisher publisher = new TSEPublisher(brokerUrl, clientId + "_Publisher");
-        TSESubscriber subscriber = new TSESubscriber(brokerUrl, clientId + "_Subscriber");
-
-        // Map to store results from evaluators
-        Map<String, Double> metricResults = new HashMap<>();
-
-        // Create a CountDownLatch to wait for all metric results
-        //CountDownLatch latch = new CountDownLatch(expectedMetrics.size());
-        CountDownLatch latch = new CountDownLatch(metricTopics.size());
-
+        // Shared evaluation client: replies are routed to this call by workflow id
+        String resultTopic = TSEEvaluationClient.RESULT_TOPIC;
+        TSEEvaluationClient client;
         try {
-            // Connect to the MQTT broker
-            publisher.connect();
-            subscriber.connect();
-
-            // Subscribe to the result topic
-            String resultTopic = "TSE/results";  // Fixed topic for results
-            subscriber.subscribe(resultTopic, qos, (topic, payload) -> {
-                try {
-                    JSONObject responseJson = new JSONObject(payload);
-                    String responseWorkflowId = responseJson.getString("workflow_id");
-
-                    // Check if the response corresponds to our request
-                    if (!responseWorkflowId.equals(workflowId)) {
-                        return; // Ignore messages not related to our request
-                    }
-
-                    // Extract results
-                    JSONObject results = responseJson.getJSONObject("results");
-
-                    synchronized (metricResults) {
-                        // Store each metric received
-                        for (String metric : results.keySet()) {
-                            double value = results.getDouble(metric);
-                            metricResults.put(metric, value);
-                             // Decrement the latch for each metric received
-                        }
-                        latch.countDown();
-                    }
-                } catch (JSONException e) {
-                    e.printStackTrace();
+            client = TSEEvaluationClient.open();
+        } catch (MqttException e) {
+            e.printStackTrace();
+            return failedFuture(new IOException("MQTT communication error", e));
+        }
+        // Metrics whose inputs were already evaluated for another architecture are not requested again
+        MetricCache metricCache = properties.getMetricCache();
+        Map<String, Double> reused = new HashMap<>();
+        Map<String, String> metricKeys = new HashMap<>();
+        Map<String, String> requestedTopics = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : metricTopics.entrySet()) {
+            String metric = entry.getKey();
+            String topic = entry.getValue(); // e.g., "evaluators/TATC/CoverageAnalysis"
+
+            // Parse the topic to get evaluator and function
+            String[] topicParts = topic.split("/");
+            if (topicParts.length != 3) {
+                System.err.println("Invalid topic format for metric " + metric + ": " + topic);
+                continue; // Skip invalid topic
+            }
+            String metricKey = metricCache.keyFor(metric, topicParts[1], topicParts[2], architectureJson);
+            Double value = metricCache.get(metricKey);
+            if (value != null) {
+                reused.put(metric, value);
+            } else {
+                metricKeys.put(metric, metricKey);
+                requestedTopics.put(metric, topic);
+            }
+        }
+        if (!reused.isEmpty()) {
+            System.out.println("Metrics " + reused.keySet() + " of architecture " + architectureName + " found in the metric cache");
+        }
+
+        TSEEvaluationClient.PendingEvaluation evaluation = client.register(workflowId, requestedTopics.size(), timeout, unit);
+        CompletableFuture<Map<String, Double>> metrics = evaluation.getFuture().thenApply(received -> {
+            Map<String, Double> metricResults = new HashMap<>(reused);
+            for (Map.Entry<String, Double> result : received.entrySet()) {
+                String metricKey = metricKeys.get(result.getKey());
+                if (metricKey != null) {
+                    metricCache.put(metricKey, result.getValue());
                 }
-            });
+                metricResults.put(result.getKey(), result.getValue());
+            }
+            return metricResults;
+        });
+        // The evaluators stop being waited for only when every caller sharing this evaluation gave up
+        CompletableFuture<Map<String, Double>> waiter = cache.put(architectureHash, metrics, () -> evaluation.getFuture().cancel(false));
+        metrics.thenAccept(metricResults -> store.put(architectureHash, metricResults));
 
-            // Generate and publish requests for each metric
-            for (Map.Entry<String, String> entry : metricTopics.entrySet()) {
+        try {
+            // Generate and publish requests for each metric that is not cached
+            for (Map.Entry<String, String> entry : requestedTopics.entrySet()) {
                 String metric = entry.getKey();
-                String topic = entry.getValue(); // e.g., "evaluators/TATC/CoverageAnalysis"
-
-                // Parse the topic to get evaluator and function
+                String topic = entry.getValue();
                 String[] topicParts = topic.split("/");
-                if (topicParts.length != 3) {
-                    System.err.println("Invalid topic format for metric " + metric + ": " + topic);
-                    continue; // Skip invalid topic
-                }
                 String evaluatorName = topicParts[1]; // e.g., "TATC"
                 String functionName = topicParts[2];  // e.g., "CoverageAnalysis"
                 JSONObject evaluator = evaluators.get(evaluatorName);
-                // Build the request JSON for this function
+                // Build the request JSON for this function, the architecture is added as serialized
                 JSONObject evaluatorRequestJson = new JSONObject();
-                evaluatorRequestJson.put("architecture", architectureJson);
                 evaluatorRequestJson.put("workflow_id", workflowId);
                 evaluatorRequestJson.put("function", functionName);
                 evaluatorRequestJson.put("metric", metric);
@@ -303,105 +416,114 @@ public class TradespaceSearchExecutive {
                 evaluatorRequestJson.put("result_topic", resultTopic); // The topic to return results to
 
                 // Publish the request to the topic
-                publisher.publish(topic, evaluatorRequestJson.toString(), qos);
+                client.publish(topic, payload.request(evaluatorRequestJson));
 
                 System.out.println("Published request for metric '" + metric + "' to topic '" + topic + "'");
             }
+        } catch (MqttException e) {
+            e.printStackTrace();
+            client.unregister(workflowId);
+            return failedFuture(new IOException("MQTT communication error", e));
+        }
 
-            // Wait for responses from all evaluators or timeout after a certain period
-            boolean allResponsesReceived = latch.await(6000, TimeUnit.SECONDS);
-            if (!allResponsesReceived) {
-                throw new IOException("Did not receive responses for all metrics within the timeout period.");
-            }
+        // Process the results once all of them have been received
+        return objectivesOf(waiter, folderPath, properties);
+    }
 
-            // Process the results
-            String folderPath = architectureJsonFile.getParent();
-
-            // Example processing using modifyLifecycleCost and modifyCoverageMetrics functions
-            HashMap<String, Double> objectiveResults = new HashMap<>();
-
-            // Iterate over each objective defined in the properties
-            for (CompoundObjective objective : properties.getObjectives()) {
-                String objectiveName = objective.getParent().getName(); // Get the objective name from properties
-
-                // Check if the metricResults contain this objective name as a key
-                if (metricResults.containsKey(objectiveName)) {
-                    // Retrieve the metric value from metricResults
-                    double metricValue = metricResults.get(objectiveName);
-
-                    // Add the metric value to the objective results map
-                    objectiveResults.put(objectiveName, metricValue);
-
-                    // Process specific metrics based on the objective name
-                    switch (objectiveName) {
-                        case "LifecycleCost":
-                            modifyLifecycleCost(folderPath, metricValue);
-                            break;
-
-                        case "CoverageFraction":
-                        case "HarmonicMeanRevisitTime":
-                            double coverageFraction = metricResults.getOrDefault("CoverageFraction", 0.0);
-                            double revisitTime = metricResults.getOrDefault("HarmonicMeanRevisitTime", 0.0);
-
-                            // Use revisitTime for avg, max, and min as placeholders
-                            double[] revisitTimes = {revisitTime, revisitTime, revisitTime};
-                            double[] responseTimes = {revisitTime, revisitTime, revisitTime};
-                            double coverage = coverageFraction;
-
-                            modifyCoverageMetrics(folderPath, revisitTimes, responseTimes, coverage);
-                            break;
-
-                        // Add more cases here if other specific metrics require processing
-                        default:
-                            System.out.println("Metric processed for objective: " + objectiveName);
-                            break;
-                    }
-                } else {
-                    System.err.println("Metric not received for objective: " + objectiveName);
-                }
+    /**
+     * Processes the metric values of an evaluation once they are received. Cancelling the returned
+     * future cancels the caller's own future of the evaluation (see EvaluationCache), not the
+     * evaluation shared with the other callers.
+     * @param waiter the caller's future of the metric values
+     * @param folderPath the architecture folder
+     * @param properties the problem properties
+     * @return a future completed with the objective values
+     */
+    private static CompletableFuture<Map<String, Double>> objectivesOf(CompletableFuture<Map<String, Double>> waiter, String folderPath,
+                                                                       ProblemProperties properties) {
+        CompletableFuture<Map<String, Double>> objectives = waiter.thenApply(metricResults -> processMetricResults(folderPath, metricResults, properties));
+        objectives.whenComplete((results, error) -> {
+            if (objectives.isCancelled()) {
+                waiter.cancel(false);
             }
-            return objectiveResults;
+        });
+        return objectives;
+    }
 
-            } catch (MqttException e) {
-                e.printStackTrace();
-                throw new IOException("MQTT communication error", e);
+    /**
+     * Maps the metrics received from the evaluators to the objectives of the problem and updates the
+     * output files of the architecture folder
+     * @param folderPath the architecture folder
+     * @param metricResults the metric values received from the evaluators
+     * @param properties the problem properties
+     * @return the objective values
+     */
+    private static Map<String, Double> processMetricResults(String folderPath, Map<String, Double> metricResults, ProblemProperties properties) {
+        // Example processing using modifyLifecycleCost and modifyCoverageMetrics functions
+        HashMap<String, Double> objectiveResults = new HashMap<>();
+
+        // Iterate over each objective defined in the properties
+        for (CompoundObjective objective : properties.getObjectives()) {
+            String objectiveName = objective.getParent().getName(); // Get the objective name from properties
+
+            // Check if the metricResults contain this objective name as a key
+            if (metricResults.containsKey(objectiveName)) {
+                // Retrieve the metric value from metricResults
+                double metricValue = metricResults.get(objectiveName);
+
+                // Add the metric value to the objective results map
+                objectiveResults.put(objectiveName, metricValue);
+
+                // Process specific metrics based on the objective name
+                switch (objectiveName) {
+                    case "LifecycleCost":
+                        modifyLifecycleCost(folderPath, metricValue);
+                        break;
+
+                    case "CoverageFraction":
+                    case "HarmonicMeanRevisitTime":
+                        double coverageFraction = metricResults.getOrDefault("CoverageFraction", 0.0);
+                        double revisitTime = metricResults.getOrDefault("HarmonicMeanRevisitTime", 0.0);
+
+                        // Use revisitTime for avg, max, and min as placeholders
+                        double[] revisitTimes = {revisitTime, revisitTime, revisitTime};
+                        double[] responseTimes = {revisitTime, revisitTime, revisitTime};
+                        double coverage = coverageFraction;
+
+                        modifyCoverageMetrics(folderPath, revisitTimes, responseTimes, coverage);
+                        break;
+
+                    // Add more cases here if other specific metrics require processing
+                    default:
+                        System.out.println("Metric processed for objective: " + objectiveName);
+                        break;
+                }
+            } else {
+                System.err.println("Metric not received for objective: " + objectiveName);
             }
-        // } finally {
-        //     // Disconnect from the MQTT broker
-        //     try {
-        //         publisher.disconnect();
-        //         subscriber.disconnect();
-        //     } catch (MqttException e) {
-        //         e.printStackTrace();
-        //     }
-        // }
+        }
+        return objectiveResults;
+    }
 
+    private static <T> CompletableFuture<T> failedFuture(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
     }
     public static void modifyLifecycleCost(String jsonFilePath, double totalMissionCosts) {
-        String costRiskFilePath = jsonFilePath + File.separator + "CostRisk_output.json";
-        JSONObject data;
         try {
-            Path path = Paths.get(costRiskFilePath);
-            if (Files.exists(path)) {
-                // Read the JSON file content into a String
-                String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
-                // Parse the JSON content into a JSONObject
-                data = new JSONObject(content);
-            } else {
-                // File does not exist, create a new JSONObject
-                data = new JSONObject();
+            updateArchitectureFile(jsonFilePath, ArchitecturePackStore.COST_RISK_OUTPUT, () -> {
+                JSONObject data = new JSONObject();
                 // Initialize the lifecycleCost object
                 data.put("lifecycleCost", new JSONObject());
                 System.out.println("CostRisk_output.json does not exist. Created a new file.");
-            }
-
-            // Update the lifecycleCost estimate with the total mission cost
-            JSONObject lifecycleCost = data.getJSONObject("lifecycleCost");
-            lifecycleCost.put("estimate", totalMissionCosts);
-            lifecycleCost.put("fiscalYear", 2024);
-
-            // Save the updated JSON back to the file
-            Files.write(path, data.toString(4).getBytes(StandardCharsets.UTF_8));
+                return data;
+            }, data -> {
+                // Update the lifecycleCost estimate with the total mission cost
+                JSONObject lifecycleCost = data.getJSONObject("lifecycleCost");
+                lifecycleCost.put("estimate", totalMissionCosts);
+                lifecycleCost.put("fiscalYear", 2024);
+            });
 
             System.out.println("Lifecycle cost updated with total mission costs: " + totalMissionCosts);
 
@@ -411,37 +533,25 @@ public class TradespaceSearchExecutive {
         }
     }
     public static void modifyCoverageMetrics(String jsonFilePath, double[] revisitTime, double[] responseTime, double coverage) {
-        String costRiskFilePath = jsonFilePath + File.separator + "gbl.json";
-        JSONObject data;
         try {
-            Path path = Paths.get(costRiskFilePath);
-            if (Files.exists(path)) {
-                // Read the JSON file content into a String
-                String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
-                // Parse the JSON content into a JSONObject
-                data = new JSONObject(content);
-            } else {
-                // File does not exist, create a new JSONObject
-                data = new JSONObject();
-                // Initialize the lifecycleCost object
+            updateArchitectureFile(jsonFilePath, ArchitecturePackStore.GBL, () -> {
+                JSONObject data = new JSONObject();
                 data.put("RevisitTime", new JSONObject());
                 data.put("ResponseTime", new JSONObject());
                 data.put("Coverage", new JSONObject());
                 System.out.println("gbl.json does not exist. Created a new file.");
-            }
-
-            // Update the lifecycleCost estimate with the total mission cost
-            JSONObject revTime = data.getJSONObject("RevisitTime");
-            revTime.put("avg", revisitTime[0]);
-            revTime.put("max", revisitTime[1]);
-            revTime.put("min", revisitTime[2]);
-            JSONObject resTime = data.getJSONObject("ResponseTime");
-            resTime.put("avg", responseTime[0]);
-            resTime.put("max", responseTime[1]);
-            resTime.put("min", responseTime[2]);
-            data.put("Coverage", coverage);
-            // Save the updated JSON back to the file
-            Files.write(path, data.toString(4).getBytes(StandardCharsets.UTF_8));
+                return data;
+            }, data -> {
+                JSONObject revTime = data.getJSONObject("RevisitTime");
+                revTime.put("avg", revisitTime[0]);
+                revTime.put("max", revisitTime[1]);
+                revTime.put("min", revisitTime[2]);
+                JSONObject resTime = data.getJSONObject("ResponseTime");
+                resTime.put("avg", responseTime[0]);
+                resTime.put("max", responseTime[1]);
+                resTime.put("min", responseTime[2]);
+                data.put("Coverage", coverage);
+            });
 
             System.out.println("Revisit Time updated with avg value: " + revisitTime[0]);
             System.out.println("Response Time updated with avg value: " + responseTime[0]);
@@ -452,6 +562,33 @@ public class TradespaceSearchExecutive {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Reads, modifies and writes back an output file of an architecture, in the architecture store
+     * of the results folder (see ArchitecturePackStore) or, if it is disabled, in the architecture
+     * folder
+     * @param folderPath the architecture folder
+     * @param fileName the file name (e.g. gbl.json)
+     * @param create the contents of the file if it does not exist yet
+     * @param update the modification of the contents
+     * @throws IOException if the file cannot be read or written
+     */
+    private static void updateArchitectureFile(String folderPath, String fileName, Supplier<JSONObject> create,
+                                               Consumer<JSONObject> update) throws IOException {
+        if (ArchitecturePackStore.isEnabled()) {
+            File folder = new File(folderPath);
+            ArchitecturePackStore.forArchitectureFolder(folder).update(folder.getName(), fileName, content -> {
+                JSONObject data = content != null ? new JSONObject(new String(content, StandardCharsets.UTF_8)) : create.get();
+                update.accept(data);
+                return data.toString(4).getBytes(StandardCharsets.UTF_8);
+            });
+        } else {
+            Path path = Paths.get(folderPath, fileName);
+            JSONObject data = Files.exists(path) ? new JSONObject(new String(Files.readAllBytes(path), StandardCharsets.UTF_8)) : create.get();
+            update.accept(data);
+            Files.write(path, data.toString(4).getBytes(StandardCharsets.UTF_8));
+        }
+    }
     
 
     /**
@@ -11,6 +11,7 @@ import seakers.aos.operator.AOSVariation;
 import seakers.aos.operator.AOSVariationSI;
 import seakers.aos.operatorselectors.AdaptivePursuit;
 import seakers.aos.operatorselectors.OperatorSelector;
+import tatc.LabelDeltaWriter;
 import tatc.ResultIO;
 import tatc.interfaces.GUIInterface;
 import java.io.File;
@@ -91,6 +92,8 @@ public class TradespaceSearchStrategyAOS extends TradespaceSearchStrategyGA {
         //calculate HV of initial population
         QualityIndicator qualityIndicator = new QualityIndicator(problem, aos.getResult());
         HashMap<Integer, Double[]> hypervolume = new HashMap<>();
+        // Result of each step, appended as deltas (the final result is saved in full at the end)
+        LabelDeltaWriter labelDeltas = new LabelDeltaWriter(Paths.get(System.getProperty("tatc.output"), "resultsDeltas").toString(), ",");
 
         while (!aos.isTerminated() && aos.getNumberOfEvaluations() < maxNFE) {
             aos.step();
@@ -121,7 +124,7 @@ public class TradespaceSearchStrategyAOS extends TradespaceSearchStrategyGA {
             System.out.println(String.format("NFE = %d, HV = %f, IGD = %f", aos.getNumberOfEvaluations(), hvValue, igd));
 
             hypervolume.put(aos.getNumberOfEvaluations(), metrics);
-            ResultIO.saveLabels(aos.getResult(), Paths.get(System.getProperty("tatc.output"), String.format("results%d",aos.getNumberOfEvaluations())).toString(),",");
+            labelDeltas.append(aos.getResult(), aos.getNumberOfEvaluations());
         }
         ResultIO.savePopulation(new Population(uniqueSolutions), Paths.get(System.getProperty("tatc.output"), ("uniqueSolutions")).toString());
         ResultIO.savePopulation(aos.getArchive(), Paths.get(System.getProperty("tatc.output"), ("nonDominatedSolutions")).toString());
@@ -14,6 +14,7 @@ import tatc.architecture.specifications.GroundNetwork;
 import tatc.architecture.specifications.Satellite;
 import tatc.architecture.variable.Decision;
 import tatc.util.JSONIO;
+import tatc.util.MixedRadixEnumerator;
 import tatc.util.Summary;
 import tatc.architecture.ArchitectureCreatorNew;
 
@@ -22,6 +23,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -37,6 +39,7 @@ public class TradespaceSearchStrategyFFNew implements TradespaceSearchStrategy {
 
     private JSONObject tseRequestJson;
     private ProblemProperties properties;
+    private final Random random = new Random();
 
     public TradespaceSearchStrategyFFNew(ProblemProperties searchProperties) {
         // Read and parse the JSON file using JSONObject
@@ -68,142 +71,159 @@ public class TradespaceSearchStrategyFFNew implements TradespaceSearchStrategy {
         }
     }
     private void fullFactorialCombiningAndAssigning(Map<String, List<Object>> combiningVariableValues,Map<String, List<Object>> assigningVariableValues ){
-        List<Map<String, Object>> combiningArchitectures = generateFullFactorialDesign(combiningVariableValues);
-        List<Map<Object, Set<Object>>> fullArchitectures = new ArrayList<>();;
+        MixedRadixEnumerator<Map<String, Object>> combiningArchitectures = generateFullFactorialDesign(combiningVariableValues);
         HashMap<String, Decision<?>> decisions = properties.getDecisions();        
         Decision<GroundNetwork> decisionGroundNetwork = (Decision<GroundNetwork>)decisions.get("groundNetwork");
-        for (Map.Entry<String, List<Object>> entry : assigningVariableValues.entrySet()){
-            List<Object> architectures = new ArrayList<>(combiningArchitectures);
-            List<Map<Object, Set<Object>>> allAssignments = assigning(architectures, entry.getValue());
-            // Step 4: Combine architectures with assignments
-            for (Map<Object, Set<Object>> assignment : allAssignments) {
-                fullArchitectures.add(assignment);
-            }
-            System.out.println("Total number of architectures: " + fullArchitectures.size());
-            JSONArray constellationsJSON = tseRequestJson.getJSONObject("designSpace").getJSONArray("spaceSegment");
-            List<JSONObject> architecturesJson = new ArrayList<>();
-            // Loop over each set of architecture parameters
-            Collections.shuffle(fullArchitectures);
-            int k = 0;
-            for (GroundNetwork gn : decisionGroundNetwork.getAllowedValues()) {
-                for (Map<Object, Set<Object>> archParameters : fullArchitectures) {
-                    // Create a new architecture JSON object
-                    ArchitectureCreatorNew creator = new ArchitectureCreatorNew(properties);
-                    // Initialize the spaceSegment JSONArray
-                    Map<String, Object> architecture = new HashMap<>();
-                    // Extract architecture parameters from assignment keys
-                    int i = 0;
-                    JSONObject constJson = constellationsJSON.getJSONObject(i);
-                    for (Object archObj : archParameters.keySet()) {
-                        if (archObj instanceof Map) {
-                            Map<String, Object> archMap = (Map<String, Object>) archObj;
-                            architecture.putAll(archMap);
-                        }
-                        // Add instrument assignments
-                        Set<Object> assignedVariables = archParameters.get(archObj);
-                        architecture.put(entry.getKey(), assignedVariables);
-                        //JSONObject finalConst = creator.addHomogeneousWalker(constJson, archParameters);
-                        creator.addHomogeneousWalkerOld(constJson, architecture);
-                        i++;
-                    }
-                        // Add the updated constellation to the spaceSegment array
-                    if(!creator.getConstellations().isEmpty()){
-                        creator.addGroundNetwork(gn);
-                        File architectureJsonFile = creator.toJSON(k);
-                        k++;
-                        try {
-                                HashMap<String, Double> objectivesResults = TradespaceSearchExecutive.evaluateArchitecture(architectureJsonFile, properties);
-                                Summary.writeSummaryFile(objectivesResults,architecture,k);
-                        } catch (InterruptedException | IOException e) {
-                            System.out.println("Error reading the JSON file: " + e.getMessage());
-                            e.printStackTrace();
-                        }
-                    }
-    
-                }       
-                   
+        List<GroundNetwork> groundNetworks = decisionGroundNetwork.getAllowedValues();
+        // Step 4: Combine architectures with assignments, built one at a time
+        List<String> assigningVariables = new ArrayList<>(assigningVariableValues.keySet());
+        List<MixedRadixEnumerator<Map<Object, Set<Object>>>> fullArchitectures = new ArrayList<>();
+        long designsPerGroundNetwork = 0;
+        for (String assigningVariable : assigningVariables) {
+            List<Object> architectures = new ArrayList<>(combiningArchitectures.asList());
+            MixedRadixEnumerator<Map<Object, Set<Object>>> assignments = assigning(architectures, assigningVariableValues.get(assigningVariable));
+            fullArchitectures.add(assignments);
+            designsPerGroundNetwork = Math.addExact(designsPerGroundNetwork, assignments.size());
+        }
+        JSONArray constellationsJSON = tseRequestJson.getJSONObject("designSpace").getJSONArray("spaceSegment");
+        BoundedEvaluationExecutor executor = new BoundedEvaluationExecutor(properties, BoundedEvaluationExecutor.getDefaultMaxInFlight());
+        // Loop over the architectures of this shard in a random order
+        PrimitiveIterator.OfLong indices = shardIndices(Math.multiplyExact(designsPerGroundNetwork, groundNetworks.size()));
+        while (indices.hasNext()) {
+            long index = indices.nextLong();
+            GroundNetwork gn = groundNetworks.get((int) (index / designsPerGroundNetwork));
+            long designIndex = index % designsPerGroundNetwork;
+            int variableIndex = 0;
+            while (designIndex >= fullArchitectures.get(variableIndex).size()) {
+                designIndex -= fullArchitectures.get(variableIndex).size();
+                variableIndex++;
             }
-    
-            for (int i = 0; i < architecturesJson.size(); i++) {
-                JSONObject arch = architecturesJson.get(i);
-                File mainPath = new File(System.getProperty("tatc.output"));
-                File archPath = new File(mainPath, "arch-" + i);
-                archPath.mkdirs();
-                File file = new File(archPath, "arch.json");
-    
-                // Use FileWriter and write the JSONObject directly
-                try (FileWriter fileWriter = new FileWriter(file)) {
-                    fileWriter.write(arch.toString(4)); // Pretty print with indentation
-                } catch (IOException e) {
-                    e.printStackTrace();
+            String assigningVariable = assigningVariables.get(variableIndex);
+            Map<Object, Set<Object>> archParameters = fullArchitectures.get(variableIndex).get(designIndex);
+            // Create a new architecture JSON object
+            ArchitectureCreatorNew creator = new ArchitectureCreatorNew(properties);
+            // Initialize the spaceSegment JSONArray
+            Map<String, Object> architecture = new HashMap<>();
+            // Extract architecture parameters from assignment keys
+            JSONObject constJson = constellationsJSON.getJSONObject(0);
+            for (Object archObj : archParameters.keySet()) {
+                if (archObj instanceof Map) {
+                    Map<String, Object> archMap = (Map<String, Object>) archObj;
+                    architecture.putAll(archMap);
                 }
+                // Add instrument assignments
+                Set<Object> assignedVariables = archParameters.get(archObj);
+                architecture.put(assigningVariable, assignedVariables);
+                creator.addHomogeneousWalkerOld(constJson, architecture);
             }
-    
-    
-            System.out.println("Hello");
-
-        } 
+            // Add the updated constellation to the spaceSegment array
+            if(!creator.getConstellations().isEmpty()){
+                creator.addGroundNetwork(gn);
+                submitEvaluation(executor, creator.toPayload(index), architecture, index);
+            }
+        }
+        awaitEvaluations(executor);
     }
     private void fullFactorialCombining(Map<String, List<Object>> combiningVariableValues){
-        List<Map<String, Object>> fullArchitectures = generateFullFactorialDesign(combiningVariableValues);
+        MixedRadixEnumerator<Map<String, Object>> fullArchitectures = generateFullFactorialDesign(combiningVariableValues);
         JSONArray constellationsJSON = tseRequestJson.getJSONObject("designSpace").getJSONArray("spaceSegment");
         HashMap<String, Decision<?>> decisions = properties.getDecisions();
         Decision<GroundNetwork> decisionGroundNetwork = (Decision<GroundNetwork>)decisions.get("groundNetwork");
-        Collections.shuffle(fullArchitectures);
-        for (GroundNetwork gn : decisionGroundNetwork.getAllowedValues()) {
-            int k= 0;
-            for (Map<String,Object> archParameters: fullArchitectures){
-                ArchitectureCreatorNew creator = new ArchitectureCreatorNew(properties);
-                for(int i=0; i<constellationsJSON.length(); i++){
-                    JSONObject constJson = constellationsJSON.getJSONObject(i);
-                    creator.addHomogeneousWalkerOld(constJson, archParameters);
+        List<GroundNetwork> groundNetworks = decisionGroundNetwork.getAllowedValues();
+        BoundedEvaluationExecutor executor = new BoundedEvaluationExecutor(properties, BoundedEvaluationExecutor.getDefaultMaxInFlight());
+        // The design index spans all the ground networks, so concurrent evaluations and shards never share an arch folder
+        long designsPerGroundNetwork = fullArchitectures.size();
+        PrimitiveIterator.OfLong indices = shardIndices(Math.multiplyExact(designsPerGroundNetwork, groundNetworks.size()));
+        while (indices.hasNext()) {
+            long index = indices.nextLong();
+            GroundNetwork gn = groundNetworks.get((int) (index / designsPerGroundNetwork));
+            Map<String,Object> archParameters = fullArchitectures.get(index % designsPerGroundNetwork);
+            ArchitectureCreatorNew creator = new ArchitectureCreatorNew(properties);
+            for(int i=0; i<constellationsJSON.length(); i++){
+                JSONObject constJson = constellationsJSON.getJSONObject(i);
+                creator.addHomogeneousWalkerOld(constJson, archParameters);
+            }
+            if(!creator.getConstellations().isEmpty()){
+                creator.addGroundNetwork(gn);
+                submitEvaluation(executor, creator.toPayload(index), archParameters, index);
+            }
+        }
+        awaitEvaluations(executor);
+    }
+
+    /**
+     * Gets the design indices evaluated by this process (see FullFactorialShard), in a random order
+     * @param totalDesigns the number of designs of the full factorial design space
+     * @return the iterator of the design indices
+     */
+    private PrimitiveIterator.OfLong shardIndices(long totalDesigns) {
+        FullFactorialShard shard = FullFactorialShard.fromProperties(totalDesigns);
+        System.out.println("Total number of architectures: " + totalDesigns + ", evaluating " + shard);
+        return MixedRadixEnumerator.shuffledIndices(shard.getFrom(), shard.getTo(), random);
+    }
+
+    /**
+     * Sends an architecture to the evaluators without waiting for its results. The summary row is
+     * written with the design index of the architecture, so it does not depend on the order in
+     * which the evaluations complete nor on the shard that evaluated it.
+     * @param executor the bounded window of in-flight evaluations
+     * @param payload the architecture, serialized in memory
+     * @param archParameters the architecture variables written in the summary
+     * @param archIndex the index of the architecture in the summary
+     */
+    private void submitEvaluation(BoundedEvaluationExecutor executor, ArchitecturePayload payload, Map<String, Object> archParameters, long archIndex) {
+        try {
+            executor.submit(payload, (objectivesResults, error) -> {
+                if (error != null) {
+                    Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+                    System.out.println("Error evaluating architecture " + archIndex + ": " + cause.getMessage());
+                    cause.printStackTrace();
+                    return;
                 }
-                if(!creator.getConstellations().isEmpty()){
-                    creator.addGroundNetwork(gn);
-                    File architectureJsonFile = creator.toJSON(k);
-                    k++;
-                    try {
-                            HashMap<String, Double> objectivesResults = TradespaceSearchExecutive.evaluateArchitecture(architectureJsonFile, properties);
-                            Summary.writeSummaryFile(objectivesResults,archParameters,k);
-                    } catch (InterruptedException | IOException e) {
-                        System.out.println("Error reading the JSON file: " + e.getMessage());
-                        e.printStackTrace();
-                    }
+                try {
+                    Summary.writeSummaryFile(objectivesResults, archParameters, archIndex);
+                } catch (IOException e) {
+                    System.out.println("Error writing the summary file: " + e.getMessage());
+                    e.printStackTrace();
                 }
-            }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting architecture " + archIndex, e);
+        }
+    }
 
+    /**
+     * Waits until all the submitted evaluations have completed
+     * @param executor the bounded window of in-flight evaluations
+     */
+    private void awaitEvaluations(BoundedEvaluationExecutor executor) {
+        try {
+            executor.awaitAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the evaluations to complete", e);
         }
     }
     
 
 
-    public List<Map<String, Object>> generateFullFactorialDesign(Map<String, List<Object>> variableValues) {
-        List<Map<String, Object>> result = new ArrayList<>();
-        List<String> variables = new ArrayList<>(variableValues.keySet());
-        generateCombinations(variableValues, variables, 0, new HashMap<>(), result);
-        return result;
+    /**
+     * Enumerates the full factorial design of a set of variables. The designs are built on demand.
+     * @param variableValues the values of each variable
+     * @return the enumerator of the maps of each variable to its value
+     */
+    public MixedRadixEnumerator<Map<String, Object>> generateFullFactorialDesign(Map<String, List<Object>> variableValues) {
+        return MixedRadixEnumerator.ofVariables(variableValues);
     }
 
-    private void generateCombinations(Map<String, List<Object>> variableValues, List<String> variables, int index, Map<String, Object> current, List<Map<String, Object>> result) {
-        if (index == variables.size()) {
-            // Add a copy of the current combination to the result
-            result.add(new HashMap<>(current));
-            return;
-        }
-        String variable = variables.get(index);
-        List<Object> values = variableValues.get(variable);
-        if (values == null || values.isEmpty()) {
-            // Skip variables with no values
-            generateCombinations(variableValues, variables, index + 1, current, result);
-            return;
-        }
-        for (Object value : values) {
-            current.put(variable, value);
-            generateCombinations(variableValues, variables, index + 1, current, result);
-            current.remove(variable);
-        }
-    }
-    public List<Map<String, Object>> generateFullFactorialDesign(
+    /**
+     * Enumerates the full factorial design of the combining variables only
+     * @param variableValues the values of each variable
+     * @param decisionVariables the pattern of each variable
+     * @return the enumerator of the maps of each combining variable to its value
+     */
+    public MixedRadixEnumerator<Map<String, Object>> generateFullFactorialDesign(
         Map<String, List<Object>> variableValues,
         Map<String, String> decisionVariables
     ) {
@@ -216,93 +236,17 @@ public class TradespaceSearchStrategyFFNew implements TradespaceSearchStrategy {
                 combiningVariableValues.put(variable, variableValues.get(variable));
             }
         }
-        List<Map<String, Object>> result = new ArrayList<>();
-        List<String> variables = new ArrayList<>(combiningVariableValues.keySet());
-        generateCombiningCombinations(combiningVariableValues, variables, 0, new HashMap<>(), result);
-        return result;
-    }
-    
-    private void generateCombiningCombinations(
-        Map<String, List<Object>> variableValues,
-        List<String> variables,
-        int index,
-        Map<String, Object> current,
-        List<Map<String, Object>> result
-    ) {
-        if (index == variables.size()) {
-            // Add a copy of the current combination to the result
-            result.add(new HashMap<>(current));
-            return;
-        }
-        String variable = variables.get(index);
-        List<Object> values = variableValues.get(variable);
-        if (values == null || values.isEmpty()) {
-            // Skip variables with no values
-            generateCombiningCombinations(variableValues, variables, index + 1, current, result);
-            return;
-        }
-        for (Object value : values) {
-            current.put(variable, value);
-            generateCombiningCombinations(variableValues, variables, index + 1, current, result);
-            current.remove(variable);
-        }
-    }
-    
-    public List<Map<Object, Set<Object>>> assigning(List<Object> L, List<Object> R) {
-        List<Map<Object, Set<Object>>> result = new ArrayList<>();
-        generateAssignments(L, R, 0, new HashMap<>(), result);
-        return result;
+        return MixedRadixEnumerator.ofVariables(combiningVariableValues);
     }
 
-    // Recursive helper method
-    private void generateAssignments(
-        List<Object> L,
-        List<Object> R,
-        int index,
-        Map<Object, Set<Object>> currentAssignment,
-        List<Map<Object, Set<Object>>> result
-    ) {
-        if (index == L.size()) {
-            // Add a copy of the current assignment to the result
-            Map<Object, Set<Object>> assignmentCopy = new HashMap<>();
-            for (Map.Entry<Object, Set<Object>> entry : currentAssignment.entrySet()) {
-                assignmentCopy.put(entry.getKey(), new HashSet<>(entry.getValue()));
-            }
-            result.add(assignmentCopy);
-            return;
-        }
-
-        Object element = L.get(index);
-        List<Set<Object>> subsets = getAllSubsets(R);
-
-        for (Set<Object> subset : subsets) {
-            currentAssignment.put(element, subset);
-            generateAssignments(L, R, index + 1, currentAssignment, result);
-            currentAssignment.remove(element); // Backtrack
-        }
+    /**
+     * Enumerates all the assignments of subsets of R (e.g. instruments) to the elements of L
+     * (e.g. constellations). The assignments are built on demand.
+     * @param L the elements receiving the subsets
+     * @param R the elements that are assigned
+     * @return the enumerator of the assignments
+     */
+    public MixedRadixEnumerator<Map<Object, Set<Object>>> assigning(List<Object> L, List<Object> R) {
+        return MixedRadixEnumerator.assignments(L, R);
     }
-
-    // Method to generate all subsets (power set) of a given set
-    private List<Set<Object>> getAllSubsets(List<Object> set) {
-        List<Set<Object>> subsets = new ArrayList<>();
-        int n = set.size();
-        int totalSubsets = 1 << n; // 2^n subsets
-
-        for (int i = 0; i < totalSubsets; i++) {
-            Set<Object> subset = new HashSet<>();
-            for (int j = 0; j < n; j++) {
-                // Check if jth element of set is included in the ith subset
-                if ((i & (1 << j)) != 0) {
-                    subset.add(set.get(j));
-                }
-            }
-            subsets.add(subset);
-        }
-        return subsets;
-    }
-
-    
-
-
-
 }
@@ -4,17 +4,31 @@ import org.moeaframework.algorithm.EpsilonMOEA;
 import org.moeaframework.core.*;
 import org.moeaframework.core.indicator.QualityIndicator;
 import org.moeaframework.core.operator.*;
+import tatc.LabelDeltaWriter;
 import tatc.ResultIO;
 import tatc.architecture.variable.Decision;
+import tatc.decisions.adg.AdgSolution;
+import tatc.decisions.adg.DecisionBatchVariation;
 import tatc.decisions.adg.DecisionMutation;
 import tatc.decisions.adg.DecisionVariation;
+import tatc.decisions.adg.DesignKey;
+import tatc.decisions.adg.Graph;
 import tatc.decisions.search.AdgInitialization;
+import tatc.decisions.search.AsyncEpsilonMOEA;
+import tatc.decisions.search.DuplicateFilter;
+import tatc.decisions.search.SearchCheckpoint;
 import tatc.interfaces.GUIInterface;
+import java.io.File;
+import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Multi Objective Evolutionary Algorithm (MOEA) search strategy without AOS or KDO. It is the simplest evolutionary
@@ -49,41 +63,91 @@ public class TradespaceSearchStrategyMOEAnew extends TradespaceSearchStrategyGAn
         //     operators.appendOperator(dOperators.get(i));
         // }
         List<tatc.decisions.Decision> decisions = ((GAnew) problem).getDecisions();
-        DecisionVariation crossoverOperator = new DecisionVariation(decisions);
-        DecisionMutation mutationOperator = new DecisionMutation(decisions);
-        operators.appendOperator(crossoverOperator);
-        operators.appendOperator(mutationOperator);
+        Graph graph = ((GAnew) problem).getGraph();
+        Variation variation;
+        if (Boolean.parseBoolean(System.getProperty("tatc.batchVariation", "true"))) {
+            //crossover + mutation of all the offspring of a step at once, in reused buffers
+            variation = new DecisionBatchVariation(decisions, graph);
+        } else {
+            DecisionVariation crossoverOperator = new DecisionVariation(decisions, graph);
+            DecisionMutation mutationOperator = new DecisionMutation(decisions, graph);
+            operators.appendOperator(crossoverOperator);
+            operators.appendOperator(mutationOperator);
+            variation = operators;
+        }
         Initialization initialization = new AdgInitialization(this.problem, populationSize);
         Population initialPopulation = new Population();
         NondominatedPopulation nondominatedPopulation = new NondominatedPopulation(comparator);
 
-        //create MOEA
-        EpsilonMOEA emoea = new EpsilonMOEA(problem, initialPopulation, archive,
-                selection, operators, initialization, comparator);
+        //create MOEA: steady-state, with several offspring being evaluated at the same time
+        int maxInFlight = getMaxInFlight();
+        System.out.println(String.format("Evaluating up to %d architectures concurrently", maxInFlight));
+        AsyncEpsilonMOEA emoea = new AsyncEpsilonMOEA((GAnew) problem, initialPopulation, archive,
+                selection, variation, initialization, comparator, maxInFlight, maxNFE);
+        //offspring encoding an already submitted design are regenerated before being evaluated
+        DuplicateFilter duplicateFilter = new DuplicateFilter(graph, DuplicateFilter.getDefaultMaxRetries());
+        if (DuplicateFilter.isEnabled()) {
+            emoea.setDuplicateFilter(duplicateFilter);
+        }
 
         //for all solutions found
         ArrayList<Solution> allSolutions = new ArrayList<>();
 
-        //for unique solutions found
-        HashSet<Solution> uniqueSolutions = new HashSet<>();
+        //for unique solutions found, by design
+        UniqueSolutions uniqueSolutions = new UniqueSolutions(duplicateFilter);
+
+        HashMap<Integer, Double[]> hypervolume = new HashMap<>();
+        // Result of each step, appended as deltas (the final result is saved in full at the end)
+        LabelDeltaWriter labelDeltas = new LabelDeltaWriter(Paths.get(System.getProperty("tatc.output"), "resultsDeltas").toString(), ",");
 
-        //evaluate initial population first
-        System.out.println(String.format("Initializing population... Size = %d", populationSize));
-        emoea.step();
+        GAnew gaProblem = (GAnew) problem;
+        SearchCheckpoint resumed = loadResumeCheckpoint();
+        if (resumed != null) {
+            //continue the interrupted search from its last checkpoint
+            gaProblem.restoreState(resumed);
+            if (resumed.getRandom() != null) {
+                PRNG.setRandom(resumed.getRandom());
+            }
+            List<Solution> restoredPopulation = new ArrayList<>();
+            for (SearchCheckpoint.SolutionState state : resumed.getPopulation()) {
+                restoredPopulation.add(gaProblem.restoreSolution(state));
+            }
+            List<Solution> restoredArchive = new ArrayList<>();
+            for (SearchCheckpoint.SolutionState state : resumed.getArchive()) {
+                restoredArchive.add(gaProblem.restoreSolution(state));
+            }
+            for (SearchCheckpoint.SolutionState state : resumed.getUniqueSolutions()) {
+                Solution solution = gaProblem.restoreSolution(state);
+                uniqueSolutions.add(solution);
+                duplicateFilter.register(solution);
+            }
+            hypervolume.putAll(resumed.getHypervolume());
+            emoea.resume(restoredPopulation, restoredArchive, resumed.getNumberOfEvaluations());
+            System.out.println(String.format("Resuming the search at %d NFE (population = %d, archive = %d)",
+                    resumed.getNumberOfEvaluations(), restoredPopulation.size(), restoredArchive.size()));
+        } else {
+            //evaluate initial population first
+            System.out.println(String.format("Initializing population... Size = %d", populationSize));
+            emoea.step();
 
-        //add initial population to the solutions list
-        for (int j = 0; j < initialPopulation.size(); j++) {
-            Solution s = initialPopulation.get(j);
-            s.setAttribute("NFE", 0);
-            allSolutions.add(s);
+            //add initial population to the solutions list
+            for (int j = 0; j < initialPopulation.size(); j++) {
+                Solution s = initialPopulation.get(j);
+                s.setAttribute("NFE", 0);
+                allSolutions.add(s);
+            }
         }
+        gaProblem.releaseEncodings(emoea.getPopulation(), emoea.getArchive(), emoea.getInFlightSolutions());
 
         //calculate HV of initial population
         QualityIndicator qualityIndicator = new QualityIndicator(problem, emoea.getResult());
-        HashMap<Integer, Double[]> hypervolume = new HashMap<>();
+        int checkpointInterval = SearchCheckpoint.getInterval();
+        int lastCheckpoint = emoea.getNumberOfEvaluations();
 
         while (!emoea.isTerminated() && emoea.getNumberOfEvaluations() < maxNFE) {
             emoea.step();
+            //only the encodings of the solutions that can still be selected as parents are kept
+            gaProblem.releaseEncodings(emoea.getPopulation(), emoea.getArchive(), emoea.getInFlightSolutions());
             double currentTime = ((System.nanoTime() - startTime) / Math.pow(10, 9)) / 60.;
             System.out.println(
                     String.format("%d NFE out of %d NFE: Time elapsed = %10f min."
@@ -94,6 +158,10 @@ public class TradespaceSearchStrategyMOEAnew extends TradespaceSearchStrategyGAn
             for (Solution solution : emoea.getPopulation()) {
                 uniqueSolutions.add(solution);
             }
+            String duplicates = duplicateFilter.report();
+            if (duplicates != null) {
+                System.out.println(duplicates);
+            }
 
             //calculate metrics for search
             qualityIndicator.calculate(emoea.getResult());
@@ -107,15 +175,123 @@ public class TradespaceSearchStrategyMOEAnew extends TradespaceSearchStrategyGAn
             System.out.println(String.format("NFE = %d, HV = %f, IGD = %f", emoea.getNumberOfEvaluations(), hvValue, igd));
 
             hypervolume.put(emoea.getNumberOfEvaluations(), metrics);
-            ResultIO.saveLabels(emoea.getResult(), Paths.get(System.getProperty("tatc.output"), String.format("results%d",emoea.getNumberOfEvaluations())).toString(),",");
+            labelDeltas.append(emoea.getResult(), emoea.getNumberOfEvaluations());
+
+            if (checkpointInterval > 0 && emoea.getNumberOfEvaluations() - lastCheckpoint >= checkpointInterval) {
+                writeCheckpoint(emoea, uniqueSolutions.values(), hypervolume);
+                lastCheckpoint = emoea.getNumberOfEvaluations();
+            }
         }
-        ResultIO.savePopulation(new Population(uniqueSolutions), Paths.get(System.getProperty("tatc.output"), ("uniqueSolutions")).toString());
+        ResultIO.savePopulation(new Population(uniqueSolutions.values()), Paths.get(System.getProperty("tatc.output"), ("uniqueSolutions")).toString());
         ResultIO.savePopulation(emoea.getArchive(), Paths.get(System.getProperty("tatc.output"), ("nonDominatedSolutions")).toString());
         ResultIO.saveLabels(emoea.getResult(), Paths.get(System.getProperty("tatc.output"), "results").toString(), ",");
         ResultIO.saveHyperVolume(hypervolume, Paths.get(System.getProperty("tatc.output"), "hypervolume").toString());
         emoea.terminate();
     }
 
+    /**
+     * Unique solutions found by the search, in order of discovery, told apart by their design key
+     * (see DuplicateFilter). Solutions whose design key cannot be computed anymore (encodings
+     * released before the key was computed) are compared on their genes, in a separate map.
+     */
+    private static class UniqueSolutions {
+        private final DuplicateFilter duplicateFilter;
+        private final Set<DesignKey> designKeys = new HashSet<>();
+        private final Map<Integer, List<Solution>> byGenes = new HashMap<>();
+        private final List<Solution> solutions = new ArrayList<>();
+
+        private UniqueSolutions(DuplicateFilter duplicateFilter) {
+            this.duplicateFilter = duplicateFilter;
+        }
+
+        /**
+         * Adds a solution unless a solution with the same design was added before
+         */
+        private void add(Solution solution) {
+            DesignKey key = duplicateFilter.designKey(solution);
+            if (key != null) {
+                if (!designKeys.add(key)) {
+                    return;
+                }
+            } else {
+                int[] genes = AdgSolution.genesOf(solution);
+                List<Solution> candidates = byGenes.computeIfAbsent(Arrays.hashCode(genes), k -> new ArrayList<>(1));
+                for (Solution candidate : candidates) {
+                    if (Arrays.equals(AdgSolution.genesOf(candidate), genes)) {
+                        return;
+                    }
+                }
+                candidates.add(solution);
+            }
+            solutions.add(solution);
+        }
+
+        private List<Solution> values() {
+            return solutions;
+        }
+    }
+
+    /**
+     * Reads the checkpoint given by the tatc.resume system property
+     * @return the checkpoint, or null to start a new search
+     */
+    private SearchCheckpoint loadResumeCheckpoint() {
+        File resumeFile = SearchCheckpoint.getResumeFile();
+        if (resumeFile == null) {
+            return null;
+        }
+        try {
+            return SearchCheckpoint.load(resumeFile);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot resume the search from " + resumeFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the state of the search (population, archive, decision encodings, random number
+     * generator and NFE) to the checkpoint file
+     */
+    private void writeCheckpoint(AsyncEpsilonMOEA emoea, Collection<Solution> uniqueSolutions, Map<Integer, Double[]> hypervolume) {
+        GAnew gaProblem = (GAnew) problem;
+        SearchCheckpoint checkpoint = new SearchCheckpoint();
+        checkpoint.setNumberOfEvaluations(emoea.getNumberOfEvaluations());
+        for (Solution solution : emoea.getPopulation()) {
+            checkpoint.getPopulation().add(gaProblem.captureSolution(solution));
+        }
+        for (Solution solution : emoea.getArchive()) {
+            checkpoint.getArchive().add(gaProblem.captureSolution(solution));
+        }
+        for (Solution solution : uniqueSolutions) {
+            checkpoint.getUniqueSolutions().add(gaProblem.captureSolution(solution));
+        }
+        checkpoint.setHypervolume(hypervolume);
+        checkpoint.setRandom(PRNG.getRandom());
+        gaProblem.saveState(checkpoint);
+        File file = SearchCheckpoint.getDefaultFile();
+        try {
+            checkpoint.save(file);
+            System.out.println(String.format("Checkpoint written at %d NFE: %s", emoea.getNumberOfEvaluations(), file.getAbsolutePath()));
+        } catch (IOException e) {
+            System.err.println("Error writing the checkpoint " + file + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the number of offspring evaluated concurrently from the tatc.moea.maxInFlight system
+     * property, falling back to tatc.numThreads and then to 1
+     * @return the maximum number of in-flight evaluations
+     */
+    private int getMaxInFlight() {
+        String value = System.getProperty("tatc.moea.maxInFlight", System.getProperty("tatc.numThreads", "1"));
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid maximum number of in-flight evaluations: " + value + ". Using 1.");
+            return 1;
+        }
+    }
+
     @Override
     public void validate() {
 
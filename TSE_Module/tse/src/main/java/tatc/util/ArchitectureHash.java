@@ -0,0 +1,183 @@
+package tatc.util;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Canonical representation and hash of a decoded architecture (arch.json contents). Two architectures
+ * that describe the same constellations, satellites, payloads and ground network get the same hash,
+ * regardless of:
+ * - the identifiers generated when writing the file (arch-N, con-N, sat-N, gs-N),
+ * - the order of the constellations, satellites, payloads, orbits or ground stations,
+ * - the number formatting (e.g. 1 and 1.0).
+ * In particular, equivalent Partitioning labelings produce the same hash.
+ */
+public class ArchitectureHash {
+
+    /**
+     * Keys that only identify objects inside one file and do not change the design
+     */
+    private static final String ID_KEY = "@id";
+
+    private ArchitectureHash() {
+    }
+
+    /**
+     * Computes the hash of an architecture
+     * @param architecture the architecture JSON
+     * @return the SHA-256 hash of the canonical representation, as an hexadecimal string
+     */
+    public static String of(JSONObject architecture) {
+        return sha256(canonicalize(architecture));
+    }
+
+    /**
+     * Computes the hash of a subset of the fields of an architecture
+     * @param architecture the architecture JSON
+     * @param paths the dot-separated paths of the fields to keep (e.g. "spaceSegment.satellites.orbit");
+     *              arrays found along a path are traversed element by element
+     * @return the SHA-256 hash of the canonical representation of the projection
+     */
+    public static String ofFields(JSONObject architecture, Collection<String> paths) {
+        JSONObject projection = new JSONObject();
+        for (String path : paths) {
+            project(architecture, projection, path.split("\\."), 0);
+        }
+        return sha256(canonicalize(projection));
+    }
+
+    /**
+     * Copies the field at path[index..] from source into target, creating the intermediate
+     * objects and arrays of target as needed
+     */
+    private static void project(JSONObject source, JSONObject target, String[] path, int index) {
+        String key = path[index];
+        if (!source.has(key)) {
+            return;
+        }
+        Object value = source.get(key);
+        if (index == path.length - 1) {
+            target.put(key, value);
+            return;
+        }
+        if (value instanceof JSONObject) {
+            JSONObject child = target.optJSONObject(key);
+            if (child == null) {
+                child = new JSONObject();
+                target.put(key, child);
+            }
+            project((JSONObject) value, child, path, index + 1);
+        } else if (value instanceof JSONArray) {
+            JSONArray sourceArray = (JSONArray) value;
+            JSONArray targetArray = target.optJSONArray(key);
+            if (targetArray == null) {
+                targetArray = new JSONArray();
+                for (int i = 0; i < sourceArray.length(); i++) {
+                    targetArray.put(new JSONObject());
+                }
+                target.put(key, targetArray);
+            }
+            for (int i = 0; i < sourceArray.length(); i++) {
+                Object item = sourceArray.get(i);
+                if (item instanceof JSONObject) {
+                    project((JSONObject) item, targetArray.getJSONObject(i), path, index + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the canonical representation of a JSON element. Objects are written with sorted keys
+     * and without their identifiers; arrays of objects are treated as unordered collections, while
+     * arrays of plain values keep their order.
+     * @param element a JSONObject, JSONArray or plain value
+     * @return the canonical string
+     */
+    public static String canonicalize(Object element) {
+        StringBuilder sb = new StringBuilder();
+        appendCanonical(element, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Computes the SHA-256 hash of a string
+     * @param content the string
+     * @return the hash as an hexadecimal string
+     */
+    public static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void appendCanonical(Object element, StringBuilder sb) {
+        if (element instanceof JSONObject) {
+            JSONObject obj = (JSONObject) element;
+            List<String> keys = new ArrayList<>(obj.keySet());
+            Collections.sort(keys);
+            sb.append('{');
+            boolean first = true;
+            for (String key : keys) {
+                if (key.equals(ID_KEY)) {
+                    continue;
+                }
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                sb.append(JSONObject.quote(key)).append(':');
+                appendCanonical(obj.get(key), sb);
+            }
+            sb.append('}');
+        } else if (element instanceof JSONArray) {
+            JSONArray array = (JSONArray) element;
+            List<String> items = new ArrayList<>(array.length());
+            boolean unordered = true;
+            for (int i = 0; i < array.length(); i++) {
+                Object item = array.get(i);
+                unordered &= (item instanceof JSONObject);
+                items.add(canonicalize(item));
+            }
+            if (unordered) {
+                Collections.sort(items);
+            }
+            sb.append('[').append(String.join(",", items)).append(']');
+        } else if (element instanceof Number) {
+            sb.append(canonicalNumber((Number) element));
+        } else if (element == null || element == JSONObject.NULL) {
+            sb.append("null");
+        } else if (element instanceof String) {
+            sb.append(JSONObject.quote((String) element));
+        } else {
+            sb.append(element.toString());
+        }
+    }
+
+    private static String canonicalNumber(Number number) {
+        try {
+            BigDecimal value = new BigDecimal(number.toString()).stripTrailingZeros();
+            return value.signum() == 0 ? "0" : value.toPlainString();
+        } catch (NumberFormatException e) {
+            // NaN or infinite values
+            return number.toString();
+        }
+    }
+}
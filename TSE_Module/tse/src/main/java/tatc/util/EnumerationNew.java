@@ -39,21 +39,20 @@ public class EnumerationNew {
 
         // Create the options map for cartesian product
         Map<String, List<Object>> optionsMap = new LinkedHashMap<>(parameters);
+        if (hasEmptyOption(optionsMap)) {
+            return constellations;
+        }
 
-        // Generate all combinations
-        List<Map<String, Object>> parameterCombinations = computeCartesianProduct(optionsMap);
-
-        int archCounter = 0;
+        // Combinations are built one at a time, after checking the size of the design space
+        MixedRadixEnumerator<Map<String, Object>> parameterCombinations = MixedRadixEnumerator.ofVariables(optionsMap);
+        if (parameterCombinations.size() > maxNumberOfArchitecturesFF) {
+            throw new Enumeration.DesignSpaceTooLargeException(
+                "Too many architectures (" + parameterCombinations.size() + ") to run a full factorial enumeration. " +
+                "Consider using other search strategies."
+            );
+        }
 
         for (Map<String, Object> params : parameterCombinations) {
-            // Check for maximum number of architectures
-            if (archCounter >= maxNumberOfArchitecturesFF) {
-                throw new Enumeration.DesignSpaceTooLargeException(
-                    "Too many architectures (" + archCounter + ") to run a full factorial enumeration. " +
-                    "Consider using other search strategies."
-                );
-            }
-
             // Parse parameters
             Double altitude = (Double) params.get("HomoAltitude");
             Object inclinationObj = params.get("HomoInclination");
@@ -92,7 +91,6 @@ public class EnumerationNew {
                     payloadApertureDia
             );
             constellations.add(constellationParam);
-            archCounter++;
         }
 
         return constellations;
@@ -101,43 +99,31 @@ public class EnumerationNew {
     /**
      * Computes the cartesian product of all parameter combinations.
      * This method generates all possible combinations of the provided parameter values.
+     * Use MixedRadixEnumerator.ofVariables to build the combinations on demand instead.
      *
      * @param optionsMap Map containing parameter names and their possible values
      * @return List of maps, where each map represents one parameter combination
      */
     public static List<Map<String, Object>> computeCartesianProduct(Map<String, List<Object>> optionsMap) {
         List<Map<String, Object>> combinations = new ArrayList<>();
-        computeCartesianProductHelper(optionsMap, new LinkedHashMap<>(), combinations, new ArrayList<>(optionsMap.keySet()), 0);
+        if (hasEmptyOption(optionsMap)) {
+            return combinations;
+        }
+        for (Map<String, Object> combination : MixedRadixEnumerator.ofVariables(optionsMap)) {
+            combinations.add(combination);
+        }
         return combinations;
     }
 
     /**
-     * Helper method for computing the cartesian product recursively.
-     *
-     * @param optionsMap Map containing parameter names and their possible values
-     * @param currentCombination Current combination being built
-     * @param combinations List to store all generated combinations
-     * @param keys List of parameter keys to process
-     * @param index Current index in the keys list
+     * A parameter without values leaves the cartesian product empty
      */
-    private static void computeCartesianProductHelper(
-            Map<String, List<Object>> optionsMap,
-            Map<String, Object> currentCombination,
-            List<Map<String, Object>> combinations,
-            List<String> keys,
-            int index
-    ) {
-        if (index == keys.size()) {
-            combinations.add(new LinkedHashMap<>(currentCombination));
-            return;
-        }
-        String key = keys.get(index);
-        List<Object> values = optionsMap.get(key);
-
-        for (Object value : values) {
-            currentCombination.put(key, value);
-            computeCartesianProductHelper(optionsMap, currentCombination, combinations, keys, index + 1);
-            currentCombination.remove(key);
+    private static boolean hasEmptyOption(Map<String, List<Object>> optionsMap) {
+        for (List<Object> values : optionsMap.values()) {
+            if (values.isEmpty()) {
+                return true;
+            }
         }
+        return false;
     }
 }
@@ -1,7 +1,8 @@
 package tatc.util;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import tatc.architecture.specifications.ArchitectureJson;
+
 import java.io.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -43,10 +44,8 @@ public class JSONIO {
      * @return true if the JSON was successfully saved to the file, false otherwise
      */
     public static boolean writeJSON(File file, Object obj) {
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        String str = gson.toJson(obj);
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(file))) {
-            bw.append(str);
+            ArchitectureJson.prettyGson().toJson(obj, bw);
             bw.flush();
             return true;
         } catch (IOException ex) {
@@ -0,0 +1,388 @@
+package tatc.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazy enumeration of a full factorial design. Every design is identified by an index in
+ * [0, size()), whose digits in a mixed-radix base (one digit per dimension, the last dimension
+ * varying fastest) select one value of each dimension. The designs are only built when they are
+ * requested, so the memory used does not depend on the size of the design space:
+ * - get(index) builds one design (random access),
+ * - iterator() walks the designs in index order,
+ * - spliterator()/stream() split the index range for parallel consumption,
+ * - shuffled(random) walks all the designs once in a random order, and shuffledIndices does the
+ *   same for a sub-range of the indices (e.g. the shard of a distributed run).
+ * @param <T> the design type
+ */
+public class MixedRadixEnumerator<T> implements Iterable<T> {
+
+    private final int[] radices;
+    private final long size;
+    /**
+     * Builds a design from its digits. The array is only valid during the call.
+     */
+    private final Function<int[], T> decoder;
+
+    /**
+     * Constructs the enumerator
+     * @param radices the number of values of each dimension
+     * @param decoder builds a design from its digits; the array passed to it must not be kept
+     * @throws IllegalArgumentException if a radix is negative or the design space has more than Long.MAX_VALUE designs
+     */
+    public MixedRadixEnumerator(int[] radices, Function<int[], T> decoder) {
+        this.radices = radices.clone();
+        this.decoder = decoder;
+        long product = 1;
+        for (int radix : this.radices) {
+            if (radix < 0) {
+                throw new IllegalArgumentException("Negative number of values for a dimension: " + radix);
+            }
+            try {
+                product = Math.multiplyExact(product, radix);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("The design space has more than " + Long.MAX_VALUE + " designs.", e);
+            }
+        }
+        this.size = product;
+    }
+
+    /**
+     * Enumerates all the combinations of the values of several variables, as the maps of each
+     * variable to its value. Variables without values are left out of the combinations.
+     * @param variableValues the values of each variable
+     * @return the enumerator of the combinations
+     */
+    public static MixedRadixEnumerator<Map<String, Object>> ofVariables(Map<String, List<Object>> variableValues) {
+        List<String> variables = new ArrayList<>();
+        List<List<Object>> values = new ArrayList<>();
+        for (Map.Entry<String, List<Object>> entry : variableValues.entrySet()) {
+            if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+                variables.add(entry.getKey());
+                values.add(entry.getValue());
+            }
+        }
+        return new MixedRadixEnumerator<>(radicesOf(values), digits -> {
+            Map<String, Object> combination = new LinkedHashMap<>();
+            for (int d = 0; d < digits.length; d++) {
+                combination.put(variables.get(d), values.get(d).get(digits[d]));
+            }
+            return combination;
+        });
+    }
+
+    /**
+     * Enumerates the cartesian product of several lists. For example, [[A,B],[1,2]] gives
+     * [A,1], [A,2], [B,1], [B,2].
+     * @param lists the dimensions of the product
+     * @param <E> the element type
+     * @return the enumerator of the tuples
+     */
+    public static <E> MixedRadixEnumerator<List<E>> cartesianProduct(List<List<E>> lists) {
+        List<List<E>> dimensions = new ArrayList<>(lists);
+        return new MixedRadixEnumerator<>(radicesOf(dimensions), digits -> {
+            List<E> tuple = new ArrayList<>(digits.length);
+            for (int d = 0; d < digits.length; d++) {
+                tuple.add(dimensions.get(d).get(digits[d]));
+            }
+            return tuple;
+        });
+    }
+
+    /**
+     * Enumerates all the ways of assigning a subset of the right elements to each left element.
+     * Each dimension is the bit mask of the subset assigned to one left element.
+     * @param left the elements receiving the subsets (e.g. constellations)
+     * @param right the elements that are assigned (e.g. instruments)
+     * @return the enumerator of the assignments
+     * @throws IllegalArgumentException if there are 31 right elements or more
+     */
+    public static MixedRadixEnumerator<Map<Object, Set<Object>>> assignments(List<?> left, List<?> right) {
+        if (right.size() > 30) {
+            throw new IllegalArgumentException("Too many elements to assign (" + right.size() + ") to run a full factorial enumeration.");
+        }
+        int[] radices = new int[left.size()];
+        for (int d = 0; d < radices.length; d++) {
+            radices[d] = 1 << right.size();
+        }
+        return new MixedRadixEnumerator<>(radices, digits -> {
+            Map<Object, Set<Object>> assignment = new HashMap<>();
+            for (int d = 0; d < digits.length; d++) {
+                Set<Object> subset = new HashSet<>();
+                for (int j = 0; j < right.size(); j++) {
+                    if ((digits[d] & (1 << j)) != 0) {
+                        subset.add(right.get(j));
+                    }
+                }
+                assignment.put(left.get(d), subset);
+            }
+            return assignment;
+        });
+    }
+
+    /**
+     * @return the number of designs
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Builds the design with a given index
+     * @param index the index of the design
+     * @return the design
+     * @throws IndexOutOfBoundsException if the index is not in [0, size())
+     */
+    public T get(long index) {
+        int[] digits = new int[radices.length];
+        toDigits(index, digits);
+        return decoder.apply(digits);
+    }
+
+    /**
+     * Computes the digits of an index
+     * @param index the index of the design
+     * @param digits the array receiving one digit per dimension
+     * @throws IndexOutOfBoundsException if the index is not in [0, size())
+     */
+    public void toDigits(long index, int[] digits) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Design index " + index + " out of [0, " + size + ")");
+        }
+        long rest = index;
+        for (int d = radices.length - 1; d >= 0; d--) {
+            digits[d] = (int) (rest % radices[d]);
+            rest /= radices[d];
+        }
+    }
+
+    /**
+     * Walks the designs in index order. The digits are incremented in place, so the iteration
+     * does not divide the index for every design.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final int[] digits = new int[radices.length];
+            private long next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public T next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                T design = decoder.apply(digits);
+                next++;
+                increment(digits);
+                return design;
+            }
+        };
+    }
+
+    /**
+     * Walks every design exactly once in a random order, without materializing a permutation
+     * (see shuffledIndices)
+     * @param random the random number generator
+     * @return the iterator
+     */
+    public Iterator<T> shuffled(Random random) {
+        PrimitiveIterator.OfLong indices = shuffledIndices(0, size, random);
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return indices.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return get(indices.nextLong());
+            }
+        };
+    }
+
+    /**
+     * Walks every index of [from, to) exactly once in a random order, without materializing a
+     * permutation: the i-th index is from + (offset + i * stride) mod (to - from), with a random
+     * offset and a random stride coprime with the length of the range.
+     * @param from the first index (inclusive)
+     * @param to the last index (exclusive)
+     * @param random the random number generator
+     * @return the iterator of the indices
+     */
+    public static PrimitiveIterator.OfLong shuffledIndices(long from, long to, Random random) {
+        final long length = Math.max(0, to - from);
+        final long offset = length == 0 ? 0 : Math.floorMod(random.nextLong(), length);
+        long candidate = length <= 1 ? 1 : 1 + Math.floorMod(random.nextLong(), length - 1);
+        while (gcd(candidate, length) != 1) {
+            candidate = candidate % (length - 1) + 1;
+        }
+        final long stride = candidate;
+        return new PrimitiveIterator.OfLong() {
+            private long visited = 0;
+            private long position = offset;
+
+            @Override
+            public boolean hasNext() {
+                return visited < length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (visited >= length) {
+                    throw new NoSuchElementException();
+                }
+                long index = from + position;
+                visited++;
+                position = addModulo(position, stride, length);
+                return index;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new RangeSpliterator(0, size);
+    }
+
+    /**
+     * @return a sequential stream of the designs in index order
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return a parallel stream of the designs
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Gives a read-only List view of the designs, built on access
+     * @return the list view
+     * @throws IllegalArgumentException if there are more than Integer.MAX_VALUE designs
+     */
+    public List<T> asList() {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many designs (" + size + ") for a list.");
+        }
+        return Collections.unmodifiableList(new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                return MixedRadixEnumerator.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return (int) size;
+            }
+        });
+    }
+
+    private void increment(int[] digits) {
+        for (int d = digits.length - 1; d >= 0; d--) {
+            if (++digits[d] < radices[d]) {
+                return;
+            }
+            digits[d] = 0;
+        }
+    }
+
+    private static int[] radicesOf(List<? extends List<?>> dimensions) {
+        int[] radices = new int[dimensions.size()];
+        for (int d = 0; d < radices.length; d++) {
+            radices[d] = dimensions.get(d).size();
+        }
+        return radices;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * (a + b) mod m for a, b in [0, m), without overflowing
+     */
+    private static long addModulo(long a, long b, long m) {
+        return a >= m - b ? a - (m - b) : a + b;
+    }
+
+    /**
+     * Spliterator over the index range [from, to), split in halves
+     */
+    private class RangeSpliterator implements Spliterator<T> {
+        private long from;
+        private final long to;
+        private int[] digits;
+
+        private RangeSpliterator(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (from >= to) {
+                return false;
+            }
+            if (digits == null) {
+                digits = new int[radices.length];
+                toDigits(from, digits);
+            }
+            action.accept(decoder.apply(digits));
+            from++;
+            if (from < to) {
+                increment(digits);
+            }
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (digits != null || to - from < 2) {
+                return null;
+            }
+            long middle = from + (to - from) / 2;
+            Spliterator<T> prefix = new RangeSpliterator(from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package tatc.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Appends the result files of a run (summary.csv, label deltas, ...) from a single writer thread.
+ * The threads producing results only queue the text to append; the writer thread keeps one open
+ * channel and one 64 KB buffer per file, and writes the buffers to the files in batches: when a
+ * buffer is full, and every tatc.resultsFlushMillis milliseconds (1000 by default). Files are no
+ * longer opened, checked and closed for every row.
+ *
+ * The queue is bounded (tatc.resultsQueue system property, 4096 appends by default), so producers
+ * wait for the writer instead of accumulating results in memory if the disk falls behind.
+ *
+ * sync is called at the end of a search: the files are written, forced to disk and closed (they
+ * are reopened by the next append). A shutdown hook does the same for the results still queued
+ * when the JVM exits.
+ */
+public class ResultsSink {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    private static final long DEFAULT_FLUSH_MILLIS = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private static ResultsSink instance;
+
+    private enum Control { FLUSH, SYNC, STOP }
+
+    private final BlockingQueue<Record> queue;
+    private final long flushNanos;
+    private final Thread writer;
+    /**
+     * Open files, only used by the writer thread
+     */
+    private final Map<File, Output> outputs = new HashMap<>();
+    private final List<Runnable> syncListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    private ResultsSink(int queueCapacity, long flushMillis) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushMillis));
+        this.writer = new Thread(this::run, "TSE_ResultsSink");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Gets the sink of the JVM, starting its writer thread the first time
+     * @return the results sink
+     */
+    public static synchronized ResultsSink getInstance() {
+        if (instance == null) {
+            instance = new ResultsSink(Integer.getInteger("tatc.resultsQueue", DEFAULT_QUEUE_CAPACITY),
+                    Long.getLong("tatc.resultsFlushMillis", DEFAULT_FLUSH_MILLIS));
+            ResultsSink sink = instance;
+            Runtime.getRuntime().addShutdownHook(new Thread(sink::close, "TSE_ResultsSinkShutdown"));
+        }
+        return instance;
+    }
+
+    /**
+     * Queues text to append to a file, waiting if the queue is full
+     * @param file the file, created (with its parent directories) by the first append
+     * @param text the text to append
+     * @throws InterruptedIOException if interrupted while waiting for room in the queue
+     */
+    public void append(File file, String text) throws InterruptedIOException {
+        append(file, null, text);
+    }
+
+    /**
+     * Queues text to append to a file, waiting if the queue is full
+     * @param file the file, created (with its parent directories) by the first append
+     * @param header text written first if the file is empty when the writer opens it (e.g. the
+     * header of a CSV file), evaluated by the writer thread; or null
+     * @param text the text to append
+     * @throws InterruptedIOException if interrupted while waiting for room in the queue
+     */
+    public void append(File file, Supplier<String> header, String text) throws InterruptedIOException {
+        append(file, header == null ? null : () -> header.get().getBytes(StandardCharsets.UTF_8),
+                text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Queues bytes to append to a file, waiting if the queue is full
+     * @param file the file, created (with its parent directories) by the first append
+     * @param header bytes written first if the file is empty when the writer opens it, evaluated by
+     * the writer thread; or null
+     * @param bytes the bytes to append, which must not be modified afterwards
+     * @throws InterruptedIOException if interrupted while waiting for room in the queue
+     */
+    public void append(File file, Supplier<byte[]> header, byte[] bytes) throws InterruptedIOException {
+        if (closed) {
+            throw new IllegalStateException("The results sink is closed, cannot append to " + file);
+        }
+        try {
+            queue.put(new Record(file.getAbsoluteFile(), header, bytes, null, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queuing results for " + file);
+        }
+    }
+
+    /**
+     * Adds a task run by sync and close before the files are synced, to queue the results buffered
+     * elsewhere (e.g. the rows of an incomplete ResultsTable block)
+     * @param listener the task
+     */
+    public void addSyncListener(Runnable listener) {
+        syncListeners.add(listener);
+    }
+
+    /**
+     * Waits until everything appended before is written to the files (not necessarily to disk)
+     */
+    public void flush() {
+        await(Control.FLUSH);
+    }
+
+    /**
+     * Waits until everything appended before is written and forced to disk, and closes the files
+     */
+    public void sync() {
+        notifySyncListeners();
+        await(Control.SYNC);
+    }
+
+    /**
+     * Syncs the files and stops the writer thread. Later appends fail.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        notifySyncListeners();
+        CompletableFuture<Void> done = send(Control.STOP);
+        closed = true;
+        await(Control.STOP, done);
+    }
+
+    private void notifySyncListeners() {
+        for (Runnable listener : syncListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                System.err.println("Results sink: error before sync: " + e);
+            }
+        }
+    }
+
+    private void await(Control control) {
+        if (!closed) {
+            await(control, send(control));
+        }
+    }
+
+    private CompletableFuture<Void> send(Control control) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        try {
+            queue.put(new Record(null, null, null, control, done));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
+
+    private static void await(Control control, CompletableFuture<Void> done) {
+        try {
+            done.get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("Results sink: " + control.name().toLowerCase() + " did not complete: " + e);
+        }
+    }
+
+    private void run() {
+        List<Record> batch = new ArrayList<>();
+        long lastFlush = System.nanoTime();
+        boolean running = true;
+        while (running) {
+            Record first;
+            try {
+                first = queue.poll(flushNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                first = null;
+            }
+            if (first == null) {
+                // Nothing new: write what is buffered
+                flushAll(false);
+                lastFlush = System.nanoTime();
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch);
+            for (Record record : batch) {
+                if (record.control == null) {
+                    write(record);
+                } else {
+                    flushAll(record.control != Control.FLUSH);
+                    lastFlush = System.nanoTime();
+                    if (record.control == Control.STOP) {
+                        running = false;
+                    }
+                    record.done.complete(null);
+                }
+            }
+            batch.clear();
+            if (!running) {
+                // Appends queued just before the sink was closed
+                flushAll(true);
+            } else if (System.nanoTime() - lastFlush >= flushNanos) {
+                flushAll(false);
+                lastFlush = System.nanoTime();
+            }
+        }
+    }
+
+    private void write(Record record) {
+        Output output = outputs.get(record.file);
+        try {
+            if (output == null) {
+                output = open(record.file, record.header);
+                outputs.put(record.file, output);
+            }
+            output.write(record.bytes);
+        } catch (IOException e) {
+            System.err.println("Error appending to " + record.file + ": " + e.getMessage());
+            if (output != null) {
+                output.closeQuietly();
+                outputs.remove(record.file);
+            }
+        }
+    }
+
+    private static Output open(File file, Supplier<byte[]> header) throws IOException {
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        Output output = new Output(channel);
+        if (header != null && channel.size() == 0) {
+            output.write(header.get());
+        }
+        return output;
+    }
+
+    /**
+     * Writes the buffers of all the open files
+     * @param sync whether the files are also forced to disk and closed
+     */
+    private void flushAll(boolean sync) {
+        Iterator<Map.Entry<File, Output>> it = outputs.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<File, Output> entry = it.next();
+            Output output = entry.getValue();
+            try {
+                output.drain();
+                if (sync) {
+                    output.channel.force(true);
+                    output.channel.close();
+                    it.remove();
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing " + entry.getKey() + ": " + e.getMessage());
+                output.closeQuietly();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Open file with its write buffer
+     */
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.remaining()) {
+                drain();
+            }
+            if (bytes.length > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(bytes));
+            } else {
+                buffer.put(bytes);
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            try {
+                writeFully(buffer);
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already reported
+            }
+        }
+    }
+
+    /**
+     * Bytes to append to a file, or a control message (flush, sync, stop) completing a future
+     */
+    private static class Record {
+        private final File file;
+        private final Supplier<byte[]> header;
+        private final byte[] bytes;
+        private final Control control;
+        private final CompletableFuture<Void> done;
+
+        private Record(File file, Supplier<byte[]> header, byte[] bytes, Control control, CompletableFuture<Void> done) {
+            this.file = file;
+            this.header = header;
+            this.bytes = bytes;
+            this.control = control;
+            this.done = done;
+        }
+    }
+}
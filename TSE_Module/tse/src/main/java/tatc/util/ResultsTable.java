@@ -0,0 +1,193 @@
+package tatc.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Binary, columnar counterpart of summary.csv (summary.tsr), written by ResultsTableWriter and
+ * memory-mapped by ResultsTableReader, so millions of evaluated designs can be scanned without
+ * parsing text. All the numbers are little-endian and every value takes 8 bytes.
+ *
+ * The file starts with a header describing the columns:
+ *
+ *     "TATCRES1"  int version  int headerLength  int numberOfDecisions  int numberOfObjectives
+ *     per column: byte kind (0 decision, 1 objective)  byte type (see below)
+ *                 byte direction (1 minimized, -1 maximized, 0 none)  byte 0
+ *                 int nameLength  UTF-8 name
+ *     zero padding up to headerLength, a multiple of 8
+ *
+ * followed by an append log of records, each one a multiple of 8 bytes long:
+ *
+ *     rows:       int 1  int n  long[n] archIndex  then, for each column, 8-byte values[n]
+ *     dictionary: int 2  int column  int code  int length  UTF-8 value  zero padding
+ *
+ * Each rows record is a block of consecutive rows stored column by column, so a column of a block
+ * is one contiguous array of doubles or longs. Column types:
+ * - DOUBLE: double values, NaN if missing (objectives, real decisions),
+ * - LONG: long values, NULL_LONG if missing (integer decisions),
+ * - CATEGORY: long codes of a dictionary, NULL_LONG if missing. The values (their toString, as in
+ *   summary.csv) are added to the dictionary of the column by dictionary records, before the first
+ *   block using them.
+ *
+ * A record cut short at the end of the file (e.g. a killed run) is ignored by the reader, and
+ * removed by the writer before it appends to the table.
+ */
+public final class ResultsTable {
+
+    public static final byte[] MAGIC = "TATCRES1".getBytes(StandardCharsets.US_ASCII);
+    public static final int VERSION = 1;
+
+    public static final int ROWS_RECORD = 1;
+    public static final int DICTIONARY_RECORD = 2;
+
+    public static final byte DECISION = 0;
+    public static final byte OBJECTIVE = 1;
+
+    public static final byte DOUBLE = 0;
+    public static final byte LONG = 1;
+    public static final byte CATEGORY = 2;
+
+    /**
+     * Missing value of LONG and CATEGORY columns
+     */
+    public static final long NULL_LONG = Long.MIN_VALUE;
+
+    private ResultsTable() {
+    }
+
+    /**
+     * Column of a results table
+     */
+    public static final class Column {
+        private final String name;
+        private final byte kind;
+        private final byte type;
+        private final byte direction;
+
+        /**
+         * @param name the name of the column (decision variable or objective)
+         * @param kind DECISION or OBJECTIVE
+         * @param type DOUBLE, LONG or CATEGORY
+         * @param direction 1 if minimized, -1 if maximized, 0 otherwise (decisions)
+         */
+        public Column(String name, byte kind, byte type, byte direction) {
+            this.name = name;
+            this.kind = kind;
+            this.type = type;
+            this.direction = direction;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public byte getKind() {
+            return kind;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public byte getDirection() {
+            return direction;
+        }
+
+        public boolean isObjective() {
+            return kind == OBJECTIVE;
+        }
+
+        public boolean isDecision() {
+            return kind == DECISION;
+        }
+
+        public boolean sameAs(Column other) {
+            return name.equals(other.name) && kind == other.kind && type == other.type && direction == other.direction;
+        }
+    }
+
+    /**
+     * Encodes the header of a table
+     * @param columns the decision columns followed by the objective columns
+     * @return the header, a multiple of 8 bytes long
+     */
+    static byte[] encodeHeader(List<Column> columns) {
+        int decisions = 0;
+        int length = MAGIC.length + 16;
+        List<byte[]> names = new ArrayList<>();
+        for (Column column : columns) {
+            if (column.isDecision()) {
+                decisions++;
+            }
+            byte[] name = column.name.getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            length += 8 + name.length;
+        }
+        length = align(length);
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(length);
+        buffer.putInt(decisions);
+        buffer.putInt(columns.size() - decisions);
+        for (int c = 0; c < columns.size(); c++) {
+            Column column = columns.get(c);
+            buffer.put(column.kind).put(column.type).put(column.direction).put((byte) 0);
+            buffer.putInt(names.get(c).length);
+            buffer.put(names.get(c));
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes the header of a table
+     * @param buffer the file, from its beginning, little-endian; its position is moved after the
+     * header
+     * @return the columns
+     * @throws IOException if the buffer does not start with a valid header
+     */
+    static List<Column> decodeHeader(ByteBuffer buffer) throws IOException {
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a results table");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported results table version " + version);
+            }
+            int headerLength = buffer.getInt();
+            int numberOfColumns = buffer.getInt() + buffer.getInt();
+            List<Column> columns = new ArrayList<>(numberOfColumns);
+            for (int c = 0; c < numberOfColumns; c++) {
+                byte kind = buffer.get();
+                byte type = buffer.get();
+                byte direction = buffer.get();
+                buffer.get();
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                columns.add(new Column(new String(name, StandardCharsets.UTF_8), kind, type, direction));
+            }
+            buffer.position(headerLength);
+            return Collections.unmodifiableList(columns);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, NegativeArraySizeException, IllegalArgumentException
+            throw new IOException("Truncated or corrupted results table header", e);
+        }
+    }
+
+    /**
+     * @param length a length in bytes
+     * @return the length rounded up to a multiple of 8
+     */
+    static int align(int length) {
+        return (length + 7) & ~7;
+    }
+}
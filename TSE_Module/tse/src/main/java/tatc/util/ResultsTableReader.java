@@ -0,0 +1,439 @@
+package tatc.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a results table (see ResultsTable) through memory mappings of the file, without copying nor
+ * parsing the values. Opening the table only walks the record headers, to find the blocks of rows
+ * and load the dictionaries of the category columns. Rows are then read at random (by row number),
+ * or scanned block by block with the DoubleBuffer/LongBuffer views of the columns of each block.
+ *
+ * Files larger than 2 GB are mapped in several segments, each one holding whole records. Only the
+ * records present when the table is opened are read.
+ *
+ * The table can also be exported to CSV, in the format of summary.csv:
+ *
+ *     java -cp tatc-ml-tse-1.0.jar tatc.util.ResultsTableReader summary.tsr [summary.csv]
+ */
+public class ResultsTableReader implements Closeable {
+
+    /**
+     * Largest mapping, a multiple of 8
+     */
+    private static final long MAX_SEGMENT = Integer.MAX_VALUE & ~7L;
+
+    private final File file;
+    private final FileChannel channel;
+    private final List<ResultsTable.Column> columns;
+    private final List<List<String>> dictionaries;
+    private final List<Block> blocks = new ArrayList<>();
+    /**
+     * First row of each block, for the binary search of random accesses
+     */
+    private long[] blockStarts;
+    private long numberOfRows;
+    /**
+     * End of the last complete record
+     */
+    private long endOfRecords;
+
+    private ResultsTableReader(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer segment = map(0, Math.min(size, MAX_SEGMENT));
+            ByteBuffer header = segment.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            this.columns = ResultsTable.decodeHeader(header);
+            this.dictionaries = new ArrayList<>();
+            for (int c = 0; c < columns.size(); c++) {
+                dictionaries.add(new ArrayList<>());
+            }
+            readRecords(segment, header.position(), size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a results table
+     * @param file the table (e.g. summary.tsr)
+     * @return the reader, to be closed
+     * @throws IOException if the file cannot be read or is not a results table
+     */
+    public static ResultsTableReader open(File file) throws IOException {
+        return new ResultsTableReader(file);
+    }
+
+    /**
+     * Walks the records of the file, mapping a new segment whenever a record goes past the
+     * current one
+     */
+    private void readRecords(ByteBuffer firstSegment, long firstRecord, long size) throws IOException {
+        ByteBuffer segment = firstSegment;
+        long segmentStart = 0;
+        long position = firstRecord;
+        int rowWidth = 8 * (1 + columns.size());
+        List<Long> starts = new ArrayList<>();
+        while (position + 8 <= size) {
+            if (position + 16 > segmentStart + segment.capacity() && segmentStart + segment.capacity() < size) {
+                segmentStart = position;
+                segment = map(segmentStart, Math.min(size - segmentStart, MAX_SEGMENT));
+            }
+            int offset = (int) (position - segmentStart);
+            int type = segment.getInt(offset);
+            long length;
+            if (type == ResultsTable.ROWS_RECORD) {
+                int rows = segment.getInt(offset + 4);
+                length = 8 + (long) rows * rowWidth;
+            } else if (type == ResultsTable.DICTIONARY_RECORD) {
+                if (position + 16 > size) {
+                    break;
+                }
+                length = 16 + ResultsTable.align(segment.getInt(offset + 12));
+            } else {
+                System.err.println(file + ": unknown record type " + type + " at byte " + position + ", the rest of the table is ignored");
+                break;
+            }
+            if (length <= 0 || position + length > size) {
+                // Record cut short (e.g. killed run)
+                break;
+            }
+            if (length > MAX_SEGMENT) {
+                throw new IOException(file + ": record of " + length + " bytes at byte " + position + " is too large");
+            }
+            if (position + length > segmentStart + segment.capacity()) {
+                segmentStart = position;
+                segment = map(segmentStart, Math.min(size - segmentStart, MAX_SEGMENT));
+                offset = 0;
+            }
+            if (type == ResultsTable.ROWS_RECORD) {
+                int rows = segment.getInt(offset + 4);
+                if (rows > 0) {
+                    blocks.add(new Block(segment, offset + 8, rows, numberOfRows));
+                    starts.add(numberOfRows);
+                    numberOfRows += rows;
+                }
+            } else {
+                readDictionaryEntry(segment, offset);
+            }
+            position += length;
+        }
+        endOfRecords = position;
+        blockStarts = new long[starts.size()];
+        for (int b = 0; b < blockStarts.length; b++) {
+            blockStarts[b] = starts.get(b);
+        }
+    }
+
+    private void readDictionaryEntry(ByteBuffer segment, int offset) throws IOException {
+        int column = segment.getInt(offset + 4);
+        int code = segment.getInt(offset + 8);
+        byte[] value = new byte[segment.getInt(offset + 12)];
+        ByteBuffer bytes = segment.duplicate();
+        bytes.position(offset + 16);
+        bytes.get(value);
+        if (column < 0 || column >= columns.size() || code < 0) {
+            throw new IOException(file + ": invalid dictionary entry for column " + column);
+        }
+        List<String> dictionary = dictionaries.get(column);
+        while (dictionary.size() <= code) {
+            dictionary.add(null);
+        }
+        dictionary.set(code, new String(value, StandardCharsets.UTF_8));
+    }
+
+    private ByteBuffer map(long position, long length) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        return mapped.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return the decision columns followed by the objective columns
+     */
+    public List<ResultsTable.Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @param name the name of a column
+     * @return the index of the column, or -1 if there is none with this name
+     */
+    public int columnIndex(String name) {
+        for (int c = 0; c < columns.size(); c++) {
+            if (columns.get(c).getName().equals(name)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param column the index of a CATEGORY column
+     * @return the values of the column, by code
+     */
+    public List<String> getDictionary(int column) {
+        return Collections.unmodifiableList(dictionaries.get(column));
+    }
+
+    /**
+     * @return the length of the header and of the complete records read, in bytes: less than the
+     * length of the file if its last record was cut short
+     */
+    public long getEndOfRecords() {
+        return endOfRecords;
+    }
+
+    public long getNumberOfRows() {
+        return numberOfRows;
+    }
+
+    public int getNumberOfBlocks() {
+        return blocks.size();
+    }
+
+    /**
+     * @param block the index of a block
+     * @return the block, whose rows are stored column by column
+     */
+    public Block getBlock(int block) {
+        return blocks.get(block);
+    }
+
+    /**
+     * @param row a row number
+     * @return the architecture index (archIndex of summary.csv) of the row
+     */
+    public long getArchIndex(long row) {
+        Block block = blockOf(row);
+        return block.getArchIndex((int) (row - block.firstRow));
+    }
+
+    /**
+     * @param row a row number
+     * @param column the index of a DOUBLE column
+     * @return the value, NaN if missing
+     */
+    public double getDouble(long row, int column) {
+        Block block = blockOf(row);
+        return block.getDouble(column, (int) (row - block.firstRow));
+    }
+
+    /**
+     * @param row a row number
+     * @param column the index of a LONG or CATEGORY column
+     * @return the value or code, ResultsTable.NULL_LONG if missing
+     */
+    public long getLong(long row, int column) {
+        Block block = blockOf(row);
+        return block.getLong(column, (int) (row - block.firstRow));
+    }
+
+    /**
+     * @param row a row number
+     * @param column the index of a column
+     * @return the value as written in summary.csv (without CSV escaping), "" if missing
+     */
+    public String getString(long row, int column) {
+        Block block = blockOf(row);
+        return block.getString(column, (int) (row - block.firstRow));
+    }
+
+    private Block blockOf(long row) {
+        if (row < 0 || row >= numberOfRows) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + numberOfRows);
+        }
+        int b = Arrays.binarySearch(blockStarts, row);
+        return blocks.get(b >= 0 ? b : -b - 2);
+    }
+
+    /**
+     * Writes the table in the CSV format of summary.csv: archIndex, the decisions and the objectives
+     * @param out the destination, which is not closed
+     * @throws IOException if the destination cannot be written
+     */
+    public void exportCsv(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder("archIndex");
+        for (ResultsTable.Column column : columns) {
+            line.append(',').append(csvField(column.getName()));
+        }
+        out.append(line).append('\n');
+        for (Block block : blocks) {
+            for (int i = 0; i < block.rows; i++) {
+                line.setLength(0);
+                line.append(block.getArchIndex(i));
+                for (int c = 0; c < columns.size(); c++) {
+                    line.append(',').append(csvField(block.getString(c, i)));
+                }
+                out.append(line).append('\n');
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the table to a CSV file in the format of summary.csv
+     * @param csvFile the CSV file, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void exportCsv(File csvFile) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(csvFile.toPath(), StandardCharsets.UTF_8)) {
+            exportCsv(out);
+        }
+    }
+
+    private static String csvField(String field) {
+        field = field.replace("\"", "\"\"");
+        if (field.contains(",") || field.contains("\"") || field.contains("\n")) {
+            field = "\"" + field + "\"";
+        }
+        return field;
+    }
+
+    /**
+     * Closes the file. The mappings stay valid until they are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Consecutive rows of the table, stored column by column in a mapped segment
+     */
+    public class Block {
+        private final ByteBuffer segment;
+        /**
+         * Offset of the archIndex column in the segment
+         */
+        private final int offset;
+        private final int rows;
+        private final long firstRow;
+
+        private Block(ByteBuffer segment, int offset, int rows, long firstRow) {
+            this.segment = segment;
+            this.offset = offset;
+            this.rows = rows;
+            this.firstRow = firstRow;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * @return the row number of the first row of the block in the table
+         */
+        public long getFirstRow() {
+            return firstRow;
+        }
+
+        public long getArchIndex(int i) {
+            return segment.getLong(offset + 8 * i);
+        }
+
+        public double getDouble(int column, int i) {
+            return segment.getDouble(valueOffset(column, i));
+        }
+
+        public long getLong(int column, int i) {
+            return segment.getLong(valueOffset(column, i));
+        }
+
+        /**
+         * @param column the index of a column
+         * @param i the row in the block
+         * @return the value as written in summary.csv (without CSV escaping), "" if missing
+         */
+        public String getString(int column, int i) {
+            switch (columns.get(column).getType()) {
+                case ResultsTable.DOUBLE:
+                    return Double.toString(getDouble(column, i));
+                case ResultsTable.LONG: {
+                    long value = getLong(column, i);
+                    return value == ResultsTable.NULL_LONG ? "" : Long.toString(value);
+                }
+                default: {
+                    long code = getLong(column, i);
+                    List<String> dictionary = dictionaries.get(column);
+                    if (code == ResultsTable.NULL_LONG || code < 0 || code >= dictionary.size() || dictionary.get((int) code) == null) {
+                        return "";
+                    }
+                    return dictionary.get((int) code);
+                }
+            }
+        }
+
+        /**
+         * @param column the index of a DOUBLE column
+         * @return the values of the column in the block, as a read-only view of the mapping
+         */
+        public DoubleBuffer doubles(int column) {
+            return view(column).asDoubleBuffer();
+        }
+
+        /**
+         * @param column the index of a LONG or CATEGORY column
+         * @return the values or codes of the column in the block, as a read-only view of the mapping
+         */
+        public LongBuffer longs(int column) {
+            return view(column).asLongBuffer();
+        }
+
+        /**
+         * @return the archIndex of the rows of the block, as a read-only view of the mapping
+         */
+        public LongBuffer archIndices() {
+            ByteBuffer view = segment.duplicate();
+            view.position(offset).limit(offset + 8 * rows);
+            return view.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        }
+
+        private ByteBuffer view(int column) {
+            ByteBuffer view = segment.duplicate();
+            int start = valueOffset(column, 0);
+            view.position(start).limit(start + 8 * rows);
+            return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private int valueOffset(int column, int i) {
+            return offset + 8 * (rows * (1 + column) + i);
+        }
+    }
+
+    /**
+     * Exports a results table to CSV
+     * @param args the table, and the CSV file (by default, the table with the .csv extension)
+     * @throws IOException if the table cannot be read or the CSV file written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ResultsTableReader <summary.tsr> [summary.csv]");
+            System.exit(1);
+        }
+        File table = new File(args[0]);
+        File csv = args.length > 1 ? new File(args[1]) : new File(table.getParentFile(), table.getName().replaceFirst("\\.[^.]*$", "") + ".csv");
+        try (ResultsTableReader reader = open(table)) {
+            reader.exportCsv(csv);
+            System.out.println("Exported " + reader.getNumberOfRows() + " rows of " + table + " to " + csv);
+        }
+    }
+}
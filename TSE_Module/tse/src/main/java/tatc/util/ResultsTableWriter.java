@@ -0,0 +1,255 @@
+package tatc.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends the rows of summary.csv to a results table (see ResultsTable). Rows are buffered column
+ * by column and written as one block every tatc.resultsBlockRows rows (1024 by default), through
+ * the results sink; the rows of an incomplete block are written by flush (called when the sink is
+ * synced, at the end of a search).
+ *
+ * The columns are those of the first row: its decision variables, typed after their values
+ * (integers LONG, other numbers DOUBLE, anything else CATEGORY), followed by its objectives
+ * (DOUBLE), with the direction of each objective. If the table already exists (e.g. a resumed
+ * search), its columns must be the same, and its dictionaries are extended. A last record cut short
+ * (e.g. a killed run) is removed before the new records are appended.
+ */
+public class ResultsTableWriter {
+
+    private static final int DEFAULT_BLOCK_ROWS = 1024;
+
+    private final File file;
+    private final Map<String, String> objectiveTypes;
+    private final int blockRows;
+
+    private List<ResultsTable.Column> columns;
+    private String[] names;
+    private int numberOfDecisions;
+    private List<Map<String, Integer>> dictionaries;
+    private long[] archIndices;
+    /**
+     * Values of the buffered rows, by column: double bits for DOUBLE columns, values or codes for
+     * LONG and CATEGORY columns
+     */
+    private long[][] values;
+    private int rows;
+    /**
+     * Dictionary records of the values first seen in the buffered rows
+     */
+    private final ByteArrayOutputStream dictionaryRecords = new ByteArrayOutputStream();
+    private boolean disabled;
+
+    /**
+     * @param file the table (e.g. summary.tsr)
+     * @param objectiveTypes the type ("MIN" or "MAX") of each objective, by name
+     * @param blockRows the number of rows of a block
+     */
+    public ResultsTableWriter(File file, Map<String, String> objectiveTypes, int blockRows) {
+        this.file = file;
+        this.objectiveTypes = objectiveTypes;
+        this.blockRows = Math.max(1, blockRows);
+    }
+
+    /**
+     * @return whether the results tables are written, from the tatc.binaryResults system property
+     * (true by default)
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("tatc.binaryResults", "true"));
+    }
+
+    /**
+     * @return the number of rows of a block, from the tatc.resultsBlockRows system property (1024
+     * by default)
+     */
+    public static int getDefaultBlockRows() {
+        return Integer.getInteger("tatc.resultsBlockRows", DEFAULT_BLOCK_ROWS);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Appends a row
+     * @param archIndex the index of the architecture
+     * @param decisions the decision variables, by name
+     * @param objectives the objectives, by name
+     * @throws IOException if interrupted while queuing a block
+     */
+    public synchronized void append(long archIndex, Map<String, ?> decisions, Map<String, Double> objectives) throws IOException {
+        if (disabled) {
+            return;
+        }
+        if (columns == null) {
+            createColumns(decisions, objectives);
+            if (disabled) {
+                return;
+            }
+        }
+        archIndices[rows] = archIndex;
+        for (int c = 0; c < numberOfDecisions; c++) {
+            values[c][rows] = encode(c, decisions.get(names[c]));
+        }
+        for (int c = numberOfDecisions; c < names.length; c++) {
+            Double value = objectives.get(names[c]);
+            values[c][rows] = Double.doubleToRawLongBits(value != null ? value : Double.NaN);
+        }
+        if (++rows == blockRows) {
+            flush();
+        }
+    }
+
+    /**
+     * Queues the buffered rows to the results sink as a block
+     * @throws IOException if interrupted while queuing the block
+     */
+    public synchronized void flush() throws IOException {
+        if (rows == 0 && dictionaryRecords.size() == 0) {
+            return;
+        }
+        int blockLength = rows == 0 ? 0 : 8 + 8 * rows * (1 + names.length);
+        ByteBuffer bytes = ByteBuffer.allocate(dictionaryRecords.size() + blockLength).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.put(dictionaryRecords.toByteArray());
+        if (rows > 0) {
+            bytes.putInt(ResultsTable.ROWS_RECORD);
+            bytes.putInt(rows);
+            for (int i = 0; i < rows; i++) {
+                bytes.putLong(archIndices[i]);
+            }
+            for (long[] column : values) {
+                for (int i = 0; i < rows; i++) {
+                    bytes.putLong(column[i]);
+                }
+            }
+        }
+        rows = 0;
+        dictionaryRecords.reset();
+        List<ResultsTable.Column> header = columns;
+        ResultsSink.getInstance().append(file, () -> ResultsTable.encodeHeader(header), bytes.array());
+    }
+
+    private void createColumns(Map<String, ?> decisions, Map<String, Double> objectives) {
+        List<ResultsTable.Column> created = new ArrayList<>();
+        for (Map.Entry<String, ?> decision : decisions.entrySet()) {
+            Object value = decision.getValue();
+            byte type;
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                type = ResultsTable.LONG;
+            } else if (value instanceof Number) {
+                type = ResultsTable.DOUBLE;
+            } else {
+                type = ResultsTable.CATEGORY;
+            }
+            created.add(new ResultsTable.Column(decision.getKey(), ResultsTable.DECISION, type, (byte) 0));
+        }
+        for (String objective : objectives.keySet()) {
+            String objectiveType = objectiveTypes.get(objective);
+            byte direction = "MAX".equalsIgnoreCase(objectiveType) ? (byte) -1 : "MIN".equalsIgnoreCase(objectiveType) ? (byte) 1 : (byte) 0;
+            created.add(new ResultsTable.Column(objective, ResultsTable.OBJECTIVE, ResultsTable.DOUBLE, direction));
+        }
+
+        dictionaries = new ArrayList<>();
+        for (int c = 0; c < created.size(); c++) {
+            dictionaries.add(new HashMap<>());
+        }
+        if (file.exists() && file.length() > 0 && !continueTable(created)) {
+            disabled = true;
+            return;
+        }
+        columns = created;
+        numberOfDecisions = decisions.size();
+        names = new String[created.size()];
+        for (int c = 0; c < names.length; c++) {
+            names[c] = created.get(c).getName();
+        }
+        archIndices = new long[blockRows];
+        values = new long[names.length][blockRows];
+    }
+
+    /**
+     * Checks that an existing table has the given columns, loads its dictionaries and truncates it
+     * after its last complete record, so the new records are not appended to one cut short
+     * @return false if the table cannot be continued
+     */
+    private boolean continueTable(List<ResultsTable.Column> created) {
+        long endOfRecords;
+        try (ResultsTableReader reader = ResultsTableReader.open(file)) {
+            List<ResultsTable.Column> existing = reader.getColumns();
+            boolean same = existing.size() == created.size();
+            for (int c = 0; same && c < existing.size(); c++) {
+                same = existing.get(c).sameAs(created.get(c));
+            }
+            if (!same) {
+                System.err.println(file + " has other columns, the binary results of this run are not written");
+                return false;
+            }
+            for (int c = 0; c < existing.size(); c++) {
+                List<String> dictionary = reader.getDictionary(c);
+                for (int code = 0; code < dictionary.size(); code++) {
+                    if (dictionary.get(code) != null) {
+                        dictionaries.get(c).put(dictionary.get(code), code);
+                    }
+                }
+            }
+            endOfRecords = reader.getEndOfRecords();
+        } catch (IOException e) {
+            System.err.println("Error reading " + file + ", the binary results of this run are not written: " + e.getMessage());
+            return false;
+        }
+        if (endOfRecords < file.length()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                System.err.println(file + ": dropping " + (channel.size() - endOfRecords) + " bytes of a record cut short");
+                channel.truncate(endOfRecords);
+            } catch (IOException e) {
+                System.err.println("Error truncating " + file + ", the binary results of this run are not written: " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long encode(int column, Object value) {
+        switch (columns.get(column).getType()) {
+            case ResultsTable.DOUBLE:
+                return Double.doubleToRawLongBits(value instanceof Number ? ((Number) value).doubleValue() : Double.NaN);
+            case ResultsTable.LONG:
+                return value instanceof Number ? ((Number) value).longValue() : ResultsTable.NULL_LONG;
+            default:
+                return value == null ? ResultsTable.NULL_LONG : code(column, value.toString());
+        }
+    }
+
+    /**
+     * Gets the code of a value in the dictionary of a column, adding it (and its dictionary record)
+     * the first time
+     */
+    private int code(int column, String value) {
+        Map<String, Integer> dictionary = dictionaries.get(column);
+        Integer code = dictionary.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.put(value, code);
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = ByteBuffer.allocate(16 + ResultsTable.align(bytes.length)).order(ByteOrder.LITTLE_ENDIAN);
+            record.putInt(ResultsTable.DICTIONARY_RECORD);
+            record.putInt(column);
+            record.putInt(code);
+            record.putInt(bytes.length);
+            record.put(bytes);
+            dictionaryRecords.write(record.array(), 0, record.capacity());
+        }
+        return code;
+    }
+}
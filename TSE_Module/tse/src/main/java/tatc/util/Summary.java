@@ -1,152 +1,237 @@
 package tatc.util;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import org.moeaframework.core.Solution;
 
+import tatc.architecture.specifications.CompoundObjective;
 import tatc.decisions.Decision;
 import tatc.decisions.ConstructionNode;
+import tatc.decisions.adg.AdgSolution;
 
 public class Summary {
-    public static void writeSummaryFile(Map<String, Double> objectives, Map<String, Object> archVariables, int archIndex) throws IOException {
-        //String csvFile = "summary.csv";
-        File file_dir = new File(System.getProperty("tatc.output"));
-        if (!file_dir.exists()) {
-            file_dir.mkdirs();
+    /**
+     * Type ("MIN" or "MAX") of each objective, by name, for the directions of the results tables
+     */
+    private static volatile Map<String, String> objectiveTypes = Collections.emptyMap();
+    /**
+     * Results table (summary.tsr) written next to each summary.csv, if enabled
+     */
+    private static final Map<File, ResultsTableWriter> tables = new HashMap<>();
+    private static boolean tablesFlushedOnSync;
+
+    /**
+     * Sets the objectives of the search, whose directions are recorded in the results tables
+     * @param objectives the objectives
+     */
+    public static void setObjectives(List<CompoundObjective> objectives) {
+        Map<String, String> types = new HashMap<>();
+        for (CompoundObjective objective : objectives) {
+            types.put(objective.getParent().getName(), objective.getParent().getType());
         }
-        String csvFile = System.getProperty("tatc.output") + File.separator + "summary.csv";
-        File file = new File(csvFile);
-        boolean fileExists = file.exists();
+        objectiveTypes = types;
+    }
+
+    /**
+     * Summary rows can be written from several evaluation completion threads at the same time.
+     * They are queued to the results sink, which appends them to summary.csv from its writer
+     * thread, with the header first if the file is empty.
+     */
+    public static void writeSummaryFile(Map<String, Double> objectives, Map<String, Object> archVariables, long archIndex) throws IOException {
+        File file = summaryFile();
     
         // Collect headers from archVariables and objectives
         Set<String> variableNames = new LinkedHashSet<>(archVariables.keySet());
         Set<String> objectiveNames = new LinkedHashSet<>(objectives.keySet());
     
-        // Prepare to write to CSV
-        try (FileWriter csvWriter = new FileWriter(file, true)) { // 'true' enables appending
-            // If the file is new, write the header
-            if (!fileExists) {
-                List<String> header = new ArrayList<>();
-                header.add("archIndex"); // Include archIndex in header
-                header.addAll(variableNames);
-                header.addAll(objectiveNames);
-                csvWriter.append(String.join(",", header));
-                csvWriter.append("\n");
-            }
+        // Header, only computed if the file is new
+        Supplier<String> header = () -> {
+            List<String> names = new ArrayList<>();
+            names.add("archIndex"); // Include archIndex in header
+            names.addAll(variableNames);
+            names.addAll(objectiveNames);
+            return String.join(",", names) + "\n";
+        };
     
-            // Prepare row values
-            List<String> rowValues = new ArrayList<>();
-            rowValues.add(Integer.toString(archIndex)); // Add archIndex to row
+        // Prepare row values
+        List<String> rowValues = new ArrayList<>();
+        rowValues.add(Long.toString(archIndex)); // Add archIndex to row
     
-            // Add decision variable values
-            for (String varName : variableNames) {
-                Object value = archVariables.get(varName);
-                String valueStr = (value != null) ? value.toString() : "";
-                // Escape quotes and handle special characters
-                valueStr = valueStr.replace("\"", "\"\"");
-                if (valueStr.contains(",") || valueStr.contains("\"") || valueStr.contains("\n")) {
-                    valueStr = "\"" + valueStr + "\"";
-                }
-                rowValues.add(valueStr);
+        // Add decision variable values
+        for (String varName : variableNames) {
+            Object value = archVariables.get(varName);
+            String valueStr = (value != null) ? value.toString() : "";
+            // Escape quotes and handle special characters
+            valueStr = valueStr.replace("\"", "\"\"");
+            if (valueStr.contains(",") || valueStr.contains("\"") || valueStr.contains("\n")) {
+                valueStr = "\"" + valueStr + "\"";
             }
+            rowValues.add(valueStr);
+        }
     
-            // Add objective values
-            for (String objName : objectiveNames) {
-                Double value = objectives.get(objName);
-                String valueStr = (value != null) ? value.toString() : "";
-                // Escape quotes and handle special characters
-                valueStr = valueStr.replace("\"", "\"\"");
-                if (valueStr.contains(",") || valueStr.contains("\"") || valueStr.contains("\n")) {
-                    valueStr = "\"" + valueStr + "\"";
-                }
-                rowValues.add(valueStr);
+        // Add objective values
+        for (String objName : objectiveNames) {
+            Double value = objectives.get(objName);
+            String valueStr = (value != null) ? value.toString() : "";
+            // Escape quotes and handle special characters
+            valueStr = valueStr.replace("\"", "\"\"");
+            if (valueStr.contains(",") || valueStr.contains("\"") || valueStr.contains("\n")) {
+                valueStr = "\"" + valueStr + "\"";
             }
+            rowValues.add(valueStr);
+        }
     
-            // Write the row to the CSV file
-            csvWriter.append(String.join(",", rowValues));
-            csvWriter.append("\n");
+        // Queue the row for the CSV file, and for the results table
+        ResultsSink.getInstance().append(file, header, String.join(",", rowValues) + "\n");
+        ResultsTableWriter table = table(file);
+        if (table != null) {
+            table.append(archIndex, archVariables, objectives);
         }
     }
 
+    /**
+     * Writes the summary row of a solution of the GA
+     * @param objectives the objective values
+     * @param solution the solution
+     * @param archIndex the index of the architecture in the summary
+     * @param decisions the decisions of the graph, in topological order
+     * @param variableCounts the number of variables of each decision in this solution (see
+     * Graph.variableCounts), since the decisions only hold the inputs of the last decoded solution
+     */
     public static void writeSummaryFileGA(
         Map<String, Double> objectives,
         Solution solution,
         int archIndex,
-        List<Decision> decisions) throws IOException {
-        File file_dir = new File(System.getProperty("tatc.output"));
-        if (!file_dir.exists()) {
-            file_dir.mkdirs();
-        }
-
-        String csvFile = System.getProperty("tatc.output") + File.separator + "summary.csv";
-        File file = new File(csvFile);
-        boolean fileExists = file.exists();
+        List<Decision> decisions,
+        int[] variableCounts) throws IOException {
+        File file = summaryFile();
 
         // --- 1) Identify the number of variables in this solution ---
-        int nVars = solution.getNumberOfVariables();
+        int[] genes = AdgSolution.genesOf(solution);
+        int nVars = genes.length;
 
         // --- 2) Collect objective names ---
         List<String> objectiveNames = new ArrayList<>(objectives.keySet());
 
-        // --- 3) If this is the first time (file doesn't exist), write the header ---
-        try (FileWriter csvWriter = new FileWriter(file, true)) {
-            if (!fileExists) {
-                List<String> header = new ArrayList<>();
-                header.add("archIndex");
-                
-                // Add decision variable names from decisions
-                for (Decision d : decisions) {
-                    if (d instanceof ConstructionNode) {
-                        continue;
-                    }
-                    List<String> varNames = d.getVariableNames();
-                    header.addAll(varNames);
-                }
-                
-                header.addAll(objectiveNames);
-                csvWriter.append(String.join(",", header)).append("\n");
-            }
-
-            // --- 4) Prepare the row for this solution ---
-            List<String> rowValues = new ArrayList<>();
-            rowValues.add(Integer.toString(archIndex));  // archIndex
+        // --- 3) Header, only computed if the file is new ---
+        Supplier<String> header = () -> {
+            List<String> names = new ArrayList<>();
+            names.add("archIndex");
 
-            // 4A) Add the solution's variable values
-            int varOffset = 0;
+            // Add decision variable names from decisions
             for (Decision d : decisions) {
                 if (d instanceof ConstructionNode) {
                     continue;
                 }
-                int numVars = d.getNumberOfVariables();
-                // Ensure we don't exceed solution bounds
-                for (int i = 0; i < numVars && (varOffset + i) < nVars; i++) {
-                    double value = ((org.moeaframework.core.variable.RealVariable) solution.getVariable(varOffset + i)).getValue();
-                    String valueStr = String.valueOf(value);
-                    valueStr = safeForCSV(valueStr);
-                    rowValues.add(valueStr);
+                List<String> varNames = d.getVariableNames();
+                names.addAll(varNames);
+            }
+
+            names.addAll(objectiveNames);
+            return String.join(",", names) + "\n";
+        };
+
+        // --- 4) Prepare the row for this solution ---
+        List<String> rowValues = new ArrayList<>();
+        rowValues.add(Integer.toString(archIndex));  // archIndex
+
+        // 4A) Add the solution's variable values
+        ResultsTableWriter table = table(file);
+        Map<String, Object> variables = table != null ? new LinkedHashMap<>() : null;
+        int varOffset = 0;
+        for (int k = 0; k < decisions.size(); k++) {
+            Decision d = decisions.get(k);
+            if (d instanceof ConstructionNode) {
+                continue;
+            }
+            int numVars = variableCounts[k];
+            List<String> varNames = variables != null ? d.getVariableNames() : null;
+            // Ensure we don't exceed solution bounds
+            int[] values = d.getVariableValues(Arrays.copyOfRange(genes, Math.min(varOffset, nVars),
+                    Math.min(varOffset + numVars, nVars)));
+            for (int i = 0; i < values.length; i++) {
+                double value = values[i];
+                String valueStr = String.valueOf(value);
+                valueStr = safeForCSV(valueStr);
+                rowValues.add(valueStr);
+                if (variables != null && i < varNames.size()) {
+                    variables.put(varNames.get(i), value);
                 }
-                varOffset += numVars;
             }
+            varOffset += numVars;
+        }
 
-            // 4B) Add the objective values
+        // 4B) Add the objective values
+        for (String objName : objectiveNames) {
+            Double val = objectives.getOrDefault(objName, Double.NaN);
+            String valStr = safeForCSV(val.toString());
+            rowValues.add(valStr);
+        }
+
+        // --- 5) Queue the row for the CSV file, and for the results table ---
+        ResultsSink.getInstance().append(file, header, String.join(",", rowValues) + "\n");
+        if (table != null) {
+            Map<String, Double> objectiveValues = new LinkedHashMap<>();
             for (String objName : objectiveNames) {
-                Double val = objectives.getOrDefault(objName, Double.NaN);
-                String valStr = safeForCSV(val.toString());
-                rowValues.add(valStr);
+                objectiveValues.put(objName, objectives.getOrDefault(objName, Double.NaN));
+            }
+            table.append(archIndex, variables, objectiveValues);
+        }
+    }
+
+    /**
+     * Gets the results table written next to a summary file, the first time creating it
+     * @param summaryFile the summary file
+     * @return the results table (summary.tsr), or null if tatc.binaryResults is false
+     */
+    private static ResultsTableWriter table(File summaryFile) {
+        if (!ResultsTableWriter.isEnabled()) {
+            return null;
+        }
+        synchronized (tables) {
+            if (!tablesFlushedOnSync) {
+                // The rows of incomplete blocks are written when the results are synced
+                ResultsSink.getInstance().addSyncListener(Summary::flushTables);
+                tablesFlushedOnSync = true;
             }
+            return tables.computeIfAbsent(summaryFile, f -> new ResultsTableWriter(
+                    new File(f.getParentFile(), "summary.tsr"), objectiveTypes, ResultsTableWriter.getDefaultBlockRows()));
+        }
+    }
 
-            // --- 5) Write the row to CSV ---
-            csvWriter.append(String.join(",", rowValues)).append("\n");
+    /**
+     * Queues the rows buffered by the results tables
+     */
+    public static void flushTables() {
+        List<ResultsTableWriter> writers;
+        synchronized (tables) {
+            writers = new ArrayList<>(tables.values());
         }
+        for (ResultsTableWriter writer : writers) {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Error writing " + writer.getFile() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return summary.csv in the tatc.output folder
+     */
+    private static File summaryFile() {
+        return new File(System.getProperty("tatc.output"), "summary.csv");
     }
 
     /**
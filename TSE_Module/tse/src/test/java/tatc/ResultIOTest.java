@@ -0,0 +1,53 @@
+package tatc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.moeaframework.core.Population;
+import org.moeaframework.core.Solution;
+import tatc.decisions.adg.IntGenome;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultIOTest {
+
+    private static Solution genomeSolution(String label, int... genes) {
+        int[] lower = new int[genes.length];
+        int[] upper = new int[genes.length];
+        java.util.Arrays.fill(upper, 9);
+        Solution solution = new Solution(1, 2);
+        solution.setVariable(0, new IntGenome(genes, lower, upper));
+        solution.setObjective(0, 1.5);
+        solution.setObjective(1, -2.0);
+        solution.setAttribute("label", label);
+        return solution;
+    }
+
+    @Test
+    void genomeGenesAreWrittenOnePerColumn() throws IOException {
+        StringBuilder row = new StringBuilder();
+        ResultIO.appendDecisions(row, genomeSolution("0", 3, 0, 7), ",");
+        assertEquals("3,0,7,", row.toString());
+        assertEquals(3, ResultIO.getNumberOfDecisionColumns(genomeSolution("0", 3, 0, 7)));
+    }
+
+    @Test
+    void labelRowsHaveTheColumnsOfTheHeader(@TempDir File directory) throws IOException {
+        Population population = new Population();
+        population.add(genomeSolution("1", 3, 0, 7));
+        population.add(genomeSolution("0", 1, 2, 4));
+        String filename = new File(directory, "results").getPath();
+        assertTrue(ResultIO.saveLabels(population, filename, ","));
+
+        List<String> lines = Files.readAllLines(new File(filename + ".dlm").toPath(), StandardCharsets.UTF_8);
+        assertEquals("Label,dec0,dec1,dec2,obj0,obj1", lines.get(0));
+        assertEquals("1,3,0,7,1.5,-2.0", lines.get(1));
+        assertEquals("0,1,2,4,1.5,-2.0", lines.get(2));
+    }
+}
@@ -0,0 +1,158 @@
+package tatc.architecture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchitecturePackStoreTest {
+
+    /**
+     * Start of a record ("TAPK" and a few header bytes), as left by a write cut short
+     */
+    private static final byte[] PARTIAL_RECORD = {0x54, 0x41, 0x50, 0x4B, 0, 0};
+
+    @TempDir
+    File directory;
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private File pack(int segment) {
+        return new File(directory, String.format("architectures-%03d.pack", segment));
+    }
+
+    private File index() {
+        return new File(directory, "architectures.idx");
+    }
+
+    private void writeArchitectures(ArchitecturePackStore store, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            store.put("arch-" + i, ArchitecturePackStore.ARCH_JSON, bytes("{\"arch\":" + i + "}"));
+        }
+    }
+
+    private void assertArchitectures(ArchitecturePackStore store, int count) throws IOException {
+        assertEquals(count, store.getArchitectureIds().size());
+        for (int i = 0; i < count; i++) {
+            assertArrayEquals(bytes("{\"arch\":" + i + "}"), store.get("arch-" + i, ArchitecturePackStore.ARCH_JSON));
+        }
+    }
+
+    @Test
+    void keepsTheLastVersionAcrossReopens() throws IOException {
+        try (ArchitecturePackStore store = new ArchitecturePackStore(directory, 1 << 20)) {
+            store.put("arch-0", ArchitecturePackStore.ARCH_JSON, bytes("{}"));
+            store.put("arch-0", ArchitecturePackStore.GBL, bytes("{\"v\":1}"));
+            store.update("arch-0", ArchitecturePackStore.GBL, old -> bytes(new String(old, StandardCharsets.UTF_8) + " "));
+            assertNull(store.get("arch-1", ArchitecturePackStore.GBL));
+        }
+        try (ArchitecturePackStore store = new ArchitecturePackStore(directory, 1 << 20)) {
+            assertArrayEquals(bytes("{\"v\":1} "), store.get("arch-0", ArchitecturePackStore.GBL));
+            assertEquals(new HashSet<>(Arrays.asList(ArchitecturePackStore.ARCH_JSON, ArchitecturePackStore.GBL)),
+                    store.getFileNames("arch-0"));
+        }
+    }
+
+    @Test
+    void startsNewPackFilesPastTheSegmentSize() throws IOException {
+        try (ArchitecturePackStore store = new ArchitecturePackStore(directory, 100)) {
+            writeArchitectures(store, 20);
+            assertArchitectures(store, 20);
+        }
+        assertTrue(pack(2).exists());
+        try (ArchitecturePackStore store = new ArchitecturePackStore(directory, 100)) {
+            assertArchitectures(store, 20);
+            writeArchitectures(store, 25);
+        }
+        try (ArchitecturePackStore store = new ArchitecturePackStore(directory, 100)) {
+            assertArchitectures(store, 25);
+        }
+    }
+
+    @Test
+    void recoversRecordsMissingFromTheIndex() throws IOException {
+        try (ArchitecturePackStore store = new ArchitecturePackStore(directory, 1 << 20)) {
+            writeArchitectures(store, 10);
+        }
+        // Killed before the index was written: only the first records are indexed, the last one in part
+        try (RandomAccessFile raf = new RandomAccessFile(index(), "rw")) {
+            raf.setLength(raf.length() / 3);
+        }
+        try (ArchitecturePackStore store = new ArchitecturePackStore(directory, 1 << 20)) {
+            assertArchitectures(store, 10);
+        }
+        // The recovered records are indexed again
+        long indexLength = index().length();
+        try (ArchitecturePackStore store = new ArchitecturePackStore(directory, 1 << 20)) {
+            assertArchitectures(store, 10);
+        }
+        assertEquals(indexLength, index().length());
+    }
+
+    @Test
+    void dropsARecordCutShort() throws IOException {
+        try (ArchitecturePackStore store = new ArchitecturePackStore(directory, 1 << 20)) {
+            writeArchitectures(store, 5);
+        }
+        long packLength = pack(0).length();
+        try (FileOutputStream out = new FileOutputStream(pack(0), true)) {
+            out.write(PARTIAL_RECORD);
+        }
+        try (ArchitecturePackStore store = new ArchitecturePackStore(directory, 1 << 20)) {
+            assertEquals(packLength, pack(0).length());
+            assertArchitectures(store, 5);
+            writeArchitectures(store, 8);
+        }
+        try (ArchitecturePackStore store = new ArchitecturePackStore(directory, 1 << 20)) {
+            assertArchitectures(store, 8);
+        }
+    }
+
+    @Test
+    void readOnlyStoresDoNotModifyTheFiles() throws IOException {
+        try (ArchitecturePackStore store = new ArchitecturePackStore(directory, 1 << 20)) {
+            writeArchitectures(store, 6);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(index(), "rw")) {
+            raf.setLength(raf.length() / 2 + 1);
+        }
+        try (FileOutputStream out = new FileOutputStream(pack(0), true)) {
+            out.write(PARTIAL_RECORD);
+        }
+        long packLength = pack(0).length();
+        long indexLength = index().length();
+
+        try (ArchitecturePackStore store = ArchitecturePackStore.openReadOnly(directory)) {
+            assertArchitectures(store, 6);
+            assertThrows(IOException.class, () -> store.put("arch-6", ArchitecturePackStore.ARCH_JSON, bytes("{}")));
+        }
+        assertEquals(packLength, pack(0).length());
+        assertEquals(indexLength, index().length());
+    }
+
+    @Test
+    void readOnlyStoresRequireAnExistingStore() {
+        File missing = new File(directory, "results_missing");
+        assertFalse(ArchitecturePackStore.exists(missing));
+        assertThrows(FileNotFoundException.class, () -> ArchitecturePackStore.openReadOnly(missing));
+        assertFalse(missing.exists());
+        assertThrows(FileNotFoundException.class, () -> ArchitecturePackStore.openReadOnly(directory));
+        assertFalse(pack(0).exists());
+    }
+}
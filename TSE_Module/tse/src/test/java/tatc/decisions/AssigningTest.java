@@ -0,0 +1,244 @@
+package tatc.decisions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AssigningTest {
+
+    private static int[] randomBits(SplittableRandom random, int length) {
+        int[] bits = new int[length];
+        for (int i = 0; i < length; i++) {
+            bits[i] = random.nextInt(2);
+        }
+        return bits;
+    }
+
+    /**
+     * Packs 0/1 assignments in genes, as the decision stores them
+     */
+    private static int[] pack(int[] bits) {
+        int[] genes = new int[Assigning.genesFor(bits.length)];
+        for (int k = 0; k < bits.length; k++) {
+            genes[k / Assigning.ASSIGNMENTS_PER_GENE] |= bits[k] << (k % Assigning.ASSIGNMENTS_PER_GENE);
+        }
+        return genes;
+    }
+
+    private static int[] unpack(int[] genes, int length) {
+        int[] bits = new int[length];
+        for (int k = 0; k < length; k++) {
+            bits[k] = Assigning.isAssigned(genes, k) ? 1 : 0;
+        }
+        return bits;
+    }
+
+    /**
+     * Assigning decision with n L elements and m R elements
+     */
+    private static Assigning assigning(int n, int m) {
+        List<Object> lset = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            lset.add("l" + i);
+        }
+        List<Object> rset = new ArrayList<>();
+        for (int j = 0; j < m; j++) {
+            rset.add("r" + j);
+        }
+        Assigning assigning = new Assigning(null, "assigning");
+        assigning.setLset(lset);
+        assigning.setRset(rset);
+        return assigning;
+    }
+
+    /**
+     * Reference "one R per L" repair, column after column
+     */
+    private static int[] referenceRepair(int[] chrom, int n, int m) {
+        int[] repaired = chrom.clone();
+        for (int i = 0; i < n; i++) {
+            boolean kept = false;
+            for (int r = 0; r < m; r++) {
+                int index = r * n + i;
+                if (repaired[index] == 1) {
+                    if (!kept) {
+                        kept = true;
+                    } else {
+                        repaired[index] = 0;
+                    }
+                }
+            }
+        }
+        return repaired;
+    }
+
+    @Test
+    void flipsNothingOrEverything() {
+        SplittableRandom random = new SplittableRandom(1);
+        int[] copy = randomBits(random, 150);
+        int[] genes = pack(copy);
+        Assigning.flipBits(genes, 150, 0.0, random);
+        assertArrayEquals(pack(copy), genes);
+        Assigning.flipBits(genes, 100, 1.0, random);
+        int[] bits = unpack(genes, 150);
+        for (int i = 0; i < bits.length; i++) {
+            assertEquals(i < 100 ? 1 - copy[i] : copy[i], bits[i]);
+        }
+    }
+
+    @Test
+    void flipRateMatchesProbability() {
+        SplittableRandom random = new SplittableRandom(2);
+        int length = 1000;
+        int trials = 200;
+        long flips = 0;
+        for (int trial = 0; trial < trials; trial++) {
+            int[] copy = randomBits(random, length);
+            int[] genes = pack(copy);
+            Assigning.flipBits(genes, length, 0.05, random);
+            // The unused bits of the last gene are never flipped
+            assertArrayEquals(genes, pack(unpack(genes, length)));
+            int[] bits = unpack(genes, length);
+            for (int i = 0; i < length; i++) {
+                if (bits[i] != copy[i]) {
+                    flips++;
+                }
+            }
+        }
+        double rate = (double) flips / (length * trials);
+        assertEquals(0.05, rate, 0.005);
+    }
+
+    @Test
+    void crossoverTakesEachAssignmentFromAParent() {
+        SplittableRandom random = new SplittableRandom(3);
+        int length = 200;
+        int[] ones = new int[length];
+        Arrays.fill(ones, 1);
+        int[] p1 = pack(new int[length]);
+        int[] p2 = pack(ones);
+        int fromFirst = 0;
+        for (int trial = 0; trial < 50; trial++) {
+            int[] child = new int[p1.length];
+            Assigning.uniformCrossover(p1, p2, child, p1.length, random);
+            for (int bit : unpack(child, length)) {
+                fromFirst += 1 - bit;
+            }
+            // The unused bits of the last gene stay cleared
+            assertArrayEquals(child, pack(unpack(child, length)));
+        }
+        assertEquals(0.5, fromFirst / (50.0 * length), 0.02);
+
+        // The batch path writes the child in a buffer, which may be longer than the parents
+        Assigning assigning = assigning(7, 5);
+        VariationScratch scratch = new VariationScratch(new SplittableRandom(4));
+        FragmentBuffer parent1 = new FragmentBuffer();
+        FragmentBuffer parent2 = new FragmentBuffer();
+        FragmentBuffer child = new FragmentBuffer();
+        child.setLength(40);
+        for (int trial = 0; trial < 20; trial++) {
+            int[] a = randomBits(random, 35);
+            int[] b = randomBits(random, 35);
+            int[] packedA = pack(a);
+            int[] packedB = pack(b);
+            parent1.setLength(2);
+            parent2.setLength(2);
+            System.arraycopy(packedA, 0, parent1.array(), 0, 2);
+            System.arraycopy(packedB, 0, parent2.array(), 0, 2);
+            assigning.crossoverInto(parent1, parent2, child, scratch);
+            assertEquals(2, child.length());
+            int[] bits = unpack(child.toArray(), 35);
+            for (int i = 0; i < 35; i++) {
+                assertTrue(bits[i] == a[i] || bits[i] == b[i]);
+            }
+            int[] unbuffered = unpack((int[]) assigning.crossover(packedA, packedB), 35);
+            for (int i = 0; i < 35; i++) {
+                assertTrue(unbuffered[i] == a[i] || unbuffered[i] == b[i]);
+            }
+        }
+    }
+
+    @Test
+    void repairsMatchTheColumnByColumnReference() {
+        SplittableRandom random = new SplittableRandom(5);
+        int n = 7;
+        int m = 4;
+        Assigning assigning = assigning(n, m);
+        VariationScratch scratch = new VariationScratch(new SplittableRandom(6));
+        FragmentBuffer child = new FragmentBuffer();
+        for (int trial = 0; trial < 100; trial++) {
+            int[] chrom = randomBits(random, n * m);
+            int[] expected = pack(referenceRepair(chrom, n, m));
+
+            assertArrayEquals(expected, (int[]) assigning.repairWithDependency(pack(chrom), null));
+
+            // The scratch flags are reused from one trial to the next
+            int[] genes = pack(chrom);
+            child.setLength(genes.length);
+            System.arraycopy(genes, 0, child.array(), 0, genes.length);
+            assigning.repairInPlace(child, null, scratch);
+            assertArrayEquals(expected, child.toArray());
+        }
+
+        // Shorter children are padded with unassigned genes before the repair
+        int[] shorter = randomBits(random, 10);
+        int[] padded = Arrays.copyOf(shorter, n * m);
+        child.setLength(1);
+        child.array()[0] = pack(shorter)[0];
+        assigning.repairInPlace(child, null, scratch);
+        assertArrayEquals(pack(referenceRepair(padded, n, m)), child.toArray());
+
+        // Bits past the n*m assignments, e.g. from a longer matrix, are cleared
+        int[] longer = randomBits(random, 2 * Assigning.ASSIGNMENTS_PER_GENE);
+        int[] repaired = (int[]) assigning.repairWithDependency(pack(longer), null);
+        assertArrayEquals(pack(referenceRepair(Arrays.copyOf(longer, n * m), n, m)), repaired);
+    }
+
+    @Test
+    void randomEncodingsUseOnlyTheAssignmentBits() {
+        Assigning assigning = assigning(7, 5);
+        assertEquals(2, assigning.getNumberOfVariables());
+        assertEquals(1 << Assigning.ASSIGNMENTS_PER_GENE, assigning.getMaxOptionForVariable(0));
+        assertEquals(1 << 5, assigning.getMaxOptionForVariable(1));
+        for (int trial = 0; trial < 20; trial++) {
+            int[] genes = (int[]) assigning.randomEncoding();
+            assertEquals(2, genes.length);
+            assertTrue(genes[0] >= 0 && genes[0] < assigning.getMaxOptionForVariable(0));
+            assertTrue(genes[1] >= 0 && genes[1] < assigning.getMaxOptionForVariable(1));
+            assertArrayEquals(unpack(genes, 35), assigning.getVariableValues(genes));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordsListTheAssignedElementsInOrder() {
+        Assigning assigning = assigning(2, 3);
+        assigning.applyEncoding(pack(new int[]{1, 0, 1, 0, 0, 0}));
+        List<Object> records = assigning.getResult();
+        assertEquals(2, records.size());
+        Map<String, Object> first = (Map<String, Object>) records.get(0);
+        assertEquals("l0", first.get("L"));
+        assertEquals(Arrays.asList("r0", "r2"), first.get("AssignedR"));
+        Map<String, Object> second = (Map<String, Object>) records.get(1);
+        assertEquals("l1", second.get("L"));
+        assertEquals(new ArrayList<>(), second.get("AssignedR"));
+
+        // Assignments on both sides of a gene boundary: 29 = 5*5 + 4 and 30 = 6*5 + 0
+        Assigning larger = assigning(7, 5);
+        int[] bits = new int[35];
+        bits[29] = 1;
+        bits[30] = 1;
+        larger.applyEncoding(pack(bits));
+        records = larger.getResult();
+        assertEquals(Arrays.asList("r4"), ((Map<String, Object>) records.get(5)).get("AssignedR"));
+        assertEquals(Arrays.asList("r0"), ((Map<String, Object>) records.get(6)).get("AssignedR"));
+    }
+}
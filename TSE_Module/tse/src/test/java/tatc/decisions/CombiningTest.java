@@ -0,0 +1,61 @@
+package tatc.decisions;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class CombiningTest {
+
+    /**
+     * Combining decision mutating every gene
+     */
+    private static Combining combining(List<List<Object>> alternatives) {
+        Combining combining = new Combining(null, "combining") {
+            @Override
+            protected double getMutationProbability() {
+                return 1.0;
+            }
+        };
+        combining.setAlternatives(alternatives);
+        return combining;
+    }
+
+    @Test
+    @Timeout(5)
+    void mutationSkipsSingleAlternativeGenes() {
+        Combining combining = combining(Arrays.asList(
+                Collections.singletonList((Object) 500),
+                Arrays.asList((Object) 30, 60, 90)));
+        for (int trial = 0; trial < 100; trial++) {
+            int[] chromosome = {0, trial % 3};
+            combining.mutate(chromosome);
+            assertEquals(0, chromosome[0]);
+            assertNotEquals(trial % 3, chromosome[1]);
+        }
+    }
+
+    @Test
+    @Timeout(5)
+    void inPlaceMutationSkipsSingleAlternativeGenes() {
+        Combining combining = combining(Arrays.asList(
+                Collections.singletonList((Object) 500),
+                Arrays.asList((Object) 30, 60)));
+        VariationScratch scratch = new VariationScratch(new SplittableRandom(1));
+        FragmentBuffer buffer = new FragmentBuffer();
+        for (int trial = 0; trial < 100; trial++) {
+            buffer.setLength(2);
+            buffer.array()[0] = 0;
+            buffer.array()[1] = trial % 2;
+            combining.mutateInPlace(buffer, scratch);
+            assertEquals(0, buffer.array()[0]);
+            assertEquals(1 - trial % 2, buffer.array()[1]);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package tatc.decisions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EncodingStoreTest {
+
+    /**
+     * Home position of an id in a table of the given capacity, as computed by the store
+     */
+    private static int home(int id, int capacity) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (capacity - 1);
+    }
+
+    /**
+     * Ids sharing the given home position of the initial 16-position table
+     */
+    private static List<Integer> idsWithHome(int position, int count) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; ids.size() < count; id++) {
+            if (home(id, 16) == position) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static void assertSameContents(Map<Integer, int[]> expected, EncodingStore store) {
+        assertEquals(expected.size(), store.size());
+        Map<Integer, int[]> actual = store.toMap();
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Integer, int[]> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue(), actual.get(entry.getKey()));
+            assertArrayEquals(entry.getValue(), store.get(entry.getKey()));
+            assertEquals(entry.getValue().length, store.length(entry.getKey()));
+        }
+    }
+
+    @Test
+    void removalShiftsBackCollidingIds() {
+        // The probe sequence of position 15 wraps around to the start of the table
+        for (int position : new int[]{3, 15}) {
+            List<Integer> ids = idsWithHome(position, 5);
+            EncodingStore store = new EncodingStore();
+            for (int id : ids) {
+                store.put(id, new int[]{id, id + 1});
+            }
+            for (int removed = 0; removed < ids.size(); removed++) {
+                assertTrue(store.remove(ids.get(removed)));
+                assertFalse(store.remove(ids.get(removed)));
+                assertNull(store.get(ids.get(removed)));
+                for (int i = removed + 1; i < ids.size(); i++) {
+                    int id = ids.get(i);
+                    assertArrayEquals(new int[]{id, id + 1}, store.get(id));
+                }
+                assertEquals(ids.size() - removed - 1, store.size());
+            }
+        }
+    }
+
+    @Test
+    void removalInTheMiddleOfAProbeSequence() {
+        // Ids of two neighbouring home positions interleaved in one probe sequence
+        List<Integer> first = idsWithHome(7, 3);
+        List<Integer> second = idsWithHome(8, 3);
+        EncodingStore store = new EncodingStore();
+        Map<Integer, int[]> expected = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            for (int id : new int[]{first.get(i), second.get(i)}) {
+                store.put(id, new int[]{id});
+                expected.put(id, new int[]{id});
+            }
+        }
+        for (int id : new int[]{second.get(0), first.get(1), first.get(0)}) {
+            store.remove(id);
+            expected.remove(id);
+            assertSameContents(expected, store);
+        }
+    }
+
+    @Test
+    void matchesAMapThroughRehashesAndReleases() {
+        SplittableRandom random = new SplittableRandom(1);
+        EncodingStore store = new EncodingStore();
+        Map<Integer, int[]> expected = new HashMap<>();
+        int highestId = -1;
+        for (int step = 0; step < 20000; step++) {
+            int id = random.nextInt(step < 10000 ? 200 : 2000);
+            int operation = random.nextInt(10);
+            if (operation < 6) {
+                // Longer fragments now and then, which widen the arena
+                int[] encoding = new int[1 + random.nextInt(step % 1000 == 0 ? 40 : 8)];
+                for (int i = 0; i < encoding.length; i++) {
+                    encoding[i] = random.nextInt(100);
+                }
+                store.put(id, encoding);
+                expected.put(id, encoding.clone());
+                encoding[0] = -1; // the store keeps its own copy
+                highestId = Math.max(highestId, id);
+            } else if (operation < 9) {
+                assertEquals(expected.remove(id) != null, store.remove(id));
+            } else {
+                int[] destination = new int[64];
+                int length = store.copyInto(id, destination);
+                int[] value = expected.get(id);
+                assertEquals(value == null ? -1 : value.length, length);
+            }
+            if (step % 2500 == 0) {
+                Set<Integer> alive = new HashSet<>();
+                for (int key : expected.keySet()) {
+                    if (random.nextBoolean()) {
+                        alive.add(key);
+                    }
+                }
+                int released = expected.size() - alive.size();
+                expected.keySet().retainAll(alive);
+                assertEquals(released, store.retainOnly(alive));
+            }
+            if (step % 500 == 0) {
+                assertSameContents(expected, store);
+            }
+        }
+        assertSameContents(expected, store);
+        assertEquals(highestId, store.getHighestId());
+        assertSameContents(expected, store.copy());
+    }
+}
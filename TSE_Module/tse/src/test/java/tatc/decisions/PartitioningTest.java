@@ -0,0 +1,107 @@
+package tatc.decisions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitioningTest {
+
+    /**
+     * Reference canonical form: subsets numbered 1, 2, 3, ... in the order of their first element
+     */
+    private static int[] restrictedGrowthString(int[] encoding) {
+        Map<Integer, Integer> labels = new HashMap<>();
+        int[] canonical = new int[encoding.length];
+        for (int k = 0; k < encoding.length; k++) {
+            Integer label = labels.get(encoding[k]);
+            if (label == null) {
+                label = labels.size() + 1;
+                labels.put(encoding[k], label);
+            }
+            canonical[k] = label;
+        }
+        return canonical;
+    }
+
+    private static long[] partitionHash(int[] encoding, int offset, int length, int[] scratch) {
+        long[] hash = new long[2];
+        Partitioning.partitionHash(encoding, offset, length, scratch, hash);
+        return hash;
+    }
+
+    private static int[] randomEncoding(Random random, int length) {
+        int[] encoding = new int[length];
+        for (int k = 0; k < length; k++) {
+            // Labels outside [0, length] included, as left by mutation or crossover
+            encoding[k] = random.nextInt(length + 3) - 1;
+        }
+        return encoding;
+    }
+
+    @Test
+    void canonicalizeWritesTheRestrictedGrowthString() {
+        int[] encoding = {3, 3, 1, 2};
+        int[] scratch = new int[Partitioning.scratchLength(encoding.length)];
+        Partitioning.canonicalize(encoding, 0, encoding.length, scratch);
+        assertArrayEquals(new int[]{1, 1, 2, 3}, encoding);
+
+        Random random = new Random(7);
+        for (int trial = 0; trial < 1000; trial++) {
+            int length = 1 + random.nextInt(12);
+            int[] original = randomEncoding(random, length);
+            int[] canonical = original.clone();
+            scratch = new int[Partitioning.scratchLength(length)];
+            long hash = Partitioning.canonicalize(canonical, 0, length, scratch);
+            assertArrayEquals(restrictedGrowthString(original), canonical);
+            assertEquals(hash, partitionHash(original, 0, length, scratch)[0]);
+            assertTrue(Partitioning.samePartition(original, 0, canonical, 0, length, scratch));
+        }
+    }
+
+    @Test
+    void hashAndSamePartitionAgreeWithTheCanonicalForms() {
+        Random random = new Random(11);
+        int length = 6;
+        int[] scratch = new int[Partitioning.scratchLength(length)];
+        List<int[]> encodings = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            encodings.add(randomEncoding(random, length));
+        }
+        for (int[] a : encodings) {
+            for (int[] b : encodings) {
+                boolean same = Arrays.equals(restrictedGrowthString(a), restrictedGrowthString(b));
+                assertEquals(same, Partitioning.samePartition(a, 0, b, 0, length, scratch));
+                long[] hashA = partitionHash(a, 0, length, scratch);
+                long[] hashB = partitionHash(b, 0, length, scratch);
+                if (same) {
+                    assertArrayEquals(hashA, hashB);
+                } else {
+                    // Neither half collides
+                    assertNotEquals(hashA[0], hashB[0]);
+                    assertNotEquals(hashA[1], hashB[1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void encodingsAreReadAtTheirOffset() {
+        int[] a = {9, 9, 5, 5, 7};
+        int[] b = {0, 2, 2, 4, 4, 1};
+        int[] scratch = new int[Partitioning.scratchLength(3)];
+        assertTrue(Partitioning.samePartition(a, 1, b, 2, 3, scratch));
+        assertFalse(Partitioning.samePartition(a, 0, b, 2, 3, scratch));
+        assertArrayEquals(partitionHash(a, 1, 3, scratch), partitionHash(b, 2, 3, scratch));
+    }
+}
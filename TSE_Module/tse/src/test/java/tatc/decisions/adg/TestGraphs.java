@@ -0,0 +1,55 @@
+package tatc.decisions.adg;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import tatc.architecture.specifications.DesignSpace;
+import tatc.architecture.specifications.Evaluation;
+import tatc.architecture.specifications.TSEObject;
+import tatc.architecture.specifications.TradespaceSearch;
+import tatc.tradespaceiterator.ProblemProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * Decision graphs and solutions built from minimal TSE requests
+ */
+public final class TestGraphs {
+
+    private TestGraphs() {
+    }
+
+    /**
+     * Builds the graph of a TSE request without space segment, objectives nor evaluators
+     * @param decisionVariables the decisionVariables section of the request
+     * @param values other sections of the request, holding the values of the variables (e.g.
+     * {"payload": ["a", "b"]})
+     * @return the graph of the request
+     */
+    public static Graph of(JSONObject decisionVariables, JSONObject values) {
+        JSONObject request = new JSONObject(values.toString());
+        request.put("designSpace", new JSONObject().put("decisionVariables", decisionVariables));
+        request.put("evaluation", new JSONObject()
+                .put("workflow", new JSONArray())
+                .put("TSE", new JSONObject().put("publish_metric_requests", new JSONObject())));
+        TradespaceSearch tsr = new TradespaceSearch(null,
+                new DesignSpace(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>()), null,
+                new Evaluation(new TSEObject(new ArrayList<>(), null, Collections.emptyMap(), null), null));
+        return new Graph(new ProblemProperties(tsr, request));
+    }
+
+    /**
+     * Creates a solution and stores its encodings in the decisions of the graph
+     * @param graph the graph
+     * @param encodings one encoding per decision, in topological order
+     * @return the solution, with a new id of the graph
+     */
+    public static AdgSolution solution(Graph graph, int[]... encodings) {
+        AdgSolution solution = new AdgSolution(graph, null, 2, 0);
+        solution.setId(graph.nextSolutionId());
+        for (int d = 0; d < encodings.length; d++) {
+            graph.getTopoOrderedDecisions().get(d).addEncodingById(solution.getId(), encodings[d]);
+        }
+        return solution;
+    }
+}
@@ -0,0 +1,133 @@
+package tatc.decisions.search;
+
+import org.junit.jupiter.api.Test;
+import org.moeaframework.core.EpsilonBoxDominanceArchive;
+import org.moeaframework.core.Population;
+import org.moeaframework.core.Solution;
+import org.moeaframework.core.comparator.ParetoDominanceComparator;
+import org.moeaframework.core.operator.RandomInitialization;
+import org.moeaframework.core.operator.TournamentSelection;
+import org.moeaframework.core.operator.real.PM;
+import org.moeaframework.core.variable.EncodingUtils;
+import org.moeaframework.core.variable.RealVariable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncEpsilonMOEATest {
+
+    /**
+     * Two-objective problem whose submission throws for every third solution, like a decoding
+     * failure before the architecture is sent
+     */
+    private static class FailingProblem implements AsynchronousProblem {
+        private int submissions;
+        private final List<Throwable> errors = new ArrayList<>();
+        private final List<Solution> failed = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<Map<String, Double>> submitEvaluation(Solution solution) {
+            if (++submissions % 3 == 0) {
+                throw new IllegalStateException("decoding failed");
+            }
+            double x = EncodingUtils.getReal(solution.getVariable(0));
+            Map<String, Double> results = new java.util.HashMap<>();
+            results.put("f1", x);
+            results.put("f2", 1 - x);
+            // Completed later, from another thread, like a remote evaluation
+            return CompletableFuture.supplyAsync(() -> results);
+        }
+
+        @Override
+        public void completeEvaluation(Solution solution, Map<String, Double> results, Throwable error) {
+            if (error != null) {
+                assertNull(results);
+                errors.add(error);
+                failed.add(solution);
+                solution.setObjective(0, Double.POSITIVE_INFINITY);
+                solution.setObjective(1, Double.POSITIVE_INFINITY);
+            } else {
+                solution.setObjective(0, results.get("f1"));
+                solution.setObjective(1, results.get("f2"));
+            }
+        }
+
+        @Override
+        public void evaluate(Solution solution) {
+            throw new UnsupportedOperationException("evaluated asynchronously");
+        }
+
+        @Override
+        public String getName() {
+            return "FailingProblem";
+        }
+
+        @Override
+        public int getNumberOfVariables() {
+            return 1;
+        }
+
+        @Override
+        public int getNumberOfObjectives() {
+            return 2;
+        }
+
+        @Override
+        public int getNumberOfConstraints() {
+            return 0;
+        }
+
+        @Override
+        public Solution newSolution() {
+            Solution solution = new Solution(1, 2);
+            solution.setVariable(0, new RealVariable(0, 1));
+            return solution;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    void failedSubmissionsAreCompletedWithTheirErrorAndTheSearchGoesOn() {
+        FailingProblem problem = new FailingProblem();
+        int maxEvaluations = 60;
+        AsyncEpsilonMOEA algorithm = new AsyncEpsilonMOEA(problem,
+                new Population(),
+                new EpsilonBoxDominanceArchive(0.01),
+                new TournamentSelection(2, new ParetoDominanceComparator()),
+                new PM(1, 20),
+                new RandomInitialization(problem, 10),
+                new ParetoDominanceComparator(),
+                4, maxEvaluations);
+
+        while (algorithm.getNumberOfEvaluations() < maxEvaluations) {
+            algorithm.step();
+        }
+
+        assertEquals(maxEvaluations, algorithm.getNumberOfEvaluations());
+        assertTrue(problem.errors.size() >= maxEvaluations / 3 - 1);
+        for (Throwable error : problem.errors) {
+            assertSame(IllegalStateException.class, error.getClass());
+        }
+        // The failed solutions got the penalty objectives and never entered the archive
+        for (Solution solution : problem.failed) {
+            assertEquals(Double.POSITIVE_INFINITY, solution.getObjective(0));
+            for (Solution member : algorithm.getArchive()) {
+                assertTrue(member != solution);
+            }
+        }
+        assertTrue(algorithm.getArchive().size() > 0);
+        algorithm.terminate();
+        assertEquals(Collections.emptyList(), algorithm.getInFlightSolutions());
+    }
+}
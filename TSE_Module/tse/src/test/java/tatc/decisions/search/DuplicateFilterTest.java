@@ -0,0 +1,94 @@
+package tatc.decisions.search;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import tatc.decisions.Decision;
+import tatc.decisions.adg.AdgSolution;
+import tatc.decisions.adg.DesignKey;
+import tatc.decisions.adg.Graph;
+import tatc.decisions.adg.TestGraphs;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuplicateFilterTest {
+
+    /**
+     * Graph of a single partitioning of four payloads
+     */
+    private static Graph partitionGraph() {
+        return TestGraphs.of(
+                new JSONObject().put("partition", new JSONObject()
+                        .put("type", "Partitioning")
+                        .put("E", "payload")
+                        .put("parents", new JSONArray())
+                        .put("resultType", "payload")),
+                new JSONObject().put("payload", new JSONArray().put("a").put("b").put("c").put("d")));
+    }
+
+    @Test
+    void relabeledPartitionsAreDuplicates() {
+        Graph graph = partitionGraph();
+        DuplicateFilter filter = new DuplicateFilter(graph, 10);
+
+        assertTrue(filter.offer(TestGraphs.solution(graph, new int[]{1, 1, 2, 3})));
+        assertFalse(filter.offer(TestGraphs.solution(graph, new int[]{3, 3, 1, 2})));
+        assertTrue(filter.offer(TestGraphs.solution(graph, new int[]{1, 2, 1, 3})));
+        assertEquals(2, filter.getNumberOfDesigns());
+    }
+
+    @Test
+    void designsCollidingOnOneHalfAreDifferent() {
+        Graph graph = partitionGraph();
+        DuplicateFilter filter = new DuplicateFilter(graph, 10);
+        AdgSolution a = TestGraphs.solution(graph, new int[]{1, 1, 2, 2});
+        AdgSolution b = TestGraphs.solution(graph, new int[]{1, 2, 2, 2});
+        AdgSolution sameAsA = TestGraphs.solution(graph, new int[]{2, 2, 1, 1});
+        // Keys whose first halves collide
+        a.setAttribute(DuplicateFilter.DESIGN_KEY, new DesignKey(42, 1));
+        b.setAttribute(DuplicateFilter.DESIGN_KEY, new DesignKey(42, 2));
+        sameAsA.setAttribute(DuplicateFilter.DESIGN_KEY, new DesignKey(42, 1));
+
+        DesignKey keyA = filter.designKey(a);
+        DesignKey keyB = filter.designKey(b);
+        assertEquals(keyA.getHigh(), keyB.getHigh());
+        assertNotEquals(keyA, keyB);
+        assertFalse(filter.sameDesign(a, b));
+        assertTrue(filter.sameDesign(a, sameAsA));
+
+        assertTrue(filter.offer(a));
+        assertTrue(filter.offer(b));
+        assertFalse(filter.offer(sameAsA));
+        assertEquals(2, filter.getNumberOfDesigns());
+    }
+
+    @Test
+    void designsAreComparedAfterTheirEncodingsAreReleased() {
+        Graph graph = partitionGraph();
+        Decision decision = graph.getTopoOrderedDecisions().get(0);
+        DuplicateFilter filter = new DuplicateFilter(graph, 10);
+        AdgSolution a = TestGraphs.solution(graph, new int[]{1, 2, 1, 1});
+        AdgSolution b = TestGraphs.solution(graph, new int[]{1, 1, 1, 2});
+        AdgSolution c = TestGraphs.solution(graph, new int[]{1, 2, 2, 2});
+        filter.register(a);
+        filter.designKey(b);
+
+        decision.releaseEncodings(Collections.emptySet());
+
+        assertFalse(filter.sameDesign(a, b));
+        assertTrue(filter.offer(b));
+        // A deep copy keeps the key of b
+        assertFalse(filter.offer(b.deepCopy()));
+        // Only the key is kept with the solution
+        assertEquals(Collections.singleton(DuplicateFilter.DESIGN_KEY), b.getAttributes().keySet());
+        // No key can be computed anymore: compared on the genes
+        assertNull(filter.designKey(c));
+        assertTrue(filter.sameDesign(c, c.deepCopy()));
+    }
+}
@@ -0,0 +1,71 @@
+package tatc.tradespaceiterator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EvaluationCacheTest {
+
+    private static final Map<String, Double> METRICS = Collections.singletonMap("cost", 1.0);
+
+    @Test
+    void oneCallerCancellingDoesNotCancelTheOthers() {
+        EvaluationCache cache = new EvaluationCache(10);
+        CompletableFuture<Map<String, Double>> evaluation = new CompletableFuture<>();
+        AtomicInteger cancels = new AtomicInteger();
+        CompletableFuture<Map<String, Double>> first = cache.put("a", evaluation, cancels::incrementAndGet);
+        CompletableFuture<Map<String, Double>> second = cache.get("a");
+
+        first.cancel(false);
+        assertEquals(0, cancels.get());
+        assertFalse(evaluation.isCancelled());
+        evaluation.complete(METRICS);
+        assertEquals(METRICS, second.join());
+        assertEquals(METRICS, cache.get("a").join());
+    }
+
+    @Test
+    void theLastCallerCancellingCancelsAndEvictsTheEvaluation() {
+        EvaluationCache cache = new EvaluationCache(10);
+        CompletableFuture<Map<String, Double>> evaluation = new CompletableFuture<>();
+        AtomicInteger cancels = new AtomicInteger();
+        CompletableFuture<Map<String, Double>> first = cache.put("a", evaluation, cancels::incrementAndGet);
+        CompletableFuture<Map<String, Double>> second = cache.get("a");
+
+        second.cancel(false);
+        first.cancel(false);
+        assertEquals(1, cancels.get());
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+
+        // A new evaluation of the architecture is cached again
+        CompletableFuture<Map<String, Double>> third = cache.put("a", CompletableFuture.completedFuture(METRICS), () -> { });
+        assertEquals(METRICS, third.join());
+        assertEquals(METRICS, cache.get("a").join());
+    }
+
+    @Test
+    void cancellingAfterCompletionCancelsNothing() {
+        EvaluationCache cache = new EvaluationCache(0);
+        CompletableFuture<Map<String, Double>> evaluation = new CompletableFuture<>();
+        AtomicInteger cancels = new AtomicInteger();
+        CompletableFuture<Map<String, Double>> only = cache.put("a", evaluation, cancels::incrementAndGet);
+        evaluation.complete(METRICS);
+        only.cancel(false);
+        assertEquals(0, cancels.get());
+        assertNull(cache.get("a"));
+
+        // Without caching, the only caller still cancels its evaluation
+        CompletableFuture<Map<String, Double>> other = cache.put("b", new CompletableFuture<>(), cancels::incrementAndGet);
+        assertTrue(other.cancel(false));
+        assertEquals(1, cancels.get());
+    }
+}
@@ -0,0 +1,49 @@
+package tatc.tradespaceiterator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EvaluationStoreTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void continuesAfterARecordCutShort() throws IOException {
+        File file = new File(directory, EvaluationStore.DEFAULT_FILE_NAME);
+        EvaluationStore store = new EvaluationStore(file, "workflow");
+        store.put("a", Collections.singletonMap("Cost", 1.0));
+        store.close();
+        // A run killed in the middle of an append
+        Files.write(file.toPath(), "{\"workflow\":\"workflow\",\"archi".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        store = new EvaluationStore(file, "workflow");
+        assertEquals(1, store.size());
+        store.put("b", Collections.singletonMap("Cost", 2.0));
+        store.close();
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        EvaluationStore reopened = new EvaluationStore(file, "workflow");
+        Map<String, Double> b = reopened.get("b");
+        assertEquals(2.0, b.get("Cost"));
+        assertEquals(1.0, reopened.get("a").get("Cost"));
+        reopened.close();
+        EvaluationStore otherWorkflow = new EvaluationStore(file, "other");
+        assertNull(otherWorkflow.get("a"));
+        otherWorkflow.close();
+    }
+}
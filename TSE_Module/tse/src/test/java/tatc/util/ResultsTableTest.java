@@ -0,0 +1,161 @@
+package tatc.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultsTableTest {
+
+    private static final String[] ORBITS = {"SSO-500", "LEO-600", "SSO-500, inclined"};
+
+    @TempDir
+    File directory;
+
+    private static Map<String, String> objectiveTypes() {
+        Map<String, String> types = new HashMap<>();
+        types.put("cost", "MIN");
+        types.put("coverage", "MAX");
+        return types;
+    }
+
+    /**
+     * Appends rows [from, to), with a CATEGORY, a LONG and a DOUBLE decision and two objectives
+     */
+    private static void appendRows(ResultsTableWriter writer, int from, int to) throws IOException {
+        for (int row = from; row < to; row++) {
+            Map<String, Object> decisions = new LinkedHashMap<>();
+            decisions.put("orbit", row == 4 ? null : ORBITS[row % ORBITS.length]);
+            decisions.put("satellites", row + 1);
+            decisions.put("inclination", 0.5 * row);
+            Map<String, Double> objectives = new LinkedHashMap<>();
+            objectives.put("cost", 10.0 * row);
+            objectives.put("coverage", row == 2 ? null : 1.0 / (row + 1));
+            writer.append(100 + row, decisions, objectives);
+        }
+    }
+
+    private static String expectedLine(int row) {
+        String orbit = row == 4 ? "" : ORBITS[row % ORBITS.length];
+        if (orbit.contains(",")) {
+            orbit = "\"" + orbit + "\"";
+        }
+        return (100 + row) + "," + orbit + "," + (row + 1) + "," + (0.5 * row) + "," + (10.0 * row) + ","
+                + (row == 2 ? Double.NaN : 1.0 / (row + 1));
+    }
+
+    private static void assertRows(ResultsTableReader reader, int count) throws IOException {
+        assertEquals(count, reader.getNumberOfRows());
+        int orbit = reader.columnIndex("orbit");
+        int satellites = reader.columnIndex("satellites");
+        int cost = reader.columnIndex("cost");
+        for (int row = 0; row < count; row++) {
+            assertEquals(100 + row, reader.getArchIndex(row));
+            assertEquals(row == 4 ? "" : ORBITS[row % ORBITS.length], reader.getString(row, orbit));
+            assertEquals(row + 1, reader.getLong(row, satellites));
+            assertEquals(10.0 * row, reader.getDouble(row, cost));
+        }
+        StringWriter csv = new StringWriter();
+        reader.exportCsv(csv);
+        String[] lines = csv.toString().split("\n");
+        assertEquals("archIndex,orbit,satellites,inclination,cost,coverage", lines[0]);
+        assertEquals(count + 1, lines.length);
+        for (int row = 0; row < count; row++) {
+            assertEquals(expectedLine(row), lines[row + 1]);
+        }
+    }
+
+    private static void sync(ResultsTableWriter writer) throws IOException {
+        writer.flush();
+        ResultsSink.getInstance().sync();
+    }
+
+    @Test
+    void readsBackTheRowsOfSeveralBlocks() throws IOException {
+        File file = new File(directory, "summary.tsr");
+        ResultsTableWriter writer = new ResultsTableWriter(file, objectiveTypes(), 3);
+        appendRows(writer, 0, 8);
+        sync(writer);
+
+        try (ResultsTableReader reader = ResultsTableReader.open(file)) {
+            assertEquals(3, reader.getNumberOfBlocks());
+            assertEquals(6, reader.getBlock(2).getFirstRow());
+            assertEquals(2, reader.getBlock(2).getRows());
+            assertEquals(file.length(), reader.getEndOfRecords());
+
+            List<ResultsTable.Column> columns = reader.getColumns();
+            assertEquals(ResultsTable.CATEGORY, columns.get(0).getType());
+            assertEquals(ResultsTable.LONG, columns.get(1).getType());
+            assertEquals(ResultsTable.DOUBLE, columns.get(2).getType());
+            assertEquals(1, columns.get(3).getDirection());
+            assertEquals(-1, columns.get(4).getDirection());
+            assertEquals(Arrays.asList(ORBITS), reader.getDictionary(0));
+
+            assertRows(reader, 8);
+            assertTrue(Double.isNaN(reader.getDouble(2, reader.columnIndex("coverage"))));
+            assertEquals(ResultsTable.NULL_LONG, reader.getLong(4, 0));
+            assertEquals(0.5 * 7, reader.getBlock(2).doubles(2).get(1));
+        }
+    }
+
+    @Test
+    void continuesAfterARecordCutShort() throws IOException {
+        File file = new File(directory, "summary.tsr");
+        ResultsTableWriter writer = new ResultsTableWriter(file, objectiveTypes(), 3);
+        appendRows(writer, 0, 2);
+        sync(writer);
+        long complete = file.length();
+
+        // Killed while writing a block of 3 rows: its header and the first archIndex only
+        ByteBuffer partial = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        partial.putInt(ResultsTable.ROWS_RECORD).putInt(3).putLong(102);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(partial.array());
+        }
+        try (ResultsTableReader reader = ResultsTableReader.open(file)) {
+            assertEquals(complete, reader.getEndOfRecords());
+            assertRows(reader, 2);
+        }
+
+        // The resumed run drops the partial record and keeps the codes of the dictionary
+        writer = new ResultsTableWriter(file, objectiveTypes(), 3);
+        appendRows(writer, 2, 7);
+        sync(writer);
+        try (ResultsTableReader reader = ResultsTableReader.open(file)) {
+            assertEquals(file.length(), reader.getEndOfRecords());
+            assertEquals(Arrays.asList(ORBITS), reader.getDictionary(0));
+            assertEquals(3, reader.getNumberOfBlocks());
+            assertRows(reader, 7);
+        }
+    }
+
+    @Test
+    void exportsToACsvFile() throws IOException {
+        File file = new File(directory, "summary.tsr");
+        ResultsTableWriter writer = new ResultsTableWriter(file, objectiveTypes(), 4);
+        appendRows(writer, 0, 5);
+        sync(writer);
+
+        File csv = new File(directory, "summary.csv");
+        ResultsTableReader.main(new String[]{file.getPath()});
+        List<String> lines = Files.readAllLines(csv.toPath());
+        assertEquals(6, lines.size());
+        for (int row = 0; row < 5; row++) {
+            assertEquals(expectedLine(row), lines.get(row + 1));
+        }
+    }
+}